@@ -127,7 +127,18 @@ public class ExcelConverter {
     return sheetState;
   }
 
-  private void createHeaderRow(final SheetState sheetState, final int rowNumber, final Tuple dbRow) {
+  /**
+   *
+   * @return FALSE for suppressed columns and for technical columns not mapped to an attribute (like the version
+   * selected only for the ETag).
+   */
+  private boolean isExportedColumn(final SheetState sheetState, final String dbAlias) throws ODataJPAModelException {
+    return !configuration.isSuppressedColumn(sheetState.jpaType, dbAlias) && sheetState.jpaType.getPath(
+        dbAlias) != null;
+  }
+
+  private void createHeaderRow(final SheetState sheetState, final int rowNumber, final Tuple dbRow)
+      throws ODataJPAModelException {
     final Row headerRow = sheetState.sheet.createRow(rowNumber);
     final CellStyle cellStyle = sheetState.sheet.getWorkbook().createCellStyle();
     final org.apache.poi.ss.usermodel.Font font = sheetState.workbookState.workbook.createFont();
@@ -141,7 +152,7 @@ public class ExcelConverter {
     cellStyle.setFont(font);
     for (final TupleElement<?> dbCell : dbRow.getElements()) {
       final String dbAlias = dbCell.getAlias();
-      if (configuration.isSuppressedColumn(sheetState.jpaType, dbAlias)) {
+      if (!isExportedColumn(sheetState, dbAlias)) {
         continue;
       }
       final String customName = configuration.getCustomColumnName(sheetState.jpaType, dbAlias);
@@ -248,7 +259,7 @@ public class ExcelConverter {
       final Row row = sheetState.sheet.createRow(rowNumber++);
       for (final TupleElement<?> dbCell : dbRow.getElements()) {
         final String dbAlias = dbCell.getAlias();
-        if (configuration.isSuppressedColumn(sheetState.jpaType, dbAlias)) {
+        if (!isExportedColumn(sheetState, dbAlias)) {
           continue;
         }
         final Object value = dbRow.get(dbAlias);
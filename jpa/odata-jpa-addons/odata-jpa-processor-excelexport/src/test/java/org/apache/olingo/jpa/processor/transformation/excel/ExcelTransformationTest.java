@@ -125,6 +125,8 @@ public class ExcelTransformationTest extends TestBase {
     assertFalse(validator.hasColumnOfName("Organization", "Name1"));// renamed
     assertFalse(validator.hasColumnOfName("Organization", "Name2"));
     assertFalse(validator.hasColumnOfName("Organization", "ID"));
+    // the version is selected only for the ETag
+    assertFalse(validator.hasColumnOfName("Organization", "ETag"));
     assertEquals(9, validator.determineNumberOfColumns("Organization"));
   }
 
@@ -0,0 +1,591 @@
+package org.apache.olingo.jpa.processor.search.embedded;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+
+import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPAAttribute;
+import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPAEntityType;
+import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPASelector;
+import org.apache.olingo.jpa.metadata.core.edm.mapper.exception.ODataJPAModelException;
+import org.apache.olingo.jpa.processor.core.api.JPAODataEntityChangeListener;
+import org.apache.olingo.jpa.processor.core.api.JPAODataSearchContext;
+import org.apache.olingo.jpa.processor.core.query.Util;
+import org.apache.olingo.jpa.processor.core.search.AbstractKeySetSearchProvider;
+import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.uri.queryoption.search.SearchBinary;
+import org.apache.olingo.server.api.uri.queryoption.search.SearchBinaryOperatorKind;
+import org.apache.olingo.server.api.uri.queryoption.search.SearchExpression;
+
+/**
+ * Search index held in memory, for databases without (usable) full-text search. The values of the @EdmSearchable
+ * attributes (or all attributes, like the default search) are split into words; a search term matches an entity if
+ * every word of the term is the beginning of a word of the entity (case insensitive). The $search operators AND, OR
+ * and NOT are supported.
+ * <p>
+ * The index of an entity type is built on the first search for that type, by the
+ * {@link #setRebuildExecutor(Executor) rebuild executor} or the searching request, or explicitly (like at startup) by
+ * {@link #rebuild(EntityManager, JPAEntityType)}. While an index is built, searches for the entity type use the LIKE
+ * conditions of the database search (see {@link #createFallbackCondition(JPAODataSearchContext)}); searches for other
+ * entity types are not blocked. Changes by OData requests are applied after the commit by the
+ * {@link JPAODataEntityChangeListener} hooks, changes committed while an index is built are applied after the build.
+ * Changes done by other applications require a rebuild.
+ * <p>
+ * The index is meant for entity types of moderate size: an entity type with more than
+ * {@link #EmbeddedSearchIndex(int) a maximal number} of entities is not indexed, a search for it uses the database
+ * search.
+ */
+public class EmbeddedSearchIndex extends AbstractKeySetSearchProvider implements JPAODataEntityChangeListener {
+
+  public static final int DEFAULT_MAX_INDEXED_ENTITIES = 100000;
+
+  private static final Logger LOG = Logger.getLogger(EmbeddedSearchIndex.class.getName());
+  private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+  private static final int DEFAULT_REBUILD_PAGE_SIZE = 1000;
+
+  private final int maxIndexedEntities;
+  private int rebuildPageSize = DEFAULT_REBUILD_PAGE_SIZE;
+  private Executor rebuildExecutor = null;
+  private final Map<String, EntryReader> readers = new ConcurrentHashMap<>();
+  // the indexes usable for searches
+  private final Map<String, TypeIndex> indexes = new ConcurrentHashMap<>();
+  // the indexes currently built, collecting the changes committed meanwhile
+  private final Map<String, TypeIndex> builds = new ConcurrentHashMap<>();
+  private final Set<String> oversizedTypes = ConcurrentHashMap.newKeySet();
+
+  public EmbeddedSearchIndex() {
+    this(DEFAULT_MAX_INDEXED_ENTITIES);
+  }
+
+  /**
+   *
+   * @param maxIndexedEntities The maximal number of entities indexed per entity type.
+   */
+  public EmbeddedSearchIndex(final int maxIndexedEntities) {
+    if (maxIndexedEntities < 1) {
+      throw new IllegalArgumentException("At least one entity must be indexed");
+    }
+    this.maxIndexedEntities = maxIndexedEntities;
+  }
+
+  /**
+   * Set the number of entities loaded per page while building an index.
+   */
+  void setRebuildPageSize(final int rebuildPageSize) {
+    this.rebuildPageSize = rebuildPageSize;
+  }
+
+  /**
+   * Set the executor to build a missing index in the background. The search triggering the build and all searches
+   * until the index is built use the database search. Without executor (default) the index is built by the first
+   * searching request.
+   */
+  public void setRebuildExecutor(final Executor rebuildExecutor) {
+    this.rebuildExecutor = rebuildExecutor;
+  }
+
+  /**
+   * Replace the index of the entity type by the current database state of all entities. The entities are loaded
+   * page-wise (ordered by key) by the given entity manager, that is cleared after every page. The current index (if
+   * any) is used for searches until the new one is built.
+   *
+   * @throws IllegalStateException If the entity type has more entities than allowed for the index.
+   */
+  public void rebuild(final EntityManager em, final JPAEntityType entityType) throws ODataJPAModelException {
+    final TypeIndex index = new TypeIndex(getReader(entityType), maxIndexedEntities);
+    builds.put(entityType.getExternalName(), index);
+    try {
+      build(em, entityType, index);
+    } finally {
+      builds.remove(entityType.getExternalName(), index);
+    }
+  }
+
+  private void build(final EntityManager em, final JPAEntityType entityType, final TypeIndex index)
+      throws ODataJPAModelException {
+    final String name = entityType.getExternalName();
+    List<Object> lastKey = null;
+    for (;;) {
+      final List<?> page = createPageQuery(em, entityType.getTypeClass(), index.reader.keyPath, lastKey)
+          .setMaxResults(rebuildPageSize).getResultList();
+      for (final Object jpaEntity : page) {
+        if (!index.put(index.reader.readEntry(jpaEntity))) {
+          throw new IllegalStateException("More than " + maxIndexedEntities + " entities of " + name + " to index");
+        }
+      }
+      if (page.size() < rebuildPageSize) {
+        break;
+      }
+      lastKey = index.reader.readKey(page.get(page.size() - 1));
+      em.clear();
+    }
+    // the changes committed while loading
+    if (!index.finishLoading()) {
+      throw new IllegalStateException("More than " + maxIndexedEntities + " entities of " + name + " to index");
+    }
+    synchronized (index) {
+      if (index.discarded) {
+        LOG.log(Level.FINE, "Search index for " + name + " discarded, may miss a change committed meanwhile");
+        return;
+      }
+      indexes.put(name, index);
+    }
+    oversizedTypes.remove(name);
+    LOG.log(Level.FINE, "Search index for " + name + " rebuilt with " + index.size() + " entities");
+  }
+
+  /**
+   * A query for the page of entities following the last key of the previous page (keyset paging), so the database
+   * can start every page directly by the primary key index.
+   */
+  @SuppressWarnings("unchecked")
+  private static <T> TypedQuery<T> createPageQuery(final EntityManager em, final Class<T> typeClass,
+      final List<JPASelector> keyPath, final List<Object> lastKey) {
+    final CriteriaBuilder cb = em.getCriteriaBuilder();
+    final CriteriaQuery<T> cq = cb.createQuery(typeClass);
+    final Root<T> root = cq.from(typeClass);
+    final List<Path<Comparable<Object>>> keyColumns = new ArrayList<>(keyPath.size());
+    final List<Order> orders = new ArrayList<>(keyPath.size());
+    for (final JPASelector keyAttribute : keyPath) {
+      Path<?> path = root;
+      for (final JPAAttribute<?> element : keyAttribute.getPathElements()) {
+        path = path.get(element.getInternalName());
+      }
+      keyColumns.add((Path<Comparable<Object>>) path);
+      orders.add(cb.asc(path));
+    }
+    if (lastKey != null) {
+      // (k1 > v1) OR (k1 = v1 AND k2 > v2) OR ...
+      Predicate condition = null;
+      Predicate equalPrefix = null;
+      for (int i = 0; i < keyColumns.size(); i++) {
+        final Predicate greater = cb.greaterThan(keyColumns.get(i), (Comparable<Object>) lastKey.get(i));
+        final Predicate keyCondition = equalPrefix == null ? greater : cb.and(equalPrefix, greater);
+        condition = condition == null ? keyCondition : cb.or(condition, keyCondition);
+        final Predicate equal = cb.equal(keyColumns.get(i), lastKey.get(i));
+        equalPrefix = equalPrefix == null ? equal : cb.and(equalPrefix, equal);
+      }
+      cq.where(condition);
+    }
+    cq.select(root).orderBy(orders);
+    return em.createQuery(cq);
+  }
+
+  /**
+   * Remove the index of the entity type, the next search will build it again.
+   */
+  public void clear(final JPAEntityType entityType) {
+    indexes.remove(entityType.getExternalName());
+    oversizedTypes.remove(entityType.getExternalName());
+  }
+
+  /**
+   * The entry is read while the entity is managed, only if the entity type has an index or an index is built. Without
+   * index (like for a bulk import) the entry is not read, but an index build started before the commit may have
+   * loaded the old state: that index is discarded and built again by the next search.
+   */
+  @Override
+  public Runnable entityChanged(final JPAEntityType entityType, final Object jpaEntity)
+      throws ODataJPAModelException {
+    final String name = entityType.getExternalName();
+    if (!isIndexed(name)) {
+      return oversizedTypes.contains(name) ? null : () -> discardIndexStartedMeanwhile(name);
+    }
+    final IndexEntry entry = getReader(entityType).readEntry(jpaEntity);
+    return () -> applyChange(name, entry.key, entry);
+  }
+
+  @Override
+  public Runnable entityDeleted(final JPAEntityType entityType, final Object jpaEntity)
+      throws ODataJPAModelException {
+    final String name = entityType.getExternalName();
+    if (!isIndexed(name) && oversizedTypes.contains(name)) {
+      return null;
+    }
+    final List<Object> key = getReader(entityType).readKey(jpaEntity);
+    return () -> applyChange(name, key, null);
+  }
+
+  private boolean isIndexed(final String name) {
+    return indexes.containsKey(name) || builds.containsKey(name);
+  }
+
+  private void discardIndexStartedMeanwhile(final String name) {
+    final TypeIndex build = builds.get(name);
+    if (build != null) {
+      synchronized (build) {
+        build.discarded = true;
+        indexes.remove(name, build);
+      }
+    } else {
+      indexes.remove(name);
+    }
+  }
+
+  /**
+   *
+   * @param entry The new state of the entity or <code>null</code> for a deleted entity.
+   */
+  private void applyChange(final String name, final List<Object> key, final IndexEntry entry) {
+    final TypeIndex build = builds.get(name);
+    if (build != null) {
+      // applied after loading, the loaded state may be older
+      build.change(key, entry);
+    }
+    final TypeIndex index = indexes.get(name);
+    if (index != null && index != build && !index.change(key, entry)) {
+      indexes.remove(name, index);
+      oversizedTypes.add(name);
+      LOG.log(Level.WARNING, "Search index for " + name + " dropped, more than " + maxIndexedEntities
+          + " entities");
+    }
+  }
+
+  /**
+   *
+   * @return <code>null</code> while the index is not (yet) available, to use the database search.
+   */
+  @Override
+  protected List<Object[]> findMatchingKeys(final JPAODataSearchContext context, final List<JPASelector> keyPath,
+      final int maxResults) throws ODataApplicationException, ODataJPAModelException {
+    final TypeIndex index = getIndex(context);
+    if (index == null) {
+      return null;
+    }
+    final Set<List<Object>> matchingKeys = index.search(context.getSearchExpression());
+    final List<Object[]> keys = new ArrayList<>(Math.min(matchingKeys.size(), maxResults));
+    for (final List<Object> key : matchingKeys) {
+      if (keys.size() == maxResults) {
+        break;
+      }
+      keys.add(key.toArray());
+    }
+    return keys;
+  }
+
+  private TypeIndex getIndex(final JPAODataSearchContext context) throws ODataJPAModelException {
+    final JPAEntityType entityType = context.getEntityType();
+    final String name = entityType.getExternalName();
+    final TypeIndex index = indexes.get(name);
+    if (index != null || oversizedTypes.contains(name)) {
+      return index;
+    }
+    final TypeIndex build = new TypeIndex(getReader(entityType), maxIndexedEntities);
+    if (builds.putIfAbsent(name, build) != null) {
+      // built by another thread
+      return null;
+    }
+    // own entity manager to keep the persistence context of the request free of the loaded entities
+    final EntityManagerFactory emf = context.getEntityManager().getEntityManagerFactory();
+    final Runnable buildTask = () -> buildInitial(emf, entityType, build);
+    if (rebuildExecutor == null) {
+      buildTask.run();
+      return indexes.get(name);
+    }
+    try {
+      rebuildExecutor.execute(buildTask);
+    } catch (final RejectedExecutionException e) {
+      builds.remove(name, build);
+      LOG.log(Level.WARNING, "Build of search index for " + name + " rejected", e);
+    }
+    return null;
+  }
+
+  private void buildInitial(final EntityManagerFactory emf, final JPAEntityType entityType, final TypeIndex index) {
+    final EntityManager em = emf.createEntityManager();
+    try {
+      build(em, entityType, index);
+    } catch (final IllegalStateException e) {
+      oversizedTypes.add(entityType.getExternalName());
+      LOG.log(Level.WARNING, "Search index for " + entityType.getExternalName() + " not built, use database search",
+          e);
+    } catch (final ODataJPAModelException | RuntimeException e) {
+      LOG.log(Level.SEVERE, "Build of search index for " + entityType.getExternalName() + " failed", e);
+    } finally {
+      builds.remove(entityType.getExternalName(), index);
+      em.close();
+    }
+  }
+
+  private EntryReader getReader(final JPAEntityType entityType) throws ODataJPAModelException {
+    EntryReader reader = readers.get(entityType.getExternalName());
+    if (reader == null) {
+      reader = new EntryReader(entityType);
+      final EntryReader existing = readers.putIfAbsent(entityType.getExternalName(), reader);
+      if (existing != null) {
+        reader = existing;
+      }
+    }
+    return reader;
+  }
+
+  private static List<String> splitIntoWords(final String text) {
+    final List<String> words = new ArrayList<>();
+    for (final String word : WORD_SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+      if (!word.isEmpty()) {
+        words.add(word);
+      }
+    }
+    return words;
+  }
+
+  private static Object readAttributeValue(final JPASelector path, final Object jpaEntity)
+      throws ODataJPAModelException {
+    Object value = jpaEntity;
+    for (final JPAAttribute<?> element : path.getPathElements()) {
+      if (value == null) {
+        return null;
+      }
+      value = element.getAttributeAccessor().getPropertyValue(value);
+    }
+    return value;
+  }
+
+  /**
+   * The key and the words of one entity, read while the entity is managed.
+   */
+  private static class IndexEntry {
+
+    private final List<Object> key;
+    private final Set<String> words;
+
+    IndexEntry(final List<Object> key, final Set<String> words) {
+      this.key = key;
+      this.words = words;
+    }
+  }
+
+  /**
+   * Reads the key and the words of the entities of one entity type.
+   */
+  private static class EntryReader {
+
+    private final List<JPASelector> keyPath;
+    private final List<JPASelector> searchableAttributes;
+
+    EntryReader(final JPAEntityType entityType) throws ODataJPAModelException {
+      this.keyPath = Util.buildKeyPath(entityType);
+      List<JPASelector> attributes = entityType.getSearchablePath();
+      if (attributes.isEmpty()) {
+        attributes = entityType.getPathList();
+      }
+      this.searchableAttributes = new ArrayList<>(attributes.size());
+      for (final JPASelector attribute : attributes) {
+        if (!isInOtherTable(attribute)) {
+          searchableAttributes.add(attribute);
+        }
+      }
+    }
+
+    private static boolean isInOtherTable(final JPASelector path) {
+      for (final JPAAttribute<?> attribute : path.getPathElements()) {
+        if (attribute.isJoinCollection()) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    List<Object> readKey(final Object jpaEntity) throws ODataJPAModelException {
+      final Object[] key = new Object[keyPath.size()];
+      for (int i = 0; i < key.length; i++) {
+        key[i] = readAttributeValue(keyPath.get(i), jpaEntity);
+      }
+      return Arrays.asList(key);
+    }
+
+    IndexEntry readEntry(final Object jpaEntity) throws ODataJPAModelException {
+      final Set<String> words = new HashSet<>();
+      for (final JPASelector attribute : searchableAttributes) {
+        final Object value = readAttributeValue(attribute, jpaEntity);
+        if (value != null) {
+          words.addAll(splitIntoWords(value.toString()));
+        }
+      }
+      return new IndexEntry(readKey(jpaEntity), words);
+    }
+  }
+
+  /**
+   * The inverted index (word to keys) of one entity type.
+   */
+  private static class TypeIndex {
+
+    private final int maxEntities;
+    private final EntryReader reader;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final NavigableMap<String, Set<List<Object>>> keysByWord = new TreeMap<>();
+    private final Map<List<Object>, Set<String>> wordsByKey = new HashMap<>();
+    // the last change per key while loading, a null entry for a deletion
+    private final Map<List<Object>, IndexEntry> pendingChanges = new LinkedHashMap<>();
+    private boolean loading = true;
+    // guarded by the index itself, set if a change committed while loading is not known
+    private boolean discarded = false;
+
+    TypeIndex(final EntryReader reader, final int maxEntities) {
+      this.maxEntities = maxEntities;
+      this.reader = reader;
+    }
+
+    /**
+     * Apply a committed change, while loading after the loading is finished.
+     *
+     * @param entry The new state of the entity or <code>null</code> for a deleted entity.
+     * @return <code>false</code> if the entry was not added, because the index is full.
+     */
+    boolean change(final List<Object> key, final IndexEntry entry) {
+      lock.writeLock().lock();
+      try {
+        if (loading) {
+          pendingChanges.put(key, entry);
+          return true;
+        }
+        if (entry == null) {
+          removeKey(key);
+          return true;
+        }
+        return put(entry);
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+
+    /**
+     * Apply the changes committed while loading.
+     *
+     * @return <code>false</code> if an entry was not added, because the index is full.
+     */
+    boolean finishLoading() {
+      lock.writeLock().lock();
+      try {
+        loading = false;
+        boolean complete = true;
+        for (final Map.Entry<List<Object>, IndexEntry> change : pendingChanges.entrySet()) {
+          complete &= change(change.getKey(), change.getValue());
+        }
+        pendingChanges.clear();
+        return complete;
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+
+    /**
+     *
+     * @return <code>false</code> if the entry was not added, because the index is full.
+     */
+    boolean put(final IndexEntry entry) {
+      lock.writeLock().lock();
+      try {
+        if (!wordsByKey.containsKey(entry.key) && wordsByKey.size() >= maxEntities) {
+          return false;
+        }
+        removeKey(entry.key);
+        wordsByKey.put(entry.key, entry.words);
+        for (final String word : entry.words) {
+          Set<List<Object>> keys = keysByWord.get(word);
+          if (keys == null) {
+            keys = new HashSet<>();
+            keysByWord.put(word, keys);
+          }
+          keys.add(entry.key);
+        }
+        return true;
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+
+    int size() {
+      lock.readLock().lock();
+      try {
+        return wordsByKey.size();
+      } finally {
+        lock.readLock().unlock();
+      }
+    }
+
+    private void removeKey(final List<Object> key) {
+      final Set<String> words = wordsByKey.remove(key);
+      if (words == null) {
+        return;
+      }
+      for (final String word : words) {
+        final Set<List<Object>> keys = keysByWord.get(word);
+        keys.remove(key);
+        if (keys.isEmpty()) {
+          keysByWord.remove(word);
+        }
+      }
+    }
+
+    Set<List<Object>> search(final SearchExpression expression) {
+      lock.readLock().lock();
+      try {
+        return evaluate(expression);
+      } finally {
+        lock.readLock().unlock();
+      }
+    }
+
+    private Set<List<Object>> evaluate(final SearchExpression expression) {
+      if (expression.isSearchBinary()) {
+        final SearchBinary binary = expression.asSearchBinary();
+        final Set<List<Object>> result = evaluate(binary.getLeftOperand());
+        if (binary.getOperator() == SearchBinaryOperatorKind.OR) {
+          result.addAll(evaluate(binary.getRightOperand()));
+        } else {
+          result.retainAll(evaluate(binary.getRightOperand()));
+        }
+        return result;
+      } else if (expression.isSearchUnary()) {
+        final Set<List<Object>> result = new HashSet<>(wordsByKey.keySet());
+        result.removeAll(evaluate(expression.asSearchUnary().getOperand()));
+        return result;
+      }
+      Set<List<Object>> result = null;
+      for (final String word : splitIntoWords(expression.asSearchTerm().getSearchTerm())) {
+        final Set<List<Object>> wordResult = new HashSet<>();
+        // all indexed words starting with the search word
+        for (final Collection<List<Object>> keys : keysByWord.subMap(word, true, word + Character.MAX_VALUE, true)
+            .values()) {
+          wordResult.addAll(keys);
+        }
+        if (result == null) {
+          result = wordResult;
+        } else {
+          result.retainAll(wordResult);
+        }
+      }
+      return result != null ? result : new HashSet<>(wordsByKey.keySet());
+    }
+  }
+
+}
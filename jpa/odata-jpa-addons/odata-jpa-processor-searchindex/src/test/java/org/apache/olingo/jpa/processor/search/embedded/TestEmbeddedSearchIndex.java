@@ -0,0 +1,209 @@
+package org.apache.olingo.jpa.processor.search.embedded;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+
+import org.apache.olingo.client.api.uri.URIBuilder;
+import org.apache.olingo.commons.api.ex.ODataException;
+import org.apache.olingo.commons.api.http.HttpMethod;
+import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPAEntityType;
+import org.apache.olingo.jpa.processor.core.database.AbstractJPADatabaseProcessor;
+import org.apache.olingo.jpa.processor.core.testmodel.Organization;
+import org.apache.olingo.jpa.processor.core.util.ServerCallSimulator;
+import org.apache.olingo.jpa.processor.core.util.TestBase;
+import org.apache.olingo.jpa.test.util.DataSourceHelper;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+
+public class TestEmbeddedSearchIndex extends TestBase {
+
+  @Before
+  public void recreateDatabase() {
+    DataSourceHelper.forceFreshCreatedDatabase();
+  }
+
+  private void useIndex(final String entityTypeName, final EmbeddedSearchIndex index) {
+    ((AbstractJPADatabaseProcessor) persistenceAdapter.getDatabaseAccessor()).setSearchProvider(entityTypeName,
+        index);
+  }
+
+  private ArrayNode search(final String entitySetName, final String searchExpression) throws IOException,
+  ODataException {
+    final ServerCallSimulator helper = new ServerCallSimulator(persistenceAdapter, newUriBuilder()
+        .appendEntitySetSegment(entitySetName).search(searchExpression));
+    helper.execute(HttpStatusCode.OK.getStatusCode());
+    return helper.getJsonObjectValues();
+  }
+
+  private void appendChangeSet(final StringBuffer requestBody, final String name2, final String... resourcePaths) {
+    requestBody.append("--abc123\r\n");
+    requestBody.append("Content-Type: multipart/mixed; boundary=changeset_1\r\n");
+    requestBody.append("\r\n");
+    int contentId = 1;
+    for (final String resourcePath : resourcePaths) {
+      requestBody.append("--changeset_1\r\n");
+      requestBody.append("Content-Type: application/http\r\n");
+      requestBody.append("Content-Transfer-Encoding: binary\r\n");
+      requestBody.append("Content-ID: " + Integer.toString(contentId++) + "\r\n");
+      requestBody.append("\r\n");
+      requestBody.append("PATCH " + resourcePath + " HTTP/1.1\r\n");
+      requestBody.append("Content-Type: application/json\r\n");
+      requestBody.append("\r\n");
+      requestBody.append("{\"Name2\": \"" + name2 + "\"}\r\n");
+    }
+    requestBody.append("--changeset_1--\r\n");
+    requestBody.append("\r\n");
+  }
+
+  private void executeBatch(final StringBuffer requestBody) throws IOException, ODataException {
+    requestBody.append("--abc123--");
+    final ServerCallSimulator helper = new ServerCallSimulator(persistenceAdapter, newUriBuilder()
+        .appendBatchSegment(), requestBody.toString(), HttpMethod.POST);
+    helper.execute(HttpStatusCode.ACCEPTED.getStatusCode());
+  }
+
+  @Test
+  public void testIndexBuiltOnFirstSearchAndSynchronized() throws IOException, ODataException {
+    useIndex("Organization", new EmbeddedSearchIndex());
+
+    // word prefix and operators
+    assertEquals(2, search("Organizations", "sec OR (Third AND NOT Second)").size());
+    assertEquals(0, search("Organizations", "Indexed").size());
+
+    final ServerCallSimulator helperUpdate = new ServerCallSimulator(persistenceAdapter, newUriBuilder()
+        .appendEntitySetSegment("Organizations").appendKeySegment("7"), "{\"Name2\": \"Indexed Update\"}",
+        HttpMethod.PATCH);
+    helperUpdate.execute(HttpStatusCode.OK.getStatusCode());
+
+    final ArrayNode ents = search("Organizations", "Indexed");
+    assertEquals(1, ents.size());
+    assertEquals("7", ents.get(0).get("ID").asText());
+  }
+
+  @Test
+  public void testOnlyCommittedChangesIndexed() throws IOException, ODataException {
+    useIndex("Organization", new EmbeddedSearchIndex());
+    assertEquals(0, search("Organizations", "Committed OR Rolled").size());
+
+    final StringBuffer requestBody = new StringBuffer();
+    appendChangeSet(requestBody, "Committed change", "Organizations('3')", "Organizations('5')");
+    appendChangeSet(requestBody, "Rolled back change", "Organizations('4')", "Organizations('999')");
+    executeBatch(requestBody);
+
+    assertEquals(2, search("Organizations", "Committed").size());
+    assertEquals(0, search("Organizations", "Rolled").size());
+  }
+
+  @Test
+  public void testRebuildPagesByCompositeKey() throws IOException, ODataException {
+    final URIBuilder uriBuilderCount = newUriBuilder().appendEntitySetSegment("AdministrativeDivisions").count();
+    final ServerCallSimulator helperCount = new ServerCallSimulator(persistenceAdapter, uriBuilderCount);
+    helperCount.execute(HttpStatusCode.OK.getStatusCode());
+    final int count = Integer.parseInt(helperCount.getRawResult());
+
+    final EmbeddedSearchIndex index = new EmbeddedSearchIndex();
+    // many pages for the key (CodePublisher, CodeID, DivisionCode)
+    index.setRebuildPageSize(7);
+    useIndex("AdministrativeDivision", index);
+    assertEquals(count, search("AdministrativeDivisions", "NOT xyz").size());
+  }
+
+  @Test
+  public void testDatabaseSearchWhileBuildingAndChangesAppliedAfterBuild() throws IOException, ODataException {
+    final List<Runnable> buildTasks = new ArrayList<>();
+    final EmbeddedSearchIndex index = new EmbeddedSearchIndex();
+    index.setRebuildExecutor(buildTasks::add);
+    useIndex("Organization", index);
+
+    // LIKE conditions of the database search, no word prefix search
+    final ArrayNode entsBuilding = search("Organizations", "Second");
+    assertEquals(1, entsBuilding.size());
+    assertEquals("2", entsBuilding.get(0).get("ID").asText());
+    assertEquals(1, buildTasks.size());
+    assertEquals(0, search("Organizations", "Indexed").size());
+    // only one build
+    assertEquals(1, buildTasks.size());
+
+    final ServerCallSimulator helperUpdate = new ServerCallSimulator(persistenceAdapter, newUriBuilder()
+        .appendEntitySetSegment("Organizations").appendKeySegment("7"), "{\"Name2\": \"Indexed Update\"}",
+        HttpMethod.PATCH);
+    helperUpdate.execute(HttpStatusCode.OK.getStatusCode());
+    // the build will load an older state than the change committed while building
+    final EntityManager em = persistenceAdapter.createEntityManager();
+    try {
+      em.getTransaction().begin();
+      em.createNativeQuery("UPDATE \"OLINGO\".\"org.apache.olingo.jpa::BusinessPartner\" SET \"NameLine2\" = "
+          + "'Loaded' WHERE \"ID\" = '7'").executeUpdate();
+      em.getTransaction().commit();
+    } finally {
+      em.close();
+    }
+    buildTasks.get(0).run();
+
+    final ArrayNode ents = search("Organizations", "Indexed");
+    assertEquals(1, ents.size());
+    assertEquals("7", ents.get(0).get("ID").asText());
+    // found by the database search
+    assertEquals(0, search("Organizations", "Loaded").size());
+  }
+
+  @Test
+  public void testBuildDiscardedIfStartedBeforeCommitOfChangeWithoutIndex() throws IOException, ODataException {
+    final List<Runnable> buildTasks = new ArrayList<>();
+    final EmbeddedSearchIndex index = new EmbeddedSearchIndex();
+    index.setRebuildExecutor(buildTasks::add);
+    useIndex("Organization", index);
+
+    final JPAEntityType entityType = jpaEdmProvider.getServiceDocument().getEntityType("Organizations");
+    final EntityManager em = persistenceAdapter.createEntityManager();
+    try {
+      // notified without index, the build starts before the commit
+      final Runnable change = index.entityChanged(entityType, em.find(Organization.class, "7"));
+      assertNotNull(change);
+      search("Organizations", "Second");
+      assertEquals(1, buildTasks.size());
+      change.run();
+      buildTasks.get(0).run();
+    } finally {
+      em.close();
+    }
+    // the next search starts a new build
+    search("Organizations", "Second");
+    assertEquals(2, buildTasks.size());
+  }
+
+  @Test
+  public void testTooManyEntitiesUseDatabaseSearch() throws IOException, ODataException {
+    final EmbeddedSearchIndex index = new EmbeddedSearchIndex(5);
+    useIndex("Organization", index);
+
+    final ArrayNode ents = search("Organizations", "Third");
+    assertEquals(1, ents.size());
+    assertEquals("3", ents.get(0).get("ID").asText());
+
+    final EntityManager em = persistenceAdapter.createEntityManager();
+    try {
+      // no changes collected for an entity type not indexed
+      assertNull(index.entityChanged(jpaEdmProvider.getServiceDocument().getEntityType("Organizations"), em.find(
+          Organization.class, "7")));
+      index.rebuild(em, jpaEdmProvider.getServiceDocument().getEntityType("Organizations"));
+      fail("Index must be rejected");
+    } catch (final IllegalStateException e) {
+      // expected
+    } finally {
+      em.close();
+    }
+  }
+
+}
@@ -0,0 +1,29 @@
+package org.apache.olingo.jpa.metadata.core.edm.entity;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+/**
+ * Optional annotation to allow the caching of GET responses for the entity set of an entity class, if the response
+ * cache ({@code org.apache.olingo.jpa.processor.core.api.JPAODataResponseCache}) is enabled. Intended for
+ * reference data read very often and changed rarely. A response is only cached if all entities contained (like
+ * $expand targets) are allowed to be cached; the shortest time to live is used.
+ *
+ */
+@Documented
+@Retention(RUNTIME)
+@Target(TYPE)
+@Inherited
+public @interface ODataResponseCaching {
+
+  /**
+   *
+   * @return The maximal time in seconds a cached response is used.
+   */
+  int timeToLive();
+}
@@ -0,0 +1,166 @@
+package org.apache.olingo.jpa.processor.benchmark;
+
+import java.util.Map;
+import java.util.logging.Logger;
+
+import javax.persistence.EntityManager;
+
+import org.apache.olingo.commons.api.ex.ODataException;
+import org.apache.olingo.jpa.processor.core.api.JPAODataServletHandler;
+import org.apache.olingo.jpa.processor.core.database.JPA_H2DatabaseProcessor;
+import org.apache.olingo.jpa.processor.core.mapping.ResourceLocalPersistenceAdapter;
+import org.apache.olingo.jpa.processor.core.query.EntityQueryBuilder;
+import org.apache.olingo.jpa.processor.core.query.NavigationRoot;
+import org.apache.olingo.jpa.processor.core.query.result.QueryEntityResult;
+import org.apache.olingo.jpa.processor.transformation.Transformation;
+import org.apache.olingo.jpa.test.util.AbstractTest;
+import org.apache.olingo.jpa.test.util.Constant;
+import org.apache.olingo.jpa.test.util.DataSourceHelper;
+import org.apache.olingo.server.api.ServiceMetadata;
+import org.apache.olingo.server.api.serializer.SerializerException;
+import org.apache.olingo.server.api.uri.UriInfo;
+import org.apache.olingo.server.core.uri.parser.Parser;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Common state of all benchmarks: a fresh in-memory H2 database with the test model data, extended by
+ * {@link #dataSize} generated organizations with two roles each.
+ */
+@State(Scope.Benchmark)
+public abstract class AbstractBenchmarkState {
+
+  static final String GENERATED_ID_PREFIX = "BM";
+  static final String SERVICE_ROOT = "http://localhost:8080/benchmark/Olingo.svc/";
+
+  private static final int INSERT_CHUNK_SIZE = 100;
+
+  @Param({ "100", "1000", "10000" })
+  public int dataSize;
+
+  protected ResourceLocalPersistenceAdapter persistenceAdapter;
+  protected JPAODataServletHandler servletHandler;
+
+  /**
+   * Take the query result as it is, without conversion.
+   */
+  private static class NoTransformation implements Transformation<QueryEntityResult, QueryEntityResult> {
+
+    @Override
+    public Class<QueryEntityResult> getInputType() {
+      return QueryEntityResult.class;
+    }
+
+    @Override
+    public Class<QueryEntityResult> getOutputType() {
+      return QueryEntityResult.class;
+    }
+
+    @Override
+    public QueryEntityResult transform(final QueryEntityResult input) {
+      return input;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <I> Transformation<I, QueryEntityResult> createSubTransformation(final Class<I> newStart)
+        throws SerializerException {
+      if (newStart != QueryEntityResult.class) {
+        throw new UnsupportedOperationException();
+      }
+      return (Transformation<I, QueryEntityResult>) this;
+    }
+  }
+
+  @Setup(Level.Trial)
+  public final void setupDatabase() throws ODataException {
+    // the SQL and request logging would dominate the measurements
+    Logger.getLogger("").setLevel(java.util.logging.Level.SEVERE);
+    DataSourceHelper.forceFreshCreatedDatabase();
+    final Map<String, Object> properties = AbstractTest.buildEntityManagerFactoryProperties(
+        DataSourceHelper.DatabaseType.H2);
+    properties.put("eclipselink.logging.level", "WARNING");
+    properties.put("eclipselink.logging.level.sql", "WARNING");
+    persistenceAdapter = new ResourceLocalPersistenceAdapter(Constant.PUNIT_NAME, properties,
+        new JPA_H2DatabaseProcessor());
+    generateData();
+    servletHandler = new JPAODataServletHandler(persistenceAdapter);
+    setupBenchmark();
+  }
+
+  /**
+   * Hook for the benchmark specific preparation after the database is filled.
+   */
+  protected void setupBenchmark() throws ODataException {
+    // do nothing as default
+  }
+
+  /**
+   * Parse the URI, build the criteria query and execute it the same way as the entity processor does for a GET
+   * request.
+   *
+   * @param resourcePath The resource path relative to the service root, like <i>Organizations('3')/Roles</i>.
+   * @param queryOptions The raw query string or <code>null</code>.
+   */
+  protected final QueryEntityResult executeQuery(final EntityManager em, final String resourcePath,
+      final String queryOptions, final boolean processExpandOption) throws ODataException {
+    final ServiceMetadata serviceMetadata = servletHandler.getJPAODataContext().getServiceMetaData();
+    final UriInfo uriInfo = new Parser(serviceMetadata.getEdm(), servletHandler.getJPAODataContext().getOdata())
+        .parseUri(resourcePath, queryOptions, null, SERVICE_ROOT);
+    final EntityQueryBuilder query = new EntityQueryBuilder(new BenchmarkRequestContext(servletHandler
+        .getJPAODataContext(), em), new NavigationRoot(uriInfo), em, serviceMetadata);
+    return query.execute(processExpandOption, new NoTransformation());
+  }
+
+  /**
+   * Hook for the benchmark specific cleanup before the database is closed.
+   */
+  protected void tearDownBenchmark() {
+    // do nothing as default
+  }
+
+  @TearDown(Level.Trial)
+  public final void tearDownDatabase() {
+    tearDownBenchmark();
+    // will also dispose the persistence adapter
+    servletHandler.dispose();
+  }
+
+  private void generateData() {
+    final EntityManager em = persistenceAdapter.createEntityManager();
+    try {
+      em.getTransaction().begin();
+      for (int start = 0; start < dataSize; start += INSERT_CHUNK_SIZE) {
+        final int end = Math.min(start + INSERT_CHUNK_SIZE, dataSize);
+        final StringBuilder partners = new StringBuilder(
+            "insert into \"OLINGO\".\"org.apache.olingo.jpa::BusinessPartner\" values ");
+        final StringBuilder roles = new StringBuilder(
+            "insert into \"OLINGO\".\"org.apache.olingo.jpa::BusinessPartnerRole\" values ");
+        for (int i = start; i < end; i++) {
+          final String id = GENERATED_ID_PREFIX + Integer.toString(i);
+          if (i > start) {
+            partners.append(", ");
+            roles.append(", ");
+          }
+          partners.append("('").append(id).append("', 0, '2', '','',null,null,'Generated Org. ").append(i)
+          .append("','',null,'Test Road', '").append(i % 1000)
+          .append("','', 'Test City','94321','ISO', '3166-2','US-CA', 'USA', '', '','','', '99','2016-01-20 09:21:23', '', null, 'USA')");
+          roles.append("('").append(id).append("', 'A'), ('").append(id).append("', 'B')");
+        }
+        em.createNativeQuery(partners.toString()).executeUpdate();
+        em.createNativeQuery(roles.toString()).executeUpdate();
+      }
+      em.getTransaction().commit();
+    } finally {
+      if (em.getTransaction().isActive()) {
+        em.getTransaction().rollback();
+      }
+      em.close();
+    }
+  }
+
+}
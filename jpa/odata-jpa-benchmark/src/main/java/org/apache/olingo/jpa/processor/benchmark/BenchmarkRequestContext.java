@@ -0,0 +1,109 @@
+package org.apache.olingo.jpa.processor.benchmark;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Locale;
+
+import javax.persistence.EntityManager;
+
+import org.apache.olingo.jpa.metadata.api.JPAEdmProvider;
+import org.apache.olingo.jpa.processor.DependencyInjector;
+import org.apache.olingo.jpa.processor.JPAODataGlobalContext;
+import org.apache.olingo.jpa.processor.JPAODataRequestContext;
+import org.apache.olingo.jpa.processor.ModifiableJPAODataRequestContext;
+import org.apache.olingo.jpa.processor.core.api.JPAODataDatabaseProcessor;
+import org.apache.olingo.jpa.processor.core.api.JPAServiceDebugger;
+import org.apache.olingo.jpa.processor.core.util.DependencyInjectorImpl;
+import org.apache.olingo.jpa.processor.transformation.TransformingFactory;
+import org.apache.olingo.server.api.OData;
+import org.apache.olingo.server.api.ServiceMetadata;
+import org.apache.olingo.server.api.debug.RuntimeMeasurement;
+
+/**
+ * Minimal request context to use the query builders outside of a servlet request.
+ */
+class BenchmarkRequestContext implements JPAODataRequestContext {
+
+  private static final JPAServiceDebugger NO_DEBUGGER = new JPAServiceDebugger() {
+
+    @Override
+    public int startRuntimeMeasurement(final String className, final String methodName) {
+      return 0;
+    }
+
+    @Override
+    public void stopRuntimeMeasurement(final int handle) {
+      // do nothing
+    }
+
+    @Override
+    public Collection<? extends RuntimeMeasurement> getRuntimeInformation() {
+      return Collections.emptyList();
+    }
+  };
+
+  private final JPAODataGlobalContext globalContext;
+  private final EntityManager em;
+  private final DependencyInjectorImpl di;
+  private final TransformingFactory transformerFactory;
+
+  public BenchmarkRequestContext(final JPAODataGlobalContext globalContext, final EntityManager em) {
+    this.globalContext = globalContext;
+    this.em = em;
+    this.di = new DependencyInjectorImpl((DependencyInjectorImpl) globalContext.getDependencyInjector());
+    di.registerDependencyMapping(JPAODataRequestContext.class, this);
+    di.registerDependencyMapping(EntityManager.class, em);
+    this.transformerFactory = new TransformingFactory(this);
+  }
+
+  @Override
+  public OData getOdata() {
+    return globalContext.getOdata();
+  }
+
+  @Override
+  public JPAEdmProvider getEdmProvider() {
+    return globalContext.getEdmProvider();
+  }
+
+  @Override
+  public ServiceMetadata getServiceMetaData() {
+    return globalContext.getServiceMetaData();
+  }
+
+  @Override
+  public JPAODataDatabaseProcessor getDatabaseProcessor() {
+    return globalContext.getDatabaseProcessor();
+  }
+
+  @Override
+  public DependencyInjector getDependencyInjector() {
+    return di;
+  }
+
+  @Override
+  public TransformingFactory getTransformerFactory() {
+    return transformerFactory;
+  }
+
+  @Override
+  public EntityManager getEntityManager() {
+    return em;
+  }
+
+  @Override
+  public Locale getLocale() {
+    return Locale.ENGLISH;
+  }
+
+  @Override
+  public JPAServiceDebugger getServiceDebugger() {
+    return NO_DEBUGGER;
+  }
+
+  @Override
+  public ModifiableJPAODataRequestContext createSubRequestContext() {
+    throw new UnsupportedOperationException();
+  }
+
+}
@@ -0,0 +1,65 @@
+package org.apache.olingo.jpa.processor.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+
+import org.apache.olingo.commons.api.data.EntityCollection;
+import org.apache.olingo.commons.api.ex.ODataException;
+import org.apache.olingo.jpa.processor.JPAODataGlobalContext;
+import org.apache.olingo.jpa.processor.core.query.DatabaseQueryResult2ODataEntityConverter;
+import org.apache.olingo.jpa.processor.core.query.result.QueryEntityResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Conversion of the database tuples into OData entities, without database access. The tuples are loaded once per
+ * trial.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConversionBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class ConversionState extends AbstractBenchmarkState {
+
+    /**
+     * 0 = no $expand, 1 = $expand=Roles
+     */
+    @Param({ "0", "1" })
+    public int expandDepth;
+
+    private QueryEntityResult queryResult;
+    private DatabaseQueryResult2ODataEntityConverter converter;
+
+    @Override
+    protected void setupBenchmark() throws ODataException {
+      final JPAODataGlobalContext context = servletHandler.getJPAODataContext();
+      final EntityManager em = persistenceAdapter.createEntityManager();
+      try {
+        queryResult = executeQuery(em, "Organizations", expandDepth > 0 ? "$expand=Roles" : null, expandDepth > 0);
+      } finally {
+        em.close();
+      }
+      converter = new DatabaseQueryResult2ODataEntityConverter(context.getEdmProvider().getServiceDocument(), context
+          .getOdata().createUriHelper(), context.getServiceMetaData());
+    }
+  }
+
+  @Benchmark
+  public EntityCollection convertTuples(final ConversionState state) throws ODataException {
+    return state.converter.convertDBTuple2OData(state.queryResult);
+  }
+
+}
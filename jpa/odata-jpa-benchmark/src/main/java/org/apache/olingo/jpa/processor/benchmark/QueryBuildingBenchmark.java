@@ -0,0 +1,74 @@
+package org.apache.olingo.jpa.processor.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+
+import org.apache.olingo.commons.api.ex.ODataException;
+import org.apache.olingo.jpa.processor.core.query.result.QueryEntityResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * URI parsing and building of the criteria query for different request shapes. The queries are limited to a few
+ * result rows, so the database round trip is small compared to the query building.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryBuildingBenchmark {
+
+  public enum QueryShape {
+    KEY("Organizations('" + AbstractBenchmarkState.GENERATED_ID_PREFIX + "1')", null),
+    FILTER("Organizations",
+        "$filter=Country eq 'USA' and contains(Name1,'Org')&$orderby=Name1 desc&$select=ID,Name1,Address&$top=10"),
+    NAVIGATION("Organizations('3')/Roles", "$filter=RoleCategory eq 'A'");
+
+    private final String resourcePath;
+    private final String queryOptions;
+
+    private QueryShape(final String resourcePath, final String queryOptions) {
+      this.resourcePath = resourcePath;
+      this.queryOptions = queryOptions;
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class QueryState extends AbstractBenchmarkState {
+
+    @Param({ "KEY", "FILTER", "NAVIGATION" })
+    public QueryShape queryShape;
+
+    private EntityManager em;
+
+    @Override
+    protected void setupBenchmark() {
+      em = persistenceAdapter.createEntityManager();
+    }
+
+    @Override
+    protected void tearDownBenchmark() {
+      em.close();
+    }
+  }
+
+  @Benchmark
+  public QueryEntityResult buildAndExecuteQuery(final QueryState state) throws ODataException {
+    try {
+      return state.executeQuery(state.em, state.queryShape.resourcePath, state.queryShape.queryOptions, false);
+    } finally {
+      state.em.clear();
+    }
+  }
+
+}
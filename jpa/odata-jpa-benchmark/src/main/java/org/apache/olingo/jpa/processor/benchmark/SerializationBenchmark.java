@@ -0,0 +1,118 @@
+package org.apache.olingo.jpa.processor.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+
+import org.apache.olingo.commons.api.data.ContextURL;
+import org.apache.olingo.commons.api.data.EntityCollection;
+import org.apache.olingo.commons.api.edm.EdmEntitySet;
+import org.apache.olingo.commons.api.ex.ODataException;
+import org.apache.olingo.commons.api.format.ContentType;
+import org.apache.olingo.jpa.processor.JPAODataGlobalContext;
+import org.apache.olingo.jpa.processor.core.query.DatabaseQueryResult2ODataEntityConverter;
+import org.apache.olingo.server.api.OData;
+import org.apache.olingo.server.api.ServiceMetadata;
+import org.apache.olingo.server.api.deserializer.DeserializerResult;
+import org.apache.olingo.server.api.deserializer.ODataDeserializer;
+import org.apache.olingo.server.api.serializer.EntityCollectionSerializerOptions;
+import org.apache.olingo.server.api.serializer.ODataSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * JSON serialization of an entity collection and deserialization of an entity request body, without database
+ * access.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class SerializationState extends AbstractBenchmarkState {
+
+    /**
+     * Typical body of a POST request creating an organization.
+     */
+    private static final String ENTITY_BODY = "{\"ID\":\"BM-NEW\",\"Type\":\"2\",\"Country\":\"DEU\","
+        + "\"Name1\":\"New Org.\",\"Name2\":\"\",\"Address\":{\"StreetName\":\"Test Road\","
+        + "\"HouseNumber\":\"23\",\"PostalCode\":\"12345\",\"CityName\":\"Test City\",\"Country\":\"DEU\","
+        + "\"Region\":\"DE-BE\"},\"CommunicationData\":{\"LandlinePhoneNumber\":\"+49 30 1234\"},"
+        + "\"AdministrativeInformation\":{\"Created\":{\"By\":\"99\"}},\"PhoneNumbers\":[{\"internationalAreaCode\":"
+        + "\"+49\",\"phoneNumber\":\"12345 8888\"}]}";
+
+    private ServiceMetadata serviceMetadata;
+    private EdmEntitySet edmEntitySet;
+    private EntityCollection entities;
+    private ODataSerializer serializer;
+    private EntityCollectionSerializerOptions collectionOptions;
+    private ODataDeserializer deserializer;
+    private byte[] entityBody;
+
+    @Override
+    protected void setupBenchmark() throws ODataException {
+      final JPAODataGlobalContext context = servletHandler.getJPAODataContext();
+      final OData odata = context.getOdata();
+      serviceMetadata = context.getServiceMetaData();
+      edmEntitySet = serviceMetadata.getEdm().getEntityContainer().getEntitySet("Organizations");
+      final EntityManager em = persistenceAdapter.createEntityManager();
+      try {
+        entities = new DatabaseQueryResult2ODataEntityConverter(context.getEdmProvider().getServiceDocument(), odata
+            .createUriHelper(), serviceMetadata).convertDBTuple2OData(executeQuery(em, "Organizations", null,
+                false));
+      } finally {
+        em.close();
+      }
+      final ContextURL contextUrl = ContextURL.with().serviceRoot(URI.create(SERVICE_ROOT)).entitySet(
+          edmEntitySet).build();
+      serializer = odata.createSerializer(ContentType.JSON);
+      collectionOptions = EntityCollectionSerializerOptions.with().contextURL(contextUrl).id(SERVICE_ROOT
+          + edmEntitySet.getName()).build();
+      deserializer = odata.createDeserializer(ContentType.JSON);
+      entityBody = ENTITY_BODY.getBytes(StandardCharsets.UTF_8);
+    }
+  }
+
+  private static byte[] readAll(final InputStream content) throws IOException {
+    final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    final byte[] chunk = new byte[8192];
+    int read;
+    while ((read = content.read(chunk)) > -1) {
+      buffer.write(chunk, 0, read);
+    }
+    return buffer.toByteArray();
+  }
+
+  @Benchmark
+  public void serializeEntityCollection(final SerializationState state, final Blackhole blackhole)
+      throws ODataException, IOException {
+    try (InputStream content = state.serializer.entityCollection(state.serviceMetadata, state.edmEntitySet
+        .getEntityType(), state.entities, state.collectionOptions).getContent()) {
+      blackhole.consume(readAll(content));
+    }
+  }
+
+  @Benchmark
+  public DeserializerResult deserializeEntity(final SerializationState state) throws ODataException {
+    return state.deserializer.entity(new ByteArrayInputStream(state.entityBody), state.edmEntitySet
+        .getEntityType());
+  }
+
+}
@@ -0,0 +1,125 @@
+package org.apache.olingo.jpa.processor.benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.olingo.commons.api.http.HttpMethod;
+import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.jpa.processor.core.util.HttpServletRequestDouble;
+import org.apache.olingo.jpa.processor.core.util.HttpServletResponseDouble;
+import org.apache.olingo.jpa.processor.core.util.ServerCallSimulator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-to-end processing of requests through the {@link org.apache.olingo.jpa.processor.core.api.JPAODataServletHandler
+ * servlet handler}: URI parsing, database access, conversion and serialization of the response.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ServletRequestBenchmark {
+
+  private static final String SERVICE_URI = "http://localhost:8080/Test" + ServerCallSimulator.SERVLET_PATH + "/";
+
+  @State(Scope.Benchmark)
+  public static class GetState extends AbstractBenchmarkState {
+
+    /**
+     * 0 = no $expand, 1 = $expand=Roles, 2 = $expand=Roles($expand=BusinessPartner)
+     */
+    @Param({ "0", "1", "2" })
+    public int expandDepth;
+
+    private URI requestUri;
+
+    @Override
+    protected void setupBenchmark() {
+      final String[] expands = { "", "?$expand=Roles", "?$expand=Roles($expand=BusinessPartner)" };
+      requestUri = URI.create(SERVICE_URI + "Organizations" + expands[expandDepth]);
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class BatchState extends AbstractBenchmarkState {
+
+    /**
+     * Number of GET parts in the $batch request.
+     */
+    @Param({ "4", "16" })
+    public int batchParts;
+
+    @Param({ "false", "true" })
+    public boolean concurrent;
+
+    private URI requestUri;
+    private String requestBody;
+    private ExecutorService executor;
+
+    @Override
+    protected void setupBenchmark() {
+      requestUri = URI.create(SERVICE_URI + "$batch");
+      final StringBuilder body = new StringBuilder();
+      for (int i = 0; i < batchParts; i++) {
+        final String id = GENERATED_ID_PREFIX + Integer.toString(i % dataSize);
+        body.append("--abc123\r\n");
+        body.append("Content-Type: application/http\r\n");
+        body.append("Content-Transfer-Encoding: binary\r\n");
+        body.append("\r\n");
+        body.append("GET Organizations('").append(id).append("')?$expand=Roles HTTP/1.1\r\n");
+        body.append("Content-Type: application/json\r\n");
+        body.append("\r\n");
+        body.append("\r\n");
+      }
+      body.append("--abc123--");
+      requestBody = body.toString();
+      if (concurrent) {
+        executor = Executors.newFixedThreadPool(4);
+        servletHandler.setBatchExecutor(executor);
+      }
+    }
+
+    @Override
+    protected void tearDownBenchmark() {
+      if (executor != null) {
+        executor.shutdown();
+      }
+    }
+  }
+
+  private static HttpServletResponseDouble process(final AbstractBenchmarkState state, final URI requestUri,
+      final String requestBody, final HttpMethod method, final HttpStatusCode expectedStatus) throws IOException {
+    final HttpServletRequestDouble request = new HttpServletRequestDouble(requestUri, requestBody);
+    request.setMethod(method);
+    final HttpServletResponseDouble response = new HttpServletResponseDouble();
+    state.servletHandler.process(request, response);
+    if (response.getStatus() != expectedStatus.getStatusCode()) {
+      throw new IllegalStateException("Unexpected response status " + response.getStatus() + " for " + requestUri);
+    }
+    return response;
+  }
+
+  @Benchmark
+  public HttpServletResponseDouble getEntityCollection(final GetState state) throws IOException {
+    return process(state, state.requestUri, null, HttpMethod.GET, HttpStatusCode.OK);
+  }
+
+  @Benchmark
+  public HttpServletResponseDouble batchGetRequests(final BatchState state) throws IOException {
+    return process(state, state.requestUri, state.requestBody, HttpMethod.POST, HttpStatusCode.ACCEPTED);
+  }
+
+}
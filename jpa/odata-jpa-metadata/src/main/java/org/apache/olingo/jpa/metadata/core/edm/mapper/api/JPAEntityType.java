@@ -36,6 +36,14 @@ public interface JPAEntityType extends JPAStructuredType {
 
   public boolean hasEtag() throws ODataJPAModelException;
 
+  /**
+   *
+   * @return The path to the attribute annotated with {@link javax.persistence.Version @Version} used as source for
+   * the ETag or <code>null</code> if the entity type has no ETag.
+   * @see #hasEtag()
+   */
+  public JPASelector getEtagAttributePath() throws ODataJPAModelException;
+
   public boolean hasStream() throws ODataJPAModelException;
 
   public List<JPASelector> searchChildPath(JPASelector selectItemPath) throws ODataJPAModelException;
@@ -9,8 +9,8 @@ abstract class AbstractIntermediateComplexTypeDTO extends AbstractStructuredType
 
   public AbstractIntermediateComplexTypeDTO(final JPAEdmNameBuilder nameBuilder, final String typeName,
       final boolean isAbstract,
-      final boolean isOpenType) throws ODataJPAModelException {
-    super(nameBuilder, typeName, isAbstract, isOpenType);
+      final boolean isOpenType, final IntermediateServiceDocument serviceDocument) throws ODataJPAModelException {
+    super(nameBuilder, typeName, isAbstract, isOpenType, serviceDocument);
   }
 
 }
@@ -27,16 +27,27 @@ implements JPAStructuredType {
 
   protected final static Logger LOG = Logger.getLogger(AbstractStructuredType.class.getName());
 
+  /**
+   * Guard for the lazy building of the type internal maps. Types are referencing each other (base types, nested
+   * complex types, navigation targets) and the service document, so the one lock of the service document is used to
+   * avoid dead locks while building. After the maps are built (at least after {@link #freeze()}) the lock is never
+   * entered again.
+   */
+  private final Object buildLock;
+
   private final Map<String, JPAMemberAttribute> declaredPropertiesList;
   private final Map<String, JPAAssociationAttribute> declaredNaviPropertiesList;
   private final Map<String, JPAPathImpl> simpleAttributePathMap;
   private final Map<String, JPAPathImpl> complexAttributePathMap;
   private final Map<String, JPAAssociationPathImpl> associationPathMap;
-  private InitializationState initStateType = InitializationState.NotInitialized;
+  private volatile InitializationState initStateType = InitializationState.NotInitialized;
+  private volatile boolean pathMapsBuilt = false;
+  private volatile boolean associationPathMapBuilt = false;
 
-  protected AbstractStructuredType(final JPAEdmNameBuilder nameBuilder, final String qualifiedInternalTypeName)
-      throws ODataJPAModelException {
+  protected AbstractStructuredType(final JPAEdmNameBuilder nameBuilder, final String qualifiedInternalTypeName,
+      final IntermediateServiceDocument serviceDocument) throws ODataJPAModelException {
     super(nameBuilder, qualifiedInternalTypeName);
+    this.buildLock = serviceDocument.getBuildLock();
     this.declaredPropertiesList = new HashMap<String, JPAMemberAttribute>();
     this.simpleAttributePathMap = new HashMap<String, JPAPathImpl>();
     this.complexAttributePathMap = new HashMap<String, JPAPathImpl>();
@@ -223,22 +234,36 @@ implements JPAStructuredType {
    * Internal class/type method to initialize state of type.
    */
   protected final void initializeType() throws ODataJPAModelException {
-    switch (initStateType) {
-    case Initialized:
+    if (initStateType == InitializationState.Initialized) {
       return;
-    case InProgress:
-      throw new IllegalStateException("Initialization already in progress, recursion problem!");
-    default:
-      break;
     }
+    synchronized (buildLock) {
+      switch (initStateType) {
+      case Initialized:
+        return;
+      case InProgress:
+        throw new IllegalStateException("Initialization already in progress, recursion problem!");
+      default:
+        break;
+      }
 
-    try {
-      initStateType = InitializationState.InProgress;
-      buildPropertyList();
-    } finally {
-      initStateType = InitializationState.Initialized;
+      try {
+        initStateType = InitializationState.InProgress;
+        buildPropertyList();
+      } finally {
+        initStateType = InitializationState.Initialized;
+      }
     }
+  }
 
+  /**
+   * Build all lazy created informations (attributes, path and association maps) of this type, so all following
+   * read access is lock free and without side effects.
+   */
+  final void freeze() throws ODataJPAModelException {
+    initializeType();
+    lazyBuildCompletePathMap();
+    lazyBuildCompleteAssociationPathMap();
   }
 
   final protected FullQualifiedName determineBaseType() throws ODataJPAModelException {
@@ -335,6 +360,19 @@ implements JPAStructuredType {
   }
 
   private void lazyBuildCompleteAssociationPathMap() throws ODataJPAModelException {
+    if (associationPathMapBuilt) {
+      return;
+    }
+    synchronized (buildLock) {
+      if (associationPathMapBuilt) {
+        return;
+      }
+      buildCompleteAssociationPathMap();
+      associationPathMapBuilt = true;
+    }
+  }
+
+  private void buildCompleteAssociationPathMap() throws ODataJPAModelException {
     JPAAssociationPathImpl associationPath;
     lazyBuildCompletePathMap();
     // TODO check if ignore has to be handled
@@ -371,11 +409,20 @@ implements JPAStructuredType {
   abstract protected String determineDBFieldName(final JPAMemberAttribute property, final JPAAttributePath jpaPath);
 
   private void lazyBuildCompletePathMap() throws ODataJPAModelException {
-    initializeType();
-
-    if (!simpleAttributePathMap.isEmpty()) {
+    if (pathMapsBuilt) {
       return;
     }
+    synchronized (buildLock) {
+      initializeType();
+      if (pathMapsBuilt) {
+        return;
+      }
+      buildCompletePathMap();
+      pathMapsBuilt = true;
+    }
+  }
+
+  private void buildCompletePathMap() throws ODataJPAModelException {
     ArrayList<JPAAttribute<?>> pathList;
     String externalName;
     for (final JPAMemberAttribute property : declaredPropertiesList.values()) {
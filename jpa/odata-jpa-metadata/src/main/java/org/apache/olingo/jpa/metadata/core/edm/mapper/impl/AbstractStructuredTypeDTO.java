@@ -19,9 +19,9 @@ abstract class AbstractStructuredTypeDTO<CsdlType extends CsdlStructuralType> ex
   private final boolean isOpenType;
 
   public AbstractStructuredTypeDTO(final JPAEdmNameBuilder nameBuilder, final String typeName, final boolean isAbstract,
-      final boolean isOpenType)
+      final boolean isOpenType, final IntermediateServiceDocument serviceDocument)
           throws ODataJPAModelException {
-    super(nameBuilder, typeName);
+    super(nameBuilder, typeName, serviceDocument);
 
     this.setExternalName(typeName);
     this.isAbstract = isAbstract;
@@ -36,7 +36,7 @@ AbstractStructuredType<CsdlType> {
 
   protected AbstractStructuredTypeJPA(final JPAEdmNameBuilder nameBuilder, final JPAType jpaManagedType,
       final IntermediateServiceDocument serviceDocument) throws ODataJPAModelException {
-    super(nameBuilder, jpaManagedType.getJavaType().getCanonicalName());
+    super(nameBuilder, jpaManagedType.getJavaType().getCanonicalName(), serviceDocument);
     this.jpaManagedType = jpaManagedType;
     this.serviceDocument = serviceDocument;
 
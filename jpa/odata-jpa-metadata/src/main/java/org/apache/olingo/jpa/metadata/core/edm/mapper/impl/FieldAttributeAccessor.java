@@ -1,5 +1,8 @@
 package org.apache.olingo.jpa.metadata.core.edm.mapper.impl;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
@@ -8,12 +11,39 @@ import java.util.Collection;
 import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPAAttributeAccessor;
 import org.apache.olingo.jpa.metadata.core.edm.mapper.exception.ODataJPAModelException;
 
+/**
+ * Accessor using {@link MethodHandle method handles} created once while building the meta model, so the access
+ * checks and accessibility toggling of plain reflection are not repeated for every read/write.
+ *
+ */
 class FieldAttributeAccessor implements JPAAttributeAccessor {
 
+  private static final MethodType TYPE_GETTER = MethodType.methodType(Object.class, Object.class);
+  private static final MethodType TYPE_SETTER = MethodType.methodType(void.class, Object.class, Object.class);
+
   private final Field field;
+  private final boolean collectionField;
+  private final MethodHandle getter;
+  private final MethodHandle setter;
 
   public FieldAttributeAccessor(final Field field) {
     this.field = field;
+    this.collectionField = Collection.class.isAssignableFrom(field.getType());
+    field.setAccessible(true);
+    final MethodHandles.Lookup lookup = MethodHandles.lookup();
+    try {
+      this.getter = lookup.unreflectGetter(field).asType(TYPE_GETTER);
+    } catch (final IllegalAccessException e) {
+      throw new IllegalStateException("Field " + field.getName() + " is not accessible", e);
+    }
+    MethodHandle fieldSetter;
+    try {
+      fieldSetter = lookup.unreflectSetter(field).asType(TYPE_SETTER);
+    } catch (final IllegalAccessException e) {
+      // final field: read only
+      fieldSetter = null;
+    }
+    this.setter = fieldSetter;
   }
 
   @Override
@@ -44,8 +74,10 @@ class FieldAttributeAccessor implements JPAAttributeAccessor {
       return;
     }
     try {
-      writeJPAFieldValue(jpaEntity, field, jpaPropertyValue);
-    } catch (IllegalArgumentException | IllegalAccessException e) {
+      writeJPAFieldValue(jpaEntity, jpaPropertyValue);
+    } catch (final Error e) {
+      throw e;
+    } catch (final Throwable e) {
       throw new ODataJPAModelException(e);
     }
   }
@@ -53,53 +85,35 @@ class FieldAttributeAccessor implements JPAAttributeAccessor {
   @Override
   public Object getPropertyValue(final Object jpaEntity) throws ODataJPAModelException {
     try {
-      return readJPAFieldValue(jpaEntity, field);
-    } catch (NoSuchFieldException | IllegalArgumentException | IllegalAccessException e) {
+      return getter.invokeExact(jpaEntity);
+    } catch (final Error e) {
+      throw e;
+    } catch (final Throwable e) {
       throw new ODataJPAModelException(e);
     }
   }
 
-  private static Object readJPAFieldValue(final Object object, /* final Class<?> jpaClassType, */ final Field field)
-      throws NoSuchFieldException, IllegalArgumentException, IllegalAccessException {
-    boolean revertAccessibility = false;
-    // try {
-    // final Field field = jpaClassType.getDeclaredField(fieldName);
-    if (!field.isAccessible()) {
-      field.setAccessible(true);
-      revertAccessibility = true;
-    }
-    final Object value = field.get(object);
-    if (revertAccessibility) {
-      field.setAccessible(false);
-    }
-    return value;
-
-  }
-
-  private static void writeJPAFieldValue(final Object jpaEntity, final Field field, final Object jpaPropertyValue)
-      throws IllegalArgumentException, IllegalAccessException {
-    boolean revertAccessibility = false;
-    if (!field.isAccessible()) {
-      field.setAccessible(true);
-      revertAccessibility = true;
-    }
+  private void writeJPAFieldValue(final Object jpaEntity, final Object jpaPropertyValue) throws Throwable {
     // 'Set' is also handled as collection, because correct type must be created outside...
-    if (Collection.class.isAssignableFrom(field.getType()) && Collection.class.isInstance(jpaPropertyValue)
-        && field.get(jpaEntity) != null) {
-      // do not set the collection directly, because some specific implementations may
-      // cause problems... add entries in collection instead
-      @SuppressWarnings("unchecked")
-      final Collection<Object> target = (Collection<Object>) field.get(jpaEntity);
-      target.clear();
-      @SuppressWarnings("unchecked")
-      final Collection<Object> source = (Collection<Object>) jpaPropertyValue;
-      target.addAll(source);
-    } else {
-      // replace 'null' value with our collection (List, Set)
-      field.set(jpaEntity, jpaPropertyValue);
+    if (collectionField && Collection.class.isInstance(jpaPropertyValue)) {
+      final Object current = getter.invokeExact(jpaEntity);
+      if (current != null) {
+        @SuppressWarnings("unchecked")
+        final Collection<Object> target = (Collection<Object>) current;
+        // do not set the collection directly, because some specific implementations may
+        // cause problems... add entries in collection instead
+        target.clear();
+        @SuppressWarnings("unchecked")
+        final Collection<Object> source = (Collection<Object>) jpaPropertyValue;
+        target.addAll(source);
+        return;
+      }
     }
-    if (revertAccessibility) {
-      field.setAccessible(false);
+    // replace 'null' value with our collection (List, Set)
+    if (setter == null) {
+      field.set(jpaEntity, jpaPropertyValue);
+    } else {
+      setter.invokeExact(jpaEntity, jpaPropertyValue);
     }
   }
 
@@ -139,7 +139,7 @@ class IntermediateCustomSchema extends AbstractJPASchema {
     }
     // define a Map DTO type... the map will have no attributes (mostly EdmUntyped), because all attributes are dynamic.
     mapType = new IntermediateMapComplexTypeDTO(getNameBuilder(), simpleName, mapKeyType, mapValueType,
-        valueIsCollection);
+        valueIsCollection, serviceDocument);
     if (!mapWarningAlreadyLogged) {
       mapWarningAlreadyLogged = true;
       LOGGER.info("The type " + Map.class.getCanonicalName()
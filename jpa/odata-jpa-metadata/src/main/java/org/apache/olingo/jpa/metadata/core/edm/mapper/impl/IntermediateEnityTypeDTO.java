@@ -38,7 +38,8 @@ class IntermediateEnityTypeDTO extends AbstractStructuredTypeDTO<CsdlEntityType>
 
   public IntermediateEnityTypeDTO(final JPAEdmNameBuilder nameBuilder, final Class<?> dtoType,
       final IntermediateServiceDocument serviceDocument) throws ODataJPAModelException {
-    super(determineDTONameBuilder(nameBuilder, dtoType), dtoType.getName(), determineAbstract(dtoType), false);
+    super(determineDTONameBuilder(nameBuilder, dtoType), dtoType.getName(), determineAbstract(dtoType), false,
+        serviceDocument);
 
     // DTO must have marker annotation
     final ODataDTO annotation = dtoType.getAnnotation(ODataDTO.class);
@@ -185,7 +186,13 @@ class IntermediateEnityTypeDTO extends AbstractStructuredTypeDTO<CsdlEntityType>
 
   @Override
   public final boolean hasEtag() throws ODataJPAModelException {
-    throw new UnsupportedOperationException();
+    // DTO's have no version attribute
+    return false;
+  }
+
+  @Override
+  public final JPASelector getEtagAttributePath() throws ODataJPAModelException {
+    return null;
   }
 
   @Override
@@ -38,6 +38,7 @@ JPAEntityType {
 
   private CsdlEntityType csdlEntityType;
   private boolean hasEtag = false;
+  private JPAMemberAttribute etagAttribute = null;
   private final DataAccessConditioner<?> dac;
   private final String entitySetName;
 
@@ -184,6 +185,15 @@ JPAEntityType {
     return hasEtag;
   };
 
+  @Override
+  public JPASelector getEtagAttributePath() throws ODataJPAModelException {
+    lazyBuildEdmItem();
+    if (etagAttribute == null) {
+      return null;
+    }
+    return getPath(etagAttribute.getExternalName());
+  }
+
   @Override
   public List<JPASelector> searchChildPath(final JPASelector selectItemPath) throws ODataJPAModelException {
     final List<JPASelector> result = new ArrayList<JPASelector>();
@@ -223,6 +233,7 @@ JPAEntityType {
     for (final JPAMemberAttribute attribute : getAllAttributes(true)) {
       if (attribute.isEtag()) {
         hasEtag = true;
+        etagAttribute = attribute;
       }
     }
   }
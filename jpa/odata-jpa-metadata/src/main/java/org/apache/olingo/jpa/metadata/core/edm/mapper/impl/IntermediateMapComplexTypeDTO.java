@@ -22,9 +22,9 @@ class IntermediateMapComplexTypeDTO extends AbstractIntermediateComplexTypeDTO i
   private CsdlComplexType edmComplexType;
 
   public IntermediateMapComplexTypeDTO(final JPAEdmNameBuilder nameBuilder, final String typeName,
-      final Class<?> mapKeyType, final Class<?> mapValueType, final boolean valueIsCollection)
-          throws ODataJPAModelException {
-    super(nameBuilder, typeName, true, true);
+      final Class<?> mapKeyType, final Class<?> mapValueType, final boolean valueIsCollection,
+      final IntermediateServiceDocument serviceDocument) throws ODataJPAModelException {
+    super(nameBuilder, typeName, true, true, serviceDocument);
     if (!String.class.isAssignableFrom(mapKeyType)) {
       throw new ODataJPAModelException(ODataJPAModelException.MessageKeys.INVALID_PARAMETER,
           "Map key parameter " + mapKeyType.getTypeName() + " must be a String");
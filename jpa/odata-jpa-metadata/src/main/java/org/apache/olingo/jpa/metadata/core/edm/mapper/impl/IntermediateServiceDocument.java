@@ -2,9 +2,14 @@ package org.apache.olingo.jpa.metadata.core.edm.mapper.impl;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 import javax.persistence.metamodel.Metamodel;
 
@@ -33,10 +38,56 @@ import org.apache.olingo.jpa.metadata.core.edm.mapper.exception.ODataJPAModelExc
  * @see org.apache.olingo.client.api.data.ServiceDocument
  */
 public class IntermediateServiceDocument {
+
+  /**
+   * Immutable, completely resolved view of all schemas. Lookups in a snapshot do not need the {@link #lock}.
+   */
+  private static final class Snapshot {
+    private final Map<String, AbstractJPASchema> schemas;
+    private final List<CsdlSchema> edmSchemas;
+    private final Map<String, JPAEntitySet> entitySets;
+    // class based lookups are memoized on first access, the result of a lookup cannot change in a snapshot
+    private final Map<Class<?>, Optional<JPAEntityType>> entityTypesByClass = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Optional<JPAStructuredType>> complexTypesByClass = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Optional<JPAStructuredType>> structuredTypesByClass = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Optional<IntermediateEnumType>> enumTypesByClass = new ConcurrentHashMap<>();
+
+    private Snapshot(final Map<String, AbstractJPASchema> schemas, final List<CsdlSchema> edmSchemas) {
+      this.schemas = Collections.unmodifiableMap(new LinkedHashMap<>(schemas));
+      this.edmSchemas = Collections.unmodifiableList(edmSchemas);
+      final Map<String, JPAEntitySet> sets = new HashMap<>();
+      for (final AbstractJPASchema schema : this.schemas.values()) {
+        for (final JPAEntitySet es : schema.getEntitySets()) {
+          sets.putIfAbsent(es.getExternalName(), es);
+        }
+      }
+      this.entitySets = Collections.unmodifiableMap(sets);
+    }
+
+    private <T> T lookup(final Map<Class<?>, Optional<T>> index, final Class<?> targetClass,
+        final Function<AbstractJPASchema, T> schemaLookup) {
+      Optional<T> result = index.get(targetClass);
+      if (result == null) {
+        result = Optional.empty();
+        for (final AbstractJPASchema schema : schemas.values()) {
+          final T found = schemaLookup.apply(schema);
+          if (found != null) {
+            result = Optional.of(found);
+            break;
+          }
+        }
+        index.put(targetClass, result);
+      }
+      return result.orElse(null);
+    }
+  }
+
+  // shared with the types to avoid dead locks between schema resolution and lazy type building
   private final Object lock = new Object();
   private final Map<String, AbstractJPASchema> schemaListInternalKey = new HashMap<>();
   private boolean dependendSchemaCreationRequired = false;
   private final IntermediateEntityContainer intermediateContainer;
+  private volatile Snapshot snapshot = null;
 
   /**
    *
@@ -78,6 +129,36 @@ public class IntermediateServiceDocument {
     }
   }
 
+  /**
+   * Build all meta model informations of all schemas and types eagerly and switch the lookup methods to an immutable
+   * snapshot of that state. After freezing no lock is required to read the meta model. Every later modification of
+   * the model (like {@link #createDTOType(Class)}) will discard the snapshot, so {@link #freeze()} must be called
+   * again.
+   */
+  public void freeze() throws ODataJPAModelException {
+    synchronized (lock) {
+      // touch all schemas, also the on-demand created ones
+      dependendSchemaCreationRequired = true;
+      resolveSchemas();
+      for (final AbstractJPASchema schema : new ArrayList<>(schemaListInternalKey.values())) {
+        for (final JPAEntityType et : schema.getEntityTypes()) {
+          freezeType(et);
+        }
+        for (final JPAStructuredType ct : schema.getComplexTypes()) {
+          freezeType(ct);
+        }
+      }
+      intermediateContainer.getEdmItem();
+      snapshot = new Snapshot(schemaListInternalKey, buildEdmSchemas());
+    }
+  }
+
+  private static void freezeType(final JPAStructuredType type) throws ODataJPAModelException {
+    if (type instanceof AbstractStructuredType) {
+      ((AbstractStructuredType<?>) type).freeze();
+    }
+  }
+
   /**
    *
    * @return The only entity container of OData service.
@@ -91,37 +172,68 @@ public class IntermediateServiceDocument {
   }
 
   public List<CsdlSchema> getEdmSchemas() throws ODataJPAModelException {
-    final List<CsdlSchema> schemas = new ArrayList<CsdlSchema>();
+    final Snapshot frozen = snapshot;
+    if (frozen != null) {
+      return new ArrayList<CsdlSchema>(frozen.edmSchemas);
+    }
     synchronized (lock) {
       resolveSchemas();
-      for (final AbstractJPASchema schema : schemaListInternalKey.values()) {
-        // assign entity container to schema... only to the schema of same name space as
-        // in entity container (simply to reduce complexity of meta data)
-        final CsdlSchema cdslSchema = schema.getEdmItem();
-        if (cdslSchema.getNamespace().equals(intermediateContainer.getExternalFQN().getNamespace())) {
-          cdslSchema.setEntityContainer(intermediateContainer.getEdmItem());
-        }
-        schemas.add(cdslSchema);
+      return buildEdmSchemas();
+    }
+  }
+
+  private List<CsdlSchema> buildEdmSchemas() throws ODataJPAModelException {
+    final List<CsdlSchema> schemas = new ArrayList<CsdlSchema>();
+    for (final AbstractJPASchema schema : schemaListInternalKey.values()) {
+      // assign entity container to schema... only to the schema of same name space as
+      // in entity container (simply to reduce complexity of meta data)
+      final CsdlSchema cdslSchema = schema.getEdmItem();
+      if (cdslSchema.getNamespace().equals(intermediateContainer.getExternalFQN().getNamespace())) {
+        cdslSchema.setEntityContainer(intermediateContainer.getEdmItem());
       }
+      schemas.add(cdslSchema);
     }
     return schemas;
   }
 
+  /**
+   *
+   * @return The lock guarding the lazy building of all types of this service document.
+   */
+  Object getBuildLock() {
+    return lock;
+  }
+
   Collection<AbstractJPASchema> getJPASchemas() {
+    final Snapshot frozen = snapshot;
+    if (frozen != null) {
+      return frozen.schemas.values();
+    }
     synchronized (lock) {
       resolveSchemas();
       return schemaListInternalKey.values();
     }
   }
 
-  public JPAEntityType getEntityType(final EdmType edmType) {
+  /**
+   *
+   * @return The schema for given name space, resolved from {@link #freeze() snapshot} if available.
+   */
+  private AbstractJPASchema getSchema(final String namespace) {
+    final Snapshot frozen = snapshot;
+    if (frozen != null) {
+      return frozen.schemas.get(namespace);
+    }
     synchronized (lock) {
       resolveSchemas();
+      return schemaListInternalKey.get(namespace);
+    }
+  }
 
-      final AbstractJPASchema schema = schemaListInternalKey.get(edmType.getNamespace());
-      if (schema != null) {
-        return schema.getEntityType(edmType.getName());
-      }
+  public JPAEntityType getEntityType(final EdmType edmType) {
+    final AbstractJPASchema schema = getSchema(edmType.getNamespace());
+    if (schema != null) {
+      return schema.getEntityType(edmType.getName());
     }
     return null;
   }
@@ -131,17 +243,19 @@ public class IntermediateServiceDocument {
    * @return The entity type based on given external (OData) related full qualified name.
    */
   public JPAEntityType getEntityType(final FullQualifiedName typeName) {
-    synchronized (lock) {
-      resolveSchemas();
-      final AbstractJPASchema schema = schemaListInternalKey.get(typeName.getNamespace());
-      if (schema != null) {
-        return schema.getEntityType(typeName.getName());
-      }
+    final AbstractJPASchema schema = getSchema(typeName.getNamespace());
+    if (schema != null) {
+      return schema.getEntityType(typeName.getName());
     }
     return null;
   }
 
   public JPAEntityType getEntityType(final String edmEntitySetName) throws ODataJPAModelException {
+    final Snapshot frozen = snapshot;
+    if (frozen != null) {
+      final JPAEntitySet es = frozen.entitySets.get(edmEntitySetName);
+      return es != null ? es.getEntityType() : null;
+    }
     synchronized (lock) {
       // do not resolve the on-demand schemas here; we have to avoid recursion
       // problems and want to optimize performance
@@ -156,23 +270,17 @@ public class IntermediateServiceDocument {
   }
 
   public JPAFunction getFunction(final EdmFunction function) {
-    synchronized (lock) {
-      resolveSchemas();
-      final AbstractJPASchema schema = schemaListInternalKey.get(function.getNamespace());
-      if (schema != null) {
-        return schema.getFunction(function.getName());
-      }
+    final AbstractJPASchema schema = getSchema(function.getNamespace());
+    if (schema != null) {
+      return schema.getFunction(function.getName());
     }
     return null;
   }
 
   public JPAAction getAction(final EdmAction action) {
-    synchronized (lock) {
-      resolveSchemas();
-      final AbstractJPASchema schema = schemaListInternalKey.get(action.getNamespace());
-      if (schema != null) {
-        return schema.getAction(action);
-      }
+    final AbstractJPASchema schema = getSchema(action.getNamespace());
+    if (schema != null) {
+      return schema.getAction(action);
     }
     return null;
   }
@@ -184,6 +292,11 @@ public class IntermediateServiceDocument {
     if (targetClass.isPrimitive()) {
       return null;
     }
+    final Snapshot frozen = snapshot;
+    if (frozen != null) {
+      return frozen.lookup(frozen.structuredTypesByClass, targetClass, schema -> schema.getStructuredType(
+          targetClass));
+    }
     synchronized (lock) {
       // do not resolve the on-demand schemas here; we have to avoid recursion
       // problems and want to optimize performance
@@ -198,12 +311,9 @@ public class IntermediateServiceDocument {
   }
 
   public JPAStructuredType getStructuredType(final FullQualifiedName typeName) {
-    synchronized (lock) {
-      resolveSchemas();
-      final AbstractJPASchema schema = schemaListInternalKey.get(typeName.getNamespace());
-      if (schema != null) {
-        return schema.getStructuredType(typeName.getName());
-      }
+    final AbstractJPASchema schema = getSchema(typeName.getNamespace());
+    if (schema != null) {
+      return schema.getStructuredType(typeName.getName());
     }
     return null;
   }
@@ -213,6 +323,10 @@ public class IntermediateServiceDocument {
     if (Object.class.equals(targetClass)) {
       return null;
     }
+    final Snapshot frozen = snapshot;
+    if (frozen != null) {
+      return frozen.lookup(frozen.entityTypesByClass, targetClass, schema -> schema.getEntityType(targetClass));
+    }
     synchronized (lock) {
       resolveSchemas();
       for (final AbstractJPASchema schema : schemaListInternalKey.values()) {
@@ -227,6 +341,10 @@ public class IntermediateServiceDocument {
 
   IntermediateEnumType getEnumType(final Class<?> targetClass) {
     IntermediateEnumType enumType;
+    final Snapshot frozen = snapshot;
+    if (frozen != null) {
+      return frozen.lookup(frozen.enumTypesByClass, targetClass, schema -> schema.getEnumType(targetClass));
+    }
     synchronized (lock) {
       resolveSchemas();
       for (final AbstractJPASchema schema : schemaListInternalKey.values()) {
@@ -244,6 +362,10 @@ public class IntermediateServiceDocument {
     if (Object.class.equals(targetClass)) {
       return null;
     }
+    final Snapshot frozen = snapshot;
+    if (frozen != null) {
+      return frozen.lookup(frozen.complexTypesByClass, targetClass, schema -> schema.getComplexType(targetClass));
+    }
     synchronized (lock) {
       resolveSchemas();
       for (final AbstractJPASchema schema : schemaListInternalKey.values()) {
@@ -265,6 +387,7 @@ public class IntermediateServiceDocument {
       }
       final IntermediateMetamodelSchema schema = new IntermediateMetamodelSchema(this, namespace,
           jpaMetamodel);
+      snapshot = null;
       schemaListInternalKey.put(namespace, schema);
       dependendSchemaCreationRequired = true;
       return schema;
@@ -276,6 +399,7 @@ public class IntermediateServiceDocument {
       throw new ODataJPAModelException(MessageKeys.GENERAL);
     }
     final IntermediateCustomSchema schema = new IntermediateCustomSchema(this, namespace);
+    snapshot = null;
     schemaListInternalKey.put(namespace, schema);
     return schema;
   }
@@ -322,11 +446,16 @@ public class IntermediateServiceDocument {
       }
       // this will affect the number of entity set's so we have to refresh the container
       intermediateContainer.reset();
+      snapshot = null;
       return ((IntermediateCustomSchema) schema).findOrCreateDTOType(clazz);
     }
   }
 
   public JPAElement getEntitySet(final JPAEntityType entityType) throws ODataJPAModelException {
+    final Snapshot frozen = snapshot;
+    if (frozen != null) {
+      return frozen.entitySets.get(entityType.getEntitySetName());
+    }
     synchronized (lock) {
       resolveSchemas();
       for (final AbstractJPASchema schema : schemaListInternalKey.values()) {
@@ -1,24 +1,47 @@
 package org.apache.olingo.jpa.metadata.core.edm.mapper.impl;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 
 import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPAAttributeAccessor;
 import org.apache.olingo.jpa.metadata.core.edm.mapper.exception.ODataJPAModelException;
 
 /**
+ * Accessor using {@link MethodHandle method handles} for the getter/setter methods, created once while building the
+ * meta model.
  *
  * @author Ralf Zozmann
  *
  */
 public class MethodAttributeAccessor implements JPAAttributeAccessor {
 
+  private static final MethodType TYPE_GETTER = MethodType.methodType(Object.class, Object.class);
+  private static final MethodType TYPE_SETTER = MethodType.methodType(void.class, Object.class, Object.class);
+
   private final Method methodRead;
   private final Method methodWrite;
+  private final MethodHandle handleRead;
+  private final MethodHandle handleWrite;
 
   public MethodAttributeAccessor(final Method methodRead, final Method methodWrite) {
     this.methodRead = methodRead;
     this.methodWrite = methodWrite;
+    this.handleRead = createHandle(methodRead, TYPE_GETTER);
+    this.handleWrite = createHandle(methodWrite, TYPE_SETTER);
+  }
+
+  private static MethodHandle createHandle(final Method method, final MethodType type) {
+    if (method == null) {
+      return null;
+    }
+    method.setAccessible(true);
+    try {
+      return MethodHandles.lookup().unreflect(method).asType(type);
+    } catch (final IllegalAccessException e) {
+      throw new IllegalStateException("Method " + method.getName() + " is not accessible", e);
+    }
   }
 
   protected final Method getMethodRead() {
@@ -31,9 +54,14 @@ public class MethodAttributeAccessor implements JPAAttributeAccessor {
 
   @Override
   public void setPropertyValue(final Object jpaEntity, final Object jpaPropertyValue) throws ODataJPAModelException {
+    if (handleWrite == null) {
+      throw new ODataJPAModelException(new IllegalStateException("No write method available"));
+    }
     try {
-      methodWrite.invoke(jpaEntity, jpaPropertyValue);
-    } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
+      handleWrite.invokeExact(jpaEntity, jpaPropertyValue);
+    } catch (final Error e) {
+      throw e;
+    } catch (final Throwable e) {
       throw new ODataJPAModelException(e);
     }
   }
@@ -45,9 +73,14 @@ public class MethodAttributeAccessor implements JPAAttributeAccessor {
 
   @Override
   public Object getPropertyValue(final Object jpaEntity) throws ODataJPAModelException {
+    if (handleRead == null) {
+      throw new ODataJPAModelException(new IllegalStateException("No read method available"));
+    }
     try {
-      return methodRead.invoke(jpaEntity);
-    } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
+      return handleRead.invokeExact(jpaEntity);
+    } catch (final Error e) {
+      throw e;
+    } catch (final Throwable e) {
       throw new ODataJPAModelException(e);
     }
   }
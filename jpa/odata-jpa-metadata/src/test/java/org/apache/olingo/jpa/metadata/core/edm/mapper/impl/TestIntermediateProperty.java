@@ -10,6 +10,7 @@ import javax.persistence.metamodel.EmbeddableType;
 import org.apache.olingo.commons.api.edm.EdmPrimitiveTypeKind;
 import org.apache.olingo.jpa.metadata.core.edm.mapper.exception.ODataJPAModelException;
 import org.apache.olingo.jpa.metadata.test.util.TestMappingRoot;
+import org.apache.olingo.jpa.processor.core.testmodel.Person;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -168,6 +169,25 @@ public class TestIntermediateProperty extends TestMappingRoot {
     assertTrue(property.isStream());
   }
 
+  @Test
+  public void checkAttributeAccessorReadsAndWritesValues() throws ODataJPAModelException {
+    final Person person = new Person();
+    final IntermediateProperty country = new IntermediateProperty(new JPAEdmNameBuilder(PUNIT_NAME), helper
+        .getAttribute(helper.getEntityType("BusinessPartner"), "country"), helper.getEdmProvider()
+        .getServiceDocument());
+    country.getAttributeAccessor().setPropertyValue(person, "DEU");
+    assertEquals("DEU", person.getCountry());
+    assertEquals("DEU", country.getAttributeAccessor().getPropertyValue(person));
+
+    // null must not be written into a primitive field
+    final IntermediateProperty eTag = new IntermediateProperty(new JPAEdmNameBuilder(PUNIT_NAME), helper.getAttribute(
+        helper.getEntityType("BusinessPartner"), "eTag"), helper.getEdmProvider().getServiceDocument());
+    eTag.getAttributeAccessor().setPropertyValue(person, Long.valueOf(7));
+    eTag.getAttributeAccessor().setPropertyValue(person, null);
+    assertEquals(Long.valueOf(7), eTag.getAttributeAccessor().getPropertyValue(person));
+
+  }
+
   @Ignore
   @Test
   public void checkGetSRID() {
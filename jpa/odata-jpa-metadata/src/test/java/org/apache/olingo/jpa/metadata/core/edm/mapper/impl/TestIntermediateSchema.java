@@ -2,21 +2,36 @@ package org.apache.olingo.jpa.metadata.core.edm.mapper.impl;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assume.assumeTrue;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.olingo.commons.api.edm.FullQualifiedName;
+import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPAEntityType;
 import org.apache.olingo.jpa.metadata.core.edm.mapper.exception.ODataJPAModelException;
 import org.apache.olingo.jpa.metadata.test.util.TestMappingRoot;
+import org.apache.olingo.jpa.processor.core.testmodel.Organization;
+import org.apache.olingo.jpa.processor.core.testmodel.PostalAddressData;
 import org.apache.olingo.jpa.test.util.TestDataConstants;
 import org.junit.Before;
 import org.junit.Test;
 
 public class TestIntermediateSchema extends TestMappingRoot {
 
+  private IntermediateServiceDocument serviceDocument;
   private AbstractJPASchema schema;
 
   @Before
   public void setup() throws ODataJPAModelException {
-    final IntermediateServiceDocument serviceDocument = new IntermediateServiceDocument(PUNIT_NAME);
+    serviceDocument = new IntermediateServiceDocument(PUNIT_NAME);
     schema = serviceDocument.createMetamodelSchema(PUNIT_NAME,
         emf.getMetamodel());
   }
@@ -61,4 +76,57 @@ public class TestIntermediateSchema extends TestMappingRoot {
   public void checkSchemaGetAllFunctions() throws ODataJPAModelException {
     assertEquals("Wrong number of (bound) function", 5, schema.getEdmItem().getFunctions().size());
   }
+
+  @Test
+  public void checkFrozenServiceDocumentLookups() throws ODataJPAModelException {
+    final JPAEntityType beforeFreeze = serviceDocument.getEntityType("Organizations");
+    final int numberOfSchemas = serviceDocument.getEdmSchemas().size();
+    serviceDocument.freeze();
+
+    assertSame(beforeFreeze, serviceDocument.getEntityType("Organizations"));
+    assertSame(beforeFreeze, serviceDocument.getEntityType(Organization.class));
+    assertSame(beforeFreeze, serviceDocument.getEntityType(new FullQualifiedName(PUNIT_NAME, "Organization")));
+    assertNotNull(serviceDocument.getEntitySet(beforeFreeze));
+    assertNull(serviceDocument.getEntityType("NotExisting"));
+    assertNull(serviceDocument.getEntityType(String.class));
+    assertNotNull(serviceDocument.getStructuredType(PostalAddressData.class));
+    assertEquals(numberOfSchemas, serviceDocument.getEdmSchemas().size());
+    // the paths are already built
+    assertNotNull(beforeFreeze.getPath("Address/Country"));
+  }
+
+  @Test
+  public void checkConcurrentPathBuilding() throws Exception {
+    final ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      final List<Future<Integer>> results = new ArrayList<>();
+      for (int i = 0; i < 16; i++) {
+        results.add(executor.submit(() -> serviceDocument.getEntityType("Organizations").getPathList().size()));
+      }
+      final int expected = results.get(0).get().intValue();
+      assertTrue(expected > 0);
+      for (final Future<Integer> result : results) {
+        assertEquals(expected, result.get().intValue());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void checkServiceDocumentsBuildIndependently() throws Exception {
+    final IntermediateServiceDocument otherServiceDocument = new IntermediateServiceDocument(PUNIT_NAME);
+    otherServiceDocument.createMetamodelSchema(PUNIT_NAME, emf.getMetamodel());
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      synchronized (serviceDocument.getBuildLock()) {
+        // building the other service document must not wait for the lock of this one
+        final Future<Integer> result = executor.submit(() -> otherServiceDocument.getEntityType("Organizations")
+            .getPathList().size());
+        assertTrue(result.get(30, TimeUnit.SECONDS).intValue() > 0);
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
 }
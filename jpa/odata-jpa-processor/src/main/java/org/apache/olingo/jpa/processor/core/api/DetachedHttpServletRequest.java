@@ -0,0 +1,577 @@
+package org.apache.olingo.jpa.processor.core.api;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.security.Principal;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.DispatcherType;
+import javax.servlet.ReadListener;
+import javax.servlet.RequestDispatcher;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import javax.servlet.http.HttpUpgradeHandler;
+import javax.servlet.http.Part;
+
+/**
+ * Copy of a servlet request to process a batch part on another thread than the thread of the servlet request. All
+ * state of the servlet request (headers, parameters, attributes, URL parts, connection data, cookies, session) is
+ * copied while creating the instance; attributes set later are visible only for the batch part.
+ * <p>
+ * Role checks and the few methods changing the state of the servlet request (login, session creation...) are
+ * delegated to the original servlet request, serialized by the lock of that request. The original servlet request
+ * stays valid, because the batch request waits for all parts. The body of the batch request is already consumed, so
+ * the content of the copy is empty.
+ */
+final class DetachedHttpServletRequest implements HttpServletRequest {
+
+  private final HttpServletRequest original;
+  private final Map<String, Boolean> checkedRoles;
+  private final String method;
+  private final Principal principal;
+  private final String remoteUser;
+  private final String authType;
+  private final Map<String, List<String>> headers;
+  private final List<Locale> locales;
+  private final Map<String, String[]> parameters;
+  private final Map<String, Object> attributes;
+  private String characterEncoding;
+  private final String protocol;
+  private final String scheme;
+  private final String serverName;
+  private final int serverPort;
+  private final String remoteAddr;
+  private final String remoteHost;
+  private final int remotePort;
+  private final String localName;
+  private final String localAddr;
+  private final int localPort;
+  private final boolean secure;
+  private final ServletContext servletContext;
+  private final DispatcherType dispatcherType;
+  private final Cookie[] cookies;
+  private final String contextPath;
+  private final String servletPath;
+  private final String pathInfo;
+  private final String pathTranslated;
+  private final String queryString;
+  private final String requestURI;
+  private final String requestURL;
+  private final String requestedSessionId;
+  private final boolean requestedSessionIdValid;
+  private final boolean requestedSessionIdFromCookie;
+  private final boolean requestedSessionIdFromURL;
+  private HttpSession session;
+
+  DetachedHttpServletRequest(final HttpServletRequest request, final Map<String, Boolean> checkedRoles) {
+    this.original = request;
+    this.checkedRoles = checkedRoles;
+    this.method = request.getMethod();
+    this.principal = request.getUserPrincipal();
+    this.remoteUser = request.getRemoteUser();
+    this.authType = request.getAuthType();
+    final Map<String, List<String>> headerCopy = new TreeMap<String, List<String>>(String.CASE_INSENSITIVE_ORDER);
+    final Enumeration<String> headerNames = request.getHeaderNames();
+    while (headerNames != null && headerNames.hasMoreElements()) {
+      final String name = headerNames.nextElement();
+      final Enumeration<String> values = request.getHeaders(name);
+      headerCopy.put(name, values == null ? Collections.<String> emptyList() : Collections.unmodifiableList(
+          Collections.list(values)));
+    }
+    this.headers = Collections.unmodifiableMap(headerCopy);
+    final Enumeration<Locale> requestLocales = request.getLocales();
+    this.locales = requestLocales == null ? Collections.<Locale> emptyList() : Collections.unmodifiableList(
+        Collections.list(requestLocales));
+    final Map<String, String[]> parameterCopy = new LinkedHashMap<String, String[]>();
+    final Map<String, String[]> requestParameters = request.getParameterMap();
+    if (requestParameters != null) {
+      for (final Map.Entry<String, String[]> entry : requestParameters.entrySet()) {
+        parameterCopy.put(entry.getKey(), entry.getValue() == null ? null : entry.getValue().clone());
+      }
+    }
+    this.parameters = Collections.unmodifiableMap(parameterCopy);
+    this.attributes = new LinkedHashMap<String, Object>();
+    final Enumeration<String> attributeNames = request.getAttributeNames();
+    while (attributeNames != null && attributeNames.hasMoreElements()) {
+      final String name = attributeNames.nextElement();
+      attributes.put(name, request.getAttribute(name));
+    }
+    this.characterEncoding = request.getCharacterEncoding();
+    this.protocol = request.getProtocol();
+    this.scheme = request.getScheme();
+    this.serverName = request.getServerName();
+    this.serverPort = request.getServerPort();
+    this.remoteAddr = request.getRemoteAddr();
+    this.remoteHost = request.getRemoteHost();
+    this.remotePort = request.getRemotePort();
+    this.localName = request.getLocalName();
+    this.localAddr = request.getLocalAddr();
+    this.localPort = request.getLocalPort();
+    this.secure = request.isSecure();
+    this.servletContext = request.getServletContext();
+    this.dispatcherType = request.getDispatcherType();
+    this.cookies = request.getCookies() == null ? null : request.getCookies().clone();
+    this.contextPath = request.getContextPath();
+    this.servletPath = request.getServletPath();
+    this.pathInfo = request.getPathInfo();
+    this.pathTranslated = request.getPathTranslated();
+    this.queryString = request.getQueryString();
+    this.requestURI = request.getRequestURI();
+    final StringBuffer url = request.getRequestURL();
+    this.requestURL = url == null ? null : url.toString();
+    this.requestedSessionId = request.getRequestedSessionId();
+    this.requestedSessionIdValid = request.isRequestedSessionIdValid();
+    this.requestedSessionIdFromCookie = request.isRequestedSessionIdFromCookie();
+    this.requestedSessionIdFromURL = request.isRequestedSessionIdFromURL();
+    this.session = request.getSession(false);
+  }
+
+  /**
+   *
+   * @return The roles checked on the original servlet request before the creation of this copy.
+   */
+  Map<String, Boolean> getCheckedRoles() {
+    return checkedRoles;
+  }
+
+  @Override
+  public String getMethod() {
+    return method;
+  }
+
+  @Override
+  public Principal getUserPrincipal() {
+    return principal;
+  }
+
+  @Override
+  public String getRemoteUser() {
+    return remoteUser;
+  }
+
+  @Override
+  public String getAuthType() {
+    return authType;
+  }
+
+  @Override
+  public boolean isUserInRole(final String role) {
+    final Boolean checked = checkedRoles.get(role);
+    if (checked != null) {
+      return checked.booleanValue();
+    }
+    synchronized (original) {
+      return original.isUserInRole(role);
+    }
+  }
+
+  @Override
+  public String getHeader(final String name) {
+    final List<String> values = headers.get(name);
+    return values == null || values.isEmpty() ? null : values.get(0);
+  }
+
+  @Override
+  public Enumeration<String> getHeaders(final String name) {
+    final List<String> values = headers.get(name);
+    return Collections.enumeration(values != null ? values : Collections.<String> emptyList());
+  }
+
+  @Override
+  public Enumeration<String> getHeaderNames() {
+    return Collections.enumeration(new ArrayList<String>(headers.keySet()));
+  }
+
+  @Override
+  public long getDateHeader(final String name) {
+    final String value = getHeader(name);
+    if (value == null) {
+      return -1;
+    }
+    try {
+      return ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+    } catch (final DateTimeParseException e) {
+      throw new IllegalArgumentException("Header " + name + " is not a date: " + value, e);
+    }
+  }
+
+  @Override
+  public int getIntHeader(final String name) {
+    final String value = getHeader(name);
+    return value == null ? -1 : Integer.parseInt(value);
+  }
+
+  @Override
+  public String getContentType() {
+    return getHeader("Content-Type");
+  }
+
+  @Override
+  public Locale getLocale() {
+    return locales.isEmpty() ? Locale.getDefault() : locales.get(0);
+  }
+
+  @Override
+  public Enumeration<Locale> getLocales() {
+    return Collections.enumeration(locales.isEmpty() ? Collections.singletonList(Locale.getDefault()) : locales);
+  }
+
+  @Override
+  public String getParameter(final String name) {
+    final String[] values = parameters.get(name);
+    return values == null || values.length == 0 ? null : values[0];
+  }
+
+  @Override
+  public Enumeration<String> getParameterNames() {
+    return Collections.enumeration(parameters.keySet());
+  }
+
+  @Override
+  public String[] getParameterValues(final String name) {
+    final String[] values = parameters.get(name);
+    return values == null ? null : values.clone();
+  }
+
+  @Override
+  public Map<String, String[]> getParameterMap() {
+    return parameters;
+  }
+
+  @Override
+  public Object getAttribute(final String name) {
+    return attributes.get(name);
+  }
+
+  @Override
+  public Enumeration<String> getAttributeNames() {
+    return Collections.enumeration(new ArrayList<String>(attributes.keySet()));
+  }
+
+  @Override
+  public void setAttribute(final String name, final Object o) {
+    if (o == null) {
+      attributes.remove(name);
+    } else {
+      attributes.put(name, o);
+    }
+  }
+
+  @Override
+  public void removeAttribute(final String name) {
+    attributes.remove(name);
+  }
+
+  @Override
+  public String getCharacterEncoding() {
+    return characterEncoding;
+  }
+
+  @Override
+  public void setCharacterEncoding(final String env) throws UnsupportedEncodingException {
+    try {
+      if (!Charset.isSupported(env)) {
+        throw new UnsupportedEncodingException(env);
+      }
+    } catch (final IllegalArgumentException e) {
+      throw new UnsupportedEncodingException(env);
+    }
+    this.characterEncoding = env;
+  }
+
+  @Override
+  public int getContentLength() {
+    return 0;
+  }
+
+  @Override
+  public long getContentLengthLong() {
+    return 0;
+  }
+
+  @Override
+  public ServletInputStream getInputStream() {
+    return new EmptyServletInputStream();
+  }
+
+  @Override
+  public BufferedReader getReader() {
+    return new BufferedReader(new StringReader(""));
+  }
+
+  @Override
+  public Collection<Part> getParts() {
+    return Collections.emptyList();
+  }
+
+  @Override
+  public Part getPart(final String name) {
+    return null;
+  }
+
+  @Override
+  public String getProtocol() {
+    return protocol;
+  }
+
+  @Override
+  public String getScheme() {
+    return scheme;
+  }
+
+  @Override
+  public String getServerName() {
+    return serverName;
+  }
+
+  @Override
+  public int getServerPort() {
+    return serverPort;
+  }
+
+  @Override
+  public String getRemoteAddr() {
+    return remoteAddr;
+  }
+
+  @Override
+  public String getRemoteHost() {
+    return remoteHost;
+  }
+
+  @Override
+  public int getRemotePort() {
+    return remotePort;
+  }
+
+  @Override
+  public String getLocalName() {
+    return localName;
+  }
+
+  @Override
+  public String getLocalAddr() {
+    return localAddr;
+  }
+
+  @Override
+  public int getLocalPort() {
+    return localPort;
+  }
+
+  @Override
+  public boolean isSecure() {
+    return secure;
+  }
+
+  @Override
+  public ServletContext getServletContext() {
+    return servletContext;
+  }
+
+  @Override
+  public DispatcherType getDispatcherType() {
+    return dispatcherType;
+  }
+
+  @Override
+  public RequestDispatcher getRequestDispatcher(final String path) {
+    synchronized (original) {
+      return original.getRequestDispatcher(path);
+    }
+  }
+
+  @Override
+  @Deprecated
+  public String getRealPath(final String path) {
+    return servletContext == null ? null : servletContext.getRealPath(path);
+  }
+
+  @Override
+  public Cookie[] getCookies() {
+    return cookies == null ? null : cookies.clone();
+  }
+
+  @Override
+  public String getContextPath() {
+    return contextPath;
+  }
+
+  @Override
+  public String getServletPath() {
+    return servletPath;
+  }
+
+  @Override
+  public String getPathInfo() {
+    return pathInfo;
+  }
+
+  @Override
+  public String getPathTranslated() {
+    return pathTranslated;
+  }
+
+  @Override
+  public String getQueryString() {
+    return queryString;
+  }
+
+  @Override
+  public String getRequestURI() {
+    return requestURI;
+  }
+
+  @Override
+  public StringBuffer getRequestURL() {
+    return requestURL == null ? null : new StringBuffer(requestURL);
+  }
+
+  @Override
+  public HttpSession getSession(final boolean create) {
+    if (session == null && create) {
+      synchronized (original) {
+        session = original.getSession(true);
+      }
+    }
+    return session;
+  }
+
+  @Override
+  public HttpSession getSession() {
+    return getSession(true);
+  }
+
+  @Override
+  public String changeSessionId() {
+    synchronized (original) {
+      return original.changeSessionId();
+    }
+  }
+
+  @Override
+  public String getRequestedSessionId() {
+    return requestedSessionId;
+  }
+
+  @Override
+  public boolean isRequestedSessionIdValid() {
+    return requestedSessionIdValid;
+  }
+
+  @Override
+  public boolean isRequestedSessionIdFromCookie() {
+    return requestedSessionIdFromCookie;
+  }
+
+  @Override
+  public boolean isRequestedSessionIdFromURL() {
+    return requestedSessionIdFromURL;
+  }
+
+  @Override
+  @Deprecated
+  public boolean isRequestedSessionIdFromUrl() {
+    return requestedSessionIdFromURL;
+  }
+
+  @Override
+  public boolean authenticate(final HttpServletResponse response) throws IOException, ServletException {
+    synchronized (original) {
+      return original.authenticate(response);
+    }
+  }
+
+  @Override
+  public void login(final String username, final String password) throws ServletException {
+    synchronized (original) {
+      original.login(username, password);
+    }
+  }
+
+  @Override
+  public void logout() throws ServletException {
+    synchronized (original) {
+      original.logout();
+    }
+  }
+
+  /**
+   * A batch part is processed synchronously, so asynchronous processing is not supported (like for a servlet not
+   * declared as asynchronous).
+   */
+  @Override
+  public boolean isAsyncSupported() {
+    return false;
+  }
+
+  @Override
+  public boolean isAsyncStarted() {
+    return false;
+  }
+
+  @Override
+  public AsyncContext startAsync() {
+    throw new IllegalStateException("Asynchronous processing is not supported for a part of a $batch request");
+  }
+
+  @Override
+  public AsyncContext startAsync(final ServletRequest servletRequest, final ServletResponse servletResponse) {
+    return startAsync();
+  }
+
+  @Override
+  public AsyncContext getAsyncContext() {
+    throw new IllegalStateException("Asynchronous processing is not started");
+  }
+
+  @Override
+  public <T extends HttpUpgradeHandler> T upgrade(final Class<T> handlerClass) throws ServletException {
+    throw new ServletException("Protocol upgrade is not possible for a part of a $batch request");
+  }
+
+  private static class EmptyServletInputStream extends ServletInputStream {
+
+    @Override
+    public int read() {
+      return -1;
+    }
+
+    @Override
+    public boolean isFinished() {
+      return true;
+    }
+
+    @Override
+    public boolean isReady() {
+      return true;
+    }
+
+    @Override
+    public void setReadListener(final ReadListener readListener) {
+      throw new IllegalStateException("Asynchronous processing is not started");
+    }
+  }
+}
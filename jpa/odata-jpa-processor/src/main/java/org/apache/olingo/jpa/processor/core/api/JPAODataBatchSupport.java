@@ -0,0 +1,67 @@
+package org.apache.olingo.jpa.processor.core.api;
+
+import java.util.concurrent.Executor;
+
+import org.apache.olingo.commons.api.ex.ODataException;
+import org.apache.olingo.server.api.ODataRequest;
+import org.apache.olingo.server.api.ODataResponse;
+
+/**
+ * Infrastructure for the $batch processor to execute parts of a batch request in own units of work. Available as
+ * dependency in the request context of a batch request.
+ */
+public interface JPAODataBatchSupport {
+
+  /**
+   *
+   * @return The executor to process independent reading parts concurrently or <code>null</code> to process all parts
+   * sequentially.
+   * @see JPAODataServletHandler#setBatchExecutor(Executor)
+   */
+  public Executor getBatchExecutor();
+
+  /**
+   * Prepare a reading request to be processed isolated from the batch request: with a separate request context and a
+   * separate {@link javax.persistence.EntityManager EntityManager}. The security checks are done and the information
+   * needed from the servlet request is copied while preparing, so this method must be called by the thread of the
+   * batch request.
+   *
+   * @return The prepared request; not accessing the servlet request or response, so it can be processed by any
+   * thread. Must be {@link IsolatedRequest#release() released} if not processed.
+   */
+  public IsolatedRequest prepareIsolated(ODataRequest request) throws ODataException;
+
+  /**
+   * Start a change set: all following requests will work on a new
+   * {@link javax.persistence.EntityManager EntityManager} in a separate transaction until
+   * {@link #endChangeSet(boolean)} is called. The batch request itself is processed without transaction, so every
+   * change set is a unit of work on its own.
+   */
+  public void beginChangeSet();
+
+  /**
+   * Finish the current change set and switch back to the entity manager of the batch request.
+   *
+   * @param commit TRUE to commit the changes of the change set, FALSE to roll back.
+   */
+  public void endChangeSet(boolean commit);
+
+  /**
+   * A request {@link JPAODataBatchSupport#prepareIsolated(ODataRequest) prepared} for isolated processing.
+   */
+  public interface IsolatedRequest {
+
+    /**
+     * Process the request; can be called only once.
+     *
+     * @return The response. Errors (also of the security checks) are part of the response.
+     */
+    public ODataResponse process();
+
+    /**
+     * Release the resources (like the {@link javax.persistence.EntityManager EntityManager}) of a request not
+     * processed. Has no effect if the request is already processed (or processing is running).
+     */
+    public void release();
+  }
+}
@@ -1,8 +1,11 @@
 package org.apache.olingo.jpa.processor.core.api;
 
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
 
 import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
 import javax.persistence.criteria.Expression;
 import javax.persistence.criteria.Path;
 
@@ -33,6 +36,16 @@ public interface JPAODataDatabaseProcessor {
   public Expression<Boolean> createSearchExpression(SearchTerm search, List<Path<?>> searchColumns)
       throws ODataApplicationException;
 
+  /**
+   *
+   * @return The provider to resolve $search for the given entity type or <code>null</code> to use the conditions
+   * created by {@link #createSearchExpression(SearchTerm, List)}. The default implementation returns
+   * <code>null</code>.
+   */
+  public default JPAODataSearchProvider getSearchProvider(final JPAEntityType entityType) {
+    return null;
+  }
+
   public <Y extends Number> Expression<Number> createCalculation(BinaryOperatorKind operator, Expression<Y> operand1,
       Expression<Y> operand2) throws ODataApplicationException;
 
@@ -61,6 +74,78 @@ public interface JPAODataDatabaseProcessor {
 
   public Expression<Long> convert(final JPAAggregationOperation jpaOperator) throws ODataApplicationException;
 
+  /**
+   * Dependent queries (like $expand) are restricted to the keys of the already loaded owning entities. This value
+   * limits the number of keys used in one query, larger key sets are split into multiple queries.
+   *
+   * @return The maximum number of entity keys in one query condition; a value &lt; 1 disables the splitting. The
+   * default implementation returns 0.
+   */
+  public default int getKeyBatchSize() {
+    return 0;
+  }
+
+  /**
+   * The creation of multiple entities with one request (JSON array as request body) flushes and clears the entity
+   * manager after this number of entities, so the memory consumption does not depend on the number of entities.
+   *
+   * @return The number of created entities per flush; a value &lt; 1 flushes only once at the end. The default
+   * implementation returns 0.
+   */
+  public default int getBulkFlushSize() {
+    return 0;
+  }
+
+  /**
+   * A $expand of a to-one relationship without own query options can be loaded as LEFT OUTER JOIN in the query of the
+   * owning entities, instead of a separate query for the expanded entities.
+   *
+   * @return TRUE to join to-one $expand's into the query of the owning entities. The default implementation returns
+   * FALSE.
+   */
+  public default boolean isExpandJoinEnabled() {
+    return false;
+  }
+
+  /**
+   * Server driven paging: a request for an entity set will return not more than the given number of entities. If more
+   * entities are available the response will contain a next link with a <code>$skiptoken</code> to request the next
+   * page.
+   *
+   * @param entitySetName The name of the requested entity set.
+   * @return The maximum number of entities in one response; a value &lt; 1 disables server driven paging. The default
+   * implementation returns 0.
+   */
+  public default int getMaxPageSize(final String entitySetName) {
+    return 0;
+  }
+
+  /**
+   * The inline count (<code>$count=true</code>) requires a separate count query. If an executor is given, the count
+   * query is executed concurrently to the query loading the entities, using a separate {@link EntityManager} created
+   * by the {@link org.apache.olingo.jpa.processor.core.mapping.JPAAdapter JPAAdapter}. Because the separate entity
+   * manager will not see uncommitted changes of the request transaction, the concurrent execution should be activated
+   * only if GET requests are not mixed with modifying requests in one transaction (like in $batch change sets).
+   *
+   * @return The executor or <code>null</code> to execute the count query sequentially in the request entity manager.
+   * The default implementation returns <code>null</code>.
+   */
+  public default Executor getInlineCountExecutor() {
+    return null;
+  }
+
+  /**
+   * Execute the query for a streamed response, so the entities can be serialized while the results are read. The
+   * stream must be closed to release the database resources.
+   *
+   * @return The results of the query, read lazily while consumed if supported by the JPA provider. The default
+   * implementation returns {@link TypedQuery#getResultStream()}.
+   * @see TypedQuery#getResultStream()
+   */
+  public default <T> Stream<T> getResultStream(final TypedQuery<T> query) {
+    return query.getResultStream();
+  }
+
   List<?> executeFunctionQuery(UriResourceFunction uriResourceFunction, JPAFunction jpaFunction,
       JPAEntityType returnType, EntityManager em) throws ODataApplicationException;
 
@@ -0,0 +1,33 @@
+package org.apache.olingo.jpa.processor.core.api;
+
+import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPAEntityType;
+import org.apache.olingo.jpa.metadata.core.edm.mapper.exception.ODataJPAModelException;
+
+/**
+ * A {@link JPAODataSearchProvider search provider} implementing this interface is informed about entities created,
+ * updated or deleted by OData requests, to keep an own search index in sync with the database.
+ * <p>
+ * The notification happens while the request transaction is running, so the listener can read the entity state.
+ * The returned change is applied only after the transaction was committed successfully (see
+ * {@link JPAODataPendingEntityChanges}); changes rolled back are never applied. An implementation is the embedded
+ * search index of the <i>odata-jpa-processor-searchindex</i> addon.
+ */
+public interface JPAODataEntityChangeListener {
+
+  /**
+   * Called after an entity was created or updated.
+   *
+   * @param jpaEntity The JPA instance with the new state.
+   * @return The change to apply after the commit or <code>null</code>.
+   */
+  public Runnable entityChanged(JPAEntityType entityType, Object jpaEntity) throws ODataJPAModelException;
+
+  /**
+   * Called before an entity is deleted.
+   *
+   * @param jpaEntity The JPA instance to delete.
+   * @return The change to apply after the commit or <code>null</code>.
+   */
+  public Runnable entityDeleted(JPAEntityType entityType, Object jpaEntity) throws ODataJPAModelException;
+
+}
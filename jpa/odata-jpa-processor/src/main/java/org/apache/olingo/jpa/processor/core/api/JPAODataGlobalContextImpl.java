@@ -12,6 +12,7 @@ import org.apache.olingo.jpa.metadata.core.edm.mapper.impl.IntermediateServiceDo
 import org.apache.olingo.jpa.processor.JPAODataGlobalContext;
 import org.apache.olingo.jpa.processor.ModifiableDependencyInjector;
 import org.apache.olingo.jpa.processor.core.mapping.JPAAdapter;
+import org.apache.olingo.jpa.processor.core.query.AggregationTypeCache;
 import org.apache.olingo.jpa.processor.core.util.DependencyInjectorImpl;
 import org.apache.olingo.server.ODataFactory;
 import org.apache.olingo.server.api.OData;
@@ -46,8 +47,11 @@ class JPAODataGlobalContextImpl extends AbstractContextImpl implements JPAODataG
     di.registerDependencyMapping(JPAAdapter.class, mappingAdapter);
     di.registerDependencyMapping(JPAEdmProvider.class, jpaEdm);
     di.registerDependencyMapping(JPAODataGlobalContext.class, this);
+    di.registerDependencyMapping(AggregationTypeCache.class, new AggregationTypeCache());
 
     registerDTOs();
+    // build the complete meta model now, so requests are working on a immutable snapshot without locking
+    jpaEdm.getServiceDocument().freeze();
   }
 
   void dispose() {
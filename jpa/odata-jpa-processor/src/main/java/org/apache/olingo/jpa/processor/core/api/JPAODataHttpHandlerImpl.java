@@ -1,17 +1,24 @@
 package org.apache.olingo.jpa.processor.core.api;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
 import java.util.LinkedHashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 
 import javax.persistence.EntityManager;
+import javax.persistence.FlushModeType;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.olingo.commons.api.edm.constants.ODataServiceVersion;
 import org.apache.olingo.commons.api.ex.ODataError;
 import org.apache.olingo.commons.api.ex.ODataException;
+import org.apache.olingo.commons.api.http.HttpHeader;
 import org.apache.olingo.commons.api.http.HttpMethod;
 import org.apache.olingo.commons.api.http.HttpStatusCode;
 import org.apache.olingo.jpa.exception.ODataErrorException;
@@ -19,6 +26,7 @@ import org.apache.olingo.jpa.processor.core.mapping.JPAAdapter;
 import org.apache.olingo.jpa.processor.core.security.SecurityInceptor;
 import org.apache.olingo.jpa.processor.core.util.ExtensibleContentTypeSupport;
 import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.ODataContent;
 import org.apache.olingo.server.api.ODataHttpHandler;
 import org.apache.olingo.server.api.ODataLibraryException;
 import org.apache.olingo.server.api.ODataRequest;
@@ -28,9 +36,14 @@ import org.apache.olingo.server.api.OlingoExtension;
 import org.apache.olingo.server.api.debug.DebugSupport;
 import org.apache.olingo.server.api.deserializer.DeserializerException;
 import org.apache.olingo.server.api.etag.CustomETagSupport;
+import org.apache.olingo.server.api.etag.PreconditionException;
 import org.apache.olingo.server.api.processor.Processor;
 import org.apache.olingo.server.api.serializer.CustomContentTypeSupport;
+import org.apache.olingo.server.api.serializer.SerializerException;
 import org.apache.olingo.server.api.uri.UriInfo;
+import org.apache.olingo.server.core.AcceptHeaderContentNegotiatorException;
+import org.apache.olingo.server.core.ContentNegotiatorException;
+import org.apache.olingo.server.core.ODataDispatcher;
 import org.apache.olingo.server.core.ODataExceptionHelper;
 import org.apache.olingo.server.core.ODataHandlerException;
 import org.apache.olingo.server.core.ODataHandlerImpl;
@@ -41,11 +54,14 @@ import org.apache.olingo.server.core.uri.parser.UriParserException;
 import org.apache.olingo.server.core.uri.parser.UriParserSemanticException;
 import org.apache.olingo.server.core.uri.parser.UriParserSyntaxException;
 import org.apache.olingo.server.core.uri.validator.UriValidationException;
+import org.apache.olingo.server.core.uri.validator.UriValidator;
 
 /**
  * @see org.apache.olingo.server.core.ODataHttpHandlerImpl
  */
-class JPAODataHttpHandlerImpl extends ODataHandlerImpl implements ODataHttpHandler {
+class JPAODataHttpHandlerImpl extends ODataHandlerImpl implements ODataHttpHandler, JPAODataBatchSupport {
+
+  private static final String BATCH_PATH = "/$batch";
 
   private final ExtensibleContentTypeSupport contentSupport = new ExtensibleContentTypeSupport();
   private final JPAODataServletHandler servletHandler;
@@ -53,6 +69,14 @@ class JPAODataHttpHandlerImpl extends ODataHandlerImpl implements ODataHttpHandl
   private final EntityManager em;
   private final ServerCoreDebugger debugger;
   private final JPAODataRequestContextImpl requestContext;
+  private final RoleRecordingHttpServletRequest httpRequest;
+  private final JPAODataPendingEntityChanges entityChanges = new JPAODataPendingEntityChanges();
+  private EntityManager changeSetEm = null;
+  private JPAODataPendingEntityChanges changeSetEntityChanges = null;
+  private final Map<ODataRequest, UriInfo> changeSetModifications = new LinkedHashMap<ODataRequest, UriInfo>();
+  private boolean transactionActive = false;
+  private JPAAdapter pendingFinish = null;
+  private UriInfo parsedUriInfo = null;
   private int split = 0;
 
   public JPAODataHttpHandlerImpl(final JPAODataServletHandler servletHandler,
@@ -66,7 +90,11 @@ class JPAODataHttpHandlerImpl extends ODataHandlerImpl implements ODataHttpHandl
     this.debugger = globalContext.getServerDebugger();
     // call super to avoid 'forbidden' exception
     super.register(contentSupport);// at least for file uploads (but also for more...)
-    requestContext = new JPAODataRequestContextImpl(em, globalContext, request, response);
+    // the role checks are remembered for isolated batch parts and the response cache
+    this.httpRequest = new RoleRecordingHttpServletRequest(request);
+    requestContext = new JPAODataRequestContextImpl(em, entityChanges, globalContext,
+        servletHandler.getTransformationRegistry(), httpRequest, response);
+    requestContext.getDependencyInjector().registerDependencyMapping(JPAODataBatchSupport.class, this);
     servletHandler.prepareRequestContext(requestContext);
   }
 
@@ -80,26 +108,60 @@ class JPAODataHttpHandlerImpl extends ODataHandlerImpl implements ODataHttpHandl
 
   protected ODataResponse processTransactional(final ODataRequest request) {
 
+    final ODataResponse odataResponse = new ODataResponse();
     try {
-      checkSecurity(request);
+      odataResponse.setHeader(HttpHeader.ODATA_VERSION, ODataServiceVersion.V40.toString());
+      validateODataVersion(request);
+      // the URI is parsed only once, for the security checks and the dispatching to the processors
+      parsedUriInfo = parseUri(request);
+      checkSecurity(request, parsedUriInfo);
     } catch (final ODataException e) {
       JPAODataServletHandler.LOG.log(Level.FINE, "Failed to preprocess request for security checks");
-      return handleException(request, e);
+      handleException(request, odataResponse, e);
+      return odataResponse;
     }
+    return processAuthorized(request, odataResponse);
+  }
 
+  private ODataResponse processAuthorized(final ODataRequest request, final ODataResponse odataResponse) {
     final boolean isReadingRequest = request.getMethod() == HttpMethod.GET;
+    // the parts of a $batch request are processed in own units of work, so the batch request itself has no
+    // transaction
+    final boolean withoutTransaction = BATCH_PATH.equals(request.getRawODataPath()) || servletHandler
+        .isReadRequestsWithoutTransaction() && isReadingRequest;
 
     final JPAAdapter mappingAdapter = requestContext.refreshMappingAdapter();
-    ODataResponse odataResponse;
+    final JPAODataResponseCache responseCache = servletHandler.getResponseCache();
+    JPAODataResponseCache.Lookup cacheLookup = null;
+    if (responseCache != null && isReadingRequest && !debugger.isDebugMode()) {
+      cacheLookup = responseCache.prepareLookup(request, parsedUriInfo, httpRequest, globalContext.getEdmProvider()
+          .getServiceDocument());
+      final ODataResponse cachedResponse = cacheLookup != null ? responseCache.find(cacheLookup) : null;
+      if (cachedResponse != null) {
+        JPAODataServletHandler.LOG.log(Level.FINER, "Response taken from cache");
+        finishRequest(mappingAdapter, false);
+        servletHandler.modifyResponse(cachedResponse);
+        return cachedResponse;
+      }
+    }
     try {
-      mappingAdapter.beginTransaction(em);
+      if (withoutTransaction) {
+        JPAODataServletHandler.LOG.log(Level.FINER, "Process request without transaction");
+      } else {
+        mappingAdapter.beginTransaction(em);
+        transactionActive = true;
+      }
+      if (isReadingRequest) {
+        // no modifications to flush before queries
+        em.setFlushMode(FlushModeType.COMMIT);
+      }
 
-      // call super.... to avoid DPI overlay
-      odataResponse = super.process(request);
+      // no DPI overlay for the request itself
+      dispatch(request, odataResponse, parsedUriInfo);
 
     } catch (final RuntimeException ex) {
       // do not commit on exceptions
-      mappingAdapter.cancelTransaction(em);
+      finishRequest(mappingAdapter, false);
       throw ex;
     }
 
@@ -108,28 +170,231 @@ class JPAODataHttpHandlerImpl extends ODataHandlerImpl implements ODataHttpHandl
       if (isReadingRequest) {
         // reading requests (per definition without data modification) are not committed
         JPAODataServletHandler.LOG.log(Level.FINER, "Do not commit request transaction, because is read only");
-        mappingAdapter.cancelTransaction(em);
+        if (odataResponse.getODataContent() != null) {
+          // the streamed content may be read from a database cursor while writing the response
+          pendingFinish = mappingAdapter;
+          odataResponse.setODataContent(new FinishingContent(odataResponse.getODataContent()));
+        } else {
+          finishRequest(mappingAdapter, false);
+        }
+        if (cacheLookup != null) {
+          responseCache.store(cacheLookup, odataResponse);
+        }
       } else {
-        mappingAdapter.commitTransaction(em);
+        finishRequest(mappingAdapter, true);
+        // the parts of a $batch request invalidate the cache per committed change set
+        if (responseCache != null && !BATCH_PATH.equals(request.getRawODataPath())) {
+          responseCache.invalidate(request, parsedUriInfo, globalContext.getEdmProvider().getServiceDocument());
+        }
       }
     } else {
       JPAODataServletHandler.LOG.log(Level.WARNING, "Do not commit request transaction, because response is not 2xx");
-      mappingAdapter.cancelTransaction(em);
+      finishRequest(mappingAdapter, false);
     }
     // give implementors the chance to modify the response (set cache control etc.)
     servletHandler.modifyResponse(odataResponse);
     return odataResponse;
   }
 
+  /**
+   * Replacement for {@link ODataHandlerImpl#process(ODataRequest)} using the already parsed URI.
+   */
+  private void dispatch(final ODataRequest request, final ODataResponse response, final UriInfo uriInfo) {
+    final int processHandle = debugger.startRuntimeMeasurement("ODataHandler", "process");
+    try {
+      final int validateHandle = debugger.startRuntimeMeasurement("UriValidator", "validate");
+      new UriValidator().validate(uriInfo, request.getMethod());
+      debugger.stopRuntimeMeasurement(validateHandle);
+
+      final int dispatchHandle = debugger.startRuntimeMeasurement("ODataDispatcher", "dispatch");
+      new ODataDispatcher(uriInfo, this).dispatch(request, response);
+      debugger.stopRuntimeMeasurement(dispatchHandle);
+    } catch (final Exception e) {
+      // same as Olingo: every exception becomes an error response
+      handleException(request, response, e);
+    }
+    debugger.stopRuntimeMeasurement(processHandle);
+  }
+
+  /**
+   * @see org.apache.olingo.server.core.ODataHandlerImpl#validateODataVersion(ODataRequest)
+   */
+  private void validateODataVersion(final ODataRequest request) throws ODataHandlerException {
+    final String odataVersion = request.getHeader(HttpHeader.ODATA_VERSION);
+    if (odataVersion != null && !ODataServiceVersion.isValidODataVersion(odataVersion)) {
+      throw new ODataHandlerException("ODataVersion not supported: " + odataVersion,
+          ODataHandlerException.MessageKeys.ODATA_VERSION_NOT_SUPPORTED, odataVersion);
+    }
+    final String maxVersion = request.getHeader(HttpHeader.ODATA_MAX_VERSION);
+    if (maxVersion != null && !ODataServiceVersion.isValidMaxODataVersion(maxVersion)) {
+      throw new ODataHandlerException("ODataVersion not supported: " + maxVersion,
+          ODataHandlerException.MessageKeys.ODATA_VERSION_NOT_SUPPORTED, maxVersion);
+    }
+  }
+
+  private UriInfo parseUri(final ODataRequest request) throws ODataLibraryException {
+    final int parseHandle = debugger.startRuntimeMeasurement("Parser", "parseUri");
+    try {
+      return new Parser(globalContext.getServiceMetaData().getEdm(), globalContext.getOdata()).parseUri(request
+          .getRawODataPath(), request.getRawQueryPath(), null, request.getRawBaseUri());
+    } finally {
+      debugger.stopRuntimeMeasurement(parseHandle);
+    }
+  }
+
+  private void finishPendingRequest() {
+    if (pendingFinish != null) {
+      final JPAAdapter mappingAdapter = pendingFinish;
+      pendingFinish = null;
+      finishRequest(mappingAdapter, false);
+    }
+  }
+
+  private void finishRequest(final JPAAdapter mappingAdapter, final boolean commit) {
+    try {
+      if (!transactionActive) {
+        mappingAdapter.releaseEntityManager(em);
+      } else if (commit) {
+        mappingAdapter.commitTransaction(em);
+        // listeners must see only committed changes
+        entityChanges.apply();
+      } else {
+        mappingAdapter.cancelTransaction(em);
+      }
+    } finally {
+      entityChanges.discard();
+      transactionActive = false;
+    }
+  }
+
+  @Override
+  public Executor getBatchExecutor() {
+    return servletHandler.getBatchExecutor();
+  }
+
+  @Override
+  public IsolatedRequest prepareIsolated(final ODataRequest request) throws ODataException {
+    final UriInfo uriInfo;
+    try {
+      validateODataVersion(request);
+      uriInfo = parseUri(request);
+      checkSecurity(request, uriInfo);
+    } catch (final ODataException e) {
+      final ODataResponse errorResponse = handleException(request, e);
+      return new IsolatedRequest() {
+
+        @Override
+        public ODataResponse process() {
+          return errorResponse;
+        }
+
+        @Override
+        public void release() {
+          // nothing allocated
+        }
+      };
+    }
+    // the servlet request and response are not thread safe and must not be used by the isolated processing
+    final DetachedHttpServletRequest detachedRequest = new DetachedHttpServletRequest(httpRequest, httpRequest
+        .getCheckedRoles());
+    final JPAODataHttpHandlerImpl isolatedHandler = servletHandler.createHandler(detachedRequest, null);
+    isolatedHandler.parsedUriInfo = uriInfo;
+    return new PreparedIsolatedRequest(isolatedHandler, request);
+  }
+
+  @Override
+  public void beginChangeSet() {
+    if (changeSetEm != null) {
+      throw new IllegalStateException("Change set already running");
+    }
+    final JPAAdapter mappingAdapter = requestContext.refreshMappingAdapter();
+    changeSetEm = mappingAdapter.createEntityManager();
+    mappingAdapter.beginTransaction(changeSetEm);
+    changeSetEntityChanges = new JPAODataPendingEntityChanges();
+    requestContext.setEntityManager(changeSetEm);
+    requestContext.setEntityChanges(changeSetEntityChanges);
+  }
+
+  @Override
+  public void endChangeSet(final boolean commit) {
+    if (changeSetEm == null) {
+      throw new IllegalStateException("No change set running");
+    }
+    final JPAAdapter mappingAdapter = requestContext.refreshMappingAdapter();
+    try {
+      if (commit) {
+        try {
+          mappingAdapter.commitTransaction(changeSetEm);
+        } catch (final RuntimeException e) {
+          // release the entity manager
+          mappingAdapter.cancelTransaction(changeSetEm);
+          throw e;
+        }
+        changeSetEntityChanges.apply();
+        invalidateResponseCache();
+      } else {
+        JPAODataServletHandler.LOG.log(Level.FINER, "Roll back change set transaction");
+        mappingAdapter.cancelTransaction(changeSetEm);
+      }
+    } finally {
+      // following reading requests have to see the committed changes
+      em.clear();
+      changeSetEm = null;
+      changeSetEntityChanges = null;
+      changeSetModifications.clear();
+      requestContext.setEntityManager(em);
+      requestContext.setEntityChanges(entityChanges);
+    }
+  }
+
+  /**
+   * Remove the cached responses affected by the committed change set, so following (concurrently processed) reading
+   * parts of the $batch request do not get outdated responses from the cache.
+   */
+  private void invalidateResponseCache() {
+    final JPAODataResponseCache responseCache = servletHandler.getResponseCache();
+    if (responseCache == null) {
+      return;
+    }
+    for (final Map.Entry<ODataRequest, UriInfo> modification : changeSetModifications.entrySet()) {
+      responseCache.invalidate(modification.getKey(), modification.getValue(), globalContext.getEdmProvider()
+          .getServiceDocument());
+    }
+  }
+
   @Override
   public ODataResponse process(final ODataRequest request) {
-    // this method is also called for every part of an batch request... so we have prepare a fresh request context
+    // this method is called for every part of a batch request processed sequentially... so we have prepare a fresh
+    // request context
+    final ODataResponse response = new ODataResponse();
+    final boolean ownUnitOfWork = changeSetEm == null && request.getMethod() != HttpMethod.GET;
+    if (ownUnitOfWork) {
+      // a modifying request outside of a change set is a change set on its own
+      beginChangeSet();
+    }
+    boolean success = false;
     try {
       requestContext.startDependencyInjectorOverlay();
-      return super.process(request);
+      try {
+        validateODataVersion(request);
+        final UriInfo uriInfo = parseUri(request);
+        // every part has to pass the same security checks as a single request
+        checkSecurity(request, uriInfo);
+        dispatch(request, response, uriInfo);
+        if (changeSetEm != null) {
+          changeSetModifications.put(request, uriInfo);
+        }
+      } catch (final ODataException e) {
+        handleException(request, response, e);
+      }
+      success = response.getStatusCode() < HttpStatusCode.BAD_REQUEST.getStatusCode();
     } finally {
       requestContext.stopDependencyInjectorOverlay();
+      if (ownUnitOfWork) {
+        endChangeSet(success);
+      }
     }
+    return response;
   }
 
   @Override
@@ -161,11 +426,21 @@ class JPAODataHttpHandlerImpl extends ODataHandlerImpl implements ODataHttpHandl
           serverEnvironmentVariables);
     }
 
-    ODataHttpHandlerImplAccessor.convertToHttp(response, odResponse);
+    try {
+      ODataHttpHandlerImplAccessor.convertToHttp(response, odResponse);
+    } finally {
+      // for a streamed content not written (debug mode...)
+      finishPendingRequest();
+    }
   }
 
   private ODataResponse handleException(final ODataRequest odRequest, final Exception e) {
     final ODataResponse resp = new ODataResponse();
+    handleException(odRequest, resp, e);
+    return resp;
+  }
+
+  private void handleException(final ODataRequest odRequest, final ODataResponse resp, final Exception e) {
     ODataServerError serverError;
     if (e instanceof ODataHandlerException) {
       serverError = ODataExceptionHelper.createServerErrorObject((ODataHandlerException) e, null);
@@ -179,13 +454,22 @@ class JPAODataHttpHandlerImpl extends ODataHandlerImpl implements ODataHttpHandl
       serverError = ODataExceptionHelper.createServerErrorObject((UriParserSyntaxException) e, null);
     } else if (e instanceof UriParserException) {
       serverError = ODataExceptionHelper.createServerErrorObject((UriParserException) e, null);
+    } else if (e instanceof AcceptHeaderContentNegotiatorException) {
+      serverError = ODataExceptionHelper.createServerErrorObject((AcceptHeaderContentNegotiatorException) e, null);
+    } else if (e instanceof ContentNegotiatorException) {
+      serverError = ODataExceptionHelper.createServerErrorObject((ContentNegotiatorException) e, null);
+    } else if (e instanceof SerializerException) {
+      serverError = ODataExceptionHelper.createServerErrorObject((SerializerException) e, null);
+    } else if (e instanceof DeserializerException) {
+      serverError = ODataExceptionHelper.createServerErrorObject((DeserializerException) e, null);
+    } else if (e instanceof PreconditionException) {
+      serverError = ODataExceptionHelper.createServerErrorObject((PreconditionException) e, null);
     } else if (e instanceof ODataLibraryException) {
       serverError = ODataExceptionHelper.createServerErrorObject((ODataLibraryException) e, null);
     } else {
       serverError = ODataExceptionHelper.createServerErrorObject(e);
     }
     handleException(odRequest, resp, serverError, e);
-    return resp;
   }
 
   @Override
@@ -297,17 +581,89 @@ class JPAODataHttpHandlerImpl extends ODataHandlerImpl implements ODataHttpHandl
     super.register(customConcurrencyControlSupport);
   }
 
-  private void checkSecurity(final ODataRequest request) throws ODataLibraryException, ODataApplicationException {
+  @Override
+  public UriInfo getUriInfo() {
+    final UriInfo uriInfo = super.getUriInfo();
+    // the request itself is not parsed by Olingo, only the parts of a $batch
+    return uriInfo != null ? uriInfo : parsedUriInfo;
+  }
+
+  /**
+   * Finish the (reading) request after the streamed content is written.
+   */
+  private class FinishingContent implements ODataContent {
+    private final ODataContent content;
+
+    FinishingContent(final ODataContent content) {
+      this.content = content;
+    }
+
+    @Override
+    public void write(final WritableByteChannel channel) {
+      try {
+        content.write(channel);
+      } finally {
+        finishPendingRequest();
+      }
+    }
+
+    @Override
+    public void write(final OutputStream stream) {
+      try {
+        content.write(stream);
+      } finally {
+        finishPendingRequest();
+      }
+    }
+  }
+
+  /**
+   * Request of a $batch part processed by an own handler; the entity manager of the handler is released by the
+   * processing or by {@link #release()}, whatever comes first.
+   */
+  private static class PreparedIsolatedRequest implements IsolatedRequest {
+    private final AtomicBoolean claimed = new AtomicBoolean(false);
+    private final JPAODataHttpHandlerImpl isolatedHandler;
+    private final ODataRequest request;
+
+    PreparedIsolatedRequest(final JPAODataHttpHandlerImpl isolatedHandler, final ODataRequest request) {
+      this.isolatedHandler = isolatedHandler;
+      this.request = request;
+    }
+
+    @Override
+    public ODataResponse process() {
+      if (!claimed.compareAndSet(false, true)) {
+        throw new IllegalStateException("Request already processed or released");
+      }
+      final ODataResponse odataResponse = new ODataResponse();
+      odataResponse.setHeader(HttpHeader.ODATA_VERSION, ODataServiceVersion.V40.toString());
+      try {
+        return isolatedHandler.processAuthorized(request, odataResponse);
+      } catch (final RuntimeException e) {
+        return isolatedHandler.handleException(request, e);
+      }
+    }
+
+    @Override
+    public void release() {
+      if (claimed.compareAndSet(false, true)) {
+        isolatedHandler.finishRequest(isolatedHandler.requestContext.refreshMappingAdapter(), false);
+      }
+    }
+  }
+
+  private void checkSecurity(final ODataRequest request, final UriInfo uriInfo) throws ODataApplicationException {
     final SecurityInceptor securityInceptor = servletHandler.getSecurityInceptor();
     if (securityInceptor == null) {
       return;
     }
     requestContext.getDependencyInjector().injectDependencyValues(securityInceptor);
-    final UriInfo uriInfo = new Parser(globalContext.getServiceMetaData().getEdm(), globalContext.getOdata())
-        .parseUri(request.getRawODataPath(),
-            request.getRawQueryPath(), null, request.getRawBaseUri());
     securityInceptor.authorize(request, uriInfo);
-    // prepare the principal for DPI in case of a happened authentication
+    // prepare the principal for DPI in case of a happened authentication (once for all parts of a $batch)
+    if (requestContext.getDependencyInjector().getDependencyValue(java.security.Principal.class) != null) {
+      return;
+    }
     final HttpServletRequest httpRequest = requestContext.getDependencyInjector().getDependencyValue(
         HttpServletRequest.class);
     requestContext.getDependencyInjector().registerDependencyMapping(java.security.Principal.class, httpRequest
@@ -0,0 +1,61 @@
+package org.apache.olingo.jpa.processor.core.api;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The changes reported by {@link JPAODataEntityChangeListener listeners} while processing a request (or a change
+ * set of a $batch request). The changes are applied only after the transaction was committed successfully and are
+ * discarded on a rollback. Available via dependency injection for the processors.
+ */
+public final class JPAODataPendingEntityChanges {
+
+  private static final Logger LOG = Logger.getLogger(JPAODataPendingEntityChanges.class.getName());
+
+  private final List<Runnable> changes = new ArrayList<>();
+
+  JPAODataPendingEntityChanges() {
+    // created by the request processing only
+  }
+
+  /**
+   *
+   * @param change The change to apply after the commit, <code>null</code> is ignored.
+   */
+  public void add(final Runnable change) {
+    if (change == null) {
+      return;
+    }
+    synchronized (changes) {
+      changes.add(change);
+    }
+  }
+
+  /**
+   * Apply all pending changes in the order of registration. A failing change does not prevent the following
+   * changes, because the database state is already committed.
+   */
+  void apply() {
+    final List<Runnable> toApply;
+    synchronized (changes) {
+      toApply = new ArrayList<>(changes);
+      changes.clear();
+    }
+    for (final Runnable change : toApply) {
+      try {
+        change.run();
+      } catch (final RuntimeException e) {
+        LOG.log(Level.WARNING, "Failed to apply committed entity change", e);
+      }
+    }
+  }
+
+  void discard() {
+    synchronized (changes) {
+      changes.clear();
+    }
+  }
+
+}
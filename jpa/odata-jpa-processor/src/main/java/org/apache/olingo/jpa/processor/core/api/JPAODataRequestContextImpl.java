@@ -16,6 +16,7 @@ import org.apache.olingo.jpa.processor.core.exception.ODataJPAProcessException;
 import org.apache.olingo.jpa.processor.core.mapping.JPAAdapter;
 import org.apache.olingo.jpa.processor.core.util.DependencyInjectorImpl;
 import org.apache.olingo.jpa.processor.debug.JPACoreDebugger;
+import org.apache.olingo.jpa.processor.transformation.TransformationRegistry;
 import org.apache.olingo.jpa.processor.transformation.TransformingFactory;
 import org.apache.olingo.server.api.OData;
 import org.apache.olingo.server.api.ServiceMetadata;
@@ -27,27 +28,32 @@ class JPAODataRequestContextImpl extends AbstractContextImpl implements Modifiab
 
   private final DependencyInjectorImpl di;
   private final AbstractContextImpl parentContext;
+  private final TransformationRegistry transformationRegistry;
   private final TransformingFactory transformerFactory;
   private final HttpServletRequest request;
   private final HttpServletResponse response;
-  private final EntityManager em;
+  private EntityManager em;
+  private JPAODataPendingEntityChanges entityChanges;
   private JPADebugSupportWrapper debugSupport = null;
   private JPAServiceDebugger serviceDebugger = null;
   private boolean disposed = false;
   private DependencyInjectorImpl diOverlay = null;
 
-  public JPAODataRequestContextImpl(final EntityManager em, final AbstractContextImpl parentContext,
-      final HttpServletRequest request,
-      final HttpServletResponse response) throws ODataException {
+  public JPAODataRequestContextImpl(final EntityManager em, final JPAODataPendingEntityChanges entityChanges,
+      final AbstractContextImpl parentContext, final TransformationRegistry transformationRegistry,
+      final HttpServletRequest request, final HttpServletResponse response) throws ODataException {
     this.em = em;
+    this.entityChanges = entityChanges;
     this.parentContext = parentContext;
-    this.transformerFactory = new TransformingFactory(this);
+    this.transformationRegistry = transformationRegistry;
+    this.transformerFactory = new TransformingFactory(this, transformationRegistry);
 
     setDebugSupport(new DefaultDebugSupport());
 
     this.di = new DependencyInjectorImpl((DependencyInjectorImpl) parentContext.getDependencyInjector());
     di.registerDependencyMapping(JPAODataRequestContext.class, this);
     di.registerDependencyMapping(EntityManager.class, em);
+    di.registerDependencyMapping(JPAODataPendingEntityChanges.class, entityChanges);
     di.registerDependencyMapping(HttpServletRequest.class, request);
     di.registerDependencyMapping(HttpServletResponse.class, response);
 
@@ -61,6 +67,27 @@ class JPAODataRequestContextImpl extends AbstractContextImpl implements Modifiab
     return em;
   }
 
+  /**
+   * Replace the entity manager used for the following processing (for units of work in a separate transaction).
+   * The dependency injection is affected with the next {@link #startDependencyInjectorOverlay() overlay}.
+   */
+  void setEntityManager(final EntityManager em) {
+    this.em = em;
+  }
+
+  JPAODataPendingEntityChanges getEntityChanges() {
+    return entityChanges;
+  }
+
+  /**
+   * Replace the collector for the entity changes of the following processing (for units of work in a separate
+   * transaction). The dependency injection is affected with the next {@link #startDependencyInjectorOverlay()
+   * overlay}.
+   */
+  void setEntityChanges(final JPAODataPendingEntityChanges entityChanges) {
+    this.entityChanges = entityChanges;
+  }
+
   void dispose() {
     diOverlay = null;
     disposed = true;
@@ -138,6 +165,8 @@ class JPAODataRequestContextImpl extends AbstractContextImpl implements Modifiab
       throw new IllegalStateException("overlay already running");
     }
     diOverlay = new DependencyInjectorImpl(di);
+    diOverlay.registerDependencyMapping(EntityManager.class, em);
+    diOverlay.registerDependencyMapping(JPAODataPendingEntityChanges.class, entityChanges);
   }
 
   public void stopDependencyInjectorOverlay() {
@@ -151,7 +180,7 @@ class JPAODataRequestContextImpl extends AbstractContextImpl implements Modifiab
 
   @Override
   public ModifiableJPAODataRequestContext createSubRequestContext() throws ODataException {
-    return new JPAODataRequestContextImpl(em, this, request, response);
+    return new JPAODataRequestContextImpl(em, entityChanges, this, transformationRegistry, request, response);
   }
 
   @Override
@@ -0,0 +1,473 @@
+package org.apache.olingo.jpa.processor.core.api;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.security.Principal;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.olingo.commons.api.edm.EdmType;
+import org.apache.olingo.commons.api.http.HttpHeader;
+import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.jpa.metadata.core.edm.entity.ODataResponseCaching;
+import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPAAssociationPath;
+import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPAEntityType;
+import org.apache.olingo.jpa.metadata.core.edm.mapper.exception.ODataJPAModelException;
+import org.apache.olingo.jpa.metadata.core.edm.mapper.impl.IntermediateServiceDocument;
+import org.apache.olingo.server.api.ODataRequest;
+import org.apache.olingo.server.api.ODataResponse;
+import org.apache.olingo.server.api.uri.UriInfo;
+import org.apache.olingo.server.api.uri.UriInfoKind;
+import org.apache.olingo.server.api.uri.UriInfoResource;
+import org.apache.olingo.server.api.uri.UriResource;
+import org.apache.olingo.server.api.uri.UriResourceEntitySet;
+import org.apache.olingo.server.api.uri.UriResourceKind;
+import org.apache.olingo.server.api.uri.UriResourceNavigation;
+import org.apache.olingo.server.api.uri.queryoption.ExpandItem;
+import org.apache.olingo.server.api.uri.queryoption.ExpandOption;
+
+/**
+ * In-process cache for GET responses of entity sets annotated with {@link ODataResponseCaching @ODataResponseCaching}.
+ * Enabled by {@link JPAODataServletHandler#setResponseCache(JPAODataResponseCache)}.
+ * <p>
+ * The responses are cached per normalized request URI, requested format (Accept and Prefer headers) and the
+ * {@link #createSecurityFingerprint(HttpServletRequest) security fingerprint} of the user. The security checks are
+ * done for every request, also if the response is taken from the cache.
+ * <p>
+ * A successful modifying request on an entity set (create, update, delete or bound action) removes the cached
+ * responses containing entities of that entity set or of the entity sets reachable through navigation from it. Unbound
+ * actions and $batch requests clear the whole cache. Changes done by other applications are visible after the time to
+ * live only, or after {@link #clear()}.
+ */
+public class JPAODataResponseCache {
+
+  private static final Logger LOG = Logger.getLogger(JPAODataResponseCache.class.getName());
+  public static final int DEFAULT_MAX_ENTRIES = 1000;
+  public static final int DEFAULT_MAX_CONTENT_LENGTH = 1024 * 1024;
+  private static final int NOT_CACHEABLE = -1;
+  private static final List<String> KEY_HEADERS = Arrays.asList(HttpHeader.ACCEPT, HttpHeader.ACCEPT_CHARSET,
+      HttpHeader.PREFER, HttpHeader.ODATA_MAX_VERSION);
+  private static final List<String> CONDITIONAL_HEADERS = Arrays.asList(HttpHeader.IF_MATCH,
+      HttpHeader.IF_NONE_MATCH, HttpHeader.IF_MODIFIED_SINCE, HttpHeader.IF_UNMODIFIED_SINCE);
+
+  private final int maxContentLength;
+  private final Map<String, CachedResponse> entries;
+  private final Map<String, Integer> timeToLiveByType = new ConcurrentHashMap<>();
+  private final Map<String, Set<String>> reachableTypes = new ConcurrentHashMap<>();
+  // incremented by every invalidation, to not store responses read before a concurrent change was committed
+  private final AtomicLong invalidations = new AtomicLong();
+
+  public JPAODataResponseCache() {
+    this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_CONTENT_LENGTH);
+  }
+
+  /**
+   *
+   * @param maxEntries The number of cached responses; the least recently used responses are removed first.
+   * @param maxContentLength The maximal size in bytes of a response body to cache.
+   */
+  public JPAODataResponseCache(final int maxEntries, final int maxContentLength) {
+    this.maxContentLength = maxContentLength;
+    this.entries = new LinkedHashMap<String, CachedResponse>(64, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<String, CachedResponse> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  /**
+   * Remove all cached responses.
+   */
+  public void clear() {
+    synchronized (entries) {
+      invalidations.incrementAndGet();
+      entries.clear();
+    }
+  }
+
+  /**
+   * Remove the cached responses containing entities of the given entity type or of the entity types reachable
+   * through navigation from it. To be called after changes not done by OData requests.
+   */
+  public void invalidate(final JPAEntityType entityType) {
+    try {
+      invalidate(collectReachableTypes(Collections.singletonList(entityType)));
+    } catch (final ODataJPAModelException e) {
+      LOG.log(Level.WARNING, "Navigation of " + entityType.getExternalName() + " not resolvable, clear the cache", e);
+      clear();
+    }
+  }
+
+  /**
+   * The part of the cache key separating the responses of different users, because the content may depend on the
+   * user (like restricted by a {@link org.apache.olingo.jpa.metadata.core.edm.entity.DataAccessConditioner
+   * DataAccessConditioner}). The default is the name of the authenticated principal and the result of all role checks
+   * done by the security inceptor for the request. An application deciding about the content by other criteria (like
+   * attributes of the session or of the principal) must override this method.
+   *
+   * @return The fingerprint, never <code>null</code>.
+   */
+  protected String createSecurityFingerprint(final HttpServletRequest httpRequest) {
+    final Principal principal = httpRequest.getUserPrincipal();
+    final StringBuilder fingerprint = new StringBuilder(principal != null ? principal.getName() : "");
+    if (httpRequest instanceof RoleRecordingHttpServletRequest) {
+      // sorted, the order of the checks is irrelevant
+      final Map<String, Boolean> checkedRoles = new TreeMap<>(((RoleRecordingHttpServletRequest) httpRequest)
+          .getCheckedRoles());
+      for (final Map.Entry<String, Boolean> role : checkedRoles.entrySet()) {
+        fingerprint.append('\n').append(role.getKey()).append('=').append(role.getValue());
+      }
+    }
+    return fingerprint.toString();
+  }
+
+  /**
+   *
+   * @return The lookup for the request or <code>null</code> if the response cannot be cached.
+   */
+  Lookup prepareLookup(final ODataRequest request, final UriInfo uriInfo, final HttpServletRequest httpRequest,
+      final IntermediateServiceDocument sd) {
+    if (uriInfo.getKind() != UriInfoKind.resource || hasConditionalHeader(request)) {
+      return null;
+    }
+    try {
+      final Set<JPAEntityType> types = new HashSet<>();
+      final Set<String> dependencies = new HashSet<>();
+      if (!collectResourceTypes(uriInfo, sd, types, dependencies) || !collectExpandTypes(uriInfo.getExpandOption(),
+          sd, types, dependencies)) {
+        return null;
+      }
+      int timeToLive = Integer.MAX_VALUE;
+      for (final JPAEntityType type : types) {
+        timeToLive = Math.min(timeToLive, determineTimeToLive(type));
+        dependencies.add(type.getExternalName());
+      }
+      if (timeToLive <= 0) {
+        return null;
+      }
+      return new Lookup(buildKey(request, httpRequest), dependencies, TimeUnit.SECONDS.toMillis(timeToLive),
+          invalidations.get());
+    } catch (final ODataJPAModelException e) {
+      LOG.log(Level.WARNING, "Response for " + request.getRawODataPath() + " not cacheable", e);
+      return null;
+    }
+  }
+
+  /**
+   *
+   * @return A new response with the cached content or <code>null</code>.
+   */
+  ODataResponse find(final Lookup lookup) {
+    final CachedResponse cached;
+    synchronized (entries) {
+      cached = entries.get(lookup.key);
+      if (cached != null && cached.expires < System.currentTimeMillis()) {
+        entries.remove(lookup.key);
+        return null;
+      }
+    }
+    if (cached == null) {
+      return null;
+    }
+    final ODataResponse response = new ODataResponse();
+    response.setStatusCode(HttpStatusCode.OK.getStatusCode());
+    for (final Map.Entry<String, List<String>> header : cached.headers.entrySet()) {
+      response.addHeader(header.getKey(), header.getValue());
+    }
+    response.setContent(new ByteArrayInputStream(cached.content));
+    return response;
+  }
+
+  /**
+   * Cache the content of a successful response. The content of the response is replaced by a stream able to be read
+   * again.
+   */
+  void store(final Lookup lookup, final ODataResponse response) {
+    final InputStream content = response.getContent();
+    if (response.getStatusCode() != HttpStatusCode.OK.getStatusCode() || content == null) {
+      // streamed responses are not cached
+      return;
+    }
+    final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    try {
+      final byte[] chunk = new byte[8192];
+      int read;
+      while (buffer.size() <= maxContentLength && (read = content.read(chunk)) >= 0) {
+        buffer.write(chunk, 0, read);
+      }
+    } catch (final IOException e) {
+      LOG.log(Level.WARNING, "Response for " + lookup.key + " not cacheable", e);
+      return;
+    }
+    final byte[] bytes = buffer.toByteArray();
+    if (bytes.length > maxContentLength) {
+      response.setContent(new SequenceInputStream(new ByteArrayInputStream(bytes), content));
+      return;
+    }
+    response.setContent(new ByteArrayInputStream(bytes));
+    final Map<String, List<String>> headers = new LinkedHashMap<>();
+    for (final Map.Entry<String, List<String>> header : response.getAllHeaders().entrySet()) {
+      headers.put(header.getKey(), new LinkedList<>(header.getValue()));
+    }
+    synchronized (entries) {
+      if (invalidations.get() != lookup.invalidationsAtStart) {
+        // the content may be read before the commit of a concurrent change
+        return;
+      }
+      entries.put(lookup.key, new CachedResponse(headers, bytes, lookup.typeNames, System.currentTimeMillis()
+          + lookup.timeToLive));
+    }
+  }
+
+  /**
+   * Remove the cached responses affected by a successful modifying request.
+   */
+  void invalidate(final ODataRequest request, final UriInfo uriInfo, final IntermediateServiceDocument sd) {
+    final List<JPAEntityType> changedTypes = new LinkedList<>();
+    try {
+      if (uriInfo == null || uriInfo.getKind() != UriInfoKind.resource || !collectChangedTypes(uriInfo, sd,
+          changedTypes)) {
+        // unbound action, $batch...: the changes are unknown
+        clear();
+        return;
+      }
+      invalidate(collectReachableTypes(changedTypes));
+    } catch (final ODataJPAModelException e) {
+      LOG.log(Level.WARNING, "Changes of " + request.getRawODataPath() + " not resolvable, clear the cache", e);
+      clear();
+    }
+  }
+
+  private void invalidate(final Set<String> typeNames) {
+    synchronized (entries) {
+      invalidations.incrementAndGet();
+      for (final Iterator<CachedResponse> iterator = entries.values().iterator(); iterator.hasNext();) {
+        if (!Collections.disjoint(iterator.next().typeNames, typeNames)) {
+          iterator.remove();
+        }
+      }
+    }
+  }
+
+  private static boolean hasConditionalHeader(final ODataRequest request) {
+    for (final String header : CONDITIONAL_HEADERS) {
+      if (request.getHeader(header) != null) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private String buildKey(final ODataRequest request, final HttpServletRequest httpRequest) {
+    final StringBuilder key = new StringBuilder(256);
+    key.append(request.getRawBaseUri()).append(request.getRawODataPath());
+    if (request.getRawQueryPath() != null && !request.getRawQueryPath().isEmpty()) {
+      // the order of the query options is irrelevant
+      final String[] queryOptions = request.getRawQueryPath().split("&");
+      Arrays.sort(queryOptions);
+      key.append('?');
+      for (int i = 0; i < queryOptions.length; i++) {
+        if (i > 0) {
+          key.append('&');
+        }
+        key.append(queryOptions[i]);
+      }
+    }
+    for (final String header : KEY_HEADERS) {
+      key.append('\n').append(request.getHeaders(header));
+    }
+    key.append('\n').append(createSecurityFingerprint(httpRequest));
+    return key.toString();
+  }
+
+  private int determineTimeToLive(final JPAEntityType type) {
+    Integer timeToLive = timeToLiveByType.get(type.getExternalName());
+    if (timeToLive == null) {
+      final ODataResponseCaching annotation = type.getTypeClass().getAnnotation(ODataResponseCaching.class);
+      timeToLive = Integer.valueOf(annotation != null ? annotation.timeToLive() : NOT_CACHEABLE);
+      timeToLiveByType.put(type.getExternalName(), timeToLive);
+    }
+    return timeToLive.intValue();
+  }
+
+  /**
+   *
+   * @return <code>false</code> if the resource path contains something else than entities and their properties.
+   */
+  private boolean collectResourceTypes(final UriInfoResource resource, final IntermediateServiceDocument sd,
+      final Set<JPAEntityType> types, final Set<String> dependencies) throws ODataJPAModelException {
+    final List<UriResource> parts = resource.getUriResourceParts();
+    if (parts.isEmpty() || parts.get(0).getKind() != UriResourceKind.entitySet) {
+      return false;
+    }
+    for (final UriResource part : parts) {
+      switch (part.getKind()) {
+      case entitySet:
+      case navigationProperty:
+        if (!addType(findType(part), sd, types)) {
+          return false;
+        }
+        break;
+      case primitiveProperty:
+      case complexProperty:
+      case count:
+      case value:
+      case ref:
+        break;
+      default:
+        return false;
+      }
+    }
+    if (resource.getFilterOption() != null || resource.getOrderByOption() != null
+        || resource.getApplyOption() != null) {
+      dependencies.addAll(collectReachableTypes(types));
+    }
+    return true;
+  }
+
+  private boolean collectExpandTypes(final ExpandOption expandOption, final IntermediateServiceDocument sd,
+      final Set<JPAEntityType> types, final Set<String> dependencies) throws ODataJPAModelException {
+    if (expandOption == null) {
+      return true;
+    }
+    for (final ExpandItem item : expandOption.getExpandItems()) {
+      if (item.isStar() || item.getResourcePath() == null) {
+        return false;
+      }
+      final Set<JPAEntityType> itemTypes = new HashSet<>();
+      for (final UriResource part : item.getResourcePath().getUriResourceParts()) {
+        if (part.getKind() == UriResourceKind.navigationProperty && !addType(findType(part), sd, itemTypes)) {
+          return false;
+        }
+      }
+      types.addAll(itemTypes);
+      if (item.getFilterOption() != null || item.getOrderByOption() != null || item.getApplyOption() != null) {
+        dependencies.addAll(collectReachableTypes(itemTypes));
+      }
+      if (!collectExpandTypes(item.getExpandOption(), sd, types, dependencies)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean collectChangedTypes(final UriInfoResource resource, final IntermediateServiceDocument sd,
+      final List<JPAEntityType> types) throws ODataJPAModelException {
+    final List<UriResource> parts = resource.getUriResourceParts();
+    if (parts.isEmpty() || parts.get(0).getKind() != UriResourceKind.entitySet) {
+      return false;
+    }
+    for (final UriResource part : parts) {
+      if (part.getKind() == UriResourceKind.entitySet || part.getKind() == UriResourceKind.navigationProperty) {
+        final JPAEntityType type = sd.getEntityType(findType(part));
+        if (type == null) {
+          return false;
+        }
+        types.add(type);
+      }
+    }
+    return true;
+  }
+
+  private static EdmType findType(final UriResource part) {
+    if (part instanceof UriResourceEntitySet) {
+      return ((UriResourceEntitySet) part).getEntityType();
+    }
+    return ((UriResourceNavigation) part).getProperty().getType();
+  }
+
+  private static boolean addType(final EdmType edmType, final IntermediateServiceDocument sd,
+      final Set<JPAEntityType> types) {
+    final JPAEntityType type = sd.getEntityType(edmType);
+    if (type == null) {
+      return false;
+    }
+    types.add(type);
+    return true;
+  }
+
+  /**
+   *
+   * @return The names of the given types and all entity types reachable through navigation from them.
+   */
+  private Set<String> collectReachableTypes(final Collection<JPAEntityType> types) throws ODataJPAModelException {
+    final Set<String> typeNames = new HashSet<>();
+    for (final JPAEntityType type : types) {
+      Set<String> reachable = reachableTypes.get(type.getExternalName());
+      if (reachable == null) {
+        reachable = new HashSet<>();
+        collectReachableTypes(type, reachable);
+        reachableTypes.put(type.getExternalName(), reachable);
+      }
+      typeNames.addAll(reachable);
+    }
+    return typeNames;
+  }
+
+  private static void collectReachableTypes(final JPAEntityType type, final Set<String> typeNames)
+      throws ODataJPAModelException {
+    if (!typeNames.add(type.getExternalName())) {
+      return;
+    }
+    for (final JPAAssociationPath association : type.getAssociationPathList()) {
+      if (association.getTargetType() instanceof JPAEntityType) {
+        collectReachableTypes((JPAEntityType) association.getTargetType(), typeNames);
+      }
+    }
+  }
+
+  /**
+   * The cache key and the entity types of a cacheable request.
+   */
+  static final class Lookup {
+    private final String key;
+    private final Set<String> typeNames;
+    private final long timeToLive;
+    private final long invalidationsAtStart;
+
+    private Lookup(final String key, final Set<String> typeNames, final long timeToLive,
+        final long invalidationsAtStart) {
+      this.key = key;
+      this.typeNames = typeNames;
+      this.timeToLive = timeToLive;
+      this.invalidationsAtStart = invalidationsAtStart;
+    }
+  }
+
+  private static final class CachedResponse {
+    private final Map<String, List<String>> headers;
+    private final byte[] content;
+    private final Set<String> typeNames;
+    private final long expires;
+
+    CachedResponse(final Map<String, List<String>> headers, final byte[] content, final Set<String> typeNames,
+        final long expires) {
+      this.headers = headers;
+      this.content = content;
+      this.typeNames = typeNames;
+      this.expires = expires;
+    }
+  }
+}
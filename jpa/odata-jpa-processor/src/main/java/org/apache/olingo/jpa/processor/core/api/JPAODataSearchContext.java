@@ -0,0 +1,63 @@
+package org.apache.olingo.jpa.processor.core.api;
+
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.From;
+import javax.persistence.criteria.Path;
+
+import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPAEntityType;
+import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPASelector;
+import org.apache.olingo.server.api.uri.queryoption.search.SearchExpression;
+
+/**
+ * The state of a $search given to a {@link JPAODataSearchProvider}.
+ */
+public interface JPAODataSearchContext {
+
+  public EntityManager getEntityManager();
+
+  public CriteriaBuilder getCriteriaBuilder();
+
+  public JPAODataDatabaseProcessor getDatabaseProcessor();
+
+  /**
+   *
+   * @return The type of the searched entities.
+   */
+  public JPAEntityType getEntityType();
+
+  /**
+   *
+   * @return The query element representing the searched entities, the search condition must be built for.
+   */
+  public From<?, ?> getFrom();
+
+  /**
+   *
+   * @return The search expression from the request with already decoded search terms.
+   */
+  public SearchExpression getSearchExpression();
+
+  /**
+   *
+   * @return The attributes of the entity to search in (attributes marked with @EdmSearchable or all attributes if no
+   * attribute is marked), without attributes stored in another table.
+   */
+  public List<JPASelector> getSearchableAttributes();
+
+  /**
+   *
+   * @return The {@link #getSearchableAttributes() searchable attributes} as paths of the {@link #getFrom() searched
+   * entities}, in the same order.
+   */
+  public List<Path<?>> getSearchColumns();
+
+  /**
+   *
+   * @return The path for the given attribute (like a key attribute) of the {@link #getFrom() searched entities}.
+   */
+  public Path<?> getPath(JPASelector selector);
+
+}
@@ -0,0 +1,28 @@
+package org.apache.olingo.jpa.processor.core.api;
+
+import java.util.List;
+
+import javax.persistence.criteria.Expression;
+
+import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPAEntityType;
+import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.uri.queryoption.search.SearchTerm;
+
+/**
+ * Extension point to resolve a $search by a search engine (like the full-text index of a database) instead of the
+ * LIKE conditions created by {@link JPAODataDatabaseProcessor#createSearchExpression(SearchTerm, List)}. A provider
+ * is selected per entity type via {@link JPAODataDatabaseProcessor#getSearchProvider(JPAEntityType)}.
+ *
+ * @see org.apache.olingo.jpa.processor.core.search.TokenizedSearchProvider
+ * @see org.apache.olingo.jpa.processor.core.search.AbstractKeySetSearchProvider
+ */
+public interface JPAODataSearchProvider {
+
+  /**
+   *
+   * @return The condition restricting the {@link JPAODataSearchContext#getFrom() searched entities} to the entities
+   * matching the search expression; never <code>null</code>.
+   */
+  public Expression<Boolean> createSearchCondition(JPAODataSearchContext context) throws ODataApplicationException;
+
+}
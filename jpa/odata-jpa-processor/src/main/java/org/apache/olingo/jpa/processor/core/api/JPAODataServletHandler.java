@@ -5,6 +5,7 @@ import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.Executor;
 import java.util.logging.Logger;
 
 import javax.servlet.http.HttpServletRequest;
@@ -25,6 +26,8 @@ import org.apache.olingo.jpa.processor.impl.JPAODataBatchProcessor;
 import org.apache.olingo.jpa.processor.impl.JPAStructureProcessor;
 import org.apache.olingo.jpa.processor.transformation.Transformation;
 import org.apache.olingo.jpa.processor.transformation.TransformationDeclaration;
+import org.apache.olingo.jpa.processor.transformation.TransformationRegistry;
+import org.apache.olingo.jpa.processor.transformation.impl.QueryEntityResult2StreamedODataResponseContentTransformation;
 import org.apache.olingo.server.api.ODataResponse;
 import org.apache.olingo.server.api.processor.Processor;
 import org.apache.olingo.server.api.serializer.RepresentationType;
@@ -37,25 +40,24 @@ import org.apache.olingo.server.api.serializer.RepresentationType;
  */
 public class JPAODataServletHandler {
 
-  private static class CustomFormat<I, O> {
+  private static class CustomFormat {
     private final ContentType type;
-    private final TransformationDeclaration<I, O> tDeclaration;
-    private final Class<? extends Transformation<I, O>> tClass;
     private final RepresentationType[] representationTypes;
 
-    CustomFormat(final ContentType type, final TransformationDeclaration<I, O> tDeclaration,
-        final Class<? extends Transformation<I, O>> tClass, final RepresentationType... representationTypes) {
+    CustomFormat(final ContentType type, final RepresentationType... representationTypes) {
       this.type = type;
-      this.tDeclaration = tDeclaration;
-      this.tClass = tClass;
       this.representationTypes = representationTypes;
     }
   }
   static final Logger LOG = Logger.getLogger(JPAODataServletHandler.class.getName());
 
   private final JPAODataGlobalContextImpl globalContext;
-  private final List<CustomFormat<?, ?>> customOutputFormats = new LinkedList<>();
+  private final List<CustomFormat> customOutputFormats = new LinkedList<>();
+  private final TransformationRegistry transformationRegistry = new TransformationRegistry();
   private SecurityInceptor securityInceptor = new AnnotationBasedSecurityInceptor();// having one as default
+  private Executor batchExecutor = null;
+  private boolean readRequestsWithoutTransaction = false;
+  private JPAODataResponseCache responseCache = null;
 
   public JPAODataServletHandler(final JPAAdapter mappingAdapter) throws ODataException {
     super();
@@ -66,7 +68,6 @@ public class JPAODataServletHandler {
     return globalContext;
   }
 
-  @SuppressWarnings("unchecked")
   public void process(final HttpServletRequest request, final HttpServletResponse response) {
 
     if ("OPTIONS".equals(request.getMethod().toUpperCase(Locale.ENGLISH))) {
@@ -75,28 +76,33 @@ public class JPAODataServletHandler {
       return;
     }
     try {
-      final JPAODataHttpHandlerImpl handler = new JPAODataHttpHandlerImpl(this, globalContext, request, response);
-      final JPAODataRequestContext requestContext = handler.getRequestContext();
-
-      // bring custom output transformations into effect for request
-      for (final CustomFormat<?, ?> customFormat : customOutputFormats) {
-        requestContext.getTransformerFactory().registerTransformation(
-            (TransformationDeclaration<Object, Object>) customFormat.tDeclaration,
-            (Class<? extends Transformation<Object, Object>>) customFormat.tClass);
-        handler.getContentSupport().activateCustomContentType(customFormat.type, customFormat.representationTypes);
-      }
-
-      final Collection<Processor> processors = collectProcessors(requestContext);
-      for (final Processor p : processors) {
-        handler.register(p);
-      }
-
+      final JPAODataHttpHandlerImpl handler = createHandler(request, response);
       handler.process(request, response);
     } catch (final ODataException e) {
       throw new RuntimeException(e);
     }
   }
 
+  /**
+   * Create a completely configured handler with own request context and entity manager.
+   */
+  JPAODataHttpHandlerImpl createHandler(final HttpServletRequest request, final HttpServletResponse response)
+      throws ODataException {
+    final JPAODataHttpHandlerImpl handler = new JPAODataHttpHandlerImpl(this, globalContext, request, response);
+    final JPAODataRequestContext requestContext = handler.getRequestContext();
+
+    // the transformations of the custom formats are registered once, the content types per handler
+    for (final CustomFormat customFormat : customOutputFormats) {
+      handler.getContentSupport().activateCustomContentType(customFormat.type, customFormat.representationTypes);
+    }
+
+    final Collection<Processor> processors = collectProcessors(requestContext);
+    for (final Processor p : processors) {
+      handler.register(p);
+    }
+    return handler;
+  }
+
   /**
    * As default we have to implement a behavior for preflight-requests in a CORS scenario to handle the
    * same-origin-policy (SOP) in modern browsers.
@@ -127,6 +133,71 @@ public class JPAODataServletHandler {
     response.sendError(HttpStatusCode.FORBIDDEN.getStatusCode(), "CORS is not allowed per default");
   }
 
+  /**
+   * Enable or disable the streaming serialization of entity collections. If enabled the entities are converted and
+   * serialized while writing the response, so the memory consumption for large results is reduced. Disabled as
+   * default.
+   *
+   * @see QueryEntityResult2StreamedODataResponseContentTransformation
+   */
+  public void setStreamingResponses(final boolean streamingResponses) {
+    if (streamingResponses) {
+      transformationRegistry.registerTransformation(
+          QueryEntityResult2StreamedODataResponseContentTransformation.DEFAULT_DECLARATION,
+          QueryEntityResult2StreamedODataResponseContentTransformation.class);
+    } else {
+      transformationRegistry.unregisterTransformation(
+          QueryEntityResult2StreamedODataResponseContentTransformation.DEFAULT_DECLARATION);
+    }
+  }
+
+  /**
+   * Set an executor to process independent GET requests of a $batch request concurrently. Every concurrently
+   * processed request is working on a separate entity manager, the order of the responses in the batch response is
+   * preserved. The security checks of the concurrently processed requests are done before by the thread of the
+   * batch request. Disabled (<code>null</code>) as default.
+   */
+  public void setBatchExecutor(final Executor batchExecutor) {
+    this.batchExecutor = batchExecutor;
+  }
+
+  Executor getBatchExecutor() {
+    return batchExecutor;
+  }
+
+  /**
+   * Enable or disable the processing of reading requests without transaction. GET requests are never committed, so
+   * the transaction is only overhead (a round trip to the transaction manager for JTA). A $batch request is always
+   * processed without transaction, change sets and modifying requests outside of a change set are processed in a
+   * separate transaction. Without transaction the queries of one request (like $expand) may see data committed
+   * meanwhile by other requests, so this is disabled as default.
+   */
+  public void setReadRequestsWithoutTransaction(final boolean readRequestsWithoutTransaction) {
+    this.readRequestsWithoutTransaction = readRequestsWithoutTransaction;
+  }
+
+  /**
+   * Set a cache for the GET responses of entity sets annotated with
+   * {@link org.apache.olingo.jpa.metadata.core.edm.entity.ODataResponseCaching @ODataResponseCaching}. The same cache
+   * instance may be shared by several handlers working on the same database. Disabled (<code>null</code>) as
+   * default.
+   */
+  public void setResponseCache(final JPAODataResponseCache responseCache) {
+    this.responseCache = responseCache;
+  }
+
+  JPAODataResponseCache getResponseCache() {
+    return responseCache;
+  }
+
+  TransformationRegistry getTransformationRegistry() {
+    return transformationRegistry;
+  }
+
+  boolean isReadRequestsWithoutTransaction() {
+    return readRequestsWithoutTransaction;
+  }
+
   /**
    * Convenience method to register a transformation as custom output format for an content type.
    *
@@ -135,7 +206,8 @@ public class JPAODataServletHandler {
   public <I, O> void activateCustomResponseTransformation(final TransformationDeclaration<I, O> tDeclaration,
       final Class<? extends Transformation<I, O>> tClass, final ContentType contentType,
           final RepresentationType... representationTypes) {
-    final CustomFormat<I, O> customFormat = new CustomFormat<>(contentType, tDeclaration, tClass, representationTypes);
+    final CustomFormat customFormat = new CustomFormat(contentType, representationTypes);
+    transformationRegistry.registerTransformation(tDeclaration, tClass);
     customOutputFormats.add(customFormat);
   }
 
@@ -145,7 +217,12 @@ public class JPAODataServletHandler {
   protected void modifyResponse(final ODataResponse response) {
     // set all response as not cachable as default
     if (!response.getAllHeaders().containsKey(HttpHeader.CACHE_CONTROL)) {
-      response.setHeader(HttpHeader.CACHE_CONTROL, "max-age=0, no-cache, no-store, must-revalidate");
+      if (response.getAllHeaders().containsKey(HttpHeader.ETAG)) {
+        // allow caching, but force revalidation using the ETag
+        response.setHeader(HttpHeader.CACHE_CONTROL, "no-cache");
+      } else {
+        response.setHeader(HttpHeader.CACHE_CONTROL, "max-age=0, no-cache, no-store, must-revalidate");
+      }
     }
   }
 
@@ -188,7 +265,7 @@ public class JPAODataServletHandler {
     final Collection<Processor> processors = new LinkedList<>();
     processors.add(new JPAStructureProcessor(requestContext));
     processors.add(new JPAODataActionProcessor(requestContext));
-    processors.add(new JPAODataBatchProcessor());
+    processors.add(new JPAODataBatchProcessor(requestContext));
     return processors;
   }
 
@@ -0,0 +1,51 @@
+package org.apache.olingo.jpa.processor.core.api;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+
+/**
+ * Wrapper remembering the results of all role checks done on the servlet request, to make them available for
+ * processing outside of the thread of the servlet request (see {@link DetachedHttpServletRequest}) and for
+ * the {@link JPAODataResponseCache response cache}.
+ *
+ * @see HttpServletRequest#isUserInRole(String)
+ */
+class RoleRecordingHttpServletRequest extends HttpServletRequestWrapper {
+
+  private final Map<String, Boolean> checkedRoles = new LinkedHashMap<String, Boolean>();
+
+  RoleRecordingHttpServletRequest(final HttpServletRequest request) {
+    super(request);
+    if (request instanceof DetachedHttpServletRequest) {
+      // the checks were done on the original servlet request
+      checkedRoles.putAll(((DetachedHttpServletRequest) request).getCheckedRoles());
+    }
+  }
+
+  /**
+   * Synchronized, because also called for {@link DetachedHttpServletRequest detached} requests of other threads.
+   */
+  @Override
+  public synchronized boolean isUserInRole(final String role) {
+    final boolean inRole = super.isUserInRole(role);
+    synchronized (checkedRoles) {
+      checkedRoles.put(role, Boolean.valueOf(inRole));
+    }
+    return inRole;
+  }
+
+  /**
+   *
+   * @return A copy of the roles checked until now with the result of the check.
+   */
+  Map<String, Boolean> getCheckedRoles() {
+    synchronized (checkedRoles) {
+      return Collections.unmodifiableMap(new LinkedHashMap<String, Boolean>(checkedRoles));
+    }
+  }
+
+}
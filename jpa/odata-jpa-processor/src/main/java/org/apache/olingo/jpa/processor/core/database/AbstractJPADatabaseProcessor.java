@@ -2,13 +2,22 @@ package org.apache.olingo.jpa.processor.core.database;
 
 import java.net.URI;
 import java.net.URL;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import javax.persistence.EntityManager;
 import javax.persistence.Query;
+import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.Expression;
 import javax.persistence.criteria.Path;
@@ -25,6 +34,7 @@ import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPAEntityType;
 import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPAFunction;
 import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPAOperationParameter;
 import org.apache.olingo.jpa.processor.core.api.JPAODataDatabaseProcessor;
+import org.apache.olingo.jpa.processor.core.api.JPAODataSearchProvider;
 import org.apache.olingo.jpa.processor.core.exception.ODataJPADBAdaptorException;
 import org.apache.olingo.jpa.processor.core.exception.ODataJPAFilterException;
 import org.apache.olingo.jpa.processor.core.filter.JPAAggregationOperation;
@@ -56,16 +66,202 @@ public abstract class AbstractJPADatabaseProcessor implements JPAODataDatabasePr
   private static final String FUNC_NAME_PLACEHOLDER = "$FUNCTIONNAME$";
   private static final String PARAMETER_PLACEHOLDER = "$PARAMETER$";
 
+  /**
+   * Oracle is limited to 1000 elements in an IN list, other databases are limited by the number of bind parameters
+   * (2100 for SQL Server); so we stay below both limits also for (small) composite keys.
+   */
+  public static final int DEFAULT_KEY_BATCH_SIZE = 500;
+  public static final int DEFAULT_BULK_FLUSH_SIZE = 1000;
+  public static final int DEFAULT_RESULT_STREAM_FETCH_SIZE = 500;
+
   private CriteriaBuilder cb = null;
+  private int keyBatchSize = DEFAULT_KEY_BATCH_SIZE;
+  private int bulkFlushSize = DEFAULT_BULK_FLUSH_SIZE;
+  private boolean expandJoinEnabled = true;
+  private int defaultMaxPageSize = 0;
+  private final Map<String, Integer> maxPageSizes = new ConcurrentHashMap<>();
+  private Executor inlineCountExecutor = null;
+  private JPAODataSearchProvider defaultSearchProvider = null;
+  private final Map<String, JPAODataSearchProvider> searchProviders = new ConcurrentHashMap<>();
+  private final Map<String, Object> resultStreamHints = new ConcurrentHashMap<>();
 
   protected AbstractJPADatabaseProcessor() {
     super();
+    // EclipseLink
+    resultStreamHints.put("eclipselink.jdbc.fetch-size", Integer.valueOf(DEFAULT_RESULT_STREAM_FETCH_SIZE));
+    // Hibernate
+    resultStreamHints.put("org.hibernate.fetchSize", Integer.valueOf(DEFAULT_RESULT_STREAM_FETCH_SIZE));
   }
 
   public final void initialize(final CriteriaBuilder cb) {
     this.cb = cb;
   }
 
+  @Override
+  public int getKeyBatchSize() {
+    return keyBatchSize;
+  }
+
+  /**
+   *
+   * @see #getKeyBatchSize()
+   * @see #DEFAULT_KEY_BATCH_SIZE
+   */
+  public void setKeyBatchSize(final int keyBatchSize) {
+    this.keyBatchSize = keyBatchSize;
+  }
+
+  @Override
+  public int getBulkFlushSize() {
+    return bulkFlushSize;
+  }
+
+  /**
+   *
+   * @see #getBulkFlushSize()
+   * @see #DEFAULT_BULK_FLUSH_SIZE
+   */
+  public void setBulkFlushSize(final int bulkFlushSize) {
+    this.bulkFlushSize = bulkFlushSize;
+  }
+
+  @Override
+  public boolean isExpandJoinEnabled() {
+    return expandJoinEnabled;
+  }
+
+  /**
+   * The default is <code>true</code>.
+   *
+   * @see #isExpandJoinEnabled()
+   */
+  public void setExpandJoinEnabled(final boolean expandJoinEnabled) {
+    this.expandJoinEnabled = expandJoinEnabled;
+  }
+
+  @Override
+  public int getMaxPageSize(final String entitySetName) {
+    final Integer maxPageSize = maxPageSizes.get(entitySetName);
+    if (maxPageSize != null) {
+      return maxPageSize.intValue();
+    }
+    return defaultMaxPageSize;
+  }
+
+  /**
+   * Define the page size for all entity sets without {@link #setMaxPageSize(String, int) explicit} page size. The
+   * default is 0 (server driven paging is disabled).
+   *
+   * @see #getMaxPageSize(String)
+   */
+  public void setDefaultMaxPageSize(final int maxPageSize) {
+    this.defaultMaxPageSize = maxPageSize;
+  }
+
+  /**
+   *
+   * @param entitySetName The name of entity set.
+   * @param maxPageSize The page size for the entity set; a value &lt; 1 will disable server driven paging for that
+   * entity set.
+   * @see #getMaxPageSize(String)
+   */
+  public void setMaxPageSize(final String entitySetName, final int maxPageSize) {
+    maxPageSizes.put(entitySetName, Integer.valueOf(maxPageSize));
+  }
+
+  @Override
+  public JPAODataSearchProvider getSearchProvider(final JPAEntityType entityType) {
+    final JPAODataSearchProvider searchProvider = searchProviders.get(entityType.getExternalName());
+    if (searchProvider != null) {
+      return searchProvider;
+    }
+    return defaultSearchProvider;
+  }
+
+  /**
+   * Define the search provider for all entity types without {@link #setSearchProvider(String, JPAODataSearchProvider)
+   * explicit} provider. The default is <code>null</code>: $search is resolved by LIKE conditions.
+   *
+   * @see #getSearchProvider(JPAEntityType)
+   */
+  public void setDefaultSearchProvider(final JPAODataSearchProvider searchProvider) {
+    this.defaultSearchProvider = searchProvider;
+  }
+
+  /**
+   *
+   * @param entityTypeName The (external) name of the entity type.
+   * @param searchProvider The provider used for $search on the entity type or <code>null</code> to use the
+   * {@link #setDefaultSearchProvider(JPAODataSearchProvider) default}.
+   * @see #getSearchProvider(JPAEntityType)
+   */
+  public void setSearchProvider(final String entityTypeName, final JPAODataSearchProvider searchProvider) {
+    if (searchProvider == null) {
+      searchProviders.remove(entityTypeName);
+    } else {
+      searchProviders.put(entityTypeName, searchProvider);
+    }
+  }
+
+  @Override
+  public Executor getInlineCountExecutor() {
+    return inlineCountExecutor;
+  }
+
+  /**
+   * Activate the concurrent execution of the inline count query. The executor should be a (managed) thread pool with
+   * threads allowed to access the database. The default is <code>null</code> (sequential execution).
+   *
+   * @see #getInlineCountExecutor()
+   */
+  public void setInlineCountExecutor(final Executor inlineCountExecutor) {
+    this.inlineCountExecutor = inlineCountExecutor;
+  }
+
+  /**
+   * The default implementation applies the {@link #setResultStreamHint(String, Object) result stream hints} and uses
+   * the standard {@link TypedQuery#getResultStream()}, reading the results lazily from a database cursor for
+   * Hibernate. EclipseLink reads the complete result also for {@link TypedQuery#getResultStream()}, so for EclipseLink
+   * a scrollable cursor is opened via query hint; the cursor is closed with the stream.
+   */
+  @Override
+  public <T> Stream<T> getResultStream(final TypedQuery<T> query) {
+    resultStreamHints.forEach(query::setHint);
+    if (!query.getClass().getName().startsWith("org.eclipse.persistence")) {
+      return query.getResultStream();
+    }
+    query.setHint("eclipselink.cursor.scrollable", Boolean.TRUE);
+    // org.eclipse.persistence.queries.ScrollableCursor
+    @SuppressWarnings("unchecked")
+    final Iterator<T> cursor = (Iterator<T>) query.getSingleResult();
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(cursor, Spliterator.ORDERED), false).onClose(
+        () -> closeCursor(cursor));
+  }
+
+  private static void closeCursor(final Iterator<?> cursor) {
+    try {
+      // org.eclipse.persistence.queries.Cursor#close()
+      cursor.getClass().getMethod("close").invoke(cursor);
+    } catch (final ReflectiveOperationException e) {
+      LOG.log(Level.WARNING, "Database cursor not closed", e);
+    }
+  }
+
+  /**
+   * Define a (provider specific) query hint applied to all queries executed as
+   * {@link #getResultStream(TypedQuery) result stream}; hints not known by the JPA provider are ignored. By default
+   * the JDBC fetch size is set to {@link #DEFAULT_RESULT_STREAM_FETCH_SIZE} for EclipseLink and Hibernate.
+   *
+   * @param value The hint value or <code>null</code> to remove the hint.
+   */
+  public void setResultStreamHint(final String hintName, final Object value) {
+    if (value == null) {
+      resultStreamHints.remove(hintName);
+    } else {
+      resultStreamHints.put(hintName, value);
+    }
+  }
+
   protected final CriteriaBuilder getCriteriaBuilder() {
     if (cb == null) {
       throw new IllegalStateException("Call initialize() before to prepare cirteria builder");
@@ -19,6 +19,7 @@ public final class JPA_HANADatabaseProcessor extends AbstractJPADatabaseProcesso
 		final CriteriaBuilder cb = getCriteriaBuilder();
 
 		// does not work with EclipseLink and Hibernate :-(
+		// (use the HANAContainsSearchProvider as search provider for a CONTAINS() based $search)
 		// // replace 'LIKE' with a better variant
 		// final StringBuffer contains = new StringBuffer();
 		// contains.append('%');
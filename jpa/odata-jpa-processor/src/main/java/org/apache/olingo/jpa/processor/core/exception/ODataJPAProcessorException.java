@@ -18,6 +18,7 @@ public class ODataJPAProcessorException extends ODataJPAProcessException {
     QUERY_RESULT_CONV_ERROR,
     QUERY_RESULT_URI_ERROR,
     BATCH_CHANGE_SET_NOT_IMPLEMENTED,
+    BATCH_PART_EXECUTION_ERROR,
     NOT_SUPPORTED_CREATE,
     NOT_SUPPORTED_UPDATE,
     NOT_SUPPORTED_DELETE,
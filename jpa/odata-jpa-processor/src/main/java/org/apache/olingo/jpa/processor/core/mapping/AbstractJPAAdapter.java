@@ -43,6 +43,28 @@ public abstract class AbstractJPAAdapter implements JPAAdapter {
     this(pUnit, Persistence.createEntityManagerFactory(pUnit, mapEntityManagerProperties), dbAccessor);
   }
 
+  /**
+   * Add the properties to enable the JDBC batch writing of the JPA provider (EclipseLink and Hibernate) to the
+   * properties used to create the entity manager factory. Recommended for bulk inserts (a JSON array posted to an
+   * entity set), where the inserts are flushed in blocks of
+   * {@link org.apache.olingo.jpa.processor.core.api.JPAODataDatabaseProcessor#getBulkFlushSize() bulk flush size}
+   * entities.
+   *
+   * @param mapEntityManagerProperties The properties to modify.
+   * @param batchSize The maximal number of statements send to the database in one batch.
+   * @return The modified properties.
+   */
+  public static Map<String, Object> enableJDBCBatchWriting(final Map<String, Object> mapEntityManagerProperties,
+      final int batchSize) {
+    // EclipseLink
+    mapEntityManagerProperties.put("eclipselink.jdbc.batch-writing", "JDBC");
+    mapEntityManagerProperties.put("eclipselink.jdbc.batch-writing.size", Integer.toString(batchSize));
+    // Hibernate
+    mapEntityManagerProperties.put("hibernate.jdbc.batch_size", Integer.toString(batchSize));
+    mapEntityManagerProperties.put("hibernate.order_inserts", "true");
+    return mapEntityManagerProperties;
+  }
+
   /**
    * Only for internal use; protect against usage outside of our package.
    */
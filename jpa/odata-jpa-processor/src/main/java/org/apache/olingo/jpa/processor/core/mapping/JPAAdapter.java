@@ -50,6 +50,18 @@ public interface JPAAdapter {
    */
   public void cancelTransaction(EntityManager em) throws RuntimeException;
 
+  /**
+   * Finish usage of entity manager used without transaction (for reading requests). The default implementation
+   * closes the entity manager, if still open.
+   *
+   * @see #createEntityManager()
+   */
+  public default void releaseEntityManager(final EntityManager em) throws RuntimeException {
+    if (em.isOpen()) {
+      em.close();
+    }
+  }
+
   /**
    *
    * @return The name space used on OData for JPA entities coming from {@link #getMetamodel()}.
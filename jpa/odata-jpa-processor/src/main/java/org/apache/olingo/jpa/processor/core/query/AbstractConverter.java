@@ -4,13 +4,13 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Modifier;
 import java.util.Collection;
 import java.util.EnumSet;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -107,14 +107,26 @@ public abstract class AbstractConverter {
         char.class, true, new Character2StringODataAttributeConverter()));
   }
 
-  protected final Logger log = Logger.getLogger(AbstractConverter.class.getName());
-  @SuppressWarnings("rawtypes")
-  private final Map<String, ODataAttributeConverter> converterLookupCache = new HashMap<>();
+  /**
+   * Wrapper to cache also the 'no conversion' result.
+   */
+  private static class PrimitiveValueConversion {
+    private final ODataAttributeConverter<Object, Object> converter;
 
-  private static String buildConverterKey(final Class<?> odataAttributeType, final Class<?> jpaAttributeType) {
-    return odataAttributeType.getName().concat("<->").concat(jpaAttributeType.getName());
+    PrimitiveValueConversion(final ODataAttributeConverter<Object, Object> converter) {
+      this.converter = converter;
+    }
   }
 
+  protected final Logger log = Logger.getLogger(AbstractConverter.class.getName());
+  /**
+   * The attribute specific conversion is determined only once per attribute, because the lookup (annotations, type
+   * mapping) is expensive if done for every value of a large result. Concurrent, because some converter instances
+   * are shared.
+   */
+  private final Map<JPADescribedElement, PrimitiveValueConversion> primitiveValueConversions =
+      new ConcurrentHashMap<>();
+
   /**
    * Look for any matching converter, including default implementation for some
    * data type combinations.
@@ -166,10 +178,6 @@ public abstract class AbstractConverter {
     if (jpaAttributeType == null || odataAttributeType == null) {
       return null;
     }
-    final String key = buildConverterKey(odataAttributeType, jpaAttributeType);
-    if (converterLookupCache.containsKey(key)) {
-      return converterLookupCache.get(key);
-    }
     // lookup...
     final List<ODataAttributeConverter<Object, Object>> matchingConverters = new LinkedList<>();
     for (final ConverterMapping mapping : DEFAULT_ODATA_ATTRIBUTE_CONVERTERS) {
@@ -184,12 +192,9 @@ public abstract class AbstractConverter {
       return null;
     }
     if (matchingConverters.isEmpty()) {
-      converterLookupCache.put(key, null);
       return null;
     }
-    final ODataAttributeConverter<Object, Object> converter = matchingConverters.get(0);
-    converterLookupCache.put(key, converter);
-    return converter;
+    return matchingConverters.get(0);
   }
 
   /**
@@ -203,9 +208,27 @@ public abstract class AbstractConverter {
   protected Object convertJPA2ODataPrimitiveValue(final JPADescribedElement attribute, final Object jpaValue)
       throws ODataJPAConversionException, ODataJPAModelException {
 
-    ODataAttributeConverter<Object, Object> converter = determineCustomODataAttributeConverter(attribute);
+    PrimitiveValueConversion conversion = primitiveValueConversions.get(attribute);
+    if (conversion == null) {
+      conversion = new PrimitiveValueConversion(determinePrimitiveValueConverter(attribute));
+      primitiveValueConversions.put(attribute, conversion);
+    }
+    if (conversion.converter != null) {
+      return conversion.converter.convertToOData(jpaValue);
+    }
+    // use 'as is' without conversion
+    return jpaValue;
+  }
+
+  /**
+   *
+   * @return The converter or <code>null</code> if the value can be used 'as is'.
+   */
+  private ODataAttributeConverter<Object, Object> determinePrimitiveValueConverter(
+      final JPADescribedElement attribute) throws ODataJPAConversionException, ODataJPAModelException {
+    final ODataAttributeConverter<Object, Object> converter = determineCustomODataAttributeConverter(attribute);
     if (converter != null) {
-      return converter.convertToOData(jpaValue);
+      return converter;
     }
 
     final Class<?> javaType = attribute.getType();
@@ -217,14 +240,9 @@ public abstract class AbstractConverter {
       oadataType = TypeMapping.determineODataRepresentationtype(attribute.getType(), attribute.getAnnotatedElement());
     }
     if (javaType.equals(oadataType)) {
-      return jpaValue;
-    }
-    converter = determineDefaultODataAttributeConverter(javaType, oadataType);
-    if (converter != null) {
-      return converter.convertToOData(jpaValue);
+      return null;
     }
-    // use 'as is' without conversion
-    return jpaValue;
+    return determineDefaultODataAttributeConverter(javaType, oadataType);
   }
 
   /**
@@ -723,4 +741,4 @@ public abstract class AbstractConverter {
     }
   }
 
-}
\ No newline at end of file
+}
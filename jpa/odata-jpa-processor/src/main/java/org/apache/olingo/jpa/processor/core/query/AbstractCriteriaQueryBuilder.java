@@ -110,6 +110,7 @@ public abstract class AbstractCriteriaQueryBuilder<QT extends CriteriaQuery<DT>,
   private final NavigationKeyBuilder jpaStartNavigationKeyBuilder;
   private List<NavigationBuilder> navigationQueryList = null;
   private InitializationState initStateType = InitializationState.NotInitialized;
+  private EntityKeyRestriction keyRestriction = null;
 
   protected AbstractCriteriaQueryBuilder(final JPAODataRequestContext context, final NavigationIfc uriInfo,
       final EntityManager em)
@@ -224,6 +225,24 @@ public abstract class AbstractCriteriaQueryBuilder<QT extends CriteriaQuery<DT>,
     return uriNavigation;
   }
 
+  /**
+   * Restrict the query result to entities related to the given owning entity keys. The restriction will be part of
+   * the {@link #createWhere() WHERE} clause.
+   *
+   * @param keyRestriction The restriction or <code>null</code> to remove a previous restriction.
+   */
+  protected final void restrictToKeys(final EntityKeyRestriction keyRestriction) {
+    this.keyRestriction = keyRestriction;
+  }
+
+  /**
+   *
+   * @return The key restriction or <code>null</code>.
+   */
+  protected final EntityKeyRestriction getKeyRestriction() {
+    return keyRestriction;
+  }
+
   /**
    *
    * @return The initial {@link From starting} entity table before first join.
@@ -274,7 +293,7 @@ public abstract class AbstractCriteriaQueryBuilder<QT extends CriteriaQuery<DT>,
     return (determineSkipValue() != null || determineTopValue() != null);
   }
 
-  private Integer determineSkipValue() throws ODataJPAQueryException {
+  protected final Integer determineSkipValue() throws ODataJPAQueryException {
     final UriInfoResource uriResource = getNavigation().getLastStep();
     final SkipOption skipOption = uriResource.getSkipOption();
     if (skipOption == null) {
@@ -289,7 +308,7 @@ public abstract class AbstractCriteriaQueryBuilder<QT extends CriteriaQuery<DT>,
     }
   }
 
-  private Integer determineTopValue() throws ODataJPAQueryException {
+  protected final Integer determineTopValue() throws ODataJPAQueryException {
     final UriInfoResource uriResource = getNavigation().getLastStep();
     final TopOption topOption = uriResource.getTopOption();
     if (topOption == null) {
@@ -457,6 +476,7 @@ public abstract class AbstractCriteriaQueryBuilder<QT extends CriteriaQuery<DT>,
 
     final javax.persistence.criteria.Expression<Boolean> existsSubQuery = buildNavigationWhereClause();
     whereCondition = combineAND(whereCondition, existsSubQuery);
+    whereCondition = combineAND(whereCondition, createWhereFromKeyRestriction());
     whereCondition = combineAND(whereCondition, createWhereFromSearchOption(uriNavigation.getLastStep()
         .getSearchOption()));
 
@@ -484,6 +504,34 @@ public abstract class AbstractCriteriaQueryBuilder<QT extends CriteriaQuery<DT>,
     return extendWhereByKey(root, rootType, keyPredicates);
   }
 
+  private javax.persistence.criteria.Expression<Boolean> createWhereFromKeyRestriction() {
+    if (keyRestriction == null) {
+      return null;
+    }
+    final From<?, ?> keyFrom = determineNavigationFrom(keyRestriction.getNavigationLevel());
+    final List<Path<?>> keyColumns = new ArrayList<Path<?>>(keyRestriction.getKeyPaths().size());
+    for (final JPASelector keyPath : keyRestriction.getKeyPaths()) {
+      keyColumns.add(convertToCriteriaPath(keyFrom, keyPath));
+    }
+    return keyRestriction.buildCondition(getCriteriaBuilder(), keyColumns);
+  }
+
+  /**
+   *
+   * @param navigationLevel The level as defined by {@link NavigationKeyBuilder#getNavigationLevel()}.
+   * @return The {@link From} representing the entity of the given navigation level.
+   */
+  private From<?, ?> determineNavigationFrom(final int navigationLevel) {
+    if (navigationLevel == 1) {
+      return getQueryStartFrom();
+    }
+    final NavigationBuilder navBuilder = navigationQueryList.get(navigationLevel - 2);
+    if (!navBuilder.isWorking()) {
+      throw new IllegalStateException("Navigation level " + navigationLevel + " is not usable for key restriction");
+    }
+    return navBuilder.getQueryResultFrom();
+  }
+
   /**
    * Generate sub-queries in order to select the target of a navigation to a different entity
    * <p>
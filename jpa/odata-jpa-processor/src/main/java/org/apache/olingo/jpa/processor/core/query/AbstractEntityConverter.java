@@ -2,6 +2,10 @@ package org.apache.olingo.jpa.processor.core.query;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -9,6 +13,9 @@ import java.util.UUID;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.persistence.Tuple;
+import javax.persistence.TupleElement;
+
 import org.apache.olingo.commons.api.data.ComplexValue;
 import org.apache.olingo.commons.api.data.Entity;
 import org.apache.olingo.commons.api.data.Property;
@@ -40,6 +47,12 @@ public abstract class AbstractEntityConverter extends AbstractConverter {
   private final IntermediateServiceDocument sd;
   private final ServiceMetadata serviceMetadata;
   private final UriHelper uriHelper;
+  // the plan per result set (all rows of a result set have the same shape)
+  private final Map<Object, TupleConversionPlan> conversionPlans = new IdentityHashMap<>();
+  // the conversion per structured type and attribute name
+  private final Map<JPAStructuredType, Map<String, ValueConversion>> valueConversions = new HashMap<>();
+  // the builder per entity type or null for entity types without key
+  private final Map<JPAEntityType, EntityIdBuilder> idBuilders = new HashMap<>();
 
   public AbstractEntityConverter(final UriHelper uriHelper, final IntermediateServiceDocument sd,
       final ServiceMetadata serviceMetadata) {
@@ -67,23 +80,38 @@ public abstract class AbstractEntityConverter extends AbstractConverter {
   protected final URI createId(final Entity odataEntity, final JPAEntityType jpaEntityType,
       final boolean forbidAutoGeneration)
           throws ODataJPAModelException {
+    return createId(odataEntity, jpaEntityType, forbidAutoGeneration, false);
+  }
+
+  /**
+   *
+   * @param cacheId If TRUE the ids of recently used keys are cached, for entities expected to occur repeatedly (like
+   * the targets of an $expand shared by many source entities).
+   * @see #createId(Entity, JPAEntityType, boolean)
+   */
+  protected final URI createId(final Entity odataEntity, final JPAEntityType jpaEntityType,
+      final boolean forbidAutoGeneration, final boolean cacheId)
+          throws ODataJPAModelException {
 
     try {
       // TODO Clarify host-name and port as part of ID see
       // http://docs.oasis-open.org/odata/odata-atom-format/v4.0/cs02/odata-atom-format-v4.0-cs02.html#_Toc372792702
 
-      final String setName = sd.getEntitySet(jpaEntityType).getExternalName();
-
-      final EdmEntitySet set = serviceMetadata.getEdm().getEntityContainer().getEntitySet(setName);
-      final List<String> keyNames = set.getEntityType().getKeyPredicateNames();
+      EntityIdBuilder idBuilder = idBuilders.get(jpaEntityType);
+      if (idBuilder == null && !idBuilders.containsKey(jpaEntityType)) {
+        final String setName = sd.getEntitySet(jpaEntityType).getExternalName();
+        final EdmEntitySet set = serviceMetadata.getEdm().getEntityContainer().getEntitySet(setName);
+        idBuilder = set.getEntityType().getKeyPredicateNames().isEmpty() ? null : new EntityIdBuilder(set);
+        idBuilders.put(jpaEntityType, idBuilder);
+      }
 
-      if (!keyNames.isEmpty()) {
-        final String uri = uriHelper.buildCanonicalURL(set, odataEntity);
-        return new URI(uri);
+      if (idBuilder != null) {
+        return cacheId ? idBuilder.buildCachedId(odataEntity) : idBuilder.buildId(odataEntity);
       } else if (forbidAutoGeneration) {
         return null;
       } else {
-        // fallback: automatic id creation
+        // fallback for entity types without key: automatic id creation
+        final String setName = sd.getEntitySet(jpaEntityType).getExternalName();
         final StringBuffer uriBuffer = new StringBuffer(setName);
         uriBuffer.append("(");
         uriBuffer.append("generated-".concat(Long.toString(System.currentTimeMillis()).concat("-").concat(UUID
@@ -102,6 +130,136 @@ public abstract class AbstractEntityConverter extends AbstractConverter {
     }
   }
 
+  /**
+   * Build the weak ETag from the value of the {@link JPAEntityType#getEtagAttributePath() version attribute}.
+   *
+   * @return The ETag or <code>null</code> if no version value is given.
+   */
+  protected static final String createETag(final Object version) {
+    if (version == null) {
+      return null;
+    }
+    final String value = version instanceof Date ? Long.toString(((Date) version).getTime()) : version.toString();
+    return "W/\"" + value + "\"";
+  }
+
+  /**
+   * The precompiled conversion of a tuple (row) into properties: the position of a tuple element is mapped to the
+   * prepared conversion of that value, so the (alias based) resolution of attribute paths must not be repeated for
+   * every row.
+   */
+  protected static final class TupleConversionPlan {
+    private final ValueConversion[] conversions;
+    /**
+     * The position of the version attribute value in the tuple or -1.
+     */
+    private final int etagIndex;
+
+    private TupleConversionPlan(final ValueConversion[] conversions, final int etagIndex) {
+      this.conversions = conversions;
+      this.etagIndex = etagIndex;
+    }
+  }
+
+  /**
+   * The prepared conversion of a single value into a (maybe nested in complex values) property.
+   */
+  private static final class ValueConversion {
+    /**
+     * Marker for values to ignore.
+     */
+    private static final ValueConversion IGNORE = new ValueConversion(Collections.emptyList(), Collections
+        .emptyList(), null, null);
+
+    /**
+     * The complex type attributes to walk through, before the property can be set.
+     */
+    private final JPAAttribute<?>[] complexAttributes;
+    /**
+     * The keys in complex value buffer for the {@link #complexAttributes}.
+     */
+    private final String[] complexBufferKeys;
+    /**
+     * <code>null</code> if the value is to ignore (the complex values are created nevertheless).
+     */
+    private final JPAMemberAttribute leafAttribute;
+    private final String propertyName;
+
+    private ValueConversion(final List<JPAAttribute<?>> complexAttributes, final List<String> complexBufferKeys,
+        final JPAMemberAttribute leafAttribute, final String propertyName) {
+      this.complexAttributes = complexAttributes.toArray(new JPAAttribute<?>[complexAttributes.size()]);
+      this.complexBufferKeys = complexBufferKeys.toArray(new String[complexBufferKeys.size()]);
+      this.leafAttribute = leafAttribute;
+      this.propertyName = propertyName;
+    }
+  }
+
+  /**
+   *
+   * @param resultSet The result set (identity) <i>row</i> is part of. All rows of a result set must have the same
+   * shape (tuple elements), so the plan is compiled only for the first row of a result set.
+   * @return The cached or new compiled plan to convert tuples of the given result set into properties of the given
+   * type.
+   */
+  protected final TupleConversionPlan getConversionPlan(final JPAStructuredType jpaStructuredType,
+      final Object resultSet, final Tuple row) throws ODataJPAModelException {
+    TupleConversionPlan plan = conversionPlans.get(resultSet);
+    if (plan != null) {
+      return plan;
+    }
+    final List<TupleElement<?>> elements = row.getElements();
+    final ValueConversion[] conversions = new ValueConversion[elements.size()];
+    String etagAlias = null;
+    if (jpaStructuredType instanceof JPAEntityType && ((JPAEntityType) jpaStructuredType).hasEtag()) {
+      etagAlias = ((JPAEntityType) jpaStructuredType).getEtagAttributePath().getAlias();
+    }
+    int etagIndex = -1;
+    for (int i = 0; i < conversions.length; i++) {
+      final String alias = elements.get(i).getAlias();
+      conversions[i] = compileValueConversion(alias, "", jpaStructuredType, new LinkedList<>(),
+          new LinkedList<>());
+      if (etagAlias != null && (etagAlias.equals(alias) || (EntityQueryBuilder.ETAG_ALIAS_PREFIX + etagAlias)
+          .equals(alias))) {
+        etagIndex = i;
+      }
+    }
+    plan = new TupleConversionPlan(conversions, etagIndex);
+    conversionPlans.put(resultSet, plan);
+    return plan;
+  }
+
+  /**
+   * Convert all values of the given tuple into properties using the given plan.
+   *
+   * @param plan The plan {@link #getConversionPlan(JPAStructuredType, Object, Tuple) compiled} for the shape of
+   * <i>row</i>.
+   * @see #convertJPAValue2ODataAttribute(Object, String, String, JPAStructuredType, Map, int, List)
+   */
+  protected final void convertTuple2ODataProperties(final TupleConversionPlan plan, final Tuple row,
+      final Map<String, Object> complexValueBuffer, final int complexValueIndex, final List<Property> properties)
+          throws ODataJPAModelException, ODataJPAConversionException {
+    final Object[] values = row.toArray();
+    for (int i = 0; i < plan.conversions.length; i++) {
+      final ValueConversion conversion = plan.conversions[i];
+      if (conversion == null) {
+        continue;
+      }
+      convertValue(conversion, values[i], complexValueBuffer, complexValueIndex, properties);
+    }
+  }
+
+  /**
+   *
+   * @return The ETag of the entity represented by <i>row</i> or <code>null</code> if the version attribute is not
+   * part of the tuple.
+   */
+  protected final String determineETag(final TupleConversionPlan plan, final Tuple row) {
+    if (plan.etagIndex < 0) {
+      return null;
+    }
+    return createETag(row.get(plan.etagIndex));
+  }
+
   /**
    *
    * @param complexValueBuffer
@@ -119,10 +277,36 @@ public abstract class AbstractEntityConverter extends AbstractConverter {
       final JPAStructuredType jpaStructuredType, final Map<String, Object> complexValueBuffer,
       final int complexValueIndex,
       final List<Property> properties) throws ODataJPAModelException, ODataJPAConversionException {
+    Map<String, ValueConversion> conversions = valueConversions.get(jpaStructuredType);
+    if (conversions == null) {
+      conversions = new HashMap<>();
+      valueConversions.put(jpaStructuredType, conversions);
+    }
+    final String key = prefix == null || prefix.isEmpty() ? externalName : prefix + JPASelector.PATH_SEPERATOR
+        + externalName;
+    ValueConversion conversion = conversions.get(key);
+    if (conversion == null) {
+      conversion = compileValueConversion(externalName, prefix, jpaStructuredType, new LinkedList<>(),
+          new LinkedList<>());
+      conversions.put(key, conversion != null ? conversion : ValueConversion.IGNORE);
+    }
+    if (conversion == null || conversion == ValueConversion.IGNORE) {
+      return null;
+    }
+    return convertValue(conversion, value, complexValueBuffer, complexValueIndex, properties);
+  }
+
+  /**
+   *
+   * @return The conversion or <code>null</code> if the value has to be ignored.
+   */
+  private ValueConversion compileValueConversion(final String externalName, final String prefix,
+      final JPAStructuredType jpaStructuredType, final List<JPAAttribute<?>> complexAttributes,
+      final List<String> complexBufferKeys) throws ODataJPAModelException {
 
     final JPASelector path = jpaStructuredType.getPath(externalName);
     if (path == null) {
-      return null;
+      return createIgnoringConversion(complexAttributes, complexBufferKeys);
     }
     if (JPAAssociationPath.class.isInstance(path)) {
       if (log.isLoggable(Level.FINEST)) {
@@ -130,7 +314,7 @@ public abstract class AbstractEntityConverter extends AbstractConverter {
             + jpaStructuredType.getExternalName() + "#" + externalName
             + ")... this happens for key column joins to select id's for target entities in a $expand scenario without columns mapped as attribute where we have to select the key columns to map the source entity to matching target (expanded) entities. Maybe this is no error...");
       }
-      return null;
+      return createIgnoringConversion(complexAttributes, complexBufferKeys);
     }
     // take only the first, we are working recursive through the path
     final JPAAttribute<?> attribute = path.getPathElements().get(0);
@@ -138,7 +322,7 @@ public abstract class AbstractEntityConverter extends AbstractConverter {
       throw new IllegalStateException("attribute required");
     }
     if (attribute.ignore()) {
-      return null;
+      return createIgnoringConversion(complexAttributes, complexBufferKeys);
     }
     if (!attribute.isKey() && attribute.getAttributeMapping() == AttributeMapping.AS_COMPLEX_TYPE) {
       // complex type should never be a 'key'... todo: check that anytime!
@@ -148,55 +332,88 @@ public abstract class AbstractEntityConverter extends AbstractConverter {
       } else {
         bufferKey = prefix + JPASelector.PATH_SEPERATOR + attribute.getExternalName();
       }
-      List<Property> values = null;
-      Property complexTypeProperty = null;
-      if (attribute.isCollection()) {
-        @SuppressWarnings("unchecked")
-        List<ComplexValue> listOfComplexValues = (List<ComplexValue>) complexValueBuffer.get(bufferKey);
-        if (listOfComplexValues == null) {
-          listOfComplexValues = new LinkedList<>();
-          complexValueBuffer.put(bufferKey, listOfComplexValues);
-          complexTypeProperty = new Property(
-              attribute.getStructuredType().getExternalFQN().getFullQualifiedNameAsString(),
-              attribute.getExternalName(), ValueType.COLLECTION_COMPLEX, listOfComplexValues);
-        }
-        if (listOfComplexValues.size() < complexValueIndex + 1) {
-          final ComplexValue complexValue = new ComplexValue();
-          listOfComplexValues.add(complexValue);
-          values = complexValue.getValue();
-        } else {
-          // take the existing entry
-          values = listOfComplexValues.get(complexValueIndex).getValue();
-          // skip 'complexTypeProperty' creation, because already existing
-        }
-      } else {
-        ComplexValue complexValue = (ComplexValue) complexValueBuffer.get(bufferKey);
-        if (complexValue == null) {
-          complexValue = new ComplexValue();
-          complexValueBuffer.put(bufferKey, complexValue);
-          complexTypeProperty = new Property(
-              attribute.getStructuredType().getExternalFQN().getFullQualifiedNameAsString(),
-              attribute.getExternalName(), ValueType.COMPLEX, complexValue);
-        }
-        values = complexValue.getValue();
-      }
-      if (complexTypeProperty != null) {
-        properties.add(complexTypeProperty);
-      }
+      complexAttributes.add(attribute);
+      complexBufferKeys.add(bufferKey);
       final int splitIndex = attribute.getExternalName().length() + JPASelector.PATH_SEPERATOR.length();
       final String attributeName = externalName.substring(splitIndex);
-      final Property complexTypeNestedProperty = convertJPAValue2ODataAttribute(value, attributeName, bufferKey,
-          attribute.getStructuredType(), complexValueBuffer, complexValueIndex, values);
-      return complexTypeNestedProperty;
+      return compileValueConversion(attributeName, bufferKey, attribute.getStructuredType(), complexAttributes,
+          complexBufferKeys);
     } else if (attribute.getAttributeMapping() == AttributeMapping.EMBEDDED_ID) {
       // leaf element is the property in the @EmbeddedId type
       final JPAMemberAttribute attributeComplexProperty = (JPAMemberAttribute) path.getLeaf();
-      return convertJPA2ODataProperty(attributeComplexProperty, attributeComplexProperty.getExternalName(), value,
-          properties);
+      return new ValueConversion(complexAttributes, complexBufferKeys, attributeComplexProperty,
+          attributeComplexProperty.getExternalName());
     } else {
       // ...$select=Name1,Address/Region
-      return convertJPA2ODataProperty((JPAMemberAttribute) attribute, externalName, value, properties);
+      return new ValueConversion(complexAttributes, complexBufferKeys, (JPAMemberAttribute) attribute, externalName);
+    }
+  }
+
+  private ValueConversion createIgnoringConversion(final List<JPAAttribute<?>> complexAttributes,
+      final List<String> complexBufferKeys) {
+    if (complexAttributes.isEmpty()) {
+      return null;
+    }
+    // the complex values are created also for ignored nested values
+    return new ValueConversion(complexAttributes, complexBufferKeys, null, null);
+  }
+
+  private Property convertValue(final ValueConversion conversion, final Object value,
+      final Map<String, Object> complexValueBuffer, final int complexValueIndex, final List<Property> properties)
+          throws ODataJPAModelException, ODataJPAConversionException {
+    List<Property> values = properties;
+    for (int i = 0; i < conversion.complexAttributes.length; i++) {
+      values = determineComplexValueProperties(conversion.complexAttributes[i], conversion.complexBufferKeys[i],
+          complexValueBuffer, complexValueIndex, values);
+    }
+    if (conversion.leafAttribute == null) {
+      return null;
+    }
+    return convertJPA2ODataProperty(conversion.leafAttribute, conversion.propertyName, value, values);
+  }
+
+  /**
+   *
+   * @return The list of properties of the (maybe new created) complex value.
+   */
+  private List<Property> determineComplexValueProperties(final JPAAttribute<?> attribute, final String bufferKey,
+      final Map<String, Object> complexValueBuffer, final int complexValueIndex, final List<Property> properties) {
+    List<Property> values = null;
+    Property complexTypeProperty = null;
+    if (attribute.isCollection()) {
+      @SuppressWarnings("unchecked")
+      List<ComplexValue> listOfComplexValues = (List<ComplexValue>) complexValueBuffer.get(bufferKey);
+      if (listOfComplexValues == null) {
+        listOfComplexValues = new LinkedList<>();
+        complexValueBuffer.put(bufferKey, listOfComplexValues);
+        complexTypeProperty = new Property(
+            attribute.getStructuredType().getExternalFQN().getFullQualifiedNameAsString(),
+            attribute.getExternalName(), ValueType.COLLECTION_COMPLEX, listOfComplexValues);
+      }
+      if (listOfComplexValues.size() < complexValueIndex + 1) {
+        final ComplexValue complexValue = new ComplexValue();
+        listOfComplexValues.add(complexValue);
+        values = complexValue.getValue();
+      } else {
+        // take the existing entry
+        values = listOfComplexValues.get(complexValueIndex).getValue();
+        // skip 'complexTypeProperty' creation, because already existing
+      }
+    } else {
+      ComplexValue complexValue = (ComplexValue) complexValueBuffer.get(bufferKey);
+      if (complexValue == null) {
+        complexValue = new ComplexValue();
+        complexValueBuffer.put(bufferKey, complexValue);
+        complexTypeProperty = new Property(
+            attribute.getStructuredType().getExternalFQN().getFullQualifiedNameAsString(),
+            attribute.getExternalName(), ValueType.COMPLEX, complexValue);
+      }
+      values = complexValue.getValue();
+    }
+    if (complexTypeProperty != null) {
+      properties.add(complexTypeProperty);
     }
+    return values;
   }
 
-}
\ No newline at end of file
+}
@@ -193,6 +193,24 @@ abstract class AbstractQueryBuilder {
    */
   protected final Path<?> convertToCriteriaAliasPath(final From<?, ?> from, final JPASelector jpaPath,
       final String aliasPrefix) {
+    final Path<?> p = convertToCriteriaPath(from, jpaPath);
+    if (p != null) {
+      if (aliasPrefix == null) {
+        p.alias(jpaPath.getAlias());
+      } else {
+        p.alias(aliasPrefix.concat(jpaPath.getAlias()));
+      }
+    }
+
+    return p;
+  }
+
+  /**
+   *
+   * @return The path without alias, usable for conditions.
+   * @see #convertToCriteriaAliasPath(From, JPASelector, String)
+   */
+  protected final Path<?> convertToCriteriaPath(final From<?, ?> from, final JPASelector jpaPath) {
     if (JPAAssociationPath.class.isInstance(jpaPath)) {
       throw new IllegalStateException("Handling of joins for associations must be happen outside this method");
     }
@@ -202,15 +220,6 @@ abstract class AbstractQueryBuilder {
       // single @Embedded -> must create a JOIN
       validateCorrectAttributeOverride(from, p, jpaPathElement);
     }
-
-    if (p != null) {
-      if (aliasPrefix == null) {
-        p.alias(jpaPath.getAlias());
-      } else {
-        p.alias(aliasPrefix.concat(jpaPath.getAlias()));
-      }
-    }
-
     return p;
   }
 
@@ -0,0 +1,90 @@
+package org.apache.olingo.jpa.processor.core.query;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.olingo.commons.api.edm.EdmEntityType;
+
+/**
+ * Cache for the dynamic (not part of the service metadata) entity types describing the result of an $apply request.
+ * The types depend only on the <i>shape</i> of the result (entity type, grouping properties and the names and types
+ * of the aggregated values), so all requests with the same shape are serialized using the same type. Facets derived
+ * from the data (scale, nullability) are not part of the shape; a cached type is replaced by a type with widened
+ * facets, if the data of a request doesn't fit.
+ * <p>
+ * The cache is registered as global dependency, so it lives as long as the service meta model. The number of
+ * cached types is limited, the least recently used type is removed if the limit is reached.
+ *
+ * @see EntityAggregationQueryBuilder
+ */
+public final class AggregationTypeCache {
+
+  public static final int DEFAULT_MAX_ENTRIES = 500;
+
+  private final Map<String, EdmEntityType> types;
+
+  public AggregationTypeCache() {
+    this(DEFAULT_MAX_ENTRIES);
+  }
+
+  /**
+   *
+   * @param maxEntries The maximum number of types to cache; a value &lt; 1 disables the caching.
+   */
+  public AggregationTypeCache(final int maxEntries) {
+    this.types = new LinkedHashMap<String, EdmEntityType>(64, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<String, EdmEntityType> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  EdmEntityType get(final String shapeKey) {
+    synchronized (types) {
+      return types.get(shapeKey);
+    }
+  }
+
+  /**
+   * Add the type for the shape or replace the type already cached for the shape.
+   */
+  void put(final String shapeKey, final EdmEntityType type) {
+    synchronized (types) {
+      types.put(shapeKey, type);
+    }
+  }
+
+  /**
+   *
+   * @return A snapshot of the cached types, the least recently used first.
+   */
+  List<EdmEntityType> getTypes() {
+    synchronized (types) {
+      return new ArrayList<EdmEntityType>(types.values());
+    }
+  }
+
+  /**
+   *
+   * @return The number of cached types.
+   */
+  public int size() {
+    synchronized (types) {
+      return types.size();
+    }
+  }
+
+  /**
+   * Remove all cached types.
+   */
+  public void clear() {
+    synchronized (types) {
+      types.clear();
+    }
+  }
+}
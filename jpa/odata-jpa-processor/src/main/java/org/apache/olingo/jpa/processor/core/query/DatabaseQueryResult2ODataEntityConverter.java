@@ -1,8 +1,10 @@
 package org.apache.olingo.jpa.processor.core.query;
 
+import java.net.URI;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -10,14 +12,16 @@ import java.util.Map.Entry;
 import java.util.logging.Level;
 
 import javax.persistence.Tuple;
-import javax.persistence.TupleElement;
 
 import org.apache.olingo.commons.api.Constants;
 import org.apache.olingo.commons.api.data.ComplexValue;
 import org.apache.olingo.commons.api.data.Entity;
 import org.apache.olingo.commons.api.data.EntityCollection;
+import org.apache.olingo.commons.api.data.EntityIterator;
 import org.apache.olingo.commons.api.data.Link;
+import org.apache.olingo.commons.api.data.Operation;
 import org.apache.olingo.commons.api.data.Property;
+import org.apache.olingo.commons.api.ex.ODataRuntimeException;
 import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPAAssociationPath;
 import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPAAttribute;
 import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPAElement;
@@ -29,6 +33,7 @@ import org.apache.olingo.jpa.metadata.core.edm.mapper.impl.IntermediateServiceDo
 import org.apache.olingo.jpa.processor.core.exception.ODataJPAConversionException;
 import org.apache.olingo.jpa.processor.core.query.result.AbstractEntityQueryResult;
 import org.apache.olingo.jpa.processor.core.query.result.ExpandQueryEntityResult;
+import org.apache.olingo.jpa.processor.core.query.result.NavigationKey;
 import org.apache.olingo.jpa.processor.core.query.result.QueryElementCollectionResult;
 import org.apache.olingo.jpa.processor.core.query.result.QueryEntityResult;
 import org.apache.olingo.server.api.ODataApplicationException;
@@ -54,6 +59,53 @@ public class DatabaseQueryResult2ODataEntityConverter extends AbstractEntityConv
     return odataEntityCollection;
   }
 
+  /**
+   * Same as {@link #convertDBTuple2OData(QueryEntityResult)}, but the conversion of a row into an entity is delayed
+   * until the entity is requested from the iterator. So the complete entity collection is never materialized in
+   * memory while serialization. Only the first entity is converted immediately, so a conversion problem of the first
+   * entity is reported before the response is written. A conversion problem of a following entity will throw an
+   * {@link ODataRuntimeException} while serialization.
+   *
+   * @return The iterator usable only once (for serialization).
+   */
+  public EntityIterator convertDBTuple2ODataStreamed(final QueryEntityResult jpaQueryResult)
+      throws ODataJPAModelException, ODataJPAConversionException {
+    final Iterator<Tuple> rows = jpaQueryResult.iterateQueryResult();
+    final Entity firstEntity = rows.hasNext() ? convertTuple2ODataEntity(rows.next(), jpaQueryResult) : null;
+    return new EntityIterator() {
+      private Entity prefetched = firstEntity;
+
+      @Override
+      public boolean hasNext() {
+        return prefetched != null || rows.hasNext();
+      }
+
+      @Override
+      public Entity next() {
+        if (prefetched != null) {
+          final Entity entity = prefetched;
+          prefetched = null;
+          return entity;
+        }
+        try {
+          return convertTuple2ODataEntity(rows.next(), jpaQueryResult);
+        } catch (ODataJPAModelException | ODataJPAConversionException e) {
+          throw new ODataRuntimeException(e);
+        }
+      }
+
+      @Override
+      public List<Operation> getOperations() {
+        return Collections.emptyList();
+      }
+
+      @Override
+      public URI getDeltaLink() {
+        return null;
+      }
+    };
+  }
+
   @SuppressWarnings("null")
   private String determineContentType(final JPAEntityType jpaEntity, final Tuple row) throws ODataJPAModelException {
     if (jpaEntity.getContentType() != null && !jpaEntity.getContentType().isEmpty()) {
@@ -102,15 +154,14 @@ public class DatabaseQueryResult2ODataEntityConverter extends AbstractEntityConv
     }
 
     final List<Property> properties = odataEntity.getProperties();
-    // TODO store @Version to fill ETag Header
-    for (final TupleElement<?> element : row.getElements()) {
-      convertJPAValue2ODataAttribute(row.get(element.getAlias()), element.getAlias(), "",
-          jpaEntityType, complexValueBuffer, 0, properties);
-    }
+    final TupleConversionPlan plan = getConversionPlan(jpaEntityType, jpaQueryResult, row);
+    convertTuple2ODataProperties(plan, row, complexValueBuffer, 0, properties);
+    odataEntity.setETag(determineETag(plan, row));
 
     createElementCollections(odataEntity, row, jpaQueryResult);
 
-    odataEntity.setId(createId(odataEntity, jpaEntityType, false));
+    // the target of an expand may be shared by many source entities
+    odataEntity.setId(createId(odataEntity, jpaEntityType, false, jpaQueryResult instanceof ExpandQueryEntityResult));
 
     // expands for (direct) relationship attributes
     for (final JPAAssociationPath association : jpaEntityType.getAssociationPathList()) {
@@ -221,7 +272,7 @@ public class DatabaseQueryResult2ODataEntityConverter extends AbstractEntityConv
       final ExpandQueryEntityResult jpaExpandResult)
           throws ODataJPAModelException, ODataJPAConversionException {
 
-    final String owningEntityKey = jpaExpandResult.getNavigationKeyBuilder().buildKeyForNavigationOwningRow(
+    final NavigationKey owningEntityKey = jpaExpandResult.getNavigationKeyBuilder().buildKeyForNavigationOwningRow(
         owningEntityRow);
     final EntityCollection odataEntityCollection = new EntityCollection();
     final List<Tuple> subResult = jpaExpandResult.getAssociationResult(owningEntityKey);
@@ -248,7 +299,7 @@ public class DatabaseQueryResult2ODataEntityConverter extends AbstractEntityConv
         .getElementCollections();
     for (final Entry<JPAAttribute<?>, QueryElementCollectionResult> entry : elementCollections.entrySet()) {
 
-      final String key = entry.getValue().getNavigationKeyBuilder().buildKeyForNavigationOwningRow(owningEntityRow);
+      final NavigationKey key = entry.getValue().getNavigationKeyBuilder().buildKeyForNavigationOwningRow(owningEntityRow);
 
       final Map<String, Object> complexValueBuffer = new HashMap<String, Object>();
       int index = -1;
@@ -258,24 +309,9 @@ public class DatabaseQueryResult2ODataEntityConverter extends AbstractEntityConv
       }
       for (final Tuple row : tuples) {
         index++;
-        for (final TupleElement<?> element : row.getElements()) {
-          /* final Property property = */ convertTupleValue2ODataAttribute(row.get(element.getAlias()),
-              element.getAlias(), "", jpaQueryResult.getEntityType(), complexValueBuffer, index,
-              entityODataTarget.getProperties());
-        }
-
+        convertTuple2ODataProperties(getConversionPlan(jpaQueryResult.getEntityType(), entry.getValue(), row), row,
+            complexValueBuffer, index, entityODataTarget.getProperties());
       }
     }
   }
-
-  private final Property convertTupleValue2ODataAttribute(final Object value, final String externalName,
-      final String prefix,
-      final JPAStructuredType jpaStructuredType, final Map<String, Object> complexValueBuffer,
-      final int complexValueIndex,
-      final List<Property> properties) throws ODataJPAModelException, ODataJPAConversionException {
-    // TODO force as single value conversion (not complete collection attribute)... but maybe affecting a collection
-    // property/attribute
-    return convertJPAValue2ODataAttribute(value, externalName, prefix, jpaStructuredType, complexValueBuffer,
-        complexValueIndex, properties);
-  }
 }
@@ -3,7 +3,7 @@ package org.apache.olingo.jpa.processor.core.query;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.persistence.EntityManager;
 import javax.persistence.Tuple;
@@ -12,7 +12,9 @@ import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Expression;
 import javax.persistence.criteria.From;
+import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
 import javax.persistence.criteria.Subquery;
 
 import org.apache.olingo.commons.api.data.ContextURL;
@@ -20,20 +22,27 @@ import org.apache.olingo.commons.api.data.Entity;
 import org.apache.olingo.commons.api.data.EntityCollection;
 import org.apache.olingo.commons.api.data.Property;
 import org.apache.olingo.commons.api.data.ValueType;
+import org.apache.olingo.commons.api.edm.Edm;
 import org.apache.olingo.commons.api.edm.EdmEntityType;
 import org.apache.olingo.commons.api.edm.EdmPrimitiveTypeKind;
+import org.apache.olingo.commons.api.edm.EdmProperty;
 import org.apache.olingo.commons.api.edm.FullQualifiedName;
+import org.apache.olingo.commons.api.edm.constants.EdmTypeKind;
 import org.apache.olingo.commons.api.edm.provider.CsdlEntityType;
 import org.apache.olingo.commons.api.edm.provider.CsdlProperty;
 import org.apache.olingo.commons.api.format.ContentType;
 import org.apache.olingo.commons.api.http.HttpStatusCode;
 import org.apache.olingo.commons.core.edm.EdmEntityTypeImpl;
 import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPAAssociationAttribute;
+import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPAAssociationPath;
 import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPAEntityType;
+import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPAMemberAttribute;
+import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPASelector;
 import org.apache.olingo.jpa.metadata.core.edm.mapper.exception.ODataJPAModelException;
 import org.apache.olingo.jpa.metadata.core.edm.mapper.impl.TypeMapping;
 import org.apache.olingo.jpa.processor.JPAODataRequestContext;
 import org.apache.olingo.jpa.processor.core.api.JPAODataDatabaseProcessor;
+import org.apache.olingo.jpa.processor.core.exception.ODataJPAConversionException;
 import org.apache.olingo.jpa.processor.core.exception.ODataJPAQueryException;
 import org.apache.olingo.jpa.processor.core.filter.JPAEntityFilterProcessor;
 import org.apache.olingo.jpa.processor.transformation.impl.ODataResponseContent;
@@ -44,61 +53,124 @@ import org.apache.olingo.server.api.serializer.ODataSerializer;
 import org.apache.olingo.server.api.serializer.SerializerException;
 import org.apache.olingo.server.api.serializer.SerializerResult;
 import org.apache.olingo.server.api.uri.UriInfoResource;
+import org.apache.olingo.server.api.uri.UriResource;
+import org.apache.olingo.server.api.uri.UriResourcePrimitiveProperty;
 import org.apache.olingo.server.api.uri.queryoption.ApplyItem;
 import org.apache.olingo.server.api.uri.queryoption.ApplyItem.Kind;
 import org.apache.olingo.server.api.uri.queryoption.ApplyOption;
 import org.apache.olingo.server.api.uri.queryoption.apply.Aggregate;
 import org.apache.olingo.server.api.uri.queryoption.apply.AggregateExpression;
+import org.apache.olingo.server.api.uri.queryoption.apply.AggregateExpression.StandardMethod;
+import org.apache.olingo.server.api.uri.queryoption.apply.GroupBy;
+import org.apache.olingo.server.api.uri.queryoption.apply.GroupByItem;
 import org.apache.olingo.server.api.uri.queryoption.expression.ExpressionVisitException;
 
+/**
+ * Query builder for $apply requests, supporting <i>aggregate(...)</i> and <i>groupby((...),aggregate(...))</i>. The
+ * transformations are translated into a single GROUP BY query, so the aggregation is done by the database.
+ */
 public class EntityAggregationQueryBuilder extends AbstractCriteriaQueryBuilder<CriteriaQuery<Tuple>, Tuple> {
 
+  /**
+   * A property of the queried entity used for grouping.
+   */
+  private static final class GroupingProperty {
+    private final EdmProperty edmProperty;
+    private final JPASelector selector;
+
+    private GroupingProperty(final EdmProperty edmProperty, final JPASelector selector) {
+      this.edmProperty = edmProperty;
+      this.selector = selector;
+    }
+  }
+
+  private static final AtomicInteger DYNAMIC_TYPE_COUNTER = new AtomicInteger(0);
+
   private final CriteriaQuery<Tuple> cq;
   private final Root<?> root;
-  private final List<AggregateExpression> aggregateExpressions;
+  private final List<GroupByItem> groupByItems = new ArrayList<>();
+  private final List<AggregateExpression> aggregateExpressions = new ArrayList<>();
+  private final ValueConverter converter = new ValueConverter();
 
   public EntityAggregationQueryBuilder(final JPAODataRequestContext context, final NavigationIfc uriInfo,
       final EntityManager em)
           throws ODataApplicationException, ODataJPAModelException {
     super(context, uriInfo, em);
-    aggregateExpressions = determineAggregateExpressions(uriInfo);
+    determineApplyTransformations(uriInfo);
     cq = getCriteriaBuilder().createTupleQuery();
     root = cq.from(getQueryStartType().getTypeClass());
     // now we are ready
     initializeQuery();
   }
 
-  private List<AggregateExpression> determineAggregateExpressions(final NavigationIfc uriInfo)
-      throws ODataApplicationException {
-    List<AggregateExpression> expressions = null;
+  private void determineApplyTransformations(final NavigationIfc uriInfo) throws ODataApplicationException {
+    boolean transformationFound = false;
     for (final UriInfoResource step : uriInfo.getNavigationSteps()) {
       final ApplyOption apply = step.getApplyOption();
       if (apply == null) {
         continue;
       }
       for (final ApplyItem item : apply.getApplyItems()) {
-        if (item.getKind() != Kind.AGGREGATE) {
+        if (transformationFound) {
           throw new ODataJPAQueryException(ODataJPAQueryException.MessageKeys.QUERY_PREPARATION_ERROR,
-              HttpStatusCode.NOT_IMPLEMENTED, "Only aggregate() calls are supported for $apply");
+              HttpStatusCode.NOT_IMPLEMENTED, "Found multiple transformations, only one aggregate() or groupby() is supported");
         }
-        if (expressions != null) {
+        transformationFound = true;
+        if (item.getKind() == Kind.AGGREGATE) {
+          takeAggregateExpressions((Aggregate) item);
+        } else if (item.getKind() == Kind.GROUP_BY) {
+          takeGroupBy((GroupBy) item);
+        } else {
           throw new ODataJPAQueryException(ODataJPAQueryException.MessageKeys.QUERY_PREPARATION_ERROR,
-              HttpStatusCode.NOT_IMPLEMENTED, "Found multiple aggregate() calls, only one is supported");
-        }
-        expressions = ((Aggregate) item).getExpressions();
-        for (final AggregateExpression aggExp : expressions) {
-          if (aggExp.getStandardMethod() == null) {
-            throw new ODataJPAQueryException(ODataJPAQueryException.MessageKeys.QUERY_PREPARATION_ERROR,
-                HttpStatusCode.NOT_IMPLEMENTED, "Only standard emthods are supported for aggegrate()");
-          }
+              HttpStatusCode.NOT_IMPLEMENTED, "Only aggregate() and groupby() calls are supported for $apply");
         }
       }
     }
+    if (!transformationFound) {
+      throw new ODataJPAQueryException(ODataJPAQueryException.MessageKeys.QUERY_PREPARATION_ERROR,
+          HttpStatusCode.BAD_REQUEST, "No aggregate() or groupby() call found");
+    }
+  }
+
+  private void takeGroupBy(final GroupBy groupBy) throws ODataApplicationException {
+    for (final GroupByItem item : groupBy.getGroupByItems()) {
+      if (item.isRollupAll() || (item.getRollup() != null && !item.getRollup().isEmpty())) {
+        throw new ODataJPAQueryException(ODataJPAQueryException.MessageKeys.QUERY_PREPARATION_ERROR,
+            HttpStatusCode.NOT_IMPLEMENTED, "rollup is not supported for groupby()");
+      }
+      final List<UriResource> path = item.getPath();
+      if (path == null || path.size() != 1 || !UriResourcePrimitiveProperty.class.isInstance(path.get(0))) {
+        throw new ODataJPAQueryException(ODataJPAQueryException.MessageKeys.QUERY_PREPARATION_ERROR,
+            HttpStatusCode.NOT_IMPLEMENTED, "Only simple properties of the entity are supported for groupby()");
+      }
+      groupByItems.add(item);
+    }
+    final ApplyOption nestedApply = groupBy.getApplyOption();
+    if (nestedApply == null) {
+      return;
+    }
+    for (final ApplyItem item : nestedApply.getApplyItems()) {
+      if (item.getKind() != Kind.AGGREGATE || !aggregateExpressions.isEmpty()) {
+        throw new ODataJPAQueryException(ODataJPAQueryException.MessageKeys.QUERY_PREPARATION_ERROR,
+            HttpStatusCode.NOT_IMPLEMENTED, "Only one aggregate() call is supported inside of groupby()");
+      }
+      takeAggregateExpressions((Aggregate) item);
+    }
+  }
+
+  private void takeAggregateExpressions(final Aggregate aggregate) throws ODataApplicationException {
+    final List<AggregateExpression> expressions = aggregate.getExpressions();
     if (expressions == null || expressions.isEmpty()) {
       throw new ODataJPAQueryException(ODataJPAQueryException.MessageKeys.QUERY_PREPARATION_ERROR,
-          HttpStatusCode.BAD_REQUEST, "No aggregate() call found");
+          HttpStatusCode.BAD_REQUEST, "No aggregate expression found");
+    }
+    for (final AggregateExpression aggExp : expressions) {
+      if (aggExp.getStandardMethod() == null) {
+        throw new ODataJPAQueryException(ODataJPAQueryException.MessageKeys.QUERY_PREPARATION_ERROR,
+            HttpStatusCode.NOT_IMPLEMENTED, "Only standard emthods are supported for aggegrate()");
+      }
     }
-    return expressions;
+    aggregateExpressions.addAll(expressions);
   }
 
   @Override
@@ -112,8 +184,23 @@ public class EntityAggregationQueryBuilder extends AbstractCriteriaQueryBuilder<
     return root;
   }
 
-  private Expression<?>[] createAggregationSelect() throws ODataApplicationException {
-    final List<Expression<? extends Number>> selects = new ArrayList<>(aggregateExpressions.size());
+  private List<GroupingProperty> resolveGroupingProperties() throws ODataApplicationException,
+  ODataJPAModelException {
+    final List<GroupingProperty> groupingProperties = new ArrayList<>(groupByItems.size());
+    for (final GroupByItem item : groupByItems) {
+      final EdmProperty edmProperty = ((UriResourcePrimitiveProperty) item.getPath().get(0)).getProperty();
+      final JPASelector selector = getQueryResultType().getPath(edmProperty.getName());
+      if (selector == null || JPAAssociationPath.class.isInstance(selector)) {
+        throw new ODataJPAQueryException(ODataJPAQueryException.MessageKeys.QUERY_PREPARATION_INVALID_VALUE,
+            HttpStatusCode.BAD_REQUEST, edmProperty.getName(), "groupby()");
+      }
+      groupingProperties.add(new GroupingProperty(edmProperty, selector));
+    }
+    return groupingProperties;
+  }
+
+  private List<Expression<?>> createAggregationSelect() throws ODataApplicationException {
+    final List<Expression<?>> selects = new ArrayList<>(aggregateExpressions.size());
     final JPAEntityType targetType = getQueryResultType();
     final FilterQueryBuilderContext filterContext = new FilterQueryBuilderContext(targetType, getQueryResultFrom());
     final JPAODataDatabaseProcessor dbProcessor = getContext().getDatabaseProcessor();
@@ -124,7 +211,7 @@ public class EntityAggregationQueryBuilder extends AbstractCriteriaQueryBuilder<
           aggExpressionDefinition.getExpression(), filterContext);
 
       try {
-        Expression<? extends Number> expressionFunction;
+        Expression<?> expressionFunction;
         final Expression<Number> filterExpression = filter.compile();
         switch (aggExpressionDefinition.getStandardMethod()) {
         case SUM:
@@ -139,23 +226,29 @@ public class EntityAggregationQueryBuilder extends AbstractCriteriaQueryBuilder<
         case AVERAGE:
           expressionFunction = getCriteriaBuilder().avg(filterExpression);
           break;
+        case COUNT_DISTINCT:
+          expressionFunction = getCriteriaBuilder().countDistinct(filterExpression);
+          break;
         default:
           throw new ODataJPAQueryException(ODataJPAQueryException.MessageKeys.QUERY_PREPARATION_ERROR,
               HttpStatusCode.NOT_IMPLEMENTED, "Standard method " + aggExpressionDefinition.getStandardMethod()
               + " is not supported for aggregate()");
         }
-        if (aggExpressionDefinition.getAlias() != null && !aggExpressionDefinition.getAlias().isEmpty()) {
-          expressionFunction.alias(aggExpressionDefinition.getAlias());
-        } else {
-          expressionFunction.alias(aggExpressionDefinition.getStandardMethod().name());
-        }
+        expressionFunction.alias(determineAlias(aggExpressionDefinition));
         selects.add(expressionFunction);
       } catch (final ExpressionVisitException e) {
         throw new ODataJPAQueryException(ODataJPAQueryException.MessageKeys.QUERY_PREPARATION_FILTER_ERROR,
             HttpStatusCode.BAD_REQUEST, e);
       }
     }
-    return selects.toArray(new Expression[selects.size()]);
+    return selects;
+  }
+
+  private static String determineAlias(final AggregateExpression aggExpressionDefinition) {
+    if (aggExpressionDefinition.getAlias() != null && !aggExpressionDefinition.getAlias().isEmpty()) {
+      return aggExpressionDefinition.getAlias();
+    }
+    return aggExpressionDefinition.getStandardMethod().name();
   }
 
   public final ODataResponseContent execute(final ContentType responseFormat) throws ODataApplicationException,
@@ -163,7 +256,20 @@ public class EntityAggregationQueryBuilder extends AbstractCriteriaQueryBuilder<
     final List<JPAAssociationAttribute> orderByNaviAttributes = extractOrderByNaviAttributes();
     /* final Map<String, From<?, ?>> resultsetAffectingTables = */ createFromClause(orderByNaviAttributes);
 
-    cq.multiselect(createAggregationSelect());
+    final List<GroupingProperty> groupingProperties = resolveGroupingProperties();
+    final List<Selection<?>> selects = new ArrayList<>(groupingProperties.size() + aggregateExpressions.size());
+    final List<Expression<?>> groupings = new ArrayList<>(groupingProperties.size());
+    for (final GroupingProperty groupingProperty : groupingProperties) {
+      final Path<?> path = convertToCriteriaPath(getQueryResultFrom(), groupingProperty.selector);
+      path.alias(groupingProperty.edmProperty.getName());
+      selects.add(path);
+      groupings.add(path);
+    }
+    selects.addAll(createAggregationSelect());
+    cq.multiselect(selects);
+    if (!groupings.isEmpty()) {
+      cq.groupBy(groupings);
+    }
 
     final javax.persistence.criteria.Expression<Boolean> whereClause = createWhere();
     if (whereClause != null) {
@@ -172,33 +278,38 @@ public class EntityAggregationQueryBuilder extends AbstractCriteriaQueryBuilder<
     final TypedQuery<Tuple> tq = getEntityManager().createQuery(cq);
 
     final List<Tuple> intermediateResult = tq.getResultList();
-    return transform(intermediateResult, responseFormat);
+    return transform(intermediateResult, groupingProperties, responseFormat);
   }
 
-  private ODataResponseContent transform(final List<Tuple> intermediateResult, final ContentType responseFormat)
-      throws SerializerException, ODataJPAModelException {
-    assert intermediateResult.size() == 1;
-    // build an entity collection with one element containing all the aggregated values
-
+  private ODataResponseContent transform(final List<Tuple> intermediateResult,
+      final List<GroupingProperty> groupingProperties, final ContentType responseFormat) throws SerializerException,
+  ODataJPAModelException, ODataJPAConversionException {
+    // build an entity collection with one element per group containing the grouping and the aggregated values
     final EntityCollection odataEntityCollection = new EntityCollection();
-    final Tuple row = intermediateResult.get(0);
-    final Entity odataEntity = new Entity();
-    final List<Property> properties = odataEntity.getProperties();
-
-    for (final TupleElement<?> element : row.getElements()) {
-      final Property p = new Property(null, element.getAlias());
-      final Object result = row.get(element.getAlias());
-      // if aggregation is working on an empty result set we got 'null' as result, but we want to give back at least a
-      // zero...
-      p.setValue(ValueType.PRIMITIVE, result != null ? result : BigDecimal.valueOf(0));
-      properties.add(p);
+    final int numberOfGroupings = groupingProperties.size();
+    for (final Tuple row : intermediateResult) {
+      final Entity odataEntity = new Entity();
+      final List<Property> properties = odataEntity.getProperties();
+      final List<TupleElement<?>> elements = row.getElements();
+      for (int i = 0; i < elements.size(); i++) {
+        final String alias = elements.get(i).getAlias();
+        final Object result = row.get(i);
+        if (i < numberOfGroupings) {
+          properties.add(convertGroupingValue(groupingProperties.get(i), alias, result));
+          continue;
+        }
+        final Property p = new Property(null, alias);
+        // if aggregation is working on an empty result set we got 'null' as result, but we want to give back at least
+        // a zero...
+        p.setValue(ValueType.PRIMITIVE, result != null || numberOfGroupings > 0 ? result : BigDecimal.valueOf(0));
+        properties.add(p);
+      }
+      odataEntityCollection.getEntities().add(odataEntity);
     }
-
-    odataEntityCollection.getEntities().add(odataEntity);
-    // create on demand type to get the pseudo entity serialized to client
+    // create on demand type to get the pseudo entities serialized to client
     final ODataSerializer serializer = getContext().getOdata().createSerializer(responseFormat);
 
-    final EdmEntityType edmType = createDynamicEdmType(odataEntity);
+    final EdmEntityType edmType = determineDynamicEdmType(groupingProperties, odataEntityCollection);
 
     final ContextURL contextUrl = ContextURL.with().type(edmType).build();
     final EntityCollectionSerializerOptions opts = EntityCollectionSerializerOptions.with().contextURL(contextUrl)
@@ -206,34 +317,156 @@ public class EntityAggregationQueryBuilder extends AbstractCriteriaQueryBuilder<
     final SerializerResult serializerResult = serializer.entityCollection(getContext().getServiceMetaData(), edmType,
         odataEntityCollection, opts);
     return new ODataResponseContent(ContentState.PRESENT, serializerResult.getContent());
-
   }
 
-  private EdmEntityType createDynamicEdmType(final Entity odataEntity) throws ODataJPAModelException {
-    final CsdlEntityType dT = createDynamicType(odataEntity);
-    final FullQualifiedName name = new FullQualifiedName(dT.getName());
-    return new EdmEntityTypeImpl(getContext().getServiceMetaData().getEdm(), name, dT);
+  private Property convertGroupingValue(final GroupingProperty groupingProperty, final String alias,
+      final Object jpaValue) throws ODataJPAModelException, ODataJPAConversionException {
+    final JPAMemberAttribute attribute = (JPAMemberAttribute) groupingProperty.selector.getLeaf();
+    final Object value = converter.convertJPA2ODataPrimitiveValue(attribute, jpaValue);
+    if (value instanceof Enum<?>) {
+      return new Property(null, alias, ValueType.ENUM, Integer.valueOf(((Enum<?>) value).ordinal()));
+    }
+    return new Property(null, alias, groupingProperty.edmProperty.getType().getKind() == EdmTypeKind.ENUM
+        ? ValueType.ENUM : ValueType.PRIMITIVE, value);
   }
 
-  private CsdlEntityType createDynamicType(final Entity odataEntity) throws ODataJPAModelException {
+  /**
+   * Take the type for the shape of the result from the {@link AggregationTypeCache} (if registered as dependency) or
+   * build a new one. The shape is given by the grouping properties and the name and type of the aggregated values; a
+   * cached type is only used if the scale and nullability of the aggregated values are fitting.
+   */
+  private EdmEntityType determineDynamicEdmType(final List<GroupingProperty> groupingProperties,
+      final EntityCollection odataEntityCollection) throws ODataJPAModelException {
     final CsdlEntityType csdlEntityType = new CsdlEntityType();
-    csdlEntityType.setName(UUID.randomUUID().toString() + "." + getQueryResultType().getExternalName() + "Aggregation");
-
-    for (final Property odataProperty : odataEntity.getProperties()) {
-      final CsdlProperty csdlProperty = new CsdlProperty();
-      csdlProperty.setName(odataProperty.getName());
-      final boolean valueIsNull = odataProperty.getValue() == null;
-      final EdmPrimitiveTypeKind kind = valueIsNull ? EdmPrimitiveTypeKind.Decimal : TypeMapping.convertToEdmSimpleType(
-          odataProperty.getValue().getClass());
-      csdlProperty.setType(kind.getFullQualifiedName());
-      csdlProperty.setScale(determineScale(odataProperty.getValue()));
-      // don't set precision to avoid trouble with serializer for small numbers (double)
-      csdlProperty.setNullable(valueIsNull);
-      csdlProperty.setCollection(false);
-
+    final StringBuilder shapeKey = new StringBuilder(getQueryResultType().getExternalFQN()
+        .getFullQualifiedNameAsString());
+    for (final GroupingProperty groupingProperty : groupingProperties) {
+      final CsdlProperty csdlProperty = createGroupingProperty(groupingProperty.edmProperty);
+      csdlEntityType.getProperties().add(csdlProperty);
+      shapeKey.append('\n').append(csdlProperty.getName());
+    }
+    final List<CsdlProperty> aggregationProperties = new ArrayList<>(aggregateExpressions.size());
+    for (int i = 0; i < aggregateExpressions.size(); i++) {
+      final AggregateExpression aggExpressionDefinition = aggregateExpressions.get(i);
+      final CsdlProperty csdlProperty = createAggregationProperty(determineAlias(aggExpressionDefinition),
+          aggExpressionDefinition.getStandardMethod(), groupingProperties.size() + i, odataEntityCollection);
       csdlEntityType.getProperties().add(csdlProperty);
+      aggregationProperties.add(csdlProperty);
+      shapeKey.append('\n').append(csdlProperty.getName()).append(':').append(csdlProperty.getType());
+    }
+
+    final AggregationTypeCache cache = getContext().getDependencyInjector().getDependencyValue(
+        AggregationTypeCache.class);
+    final String key = shapeKey.toString();
+    if (cache != null) {
+      final EdmEntityType cached = cache.get(key);
+      if (cached != null) {
+        if (isMatchingFacets(cached, aggregationProperties)) {
+          return cached;
+        }
+        // the new type must be valid also for the results of the previous requests
+        widenFacets(cached, aggregationProperties);
+      }
+    }
+    final FullQualifiedName name = createDynamicTypeName();
+    csdlEntityType.setName(name.getName());
+    final EdmEntityType edmType = new EdmEntityTypeImpl(getContext().getServiceMetaData().getEdm(), name,
+        csdlEntityType);
+    if (cache != null) {
+      cache.put(key, edmType);
+    }
+    return edmType;
+  }
+
+  private static boolean isMatchingFacets(final EdmEntityType cached, final List<CsdlProperty> aggregationProperties) {
+    for (final CsdlProperty csdlProperty : aggregationProperties) {
+      final EdmProperty cachedProperty = cached.getStructuralProperty(csdlProperty.getName());
+      if (csdlProperty.getScale() != null && (cachedProperty.getScale() == null || cachedProperty.getScale()
+          .intValue() < csdlProperty.getScale().intValue())) {
+        return false;
+      }
+      if (csdlProperty.isNullable() && !cachedProperty.isNullable()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static void widenFacets(final EdmEntityType cached, final List<CsdlProperty> aggregationProperties) {
+    for (final CsdlProperty csdlProperty : aggregationProperties) {
+      final EdmProperty cachedProperty = cached.getStructuralProperty(csdlProperty.getName());
+      if (cachedProperty.getScale() != null && (csdlProperty.getScale() == null || csdlProperty.getScale()
+          .intValue() < cachedProperty.getScale().intValue())) {
+        csdlProperty.setScale(cachedProperty.getScale());
+      }
+      csdlProperty.setNullable(csdlProperty.isNullable() || cachedProperty.isNullable());
+    }
+  }
+
+  /**
+   * The name must be unique for all dynamic types and must not hide a type of the service metadata.
+   */
+  private FullQualifiedName createDynamicTypeName() {
+    final Edm edm = getContext().getServiceMetaData().getEdm();
+    FullQualifiedName name;
+    do {
+      name = new FullQualifiedName(getQueryResultType().getExternalFQN().getNamespace(), getQueryResultType()
+          .getExternalName() + "Aggregation" + Integer.toString(DYNAMIC_TYPE_COUNTER.incrementAndGet()));
+    } while (edm.getEntityType(name) != null || edm.getComplexType(name) != null);
+    return name;
+  }
+
+  private CsdlProperty createGroupingProperty(final EdmProperty edmProperty) {
+    final CsdlProperty csdlProperty = new CsdlProperty();
+    csdlProperty.setName(edmProperty.getName());
+    csdlProperty.setType(edmProperty.getType().getFullQualifiedName());
+    csdlProperty.setPrecision(edmProperty.getPrecision());
+    csdlProperty.setScale(edmProperty.getScale());
+    csdlProperty.setMaxLength(edmProperty.getMaxLength());
+    csdlProperty.setNullable(edmProperty.isNullable());
+    csdlProperty.setCollection(false);
+    return csdlProperty;
+  }
+
+  /**
+   * The type of an aggregated value is determined by the values of all rows, because the database result type
+   * depends on the aggregation method and the database.
+   */
+  private CsdlProperty createAggregationProperty(final String name, final StandardMethod method,
+      final int columnIndex, final EntityCollection odataEntityCollection) throws ODataJPAModelException {
+    Class<?> valueType = null;
+    Integer scale = null;
+    boolean valueIsNull = false;
+    for (final Entity odataEntity : odataEntityCollection.getEntities()) {
+      final Object value = odataEntity.getProperties().get(columnIndex).getValue();
+      if (value == null) {
+        valueIsNull = true;
+        continue;
+      }
+      if (valueType == null) {
+        valueType = value.getClass();
+      }
+      final Integer valueScale = determineScale(value);
+      if (valueScale != null && (scale == null || scale.intValue() < valueScale.intValue())) {
+        scale = valueScale;
+      }
+    }
+    final CsdlProperty csdlProperty = new CsdlProperty();
+    csdlProperty.setName(name);
+    final EdmPrimitiveTypeKind kind;
+    if (method == StandardMethod.COUNT_DISTINCT) {
+      kind = EdmPrimitiveTypeKind.Int64;
+    } else if (valueType == null) {
+      kind = EdmPrimitiveTypeKind.Decimal;
+    } else {
+      kind = TypeMapping.convertToEdmSimpleType(valueType);
     }
-    return csdlEntityType;
+    csdlProperty.setType(kind.getFullQualifiedName());
+    csdlProperty.setScale(scale);
+    // don't set precision to avoid trouble with serializer for small numbers (double)
+    csdlProperty.setNullable(valueIsNull);
+    csdlProperty.setCollection(false);
+    return csdlProperty;
   }
 
   private Integer determineScale(final Object value) {
@@ -33,6 +33,7 @@ import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPAAssociationPath;
 import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPAAttribute;
 import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPAEntityType;
 import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPAMemberAttribute;
+import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPASelector;
 import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPAStructuredType;
 import org.apache.olingo.jpa.metadata.core.edm.mapper.exception.ODataJPAModelException;
 import org.apache.olingo.jpa.metadata.core.edm.mapper.impl.DynamicJPADescribedElement;
@@ -72,6 +73,7 @@ public class EntityConverter extends AbstractEntityConverter {
     private JPAAssociationAttribute currentRelationship = null;
     private Set<Object> processedEntities = new HashSet<>();
     private List<JPAAssociationAttribute> processedRelationships = Collections.emptyList();
+    private boolean withNavigationLinks = true;
 
     JPA2ODataProcessingContext createSubContext(final JPAAssociationAttribute workingRelationShip) {
       final JPA2ODataProcessingContext subContext = new JPA2ODataProcessingContext();
@@ -348,6 +350,9 @@ public class EntityConverter extends AbstractEntityConverter {
 
     // id of entity must be set before relationships are processed
     odataEntity.setId(createId(odataEntity, jpaType, false));
+    if (jpaType.hasEtag()) {
+      odataEntity.setETag(createETag(readAttributeValue(jpaType.getEtagAttributePath(), jpaEntity)));
+    }
 
     if (isBacklinkOfProcessedRelationship(processingContext)) {
       // suppress created odata entity in response, use navigation link as representation instead
@@ -386,6 +391,43 @@ public class EntityConverter extends AbstractEntityConverter {
     return convertJPA2ODataEntityInternal(jpaType, jpaEntity, new JPA2ODataProcessingContext());
   }
 
+  /**
+   * Same as {@link #convertJPA2ODataEntity(JPAEntityType, Object)}, but optional without the navigation links, to
+   * avoid the loading of the related entities if not needed (no $expand).
+   *
+   */
+  public Entity convertJPA2ODataEntity(final JPAEntityType jpaType, final Object jpaEntity,
+      final boolean withNavigationLinks) throws ODataJPAModelException, ODataJPAConversionException {
+    final JPA2ODataProcessingContext processingContext = new JPA2ODataProcessingContext();
+    processingContext.withNavigationLinks = withNavigationLinks;
+    return convertJPA2ODataEntityInternal(jpaType, jpaEntity, processingContext);
+  }
+
+  /**
+   *
+   * @return The ETag of an object managed by the {@link EntityManager entity manager} or <code>null</code> if the
+   * entity type has no ETag.
+   */
+  public String convertJPA2ODataETag(final JPAEntityType jpaType, final Object jpaEntity)
+      throws ODataJPAModelException {
+    if (!jpaType.hasEtag()) {
+      return null;
+    }
+    return createETag(readAttributeValue(jpaType.getEtagAttributePath(), jpaEntity));
+  }
+
+  private static Object readAttributeValue(final JPASelector path, final Object jpaEntity)
+      throws ODataJPAModelException {
+    Object value = jpaEntity;
+    for (final JPAAttribute<?> element : path.getPathElements()) {
+      if (value == null) {
+        return null;
+      }
+      value = element.getAttributeAccessor().getPropertyValue(value);
+    }
+    return value;
+  }
+
   /**
    *
    * @return TRUE if <i>processingContext.currentRelationship</i> is a relationship with the opposite direction
@@ -413,6 +455,10 @@ public class EntityConverter extends AbstractEntityConverter {
       final JPA2ODataProcessingContext processingContext)
           throws ODataJPAModelException, ODataJPAConversionException {
     final List<Link> entityExpandLinks = new LinkedList<Link>();
+    if (!processingContext.withNavigationLinks) {
+      // the associations are not loaded
+      return entityExpandLinks;
+    }
     for (final JPAAssociationAttribute relationship : jpaType.getAssociations()) {
       final JPA2ODataProcessingContext subContext = processingContext.createSubContext(relationship);
       final JPAAssociationPath assoziation = jpaType.getDeclaredAssociation(relationship.getExternalName());
@@ -1,14 +1,12 @@
 package org.apache.olingo.jpa.processor.core.query;
 
-import java.util.List;
-
 import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.From;
 import javax.persistence.criteria.Root;
 import javax.persistence.criteria.Subquery;
 
-import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPAAssociationAttribute;
 import org.apache.olingo.jpa.metadata.core.edm.mapper.exception.ODataJPAModelException;
 import org.apache.olingo.jpa.processor.JPAODataRequestContext;
 import org.apache.olingo.server.api.ODataApplicationException;
@@ -21,10 +19,10 @@ import org.apache.olingo.server.api.uri.queryoption.expression.ExpressionVisitEx
  * .../Organizations/$count
  * .../Organizations('3')/Roles/$count
  *
- * This is NOT covered:
+ * The inline count is also covered:
  * .../Organizations?$count=true
- * This example is wrong because the entity collection self is loaded, but the count added to response, so the
- * {@link EntityQueryBuilder} will handle that
+ * In that case the entity collection self is loaded by {@link EntityQueryBuilder}, using this builder to determine
+ * the total count added to response.
  * </pre>
  */
 public class EntityCountQueryBuilder extends AbstractCriteriaQueryBuilder<CriteriaQuery<Long>, Long> {
@@ -73,9 +71,18 @@ public class EntityCountQueryBuilder extends AbstractCriteriaQueryBuilder<Criter
    * @see EntityQueryBuilder#execute(boolean)
    */
   public final long execute() throws ODataApplicationException, ODataJPAModelException {
+    final Long count = createQuery().getSingleResult();
+    return count.longValue();
+  }
 
-    final List<JPAAssociationAttribute> orderByNaviAttributes = extractOrderByNaviAttributes();
-    /* final Map<String, From<?, ?>> resultsetAffectingTables = */ createFromClause(orderByNaviAttributes);
+  /**
+   * Build the count query completely, without executing it. The returned query is bound only to the entity manager
+   * of this builder, so it can be executed in another thread without touching the request context.
+   */
+  final TypedQuery<Long> createQuery() throws ODataApplicationException, ODataJPAModelException {
+
+    // no joins for $orderby navigation attributes, because the count ignores the ordering and the joins would
+    // multiply the counted rows
 
     // HANA does not work as expected on calculation views -> count only has the expected result if COUNT(*) or
     // COUNT(<with all distinct columns>) is used, but both is not possible with JPA 2.2
@@ -86,8 +93,7 @@ public class EntityCountQueryBuilder extends AbstractCriteriaQueryBuilder<Criter
     if (whereClause != null) {
       cq.where(whereClause);
     }
-    final Long count = getEntityManager().createQuery(cq).getSingleResult();
-    return count.longValue();
+    return getEntityManager().createQuery(cq);
   }
 
 }
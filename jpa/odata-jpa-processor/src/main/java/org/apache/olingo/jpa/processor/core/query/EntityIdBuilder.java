@@ -0,0 +1,155 @@
+package org.apache.olingo.jpa.processor.core.query;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.data.Property;
+import org.apache.olingo.commons.api.edm.EdmEntitySet;
+import org.apache.olingo.commons.api.edm.EdmEntityType;
+import org.apache.olingo.commons.api.edm.EdmKeyPropertyRef;
+import org.apache.olingo.commons.api.edm.EdmPrimitiveType;
+import org.apache.olingo.commons.api.edm.EdmPrimitiveTypeException;
+import org.apache.olingo.commons.api.edm.EdmProperty;
+import org.apache.olingo.commons.core.Encoder;
+import org.apache.olingo.server.api.serializer.SerializerException;
+
+/**
+ * Builder for the canonical URL (<code>EntitySet(key)</code>) used as id of the entities of one entity set. The
+ * same as {@link org.apache.olingo.server.api.uri.UriHelper#buildCanonicalURL(EdmEntitySet, Entity)
+ * UriHelper#buildCanonicalURL()}, but the lookup of the key properties and their facets is done only once per entity
+ * set. The ids of recently used keys can be cached, for entities expected to occur repeatedly in a result.
+ */
+final class EntityIdBuilder {
+
+  private static final int MAX_CACHED_IDS = 256;
+
+  private final String entitySetName;
+  private final KeyFormatter[] keyFormatters;
+  // created on first use of the cache
+  private Map<List<Object>, URI> recentIds = null;
+
+  /**
+   *
+   * @param entitySet An entity set with an entity type having key properties.
+   */
+  EntityIdBuilder(final EdmEntitySet entitySet) {
+    this.entitySetName = entitySet.getName();
+    final EdmEntityType entityType = entitySet.getEntityType();
+    final List<String> keyNames = entityType.getKeyPredicateNames();
+    this.keyFormatters = new KeyFormatter[keyNames.size()];
+    for (int i = 0; i < keyFormatters.length; i++) {
+      keyFormatters[i] = new KeyFormatter(keyNames.get(i), entityType.getKeyPropertyRef(keyNames.get(i)),
+          keyFormatters.length > 1);
+    }
+  }
+
+  /**
+   *
+   * @return The id build from the key property values of the entity.
+   */
+  URI buildId(final Entity entity) throws SerializerException, URISyntaxException {
+    return buildId(findKeyValues(entity));
+  }
+
+  /**
+   * Same as {@link #buildId(Entity)}, but the id is taken from the cache of recently used keys if possible.
+   */
+  URI buildCachedId(final Entity entity) throws SerializerException, URISyntaxException {
+    final Object[] keyValues = findKeyValues(entity);
+    if (recentIds == null) {
+      recentIds = new LinkedHashMap<List<Object>, URI>(64, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<List<Object>, URI> eldest) {
+          return size() > MAX_CACHED_IDS;
+        }
+      };
+    }
+    final List<Object> key = Arrays.asList(keyValues);
+    URI id = recentIds.get(key);
+    if (id == null) {
+      id = buildId(keyValues);
+      recentIds.put(key, id);
+    }
+    return id;
+  }
+
+  private Object[] findKeyValues(final Entity entity) throws SerializerException {
+    final Object[] keyValues = new Object[keyFormatters.length];
+    for (int i = 0; i < keyFormatters.length; i++) {
+      keyValues[i] = keyFormatters[i].findValue(entity);
+    }
+    return keyValues;
+  }
+
+  private URI buildId(final Object[] keyValues) throws SerializerException, URISyntaxException {
+    final StringBuilder buffer = new StringBuilder(entitySetName.length() + 16 * keyFormatters.length);
+    buffer.append(entitySetName).append('(');
+    for (int i = 0; i < keyFormatters.length; i++) {
+      if (i > 0) {
+        buffer.append(',');
+      }
+      keyFormatters[i].format(keyValues[i], buffer);
+    }
+    buffer.append(')');
+    return new URI(buffer.toString());
+  }
+
+  /**
+   * The formatting of one key property value with the facets of the key property.
+   */
+  private static final class KeyFormatter {
+    private final String keyName;
+    private final String[] path;
+    private final String prefix;
+    private final EdmProperty property;
+    private final EdmPrimitiveType type;
+
+    KeyFormatter(final String keyName, final EdmKeyPropertyRef keyPropertyRef, final boolean named) {
+      this.keyName = keyName;
+      // the name of a key in a complex type is the path
+      this.path = keyPropertyRef.getName().split("/");
+      this.prefix = named ? Encoder.encode(keyName) + "=" : "";
+      this.property = keyPropertyRef.getProperty();
+      this.type = property != null ? (EdmPrimitiveType) property.getType() : null;
+    }
+
+    Object findValue(final Entity entity) throws SerializerException {
+      Property current = entity.getProperty(path[0]);
+      for (int i = 1; i < path.length && current != null; i++) {
+        current = findProperty(path[i], current.asComplex().getValue());
+      }
+      if (current == null || type == null) {
+        throw new SerializerException("Key property not found: " + keyName,
+            SerializerException.MessageKeys.MISSING_PROPERTY, keyName);
+      }
+      return current.getValue();
+    }
+
+    private static Property findProperty(final String name, final List<Property> properties) {
+      for (final Property property : properties) {
+        if (name.equals(property.getName())) {
+          return property;
+        }
+      }
+      return null;
+    }
+
+    void format(final Object value, final StringBuilder buffer) throws SerializerException {
+      try {
+        buffer.append(prefix).append(Encoder.encode(type.toUriLiteral(type.valueToString(value, Boolean.valueOf(
+            property.isNullable()), property.getMaxLength(), property.getPrecision(), property.getScale(), Boolean
+            .valueOf(property.isUnicode())))));
+      } catch (final EdmPrimitiveTypeException e) {
+        throw new SerializerException("Wrong key value: " + keyName, e,
+            SerializerException.MessageKeys.WRONG_PROPERTY_VALUE, keyName, String.valueOf(value));
+      }
+    }
+  }
+}
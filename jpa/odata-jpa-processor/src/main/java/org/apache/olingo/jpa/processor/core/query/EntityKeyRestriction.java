@@ -0,0 +1,165 @@
+package org.apache.olingo.jpa.processor.core.query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+
+import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPASelector;
+import org.apache.olingo.jpa.processor.core.query.result.NavigationKeyBuilder;
+
+/**
+ * Restriction of a dependent query ($expand, @ElementCollection) to a set of already loaded owning entities. The
+ * restriction is defined by the key attributes of the owning entity and the (distinct) key values of all owning rows.
+ * The owning entity is identified by the {@link NavigationKeyBuilder#getNavigationLevel() navigation level}, so the
+ * restriction can be applied to every query sharing the same navigation path prefix.
+ * <p>
+ * Large key sets can be {@link #split(int) split} into batches to avoid huge IN lists rejected by some databases.
+ */
+final class EntityKeyRestriction {
+
+  private final int navigationLevel;
+  private final List<JPASelector> keyPaths;
+  private final List<List<Object>> keyValues;
+
+  private EntityKeyRestriction(final int navigationLevel, final List<JPASelector> keyPaths,
+      final List<List<Object>> keyValues) {
+    this.navigationLevel = navigationLevel;
+    this.keyPaths = keyPaths;
+    this.keyValues = keyValues;
+  }
+
+  /**
+   * Collect the distinct keys of all given rows. Rows having a <code>null</code> value in one of the key columns are
+   * ignored, because they cannot be matched by any condition.
+   *
+   * @param owningKeyBuilder The key builder describing the entity represented by the <i>owningRows</i>.
+   * @param owningRows The rows having the key columns selected with the (not prefixed) key alias.
+   */
+  static EntityKeyRestriction collect(final NavigationKeyBuilder owningKeyBuilder, final List<Tuple> owningRows) {
+    final List<JPASelector> keyPaths = owningKeyBuilder.getNavigationKeyPaths();
+    final Set<List<Object>> distinctKeys = new LinkedHashSet<>();
+    for (final Tuple row : owningRows) {
+      final Object[] values = new Object[keyPaths.size()];
+      boolean complete = true;
+      for (int i = 0; i < values.length; i++) {
+        values[i] = row.get(keyPaths.get(i).getAlias());
+        if (values[i] == null) {
+          complete = false;
+          break;
+        }
+      }
+      if (complete) {
+        distinctKeys.add(Arrays.asList(values));
+      }
+    }
+    return new EntityKeyRestriction(owningKeyBuilder.getNavigationLevel(), keyPaths, new ArrayList<>(
+        distinctKeys));
+  }
+
+  /**
+   *
+   * @return The level of the navigation key builder the key paths are belonging to.
+   */
+  int getNavigationLevel() {
+    return navigationLevel;
+  }
+
+  List<JPASelector> getKeyPaths() {
+    return keyPaths;
+  }
+
+  boolean isEmpty() {
+    return keyValues.isEmpty();
+  }
+
+  int size() {
+    return keyValues.size();
+  }
+
+  /**
+   *
+   * @param batchSize The maximum number of keys per restriction, values &lt; 1 will disable splitting.
+   * @return The list of restrictions each having not more than <i>batchSize</i> keys.
+   */
+  List<EntityKeyRestriction> split(final int batchSize) {
+    if (batchSize < 1 || keyValues.size() <= batchSize) {
+      return Collections.singletonList(this);
+    }
+    final List<EntityKeyRestriction> batches = new ArrayList<>(keyValues.size() / batchSize + 1);
+    for (int start = 0; start < keyValues.size(); start += batchSize) {
+      final int end = Math.min(start + batchSize, keyValues.size());
+      batches.add(new EntityKeyRestriction(navigationLevel, keyPaths, keyValues.subList(start, end)));
+    }
+    return batches;
+  }
+
+  /**
+   * Build the WHERE condition. The JPA Criteria API does not support row value expressions like
+   * <code>(a, b) IN ((1, 2), (3, 4))</code>, so composite keys are handled as follows:
+   * <ul>
+   * <li>Key columns having the same value for all keys are compared once using '='</li>
+   * <li>If only one key column has different values an IN condition is used for that column</li>
+   * <li>Otherwise an OR of AND conditions is used for the remaining key columns</li>
+   * </ul>
+   *
+   * @param keyColumns The paths for the {@link #getKeyPaths() key paths} in the same order.
+   */
+  Expression<Boolean> buildCondition(final CriteriaBuilder cb, final List<Path<?>> keyColumns) {
+    if (keyColumns.size() != keyPaths.size()) {
+      throw new IllegalArgumentException("Number of key columns does not match the key definition");
+    }
+    if (keyValues.isEmpty()) {
+      return cb.disjunction();
+    }
+    final List<Predicate> conditions = new ArrayList<>(keyColumns.size());
+    final List<Integer> varyingColumns = new ArrayList<>(keyColumns.size());
+    for (int column = 0; column < keyColumns.size(); column++) {
+      if (isConstantColumn(column)) {
+        conditions.add(cb.equal(keyColumns.get(column), keyValues.get(0).get(column)));
+      } else {
+        varyingColumns.add(Integer.valueOf(column));
+      }
+    }
+    if (varyingColumns.size() == 1) {
+      final int column = varyingColumns.get(0).intValue();
+      final List<Object> values = new ArrayList<>(keyValues.size());
+      for (final List<Object> key : keyValues) {
+        values.add(key.get(column));
+      }
+      conditions.add(keyColumns.get(column).in(values));
+    } else if (!varyingColumns.isEmpty()) {
+      final List<Predicate> alternatives = new ArrayList<>(keyValues.size());
+      for (final List<Object> key : keyValues) {
+        final List<Predicate> keyConditions = new ArrayList<>(varyingColumns.size());
+        for (final Integer column : varyingColumns) {
+          keyConditions.add(cb.equal(keyColumns.get(column.intValue()), key.get(column.intValue())));
+        }
+        alternatives.add(cb.and(keyConditions.toArray(new Predicate[keyConditions.size()])));
+      }
+      conditions.add(cb.or(alternatives.toArray(new Predicate[alternatives.size()])));
+    }
+    if (conditions.size() == 1) {
+      return conditions.get(0);
+    }
+    return cb.and(conditions.toArray(new Predicate[conditions.size()]));
+  }
+
+  private boolean isConstantColumn(final int column) {
+    final Object first = keyValues.get(0).get(column);
+    for (final List<Object> key : keyValues) {
+      if (!first.equals(key.get(column))) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
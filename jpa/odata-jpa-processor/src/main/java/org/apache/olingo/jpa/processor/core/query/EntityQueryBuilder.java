@@ -3,12 +3,13 @@ package org.apache.olingo.jpa.processor.core.query;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Executor;
 import java.util.logging.Level;
-import java.util.stream.Collectors;
 
 import javax.persistence.EntityManager;
 import javax.persistence.Tuple;
@@ -16,8 +17,10 @@ import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.From;
+import javax.persistence.criteria.JoinType;
 import javax.persistence.criteria.Order;
 import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 import javax.persistence.criteria.Selection;
 import javax.persistence.criteria.Subquery;
@@ -30,12 +33,17 @@ import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPAAssociationAttribut
 import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPAAssociationPath;
 import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPAAttribute;
 import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPAEntityType;
+import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPAMemberAttribute;
 import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPASelector;
 import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPAStructuredType;
 import org.apache.olingo.jpa.metadata.core.edm.mapper.exception.ODataJPAModelException;
 import org.apache.olingo.jpa.processor.JPAODataRequestContext;
+import org.apache.olingo.jpa.processor.core.api.JPAODataDatabaseProcessor;
 import org.apache.olingo.jpa.processor.core.exception.ODataJPAQueryException;
+import org.apache.olingo.jpa.processor.core.mapping.JPAAdapter;
 import org.apache.olingo.jpa.processor.core.query.result.ExpandQueryEntityResult;
+import org.apache.olingo.jpa.processor.core.query.result.NavigationKey;
+import org.apache.olingo.jpa.processor.core.query.result.NavigationKeyBuilder;
 import org.apache.olingo.jpa.processor.core.query.result.QueryElementCollectionResult;
 import org.apache.olingo.jpa.processor.core.query.result.QueryEntityResult;
 import org.apache.olingo.jpa.processor.transformation.Transformation;
@@ -47,9 +55,12 @@ import org.apache.olingo.server.api.uri.UriResource;
 import org.apache.olingo.server.api.uri.UriResourceComplexProperty;
 import org.apache.olingo.server.api.uri.UriResourceNavigation;
 import org.apache.olingo.server.api.uri.UriResourcePrimitiveProperty;
+import org.apache.olingo.server.api.uri.UriResourceProperty;
+import org.apache.olingo.server.api.uri.queryoption.CountOption;
 import org.apache.olingo.server.api.uri.queryoption.OrderByItem;
 import org.apache.olingo.server.api.uri.queryoption.OrderByOption;
 import org.apache.olingo.server.api.uri.queryoption.SelectOption;
+import org.apache.olingo.server.api.uri.queryoption.SkipTokenOption;
 import org.apache.olingo.server.api.uri.queryoption.expression.Expression;
 import org.apache.olingo.server.api.uri.queryoption.expression.Member;
 
@@ -57,10 +68,53 @@ public class EntityQueryBuilder extends AbstractCriteriaQueryBuilder<CriteriaQue
 
   protected static final String SELECT_ITEM_SEPARATOR = ",";
   protected static final String SELECT_ALL = "*";
+  private static final String KEYSET_ALIAS_PREFIX = "skiptoken";
+  private static final String EXPAND_JOIN_ALIAS_PREFIX = "expandjoin";
+  /**
+   * Prefix for the alias of the version attribute, selected only for the ETag (not part of the requested selection).
+   */
+  static final String ETAG_ALIAS_PREFIX = "etag_";
+
+  /**
+   * An attribute of the (extended) ordering used for keyset based server driven paging.
+   */
+  private static class KeysetOrderItem {
+    private final JPASelector selector;
+    private final boolean descending;
+    private final boolean implicit;
+
+    KeysetOrderItem(final JPASelector selector, final boolean descending, final boolean implicit) {
+      this.selector = selector;
+      this.descending = descending;
+      this.implicit = implicit;
+    }
+  }
+
+  /**
+   * A to-one $expand loaded via LEFT OUTER JOIN in the query of the owning entities.
+   */
+  private static class JoinedExpand {
+    private final JPAAssociationPath association;
+    private final JPAEntityType targetType;
+    private final List<JPASelector> selections;
+    private final String aliasPrefix;
+
+    JoinedExpand(final JPAAssociationPath association, final JPAEntityType targetType,
+        final List<JPASelector> selections, final String aliasPrefix) {
+      this.association = association;
+      this.targetType = targetType;
+      this.selections = selections;
+      this.aliasPrefix = aliasPrefix;
+    }
+  }
 
   private final ServiceMetadata serviceMetadata;
   private final CriteriaQuery<Tuple> cq;
   private final Root<?> startFrom;
+  private int maxPageSize = 0;
+  private boolean streamingResult = false;
+  private SkipToken skipToken = null;
+  private List<KeysetOrderItem> keysetOrdering = null;
 
   /**
    *
@@ -94,6 +148,29 @@ public class EntityQueryBuilder extends AbstractCriteriaQueryBuilder<CriteriaQue
     return cq.subquery(subqueryResultType);
   }
 
+  /**
+   * Activate server driven paging for the result of this query. If the result contains more entities than the page
+   * size, only the first page is returned and the result will contain a {@link QueryEntityResult#getNextSkipToken()
+   * $skiptoken} to select the next page. The pages are selected via the ordering values of the last entity of the
+   * previous page (keyset), so a deep page is as fast as the first one.
+   *
+   * @param maxPageSize The maximum number of entities in the result; a value &lt; 1 disables server driven paging.
+   */
+  public final void setMaxPageSize(final int maxPageSize) {
+    this.maxPageSize = maxPageSize;
+  }
+
+  /**
+   * Read the result from a database cursor while the result is consumed, instead of reading all rows into memory.
+   * That is possible only for a result without $expand, without @ElementCollection attributes and without server
+   * driven paging (a page is limited anyway); otherwise the result is read completely.
+   *
+   * @see QueryEntityResult#isStreamed()
+   */
+  public final void setStreamingResult(final boolean streamingResult) {
+    this.streamingResult = streamingResult;
+  }
+
   @SuppressWarnings("unchecked")
   @Override
   public From<?, ?> getQueryStartFrom() {
@@ -108,12 +185,50 @@ public class EntityQueryBuilder extends AbstractCriteriaQueryBuilder<CriteriaQue
   public final <O> O execute(final boolean processExpandOption,
       final Transformation<QueryEntityResult, O> transformer) throws ODataApplicationException,
   ODataJPAModelException, SerializerException {
-    final QueryEntityResult queryResult = executeInternal(processExpandOption, null, null);
-    return transformer.transform(queryResult);
+    final CountOption countOption = getNavigation().getLastStep().getCountOption();
+    final boolean withInlineCount = countOption != null && countOption.getValue();
+    final InlineCount concurrentCount = withInlineCount ? startConcurrentInlineCount() : null;
+    try {
+      final Long sequentialCount = withInlineCount && concurrentCount == null ? Long.valueOf(
+          new EntityCountQueryBuilder(getContext(), getNavigation(), getEntityManager()).execute()) : null;
+      final QueryEntityResult queryResult = executeInternal(processExpandOption, null);
+      if (withInlineCount) {
+        queryResult.setCount(concurrentCount != null ? concurrentCount.get() : sequentialCount);
+      }
+      return transformer.transform(queryResult);
+    } finally {
+      if (concurrentCount != null) {
+        concurrentCount.release();
+      }
+    }
   }
 
-  protected final QueryEntityResult executeInternal(final boolean processExpandOption, String parentIdAttributeName, List<Object> parentIds)
-      throws ODataApplicationException, ODataJPAModelException {
+  /**
+   * The inline count must be the total number of entities matching the query conditions, so it cannot be taken from
+   * the (maybe limited by $top, $skip or server driven paging) result. The count query is executed in the request
+   * entity manager or concurrently in a separate entity manager if a
+   * {@link JPAODataDatabaseProcessor#getInlineCountExecutor() executor} is configured.
+   *
+   * @return The running count or <code>null</code> if the count has to be executed sequentially (no executor
+   * configured or the executor has rejected the count).
+   */
+  private InlineCount startConcurrentInlineCount() throws ODataApplicationException, ODataJPAModelException {
+    final Executor executor = getContext().getDatabaseProcessor().getInlineCountExecutor();
+    final JPAAdapter mappingAdapter = executor == null ? null : getContext().getDependencyInjector()
+        .getDependencyValue(JPAAdapter.class);
+    if (mappingAdapter == null) {
+      return null;
+    }
+    return InlineCount.start(getContext(), getNavigation(), mappingAdapter, executor);
+  }
+
+  /**
+   *
+   * @param owningEntityKeys Optional restriction to the keys of owning entities (for $expand).
+   */
+  protected final QueryEntityResult executeInternal(final boolean processExpandOption,
+      final EntityKeyRestriction owningEntityKeys)
+          throws ODataApplicationException, ODataJPAModelException {
     final UriInfoResource uriResource = getNavigation().getLastStep();
     // Pre-process URI parameter, so they can be used at different places
     // TODO check if Path is also required for OrderBy Attributes, as it is for descriptions
@@ -127,52 +242,286 @@ public class EntityQueryBuilder extends AbstractCriteriaQueryBuilder<CriteriaQue
 
     // use selection for reduced list
     final List<Selection<?>> joinSelections = createSelectClause(selectionPathDirectMappings);
+    final JPAEntityType jpaEntityType = getQueryResultType();
+    Path<?> etagSelection = null;
+    if (jpaEntityType.hasEtag() && !selectionPathDirectMappings.contains(jpaEntityType.getEtagAttributePath())) {
+      // the version attribute is required for the ETag, but must not become a property
+      etagSelection = convertToCriteriaAliasPath(getQueryResultFrom(), jpaEntityType.getEtagAttributePath(),
+          ETAG_ALIAS_PREFIX);
+      joinSelections.add(etagSelection);
+    }
+
+    final Map<NavigationViaExpand, JPAAssociationPath> expands = processExpandOption ? Util.determineExpands(
+        getServiceDocument(), getNavigation()) : Collections.<NavigationViaExpand, JPAAssociationPath> emptyMap();
+    final List<JoinedExpand> joinedExpands = orderByNaviAttributes.isEmpty() ? determineJoinedExpands(expands)
+        : Collections.<JoinedExpand> emptyList();
+    for (final JoinedExpand joinedExpand : joinedExpands) {
+      joinSelections.addAll(createJoinedExpandSelectClause(joinedExpand));
+    }
+
+    skipToken = determineSkipToken(uriResource);
+    final boolean serverDrivenPaging = maxPageSize > 0 || skipToken != null;
+    if (serverDrivenPaging && orderByNaviAttributes.isEmpty()) {
+      keysetOrdering = determineKeysetOrdering(uriResource.getOrderByOption());
+    }
+    if (keysetOrdering != null) {
+      joinSelections.addAll(createKeysetSelectClause());
+    }
 
     cq.multiselect(joinSelections);
 
+    restrictToKeys(owningEntityKeys);
     final javax.persistence.criteria.Expression<Boolean> whereClause = createWhere();
     if (whereClause != null) {
       cq.where(whereClause);
     }
 
-    if (parentIds != null) {
-      CriteriaBuilder.In<Boolean> inClause = getCriteriaBuilder().in(getQueryStartFrom().get(parentIdAttributeName).in(parentIds));
-      cq.where(combineAND(inClause.getExpression(), whereClause));
-    }
-
     // TODO force orderBy if 'hasLimits'
-    cq.orderBy(createOrderByList(resultsetAffectingTables, uriResource.getOrderByOption()));
+    final List<Order> orderBy = createOrderByList(resultsetAffectingTables, uriResource.getOrderByOption());
+    if (serverDrivenPaging) {
+      // paging requires a stable ordering
+      orderBy.addAll(createImplicitKeyOrderList());
+    }
+    cq.orderBy(orderBy);
 
     if (!orderByNaviAttributes.isEmpty()) {
-      cq.groupBy(createGroupBy(selectionPathDirectMappings));
+      final List<javax.persistence.criteria.Expression<?>> groupBy = createGroupBy(selectionPathDirectMappings);
+      if (etagSelection != null) {
+        // strict databases (like Derby) require every selected column in GROUP BY
+        groupBy.add(etagSelection);
+      }
+      cq.groupBy(groupBy);
     }
 
     final TypedQuery<Tuple> tq = getEntityManager().createQuery(cq);
-    if (hasQueryLimits()) {
+    boolean pageLimited = false;
+    if (serverDrivenPaging) {
+      pageLimited = addPageLimits(tq);
+    } else if (hasQueryLimits()) {
       addTopSkip(tq);
     }
 
-    final List<Tuple> intermediateResult = tq.getResultList();
+    if (streamingResult && !pageLimited && elementCollectionMap.isEmpty() && joinedExpands.isEmpty() && expands
+        .isEmpty()) {
+      return new QueryEntityResult(getContext().getDatabaseProcessor().getResultStream(tq), getQueryResultType());
+    }
+
+    List<Tuple> intermediateResult = tq.getResultList();
+    String nextSkipToken = null;
+    if (pageLimited && intermediateResult.size() > maxPageSize) {
+      intermediateResult = new ArrayList<Tuple>(intermediateResult.subList(0, maxPageSize));
+      nextSkipToken = buildNextSkipToken(intermediateResult.get(maxPageSize - 1), tq.getFirstResult());
+    }
     final QueryEntityResult queryResult = new QueryEntityResult(intermediateResult, getQueryResultType());
+    queryResult.setNextSkipToken(nextSkipToken);
 
     // load not yet processed @ElementCollection attribute content
-    queryResult.putElementCollectionResults(readElementCollections(elementCollectionMap));
+    queryResult.putElementCollectionResults(readElementCollections(elementCollectionMap, intermediateResult,
+        pageLimited || hasQueryLimits()));
 
-    if (processExpandOption && !intermediateResult.isEmpty()) {
-      String idAttributeName = getQueryResultType().getKeyAttributes(false).get(0).getInternalName();
-      List<Object> ids = intermediateResult.stream().map(it -> it.get(idAttributeName)).collect(Collectors.toList());
+    if (!joinedExpands.isEmpty()) {
+      queryResult.putExpandResults(extractJoinedExpandEntities(joinedExpands, intermediateResult));
+    }
+    if (!expands.isEmpty() && !intermediateResult.isEmpty()) {
       // generate expand queries only for non empty entity result list
-      queryResult.putExpandResults(readExpandEntities(null, idAttributeName, ids));
+      queryResult.putExpandResults(readExpandEntities(expands, intermediateResult));
     }
     return queryResult;
   }
 
+  @Override
+  protected javax.persistence.criteria.Expression<Boolean> createWhere() throws ODataApplicationException,
+  ODataJPAModelException {
+    return combineAND(super.createWhere(), createWhereFromSkipToken());
+  }
+
+  private SkipToken determineSkipToken(final UriInfoResource uriResource) throws ODataJPAQueryException {
+    final SkipTokenOption skipTokenOption = uriResource.getSkipTokenOption();
+    if (skipTokenOption == null || skipTokenOption.getValue() == null) {
+      return null;
+    }
+    return SkipToken.parse(skipTokenOption.getValue());
+  }
+
+  /**
+   * The ordering for keyset paging is the requested $orderby extended by all key attributes not already part of
+   * $orderby, so the ordering is unique.
+   *
+   * @return The ordering or <code>null</code> if the requested $orderby cannot be used for keyset paging, like for
+   * nullable attributes.
+   */
+  private List<KeysetOrderItem> determineKeysetOrdering(final OrderByOption orderByOption)
+      throws ODataJPAModelException {
+    final JPAEntityType jpaEntityType = getQueryResultType();
+    final List<KeysetOrderItem> ordering = new ArrayList<KeysetOrderItem>();
+    final List<JPASelector> orderSelectors = new ArrayList<JPASelector>();
+    if (orderByOption != null) {
+      for (final OrderByItem orderByItem : orderByOption.getOrders()) {
+        if (!(orderByItem.getExpression() instanceof Member)) {
+          return null;
+        }
+        final StringBuilder pathName = new StringBuilder();
+        for (final UriResource uriResource : ((Member) orderByItem.getExpression()).getResourcePath()
+            .getUriResourceParts()) {
+          if (!(uriResource instanceof UriResourcePrimitiveProperty)
+              && !(uriResource instanceof UriResourceComplexProperty)) {
+            // navigation, $count...
+            return null;
+          }
+          if (pathName.length() > 0) {
+            pathName.append(JPASelector.PATH_SEPERATOR);
+          }
+          pathName.append(((UriResourceProperty) uriResource).getProperty().getName());
+        }
+        final JPASelector selector = jpaEntityType.getPath(pathName.toString());
+        if (selector == null || selector.getLeaf().isCollection() || isNullable(selector.getLeaf())) {
+          // rows with NULL will not match the keyset condition, so use the offset
+          return null;
+        }
+        ordering.add(new KeysetOrderItem(selector, orderByItem.isDescending(), false));
+        orderSelectors.add(selector);
+      }
+    }
+    for (final JPASelector keyPath : Util.buildKeyPath(jpaEntityType)) {
+      if (!orderSelectors.contains(keyPath)) {
+        ordering.add(new KeysetOrderItem(keyPath, false, true));
+      }
+    }
+    return ordering;
+  }
+
+  private static boolean isNullable(final JPAAttribute<?> attribute) {
+    return !attribute.isKey() && (!(attribute instanceof JPAMemberAttribute) || ((JPAMemberAttribute) attribute)
+        .isNullable());
+  }
+
+  private List<Selection<?>> createKeysetSelectClause() {
+    final List<Selection<?>> selections = new ArrayList<Selection<?>>(keysetOrdering.size());
+    for (int i = 0; i < keysetOrdering.size(); i++) {
+      selections.add(convertToCriteriaAliasPath(getQueryResultFrom(), keysetOrdering.get(i).selector,
+          KEYSET_ALIAS_PREFIX + i + "_"));
+    }
+    return selections;
+  }
+
+  /**
+   *
+   * @return The ordering for the key attributes not already ordered by $orderby.
+   */
+  private List<Order> createImplicitKeyOrderList() throws ODataJPAModelException {
+    final CriteriaBuilder cb = getCriteriaBuilder();
+    final List<Order> orders = new ArrayList<Order>();
+    if (keysetOrdering != null) {
+      for (final KeysetOrderItem item : keysetOrdering) {
+        if (item.implicit) {
+          orders.add(cb.asc(convertToCriteriaPath(getQueryResultFrom(), item.selector)));
+        }
+      }
+    } else {
+      for (final JPASelector keyPath : Util.buildKeyPath(getQueryResultType())) {
+        orders.add(cb.asc(convertToCriteriaPath(getQueryResultFrom(), keyPath)));
+      }
+    }
+    return orders;
+  }
+
+  /**
+   * Build the condition to select only entities after the keyset position given by $skiptoken:
+   * <p>
+   * <code>(o1 &gt; v1) OR (o1 = v1 AND o2 &gt; v2) OR ...</code>
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private javax.persistence.criteria.Expression<Boolean> createWhereFromSkipToken() throws ODataJPAQueryException {
+    if (skipToken == null || !skipToken.isKeyset()) {
+      return null;
+    }
+    if (keysetOrdering == null || keysetOrdering.size() != skipToken.getKeysetSize()) {
+      // token was created for another $orderby
+      throw new ODataJPAQueryException(ODataJPAQueryException.MessageKeys.QUERY_PREPARATION_INVALID_VALUE,
+          HttpStatusCode.BAD_REQUEST, getNavigation().getLastStep().getSkipTokenOption().getValue(), "$skiptoken");
+    }
+    final CriteriaBuilder cb = getCriteriaBuilder();
+    final List<Predicate> alternatives = new ArrayList<Predicate>(keysetOrdering.size());
+    final List<Predicate> equalPredecessors = new ArrayList<Predicate>(keysetOrdering.size());
+    for (int i = 0; i < keysetOrdering.size(); i++) {
+      final KeysetOrderItem item = keysetOrdering.get(i);
+      final Path path = convertToCriteriaPath(getQueryResultFrom(), item.selector);
+      final Comparable value = (Comparable) skipToken.getKeysetValue(i, path.getJavaType());
+      final List<Predicate> alternative = new ArrayList<Predicate>(equalPredecessors);
+      alternative.add(item.descending ? cb.lessThan(path, value) : cb.greaterThan(path, value));
+      alternatives.add(cb.and(alternative.toArray(new Predicate[alternative.size()])));
+      equalPredecessors.add(cb.equal(path, value));
+    }
+    return cb.or(alternatives.toArray(new Predicate[alternatives.size()]));
+  }
+
+  /**
+   * Apply $skip, $top and the offset of a $skiptoken to the query. If a page is smaller than the number of requested
+   * entities, one more entity is selected to detect the presence of a next page.
+   *
+   * @return TRUE if the result is limited by the page size.
+   */
+  private boolean addPageLimits(final TypedQuery<Tuple> tq) throws ODataJPAQueryException {
+    Integer topValue = determineTopValue();
+    int firstResult = 0;
+    if (skipToken != null) {
+      if (skipToken.getRemainingTop() != null) {
+        topValue = skipToken.getRemainingTop();
+      }
+      firstResult += skipToken.getOffset();
+    }
+    final Integer skipValue = determineSkipValue();
+    if (skipValue != null) {
+      firstResult += skipValue.intValue();
+    }
+    if (firstResult > 0) {
+      tq.setFirstResult(firstResult);
+    }
+    if (maxPageSize > 0 && (topValue == null || topValue.intValue() > maxPageSize)) {
+      tq.setMaxResults(maxPageSize + 1);
+      return true;
+    }
+    if (topValue != null) {
+      tq.setMaxResults(topValue.intValue());
+    }
+    return false;
+  }
+
+  /**
+   *
+   * @param lastRow The last entity of the current page.
+   * @param firstResult The offset of the current page.
+   * @return The encoded $skiptoken for the next page.
+   */
+  private String buildNextSkipToken(final Tuple lastRow, final int firstResult) throws ODataJPAQueryException {
+    Integer remainingTop = skipToken != null ? skipToken.getRemainingTop() : null;
+    if (remainingTop == null) {
+      remainingTop = determineTopValue();
+    }
+    if (remainingTop != null) {
+      remainingTop = Integer.valueOf(remainingTop.intValue() - maxPageSize);
+    }
+    SkipToken next = null;
+    if (keysetOrdering != null) {
+      final List<Object> values = new ArrayList<Object>(keysetOrdering.size());
+      for (int i = 0; i < keysetOrdering.size(); i++) {
+        values.add(lastRow.get(KEYSET_ALIAS_PREFIX + i + "_" + keysetOrdering.get(i).selector.getAlias()));
+      }
+      next = SkipToken.forKeyset(values, remainingTop);
+    }
+    if (next == null) {
+      // continue with offset from last keyset position (if any)
+      next = SkipToken.forOffset(skipToken, firstResult + maxPageSize, remainingTop);
+    }
+    return next.encode();
+  }
+
   /**
    * $expand is implemented as a recursively processing of all expands with a DB
-   * round trip per expand item. Alternatively also a <i>big</i> join could be
-   * created. This would lead to a transport of redundant data, but has only one
-   * round trip. It has not been measured under which conditions which solution as
-   * the better performance.
+   * round trip per expand item. Only to-one expands without own query options
+   * are {@link #determineJoinedExpands(Map) joined} into the query of the owning
+   * entities, because a join for to-many relationships would lead to a transport
+   * of redundant data.
    * <p>
    * For a general overview see: <a href=
    * "http://docs.oasis-open.org/odata/odata/v4.0/errata02/os/complete/part1-protocol/odata-v4.0-errata02-os-part1-protocol-complete.html#_Toc406398298"
@@ -182,48 +531,178 @@ public class EntityQueryBuilder extends AbstractCriteriaQueryBuilder<CriteriaQue
    * For a detailed description of the URI syntax see: <a href=
    * "http://docs.oasis-open.org/odata/odata/v4.0/errata02/os/complete/part2-url-conventions/odata-v4.0-errata02-os-part2-url-conventions-complete.html#_Toc406398162"
    * >OData Version 4.0 Part 2 - 5.1.2 System Query Option $expand</a>
+   * <p>
+   * The expand queries are restricted to the keys of the owning entities given by <i>owningRows</i>. To avoid huge
+   * conditions the keys are split into batches of {@link JPAODataDatabaseProcessor#getKeyBatchSize()} and the results
+   * of all batches are merged. If the expand has own $top or $skip options the batching is not possible without
+   * changing the result, so only one query is executed in that case.
    *
-   * @param headers
-   * @param naviStartEdmEntitySet
-   * @param uriInfo
-   * @param parentHops
-   * @param idAttributeName
-   * @param parentIds
-   * @return
+   * @param expandMapList The expands not already {@link #determineJoinedExpands(Map) joined} into this query.
+   * @param owningRows The already loaded rows of the entities owning the expanded navigations.
+   * @return The expand results mapped by association path.
    * @throws ODataApplicationException
    * @throws ODataJPAModelException
    */
   private Map<JPAAssociationPath, ExpandQueryEntityResult> readExpandEntities(
-          final List<JPANavigationPropertyInfo> parentHops, String idAttributeName, List<Object> parentIds)
+      final Map<NavigationViaExpand, JPAAssociationPath> expandMapList, final List<Tuple> owningRows)
           throws ODataApplicationException, ODataJPAModelException {
 
     final Map<JPAAssociationPath, ExpandQueryEntityResult> allExpResults =
         new HashMap<JPAAssociationPath, ExpandQueryEntityResult>();
     // x/a?$expand=b/c($expand=d,e/f)
 
-    final NavigationIfc uriInfo = getNavigation();
-
-    final Map<NavigationViaExpand, JPAAssociationPath> expandMapList = Util.determineExpands(
-        getServiceDocument(), uriInfo);
-
     final JPAODataRequestContext context = getContext();
     final EntityManager em = getEntityManager();
+    final int keyBatchSize = context.getDatabaseProcessor().getKeyBatchSize();
+    final EntityKeyRestriction owningKeys = EntityKeyRestriction.collect(getQueryResultNavigationKeyBuilder(),
+        owningRows);
 
     for (final Entry<NavigationViaExpand, JPAAssociationPath> itemExpand : expandMapList.entrySet()) {
       // an expand is handled as navigation to that entity type, so we can (re)use the entity query
-      final EntityQueryBuilder expandQuery = new EntityQueryBuilder(context, itemExpand.getKey(), em, serviceMetadata);
+      EntityQueryBuilder expandQuery = new EntityQueryBuilder(context, itemExpand.getKey(), em, serviceMetadata);
+      final List<EntityKeyRestriction> batches;
+      if (owningKeys.isEmpty()) {
+        // should not happen, fall back to selection via navigation conditions only
+        batches = Collections.singletonList(null);
+      } else if (expandQuery.hasQueryLimits()) {
+        batches = Collections.singletonList(owningKeys.size() <= keyBatchSize || keyBatchSize < 1 ? owningKeys
+            : null);
+      } else {
+        batches = owningKeys.split(keyBatchSize);
+      }
       LOG.log(Level.FINE, "Process $expand for: " + getQueryResultNavigationKeyBuilder().getNavigationLabel() + "#"
-          + itemExpand.getValue().getAlias());
-      final QueryEntityResult expandResult = expandQuery.executeInternal(true, idAttributeName, parentIds);
-      // convert result list to expand entity navigation key mapping structure
-      allExpResults.put(itemExpand.getValue(), new ExpandQueryEntityResult(itemExpand.getValue(), expandResult,
-          expandQuery
-          .getLastAffectingNavigationKeyBuilder()));
+          + itemExpand.getValue().getAlias() + " in " + batches.size() + " batch(es)");
+      ExpandQueryEntityResult mergedResult = null;
+      for (final EntityKeyRestriction batch : batches) {
+        if (mergedResult != null) {
+          // the criteria query of a builder is not reusable
+          expandQuery = new EntityQueryBuilder(context, itemExpand.getKey(), em, serviceMetadata);
+        }
+        final QueryEntityResult expandResult = expandQuery.executeInternal(true, batch);
+        // convert result list to expand entity navigation key mapping structure
+        final ExpandQueryEntityResult batchResult = new ExpandQueryEntityResult(itemExpand.getValue(), expandResult,
+            expandQuery.getLastAffectingNavigationKeyBuilder());
+        if (mergedResult == null) {
+          mergedResult = batchResult;
+        } else {
+          mergedResult.merge(batchResult);
+        }
+      }
+      allExpResults.put(itemExpand.getValue(), mergedResult);
     }
 
     return allExpResults;
   }
 
+  /**
+   * A $expand of a to-one relationship can be loaded as LEFT OUTER JOIN in this query without changing the number of
+   * result rows, so the separate query for the expanded entities is saved. That is possible only for a direct
+   * relationship without own query options (like a nested $expand or $filter), for a target entity without
+   * @ElementCollection attributes (loaded always in separate queries) and without data access conditioner. A to-many
+   * relationship is never joined, because the multiplied rows will break $top/$skip and server driven paging of the
+   * owning entities.
+   *
+   * @param expands The expands of this query, the joined entries are removed.
+   * @return The expands to join into this query.
+   * @see JPAODataDatabaseProcessor#isExpandJoinEnabled()
+   */
+  private List<JoinedExpand> determineJoinedExpands(final Map<NavigationViaExpand, JPAAssociationPath> expands)
+      throws ODataApplicationException, ODataJPAModelException {
+    if (expands.isEmpty() || !getContext().getDatabaseProcessor().isExpandJoinEnabled()) {
+      return Collections.emptyList();
+    }
+    final List<JoinedExpand> joinedExpands = new LinkedList<JoinedExpand>();
+    for (final Iterator<Entry<NavigationViaExpand, JPAAssociationPath>> iterator = expands.entrySet()
+        .iterator(); iterator.hasNext();) {
+      final Entry<NavigationViaExpand, JPAAssociationPath> entry = iterator.next();
+      final JPAAssociationPath association = entry.getValue();
+      if (association.getPathElements().size() > 1 || association.getLeaf().isCollection()
+          || !(association.getTargetType() instanceof JPAEntityType)) {
+        continue;
+      }
+      if (hasQueryOptions(entry.getKey().getLastStep())) {
+        continue;
+      }
+      final JPAEntityType targetType = (JPAEntityType) association.getTargetType();
+      if (targetType.getDataAccessConditioner() != null) {
+        continue;
+      }
+      final List<JPASelector> selections = buildSelectionPathList(targetType, null);
+      if (!separateElementCollectionPaths(new ArrayList<JPASelector>(selections)).isEmpty()) {
+        continue;
+      }
+      joinedExpands.add(new JoinedExpand(association, targetType, selections, EXPAND_JOIN_ALIAS_PREFIX + Integer
+          .toString(joinedExpands.size()) + "_"));
+      iterator.remove();
+    }
+    return joinedExpands;
+  }
+
+  private static boolean hasQueryOptions(final UriInfoResource expandResource) {
+    return expandResource.getExpandOption() != null || expandResource.getFilterOption() != null || expandResource
+        .getSelectOption() != null || expandResource.getOrderByOption() != null || expandResource
+        .getTopOption() != null || expandResource.getSkipOption() != null || expandResource.getCountOption() != null
+        || expandResource.getSearchOption() != null || expandResource.getApplyOption() != null;
+  }
+
+  private List<Selection<?>> createJoinedExpandSelectClause(final JoinedExpand joinedExpand) {
+    final From<?, ?> join = getQueryResultFrom().join(joinedExpand.association.getLeaf().getInternalName(),
+        JoinType.LEFT);
+    final List<Selection<?>> selections = new ArrayList<Selection<?>>(joinedExpand.selections.size());
+    for (final JPASelector jpaPath : joinedExpand.selections) {
+      final Path<?> p = convertToCriteriaAliasPath(join, jpaPath, joinedExpand.aliasPrefix);
+      if (p == null) {
+        continue;
+      }
+      selections.add(p);
+    }
+    return selections;
+  }
+
+  /**
+   * Split the values of the joined entities from the rows of this query. A row without joined entity (all key values
+   * are <code>null</code>) has no entry in the result.
+   */
+  private Map<JPAAssociationPath, ExpandQueryEntityResult> extractJoinedExpandEntities(
+      final List<JoinedExpand> joinedExpands, final List<Tuple> owningRows) throws ODataJPAModelException {
+    final Map<JPAAssociationPath, ExpandQueryEntityResult> allExpResults =
+        new HashMap<JPAAssociationPath, ExpandQueryEntityResult>();
+    final NavigationKeyBuilder owningKeyBuilder = getQueryResultNavigationKeyBuilder();
+    for (final JoinedExpand joinedExpand : joinedExpands) {
+      final List<JPASelector> targetKeyPaths = Util.buildKeyPath(joinedExpand.targetType);
+      final Map<NavigationKey, List<Tuple>> resultValues = new HashMap<NavigationKey, List<Tuple>>();
+      JoinedEntityTuple.Layout layout = null;
+      NavigationKeyBuilder.KeyLayout keyLayout = null;
+      for (final Tuple row : owningRows) {
+        if (layout == null) {
+          layout = JoinedEntityTuple.Layout.create(row.getElements(), joinedExpand.aliasPrefix);
+          keyLayout = owningKeyBuilder.createOwningRowLayout(row.getElements());
+        }
+        final JoinedEntityTuple joinedRow = layout.extract(row);
+        if (isNullEntity(joinedRow, targetKeyPaths)) {
+          continue;
+        }
+        final List<Tuple> joinedRows = new LinkedList<Tuple>();
+        joinedRows.add(joinedRow);
+        resultValues.put(keyLayout.buildKey(row), joinedRows);
+      }
+      LOG.log(Level.FINE, "Process $expand for: " + owningKeyBuilder.getNavigationLabel() + "#" + joinedExpand
+          .association.getAlias() + " via join");
+      allExpResults.put(joinedExpand.association, new ExpandQueryEntityResult(joinedExpand.association,
+          joinedExpand.targetType, resultValues, owningKeyBuilder));
+    }
+    return allExpResults;
+  }
+
+  private static boolean isNullEntity(final Tuple row, final List<JPASelector> keyPaths) {
+    for (final JPASelector keyPath : keyPaths) {
+      if (row.get(keyPath.getAlias()) != null) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   private List<javax.persistence.criteria.Expression<?>> createGroupBy(final List<JPASelector> selectionPathList)
       throws ODataApplicationException {
 
@@ -252,8 +731,14 @@ public class EntityQueryBuilder extends AbstractCriteriaQueryBuilder<CriteriaQue
 
   protected final List<JPASelector> buildSelectionPathList(final UriInfoResource uriResource)
       throws ODataApplicationException {
-    final JPAEntityType jpaEntityType = getQueryResultType();
-    List<JPASelector> jpaPathList = null;
+    return buildSelectionPathList(determineSelectionText(uriResource));
+  }
+
+  /**
+   *
+   * @return The property path or $select text defining the selection.
+   */
+  private String determineSelectionText(final UriInfoResource uriResource) {
     // TODO It is also possible to request all actions or functions available for each returned entity:
     // http://host/service/Products?$select=DemoService.*
 
@@ -269,6 +754,16 @@ public class EntityQueryBuilder extends AbstractCriteriaQueryBuilder<CriteriaQue
         selectionText = select.getText();
       }
     }
+    return selectionText;
+  }
+
+  private List<JPASelector> buildSelectionPathList(final String selectionText) throws ODataApplicationException {
+    return buildSelectionPathList(getQueryResultType(), selectionText);
+  }
+
+  private List<JPASelector> buildSelectionPathList(final JPAEntityType jpaEntityType, final String selectionText)
+      throws ODataApplicationException {
+    List<JPASelector> jpaPathList = null;
 
     if (selectionText != null && selectionText.contains(Util.VALUE_RESOURCE)) {
       jpaPathList = buildPathValue(jpaEntityType, selectionText);
@@ -482,13 +977,33 @@ public class EntityQueryBuilder extends AbstractCriteriaQueryBuilder<CriteriaQue
     return elementCollectionMap;
   }
 
+  /**
+   * The element collections are loaded with one query per attribute, using the same conditions as the query for the
+   * owning entities. If the owning entities are a subset of the entities matching these conditions, the queries are
+   * restricted to the keys of the owning entities instead. Large key sets are split into batches of
+   * {@link JPAODataDatabaseProcessor#getKeyBatchSize()} and the results of all batches are merged.
+   *
+   * @param owningRows The rows of the entities owning the element collections.
+   * @param limitedResult TRUE if the <i>owningRows</i> are a subset of the entities matching the query conditions
+   * (because of $top, $skip or server driven paging).
+   */
   private final Map<JPAAttribute<?>, QueryElementCollectionResult> readElementCollections(
-      final Map<JPAAttribute<?>, List<JPASelector>> elementCollectionMap) throws ODataApplicationException,
-  ODataJPAModelException {
-    if (elementCollectionMap.isEmpty()) {
+      final Map<JPAAttribute<?>, List<JPASelector>> elementCollectionMap, final List<Tuple> owningRows,
+      final boolean limitedResult) throws ODataApplicationException, ODataJPAModelException {
+    if (elementCollectionMap.isEmpty() || owningRows.isEmpty()) {
       return Collections.emptyMap();
     }
 
+    List<EntityKeyRestriction> batches = Collections.singletonList(getKeyRestriction());
+    if (batches.get(0) == null && limitedResult) {
+      // avoid loading the collections of all entities matching the query conditions
+      final EntityKeyRestriction owningKeys = EntityKeyRestriction.collect(getQueryResultNavigationKeyBuilder(),
+          owningRows);
+      if (!owningKeys.isEmpty()) {
+        batches = owningKeys.split(getContext().getDatabaseProcessor().getKeyBatchSize());
+      }
+    }
+
     final EdmStructuredType owningType = (EdmStructuredType) getQueryResultEdmType();
     final Map<JPAAttribute<?>, QueryElementCollectionResult> allResults = new HashMap<>();
     // build queries with most elements also used for primary entity selection
@@ -496,10 +1011,20 @@ public class EntityQueryBuilder extends AbstractCriteriaQueryBuilder<CriteriaQue
     for (final Entry<JPAAttribute<?>, List<JPASelector>> entry : elementCollectionMap.entrySet()) {
       // create separate SELECT for every entry (affected attribute)
       final JPAAttribute<?> attribute = entry.getKey();
-      final ElementCollectionQueryBuilder query = new ElementCollectionQueryBuilder(owningType, attribute,
-          entry.getValue(), getContext(), getNavigation(), getEntityManager());
-      final QueryElementCollectionResult result = query.execute();
-      allResults.put(attribute, result);
+      QueryElementCollectionResult mergedResult = null;
+      for (final EntityKeyRestriction batch : batches) {
+        final ElementCollectionQueryBuilder query = new ElementCollectionQueryBuilder(owningType, attribute,
+            entry.getValue(), getContext(), getNavigation(), getEntityManager());
+        // same navigation prefix, so the restriction to owning entities of an $expand is also valid
+        query.restrictToKeys(batch);
+        final QueryElementCollectionResult batchResult = query.execute();
+        if (mergedResult == null) {
+          mergedResult = batchResult;
+        } else {
+          mergedResult.merge(batchResult);
+        }
+      }
+      allResults.put(attribute, mergedResult);
     }
     return allResults;
   }
@@ -0,0 +1,120 @@
+package org.apache.olingo.jpa.processor.core.query;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+
+import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.jpa.metadata.core.edm.mapper.exception.ODataJPAModelException;
+import org.apache.olingo.jpa.processor.JPAODataRequestContext;
+import org.apache.olingo.jpa.processor.core.exception.ODataJPAQueryException;
+import org.apache.olingo.jpa.processor.core.mapping.JPAAdapter;
+import org.apache.olingo.server.api.ODataApplicationException;
+
+/**
+ * The inline count of an entity collection, determined by a count query executed concurrently to the query loading
+ * the entities. The count query is built completely in the request thread using a separate entity manager, so the
+ * other thread will only execute the query and touches neither the request context nor the request entity manager.
+ * <p>
+ * Every started count must be {@link #release() released}, also if the loading of the entities fails.
+ */
+final class InlineCount {
+
+  private final JPAAdapter mappingAdapter;
+  private final EntityManager em;
+  private final AtomicBoolean claimed = new AtomicBoolean(false);
+  private final FutureTask<Long> task;
+
+  private InlineCount(final JPAAdapter mappingAdapter, final EntityManager em, final TypedQuery<Long> countQuery) {
+    this.mappingAdapter = mappingAdapter;
+    this.em = em;
+    this.task = new FutureTask<>(() -> {
+      if (!claimed.compareAndSet(false, true)) {
+        // already released
+        throw new CancellationException();
+      }
+      try {
+        return countQuery.getSingleResult();
+      } finally {
+        mappingAdapter.releaseEntityManager(em);
+      }
+    });
+  }
+
+  /**
+   * Prepare the count query in a new entity manager and start the execution.
+   *
+   * @return The running count or <code>null</code> if the executor has rejected the count.
+   */
+  static InlineCount start(final JPAODataRequestContext context, final NavigationIfc navigation,
+      final JPAAdapter mappingAdapter, final Executor executor) throws ODataApplicationException, ODataJPAModelException {
+    final EntityManager em = mappingAdapter.createEntityManager();
+    final InlineCount inlineCount;
+    try {
+      inlineCount = new InlineCount(mappingAdapter, em, new EntityCountQueryBuilder(context, navigation, em)
+          .createQuery());
+    } catch (ODataApplicationException | ODataJPAModelException | RuntimeException e) {
+      mappingAdapter.releaseEntityManager(em);
+      throw e;
+    }
+    try {
+      executor.execute(inlineCount.task);
+    } catch (final RejectedExecutionException e) {
+      inlineCount.release();
+      return null;
+    }
+    return inlineCount;
+  }
+
+  /**
+   *
+   * @return The count, waiting for the end of execution if necessary.
+   */
+  Long get() throws ODataApplicationException, ODataJPAModelException {
+    try {
+      return task.get();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ODataJPAQueryException(ODataJPAQueryException.MessageKeys.QUERY_PREPARATION_ERROR,
+          HttpStatusCode.INTERNAL_SERVER_ERROR, e);
+    } catch (final ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new ODataJPAQueryException(ODataJPAQueryException.MessageKeys.QUERY_PREPARATION_ERROR,
+          HttpStatusCode.INTERNAL_SERVER_ERROR, e.getCause());
+    }
+  }
+
+  /**
+   * Cancel the count if not already started, otherwise wait for the end of the execution. After that the separate
+   * entity manager is released in any case.
+   */
+  void release() {
+    if (claimed.compareAndSet(false, true)) {
+      task.cancel(false);
+      mappingAdapter.releaseEntityManager(em);
+      return;
+    }
+    // the count query is running (or done) and will release the entity manager self
+    boolean interrupted = false;
+    while (!task.isDone()) {
+      try {
+        task.get();
+      } catch (final InterruptedException e) {
+        interrupted = true;
+      } catch (final ExecutionException | CancellationException e) {
+        // not of interest anymore
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
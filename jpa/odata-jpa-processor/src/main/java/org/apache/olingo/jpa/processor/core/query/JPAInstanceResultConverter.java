@@ -3,7 +3,6 @@ package org.apache.olingo.jpa.processor.core.query;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
-import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.HashMap;
 import java.util.List;
@@ -35,17 +34,25 @@ public class JPAInstanceResultConverter {
   private final EdmEntitySet edmEntitySet;
   private final Map<String, Method> messageMap;
   private final List<JPASelector> pathList;
-  private final UriHelper odataUriHelper;
 
+  /**
+   * @deprecated The URI helper is not used anymore, use
+   * {@link #JPAInstanceResultConverter(IntermediateServiceDocument, List, EdmEntitySet, Class)}.
+   */
+  @Deprecated
   public JPAInstanceResultConverter(final UriHelper uriHelper, final IntermediateServiceDocument sd,
       final List<?> jpaQueryResult, final EdmEntitySet edmEntitySet, final Class<?> resultType)
           throws ODataJPAModelException {
+    this(sd, jpaQueryResult, edmEntitySet, resultType);
+  }
+
+  public JPAInstanceResultConverter(final IntermediateServiceDocument sd, final List<?> jpaQueryResult,
+      final EdmEntitySet edmEntitySet, final Class<?> resultType) throws ODataJPAModelException {
     super();
     this.jpaQueryResult = jpaQueryResult;
     this.edmEntitySet = edmEntitySet;
     this.pathList = sd.getEntityType(edmEntitySet.getName()).getPathList();
     this.messageMap = getMethods(resultType);
-    this.odataUriHelper = uriHelper;
   }
 
   private Map<String, Method> getMethods(final Class<?> clazz) {
@@ -68,6 +75,7 @@ public class JPAInstanceResultConverter {
   public EntityCollection getResult() throws ODataApplicationException, SerializerException, URISyntaxException {
     final EntityCollection odataEntityCollection = new EntityCollection();
     final List<Entity> odataResults = odataEntityCollection.getEntities();
+    final EntityIdBuilder idBuilder = new EntityIdBuilder(edmEntitySet);
 
     for (final Object row : jpaQueryResult) {
       final Entity odataEntity = new Entity();
@@ -97,8 +105,7 @@ public class JPAInstanceResultConverter {
           throw new ODataJPAQueryException(e, HttpStatusCode.INTERNAL_SERVER_ERROR);
         }
       }
-      // TODO merge with createId()?
-      odataEntity.setId(new URI(odataUriHelper.buildCanonicalURL(edmEntitySet, odataEntity)));
+      odataEntity.setId(idBuilder.buildId(odataEntity));
       odataResults.add(odataEntity);
     }
     return odataEntityCollection;
@@ -0,0 +1,140 @@
+package org.apache.olingo.jpa.processor.core.query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.Tuple;
+import javax.persistence.TupleElement;
+
+/**
+ * The values of an entity joined into the query of another entity, taken from a row of that query. The aliases of
+ * the joined entity are selected with a prefix; this tuple presents them without prefix, so the row can be converted
+ * like a row of a separate query for the joined entity.
+ */
+final class JoinedEntityTuple implements Tuple {
+
+  /**
+   * The positions of the joined entity values in the rows of a query, the same for all rows of that query.
+   */
+  static final class Layout {
+    private final List<TupleElement<?>> elements;
+    private final Map<String, Integer> aliasIndexes;
+    private final int[] rowPositions;
+
+    private Layout(final List<TupleElement<?>> rowElements, final String aliasPrefix) {
+      final List<TupleElement<?>> joinedElements = new ArrayList<>();
+      final List<Integer> positions = new ArrayList<>();
+      aliasIndexes = new HashMap<>();
+      for (int i = 0; i < rowElements.size(); i++) {
+        final TupleElement<?> rowElement = rowElements.get(i);
+        final String alias = rowElement.getAlias();
+        if (alias == null || !alias.startsWith(aliasPrefix)) {
+          continue;
+        }
+        final String joinedAlias = alias.substring(aliasPrefix.length());
+        aliasIndexes.put(joinedAlias, Integer.valueOf(joinedElements.size()));
+        joinedElements.add(new Element<>(rowElement.getJavaType(), joinedAlias));
+        positions.add(Integer.valueOf(i));
+      }
+      elements = Collections.unmodifiableList(joinedElements);
+      rowPositions = new int[positions.size()];
+      for (int i = 0; i < rowPositions.length; i++) {
+        rowPositions[i] = positions.get(i).intValue();
+      }
+    }
+
+    /**
+     *
+     * @param rowElements The elements of the query rows.
+     * @param aliasPrefix The prefix of all aliases selected for the joined entity.
+     */
+    static Layout create(final List<TupleElement<?>> rowElements, final String aliasPrefix) {
+      return new Layout(rowElements, aliasPrefix);
+    }
+
+    JoinedEntityTuple extract(final Tuple row) {
+      final Object[] rowValues = row.toArray();
+      final Object[] values = new Object[rowPositions.length];
+      for (int i = 0; i < rowPositions.length; i++) {
+        values[i] = rowValues[rowPositions[i]];
+      }
+      return new JoinedEntityTuple(this, values);
+    }
+  }
+
+  private static final class Element<X> implements TupleElement<X> {
+    private final Class<? extends X> javaType;
+    private final String alias;
+
+    private Element(final Class<? extends X> javaType, final String alias) {
+      this.javaType = javaType;
+      this.alias = alias;
+    }
+
+    @Override
+    public Class<? extends X> getJavaType() {
+      return javaType;
+    }
+
+    @Override
+    public String getAlias() {
+      return alias;
+    }
+  }
+
+  private final Layout layout;
+  private final Object[] values;
+
+  private JoinedEntityTuple(final Layout layout, final Object[] values) {
+    this.layout = layout;
+    this.values = values;
+  }
+
+  @Override
+  public <X> X get(final TupleElement<X> tupleElement) {
+    @SuppressWarnings("unchecked")
+    final X value = (X) get(tupleElement.getAlias());
+    return value;
+  }
+
+  @Override
+  public <X> X get(final String alias, final Class<X> type) {
+    return type.cast(get(alias));
+  }
+
+  @Override
+  public Object get(final String alias) {
+    final Integer index = layout.aliasIndexes.get(alias);
+    if (index == null) {
+      throw new IllegalArgumentException("Unknown alias '" + alias + "'");
+    }
+    return values[index.intValue()];
+  }
+
+  @Override
+  public <X> X get(final int i, final Class<X> type) {
+    return type.cast(get(i));
+  }
+
+  @Override
+  public Object get(final int i) {
+    if (i < 0 || i >= values.length) {
+      throw new IllegalArgumentException("Index " + i + " out of range");
+    }
+    return values[i];
+  }
+
+  @Override
+  public Object[] toArray() {
+    return values.clone();
+  }
+
+  @Override
+  public List<TupleElement<?>> getElements() {
+    return layout.elements;
+  }
+
+}
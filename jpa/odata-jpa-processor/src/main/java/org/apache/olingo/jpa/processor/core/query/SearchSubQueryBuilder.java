@@ -1,9 +1,12 @@
 package org.apache.olingo.jpa.processor.core.query;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.logging.Level;
 
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.Expression;
 import javax.persistence.criteria.From;
 import javax.persistence.criteria.Path;
@@ -13,15 +16,22 @@ import org.apache.olingo.commons.api.http.HttpStatusCode;
 import org.apache.olingo.commons.core.Decoder;
 import org.apache.olingo.jpa.metadata.core.edm.annotation.EdmSearchable;
 import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPAAttribute;
+import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPAEntityType;
 import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPASelector;
-import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPAStructuredType;
 import org.apache.olingo.jpa.metadata.core.edm.mapper.exception.ODataJPAModelException;
 import org.apache.olingo.jpa.processor.JPAODataRequestContext;
+import org.apache.olingo.jpa.processor.core.api.JPAODataDatabaseProcessor;
+import org.apache.olingo.jpa.processor.core.api.JPAODataSearchContext;
+import org.apache.olingo.jpa.processor.core.api.JPAODataSearchProvider;
 import org.apache.olingo.jpa.processor.core.exception.ODataJPADBAdaptorException;
 import org.apache.olingo.server.api.ODataApplicationException;
 import org.apache.olingo.server.api.uri.queryoption.SearchOption;
+import org.apache.olingo.server.api.uri.queryoption.search.SearchBinary;
+import org.apache.olingo.server.api.uri.queryoption.search.SearchExpression;
 import org.apache.olingo.server.api.uri.queryoption.search.SearchTerm;
+import org.apache.olingo.server.core.uri.parser.search.SearchBinaryImpl;
 import org.apache.olingo.server.core.uri.parser.search.SearchTermImpl;
+import org.apache.olingo.server.core.uri.parser.search.SearchUnaryImpl;
 
 /**
  * Query builder for $search expressions.
@@ -51,12 +61,13 @@ class SearchSubQueryBuilder extends AbstractSubQueryBuilder {
     if (searchOption == null || searchOption.getSearchExpression() == null) {
       return null;
     }
-    if (!searchOption.getSearchExpression().isSearchTerm()) {
-      throw new UnsupportedOperationException("$search expression type not supported");
-    }
     try {
+      final JPAEntityType jpaEntityType = getOwningQueryBuilder().getQueryResultType();
+      final JPAODataSearchProvider searchProvider = context.getDatabaseProcessor().getSearchProvider(jpaEntityType);
+      if (searchProvider == null && !searchOption.getSearchExpression().isSearchTerm()) {
+        throw new UnsupportedOperationException("$search expression type not supported");
+      }
       boolean attributesWithSearchableAnnotationFound = true;
-      final JPAStructuredType jpaEntityType = getOwningQueryBuilder().getQueryResultType();
       List<JPASelector> searchableAttributes = jpaEntityType.getSearchablePath();
       if (searchableAttributes.isEmpty()) {
         LOG.log(Level.WARNING, "Entity " + jpaEntityType.getExternalName() + " has not attributes marked with @"
@@ -79,13 +90,10 @@ class SearchSubQueryBuilder extends AbstractSubQueryBuilder {
         joinDummyFromCorrelation = getCriteriaBuilder().equal(subqueryResultFrom, dummyFrom);
       }
 
-      SearchTerm term = searchOption.getSearchExpression().asSearchTerm();
-
       // use double decoding to workaround OLINGO-1239
-      String sTerm = term.getSearchTerm();
-      sTerm = Decoder.decode(sTerm);
-      term = new SearchTermImpl(sTerm);
+      final SearchExpression searchExpression = decode(searchOption.getSearchExpression());
 
+      final List<JPASelector> columnAttributes = new ArrayList<>(searchableAttributes.size());
       final List<Path<?>> columnList = new ArrayList<Path<?>>(searchableAttributes.size());
       for (final JPASelector searchableAttribute : searchableAttributes) {
         if (containsNavigationToOtherTable(searchableAttribute)) {
@@ -96,14 +104,21 @@ class SearchSubQueryBuilder extends AbstractSubQueryBuilder {
           continue;
         }
         final Path<?> path = convertToCriteriaAliasPath(scopeFrom, searchableAttribute, null);
+        columnAttributes.add(searchableAttribute);
         columnList.add(path);
       }
 
       // EXISTS subselect needs only a marker select for existence
       subQuery.select(getCriteriaBuilder().literal(Integer.valueOf(1)));
 
-      final Expression<Boolean> searchCondition = context.getDatabaseProcessor().createSearchExpression(term,
-          columnList);
+      final Expression<Boolean> searchCondition;
+      if (searchProvider != null) {
+        searchCondition = searchProvider.createSearchCondition(new SearchContext(jpaEntityType, scopeFrom,
+            searchExpression, columnAttributes, columnList));
+      } else {
+        searchCondition = context.getDatabaseProcessor().createSearchExpression(searchExpression.asSearchTerm(),
+            columnList);
+      }
       if (searchCondition == null) {
         throw new ODataJPADBAdaptorException(ODataJPADBAdaptorException.MessageKeys.NOT_SUPPORTED_SEARCH,
             HttpStatusCode.INTERNAL_SERVER_ERROR);
@@ -117,6 +132,17 @@ class SearchSubQueryBuilder extends AbstractSubQueryBuilder {
     }
   }
 
+  private static SearchExpression decode(final SearchExpression expression) {
+    if (expression.isSearchBinary()) {
+      final SearchBinary binary = expression.asSearchBinary();
+      return new SearchBinaryImpl(decode(binary.getLeftOperand()), binary.getOperator(), decode(binary
+          .getRightOperand()));
+    } else if (expression.isSearchUnary()) {
+      return new SearchUnaryImpl((SearchTerm) decode(expression.asSearchUnary().getOperand()));
+    }
+    return new SearchTermImpl(Decoder.decode(expression.asSearchTerm().getSearchTerm()));
+  }
+
   /**
    *
    * @return TRUE if any path element is uses a navigation to another table (like
@@ -133,4 +159,66 @@ class SearchSubQueryBuilder extends AbstractSubQueryBuilder {
     return false;
   }
 
+  private class SearchContext implements JPAODataSearchContext {
+    private final JPAEntityType entityType;
+    private final From<?, ?> from;
+    private final SearchExpression searchExpression;
+    private final List<JPASelector> searchableAttributes;
+    private final List<Path<?>> searchColumns;
+
+    SearchContext(final JPAEntityType entityType, final From<?, ?> from, final SearchExpression searchExpression,
+        final List<JPASelector> searchableAttributes, final List<Path<?>> searchColumns) {
+      this.entityType = entityType;
+      this.from = from;
+      this.searchExpression = searchExpression;
+      this.searchableAttributes = Collections.unmodifiableList(searchableAttributes);
+      this.searchColumns = Collections.unmodifiableList(searchColumns);
+    }
+
+    @Override
+    public EntityManager getEntityManager() {
+      return SearchSubQueryBuilder.this.getEntityManager();
+    }
+
+    @Override
+    public CriteriaBuilder getCriteriaBuilder() {
+      return SearchSubQueryBuilder.this.getCriteriaBuilder();
+    }
+
+    @Override
+    public JPAODataDatabaseProcessor getDatabaseProcessor() {
+      return context.getDatabaseProcessor();
+    }
+
+    @Override
+    public JPAEntityType getEntityType() {
+      return entityType;
+    }
+
+    @Override
+    public From<?, ?> getFrom() {
+      return from;
+    }
+
+    @Override
+    public SearchExpression getSearchExpression() {
+      return searchExpression;
+    }
+
+    @Override
+    public List<JPASelector> getSearchableAttributes() {
+      return searchableAttributes;
+    }
+
+    @Override
+    public List<Path<?>> getSearchColumns() {
+      return searchColumns;
+    }
+
+    @Override
+    public Path<?> getPath(final JPASelector selector) {
+      return convertToCriteriaPath(from, selector);
+    }
+  }
+
 }
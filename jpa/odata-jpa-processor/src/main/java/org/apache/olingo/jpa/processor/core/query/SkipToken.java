@@ -0,0 +1,296 @@
+package org.apache.olingo.jpa.processor.core.query;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.jpa.processor.core.exception.ODataJPAQueryException;
+
+/**
+ * The (opaque) <code>$skiptoken</code> used for server driven paging. A token describes the position after the last
+ * entity of the previous page:
+ * <ul>
+ * <li>As <i>keyset</i>: the values of all ordering attributes (including the key attributes) of the last entity, so
+ * the next page can be selected by a WHERE condition without the need to skip rows in the database.</li>
+ * <li>As <i>offset</i>: the number of entities to skip (after the keyset position, if given). This is used as
+ * fallback if the ordering is not usable for keyset paging (for example ordering by navigation $count or
+ * <code>null</code> values in ordering columns).</li>
+ * </ul>
+ * The token also contains the remaining value of a client given <code>$top</code>, because the
+ * <code>@odata.nextLink</code> does not repeat the original <code>$top</code>.
+ * <p>
+ * For details see: <a href=
+ * "http://docs.oasis-open.org/odata/odata/v4.0/errata02/os/complete/part1-protocol/odata-v4.0-errata02-os-part1-protocol-complete.html#_Toc406398310"
+ * >OData Version 4.0 Part 1 - 11.2.5.7 Server-Driven Paging</a>
+ */
+final class SkipToken {
+
+  private static final byte VERSION = 2;
+
+  private final Integer remainingTop;
+  private final int offset;
+  private final List<String> keysetValues;
+
+  private SkipToken(final List<String> keysetValues, final int offset, final Integer remainingTop) {
+    this.remainingTop = remainingTop;
+    this.offset = offset;
+    this.keysetValues = keysetValues;
+  }
+
+  /**
+   *
+   * @param offset The number of entities to skip after the keyset position of <i>previous</i>.
+   * @param previous The optional token, the keyset position is taken from.
+   */
+  static SkipToken forOffset(final SkipToken previous, final int offset, final Integer remainingTop) {
+    return new SkipToken(previous != null ? previous.keysetValues : null, offset, remainingTop);
+  }
+
+  /**
+   *
+   * @param values The values of the ordering attributes of the last entity of a page.
+   * @return The token or <code>null</code> if at least one of the values is <code>null</code> or of a not supported
+   * type.
+   */
+  static SkipToken forKeyset(final List<?> values, final Integer remainingTop) {
+    final List<String> texts = new ArrayList<>(values.size());
+    for (final Object value : values) {
+      final String text = toText(value);
+      if (text == null) {
+        return null;
+      }
+      texts.add(text);
+    }
+    return new SkipToken(Collections.unmodifiableList(texts), 0, remainingTop);
+  }
+
+  /**
+   *
+   * @param token The token text as given by client.
+   * @throws ODataJPAQueryException If the token is malformed.
+   */
+  static SkipToken parse(final String token) throws ODataJPAQueryException {
+    try {
+      final DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(token)));
+      if (in.readByte() != VERSION) {
+        throw new IOException("Unsupported version");
+      }
+      final int top = in.readInt();
+      final int offset = in.readInt();
+      final int count = in.readShort();
+      if (offset < 0) {
+        throw new IOException("Invalid offset");
+      }
+      List<String> values = null;
+      if (count > -1) {
+        values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+          values.add(readText(in));
+        }
+        values = Collections.unmodifiableList(values);
+      }
+      return new SkipToken(values, offset, top < 0 ? null : Integer.valueOf(top));
+    } catch (final IOException | IllegalArgumentException e) {
+      throw new ODataJPAQueryException(ODataJPAQueryException.MessageKeys.QUERY_PREPARATION_INVALID_VALUE,
+          HttpStatusCode.BAD_REQUEST, token, "$skiptoken");
+    }
+  }
+
+  /**
+   *
+   * @return The URL safe text representation of this token.
+   */
+  String encode() {
+    final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(buffer)) {
+      out.writeByte(VERSION);
+      out.writeInt(remainingTop == null ? -1 : remainingTop.intValue());
+      out.writeInt(offset);
+      if (isKeyset()) {
+        out.writeShort(keysetValues.size());
+        for (final String value : keysetValues) {
+          writeText(out, value);
+        }
+      } else {
+        out.writeShort(-1);
+      }
+    } catch (final IOException e) {
+      // not possible for in memory stream
+      throw new IllegalStateException(e);
+    }
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.toByteArray());
+  }
+
+  /**
+   * Write the text as length prefixed UTF-8 byte array; {@link DataOutputStream#writeUTF(String)} is limited to 64 KB
+   * and would fail for long (string) key values.
+   */
+  private static void writeText(final DataOutputStream out, final String text) throws IOException {
+    final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readText(final DataInputStream in) throws IOException {
+    final int length = in.readInt();
+    if (length < 0 || length > in.available()) {
+      throw new IOException("Invalid value length");
+    }
+    final byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   *
+   * @return TRUE if the token contains the ordering values of the last entity of the previous page.
+   */
+  boolean isKeyset() {
+    return keysetValues != null;
+  }
+
+  /**
+   *
+   * @return The number of entities to skip (after the keyset position, if given).
+   */
+  int getOffset() {
+    return offset;
+  }
+
+  /**
+   *
+   * @return The still to deliver number of entities or <code>null</code> if no $top was given by client.
+   */
+  Integer getRemainingTop() {
+    return remainingTop;
+  }
+
+  int getKeysetSize() {
+    return keysetValues.size();
+  }
+
+  /**
+   *
+   * @param index The index of the ordering attribute.
+   * @param javaType The type of the ordering attribute.
+   * @return The value converted into the given type.
+   * @throws ODataJPAQueryException If the value could not be converted.
+   */
+  Object getKeysetValue(final int index, final Class<?> javaType) throws ODataJPAQueryException {
+    final String text = keysetValues.get(index);
+    try {
+      final Object value = fromText(text, javaType);
+      if (value != null) {
+        return value;
+      }
+    } catch (final RuntimeException e) {
+      // handled below
+    }
+    throw new ODataJPAQueryException(ODataJPAQueryException.MessageKeys.QUERY_PREPARATION_INVALID_VALUE,
+        HttpStatusCode.BAD_REQUEST, text, "$skiptoken");
+  }
+
+  private static String toText(final Object value) {
+    if (value == null) {
+      return null;
+    }
+    if (value instanceof String || value instanceof Number || value instanceof Boolean || value instanceof Character
+        || value instanceof UUID) {
+      return value.toString();
+    }
+    if (value instanceof Enum<?>) {
+      return ((Enum<?>) value).name();
+    }
+    if (value instanceof java.sql.Timestamp || value instanceof java.sql.Date || value instanceof java.sql.Time) {
+      return value.toString();
+    }
+    if (value instanceof java.util.Date) {
+      return Long.toString(((java.util.Date) value).getTime());
+    }
+    if (value instanceof Calendar) {
+      return Long.toString(((Calendar) value).getTimeInMillis());
+    }
+    if (value instanceof LocalDate || value instanceof LocalDateTime || value instanceof LocalTime
+        || value instanceof Instant || value instanceof OffsetDateTime) {
+      return value.toString();
+    }
+    return null;
+  }
+
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private static Object fromText(final String text, final Class<?> javaType) {
+    if (javaType == String.class) {
+      return text;
+    } else if (javaType == Integer.class || javaType == int.class) {
+      return Integer.valueOf(text);
+    } else if (javaType == Long.class || javaType == long.class) {
+      return Long.valueOf(text);
+    } else if (javaType == Short.class || javaType == short.class) {
+      return Short.valueOf(text);
+    } else if (javaType == Byte.class || javaType == byte.class) {
+      return Byte.valueOf(text);
+    } else if (javaType == Double.class || javaType == double.class) {
+      return Double.valueOf(text);
+    } else if (javaType == Float.class || javaType == float.class) {
+      return Float.valueOf(text);
+    } else if (javaType == Boolean.class || javaType == boolean.class) {
+      return Boolean.valueOf(text);
+    } else if (javaType == Character.class || javaType == char.class) {
+      return text.length() == 1 ? Character.valueOf(text.charAt(0)) : null;
+    } else if (javaType == BigDecimal.class) {
+      return new BigDecimal(text);
+    } else if (javaType == BigInteger.class) {
+      return new BigInteger(text);
+    } else if (javaType == UUID.class) {
+      return UUID.fromString(text);
+    } else if (javaType.isEnum()) {
+      return Enum.valueOf((Class<Enum>) javaType, text);
+    } else if (javaType == java.sql.Timestamp.class) {
+      return java.sql.Timestamp.valueOf(text);
+    } else if (javaType == java.sql.Date.class) {
+      return java.sql.Date.valueOf(text);
+    } else if (javaType == java.sql.Time.class) {
+      return java.sql.Time.valueOf(text);
+    } else if (javaType == java.util.Date.class) {
+      // JPA providers may deliver java.sql.* instances for a temporal java.util.Date attribute
+      if (text.indexOf(':') > -1) {
+        return text.indexOf('-') > 0 ? java.sql.Timestamp.valueOf(text) : java.sql.Time.valueOf(text);
+      } else if (text.indexOf('-') > 0) {
+        return java.sql.Date.valueOf(text);
+      }
+      return new java.util.Date(Long.parseLong(text));
+    } else if (javaType == Calendar.class) {
+      final Calendar calendar = Calendar.getInstance();
+      calendar.setTimeInMillis(Long.parseLong(text));
+      return calendar;
+    } else if (javaType == LocalDate.class) {
+      return LocalDate.parse(text);
+    } else if (javaType == LocalDateTime.class) {
+      return LocalDateTime.parse(text);
+    } else if (javaType == LocalTime.class) {
+      return LocalTime.parse(text);
+    } else if (javaType == Instant.class) {
+      return Instant.parse(text);
+    } else if (javaType == OffsetDateTime.class) {
+      return OffsetDateTime.parse(text);
+    }
+    return null;
+  }
+}
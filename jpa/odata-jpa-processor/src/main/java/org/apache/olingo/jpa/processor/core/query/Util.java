@@ -453,7 +453,7 @@ public class Util {
   /**
    *
    * @param uriInfo
-   * @return TRUE if uri contains a $apply=aggregate(...) expression
+   * @return TRUE if uri contains a $apply=aggregate(...) or $apply=groupby(...) expression
    */
   public static boolean hasApplyAggregateOption(final UriInfoResource uriInfo) {
     final ApplyOption applyOption = uriInfo.getApplyOption();
@@ -461,7 +461,7 @@ public class Util {
       return false;
     }
     for (final ApplyItem item : applyOption.getApplyItems()) {
-      if (item.getKind() == Kind.AGGREGATE) {
+      if (item.getKind() == Kind.AGGREGATE || item.getKind() == Kind.GROUP_BY) {
         return true;
       }
     }
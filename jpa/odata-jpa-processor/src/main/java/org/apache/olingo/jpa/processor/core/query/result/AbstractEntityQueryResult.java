@@ -52,6 +52,30 @@ public abstract class AbstractEntityQueryResult {
     resultElementCollectionTargets.putAll(collectionResults);
   }
 
+  /**
+   * Merge the $expand and @ElementCollection results of another (partial) result for the same entity type into this
+   * result.
+   */
+  protected final void mergeChildren(final AbstractEntityQueryResult other) {
+    for (final Entry<JPAAssociationPath, ExpandQueryEntityResult> entry : other.resultRelationshipTargets.entrySet()) {
+      final ExpandQueryEntityResult existing = resultRelationshipTargets.get(entry.getKey());
+      if (existing == null) {
+        resultRelationshipTargets.put(entry.getKey(), entry.getValue());
+      } else {
+        existing.merge(entry.getValue());
+      }
+    }
+    for (final Entry<JPAAttribute<?>, QueryElementCollectionResult> entry : other.resultElementCollectionTargets
+        .entrySet()) {
+      final QueryElementCollectionResult existing = resultElementCollectionTargets.get(entry.getKey());
+      if (existing == null) {
+        resultElementCollectionTargets.put(entry.getKey(), entry.getValue());
+      } else {
+        existing.merge(entry.getValue());
+      }
+    }
+  }
+
   public final Map<JPAAssociationPath, ExpandQueryEntityResult> getExpandChildren() {
     return resultRelationshipTargets;
   }
@@ -64,14 +88,18 @@ public abstract class AbstractEntityQueryResult {
     return jpaEntityType;
   }
 
-  static Map<String, List<Tuple>> convertResult(final List<Tuple> expandResult,
+  static Map<NavigationKey, List<Tuple>> convertResult(final List<Tuple> expandResult,
       final NavigationKeyBuilder keyBuilder) {
 
     List<Tuple> subResult;
-    final Map<String, List<Tuple>> convertedResult = new HashMap<String, List<Tuple>>();
+    final Map<NavigationKey, List<Tuple>> convertedResult = new HashMap<NavigationKey, List<Tuple>>();
+    NavigationKeyBuilder.KeyLayout keyLayout = null;
     for (final Tuple row : expandResult) {
+      if (keyLayout == null) {
+        keyLayout = keyBuilder.createTargetRowLayout(row.getElements());
+      }
       // build key using the key columns from owning entity to assign to that entity instances
-      final String actualKey = keyBuilder.buildKeyForNavigationTargetRow(row);
+      final NavigationKey actualKey = keyLayout.buildKey(row);
       subResult = convertedResult.get(actualKey);
       if (subResult == null) {
         subResult = new LinkedList<Tuple>();
@@ -82,4 +110,16 @@ public abstract class AbstractEntityQueryResult {
     return convertedResult;
   }
 
+  static void mergeResult(final Map<NavigationKey, List<Tuple>> target,
+      final Map<NavigationKey, List<Tuple>> source) {
+    for (final Entry<NavigationKey, List<Tuple>> entry : source.entrySet()) {
+      final List<Tuple> existing = target.get(entry.getKey());
+      if (existing == null) {
+        target.put(entry.getKey(), entry.getValue());
+      } else {
+        existing.addAll(entry.getValue());
+      }
+    }
+  }
+
 }
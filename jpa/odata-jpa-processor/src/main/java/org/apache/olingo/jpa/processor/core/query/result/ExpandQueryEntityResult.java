@@ -6,6 +6,7 @@ import java.util.Map;
 import javax.persistence.Tuple;
 
 import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPAAssociationPath;
+import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPAEntityType;
 import org.apache.olingo.jpa.processor.core.query.EntityQueryBuilder;
 import org.apache.olingo.server.api.ODataApplicationException;
 
@@ -17,7 +18,7 @@ import org.apache.olingo.server.api.ODataApplicationException;
 public final class ExpandQueryEntityResult extends AbstractEntityQueryResult {
 
   private final JPAAssociationPath navigationPath;
-  private final Map<String, List<Tuple>> resultValues;
+  private final Map<NavigationKey, List<Tuple>> resultValues;
   private final NavigationKeyBuilder resultNavigationKeyBuilder;
 
   public ExpandQueryEntityResult(final JPAAssociationPath navigationPath, final QueryEntityResult expandResult,
@@ -31,6 +32,32 @@ public final class ExpandQueryEntityResult extends AbstractEntityQueryResult {
     resultNavigationKeyBuilder = owningEntityKeyBuilder;
   }
 
+  /**
+   * Create the result for an expand loaded in the same query as the owning entities (JOIN).
+   *
+   * @param resultValues The rows of the expanded entities mapped by the key of the owning entity row.
+   * @param owningEntityKeyBuilder The builder used to create the keys of the owning entity rows.
+   */
+  public ExpandQueryEntityResult(final JPAAssociationPath navigationPath, final JPAEntityType entityType,
+      final Map<NavigationKey, List<Tuple>> resultValues, final NavigationKeyBuilder owningEntityKeyBuilder) {
+    super(entityType);
+    this.navigationPath = navigationPath;
+    this.resultValues = resultValues;
+    resultNavigationKeyBuilder = owningEntityKeyBuilder;
+  }
+
+  /**
+   * Merge the result of another query for the same navigation into this result. This is used if the owning entities
+   * are processed in multiple batches.
+   */
+  public void merge(final ExpandQueryEntityResult other) {
+    if (!navigationPath.equals(other.navigationPath)) {
+      throw new IllegalArgumentException("Cannot merge results of different navigations");
+    }
+    mergeResult(resultValues, other.resultValues);
+    mergeChildren(other);
+  }
+
   public final NavigationKeyBuilder getNavigationKeyBuilder() {
     return resultNavigationKeyBuilder;
   }
@@ -41,7 +68,7 @@ public final class ExpandQueryEntityResult extends AbstractEntityQueryResult {
    * @see NavigationKeyBuilder#buildKeyForNavigationTargetRow(Tuple)
    * @see getResultNavigationKeyPath()
    */
-  public List<Tuple> getAssociationResult(final String owningEntityKey) {
+  public List<Tuple> getAssociationResult(final NavigationKey owningEntityKey) {
     return resultValues.get(owningEntityKey);
   }
 
@@ -0,0 +1,51 @@
+package org.apache.olingo.jpa.processor.core.query.result;
+
+import java.util.Arrays;
+
+/**
+ * The key used to assign the rows of a navigation target ($expand, @ElementCollection) to the owning entity row: the
+ * values of the key columns of the owning entity and of all parent navigations. The values are compared as they are
+ * (the key columns are selected with the same attributes for owning and target rows), not by their string
+ * representation.
+ *
+ * @see NavigationKeyBuilder
+ */
+public final class NavigationKey {
+
+  private final Object[] values;
+  private final int hash;
+
+  NavigationKey(final Object[] values) {
+    this.values = values;
+    this.hash = Arrays.hashCode(values);
+  }
+
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof NavigationKey)) {
+      return false;
+    }
+    final NavigationKey other = (NavigationKey) obj;
+    return hash == other.hash && Arrays.equals(values, other.values);
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder buffer = new StringBuilder();
+    for (int i = 0; i < values.length; i++) {
+      if (i > 0) {
+        buffer.append('|');
+      }
+      buffer.append(values[i]);
+    }
+    return buffer.toString();
+  }
+}
@@ -3,6 +3,7 @@ package org.apache.olingo.jpa.processor.core.query.result;
 import java.util.List;
 
 import javax.persistence.Tuple;
+import javax.persistence.TupleElement;
 
 import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPAAttribute;
 import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPANavigationPath;
@@ -23,6 +24,9 @@ public final class NavigationKeyBuilder {
   private final String targetLabel;
   private final JPAStructuredType jpaNavigationTargetType;
   private final int level;
+  // the aliases of all key values, including the keys of the parent navigations
+  private final String[] owningRowAliases;
+  private final String[] targetRowAliases;
 
   /**
    *
@@ -71,6 +75,20 @@ public final class NavigationKeyBuilder {
     } else {
       this.targetLabel = jpaNavigationTargetType.getExternalName();
     }
+    final int parentSize = parent != null ? parent.targetRowAliases.length : 0;
+    owningRowAliases = new String[parentSize + navigationKeyPaths.size()];
+    targetRowAliases = new String[owningRowAliases.length];
+    if (parent != null) {
+      // for the parent we are an 'target' and have to use the key selection join with alias
+      System.arraycopy(parent.targetRowAliases, 0, owningRowAliases, 0, parentSize);
+      System.arraycopy(parent.targetRowAliases, 0, targetRowAliases, 0, parentSize);
+    }
+    final String aliasPrefix = getNavigationAliasPrefix();
+    for (int i = 0; i < navigationKeyPaths.size(); i++) {
+      // no alias prefix for the owning row, because is the direct name from selection query of entity
+      owningRowAliases[parentSize + i] = navigationKeyPaths.get(i).getAlias();
+      targetRowAliases[parentSize + i] = aliasPrefix.concat(navigationKeyPaths.get(i).getAlias());
+    }
   }
 
   public NavigationKeyBuilder buildChildNavigation(final JPANavigationPath navigationPath,
@@ -94,6 +112,14 @@ public final class NavigationKeyBuilder {
     return navigationKeyPaths;
   }
 
+  /**
+   *
+   * @return The level of navigation, starting with 1 for the root entity of a query without navigation.
+   */
+  public int getNavigationLevel() {
+    return level;
+  }
+
   public String getNavigationAliasPrefix() {
     if (navigationPath == null) {
       return "k".concat(Integer.toString(level));// use as default
@@ -114,25 +140,8 @@ public final class NavigationKeyBuilder {
    *
    * @param row The owning entity/type row stored in a parent {@link AbstractEntityQueryResult}.
    */
-  public String buildKeyForNavigationOwningRow(final Tuple row) {
-    final StringBuilder buffer = new StringBuilder();
-    if (parent != null) {
-      // for the parent we are an 'target' and have to use the key selection join with alias
-      buffer.append(parent.buildKeyForNavigationTargetRow(row));
-      buffer.append(JPASelector.PATH_SEPERATOR);
-    }
-    boolean first = true;
-    for (final JPASelector jpaPath : navigationKeyPaths) {
-      if (!first) {
-        buffer.append('|');
-      }
-      // no alias prefix here, because is the direct name from selection query of entity
-      final String alias = jpaPath.getAlias();
-      final Object keyValue = row.get(alias);
-      buffer.append(keyValue);
-      first = false;
-    }
-    return buffer.toString();
+  public NavigationKey buildKeyForNavigationOwningRow(final Tuple row) {
+    return buildKey(row, owningRowAliases);
   }
 
   /**
@@ -140,24 +149,65 @@ public final class NavigationKeyBuilder {
    *
    * @param row The Child row stored as target (result) of an navigation.
    */
-  public String buildKeyForNavigationTargetRow(final Tuple row) {
-    final String aliasPrefix = (getNavigationAliasPrefix() != null) ? getNavigationAliasPrefix() : "";
-    final StringBuilder buffer = new StringBuilder();
-    if (parent != null) {
-      buffer.append(parent.buildKeyForNavigationTargetRow(row));
-      buffer.append(JPASelector.PATH_SEPERATOR);
+  public NavigationKey buildKeyForNavigationTargetRow(final Tuple row) {
+    return buildKey(row, targetRowAliases);
+  }
+
+  private static NavigationKey buildKey(final Tuple row, final String[] aliases) {
+    final Object[] values = new Object[aliases.length];
+    for (int i = 0; i < aliases.length; i++) {
+      values[i] = row.get(aliases[i]);
     }
-    boolean first = true;
-    for (final JPASelector jpaPath : navigationKeyPaths) {
-      if (!first) {
-        buffer.append('|');
+    return new NavigationKey(values);
+  }
+
+  /**
+   *
+   * @param rowElements The elements of the owning entity rows.
+   * @return The layout to build the keys like {@link #buildKeyForNavigationOwningRow(Tuple)} for all rows of a query.
+   */
+  public KeyLayout createOwningRowLayout(final List<TupleElement<?>> rowElements) {
+    return new KeyLayout(rowElements, owningRowAliases);
+  }
+
+  /**
+   *
+   * @param rowElements The elements of the navigation target rows.
+   * @return The layout to build the keys like {@link #buildKeyForNavigationTargetRow(Tuple)} for all rows of a query.
+   */
+  public KeyLayout createTargetRowLayout(final List<TupleElement<?>> rowElements) {
+    return new KeyLayout(rowElements, targetRowAliases);
+  }
+
+  /**
+   * The positions of the key values in the rows of a query, the same for all rows of that query.
+   */
+  public static final class KeyLayout {
+    private final String[] aliases;
+    private final int[] rowPositions;
+
+    private KeyLayout(final List<TupleElement<?>> rowElements, final String[] aliases) {
+      this.aliases = aliases;
+      this.rowPositions = new int[aliases.length];
+      for (int i = 0; i < aliases.length; i++) {
+        rowPositions[i] = -1;
+        for (int e = 0; e < rowElements.size(); e++) {
+          if (aliases[i].equals(rowElements.get(e).getAlias())) {
+            rowPositions[i] = e;
+            break;
+          }
+        }
       }
-      final String alias = aliasPrefix.concat(jpaPath.getAlias());
-      final Object keyValue = row.get(alias);
-      buffer.append(keyValue);
-      first = false;
     }
-    return buffer.toString();
+
+    public NavigationKey buildKey(final Tuple row) {
+      final Object[] values = new Object[rowPositions.length];
+      for (int i = 0; i < rowPositions.length; i++) {
+        // an alias not found in the elements is resolved by the row
+        values[i] = rowPositions[i] >= 0 ? row.get(rowPositions[i]) : row.get(aliases[i]);
+      }
+      return new NavigationKey(values);
+    }
   }
 
   /**
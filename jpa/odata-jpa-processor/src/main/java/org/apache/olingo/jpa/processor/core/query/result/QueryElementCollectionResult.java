@@ -11,7 +11,7 @@ import javax.persistence.Tuple;
  */
 public final class QueryElementCollectionResult {
 
-  private final Map<String, List<Tuple>> resultValues;
+  private final Map<NavigationKey, List<Tuple>> resultValues;
   private final NavigationKeyBuilder resultNavigationKeyBuilder;
 
   /**
@@ -26,11 +26,19 @@ public final class QueryElementCollectionResult {
     resultNavigationKeyBuilder = keyBuilder;
   }
 
+  /**
+   * Merge the result of another query for the same attribute into this result. This is used if the owning entities
+   * are processed in multiple batches.
+   */
+  public void merge(final QueryElementCollectionResult other) {
+    AbstractEntityQueryResult.mergeResult(resultValues, other.resultValues);
+  }
+
   public final NavigationKeyBuilder getNavigationKeyBuilder() {
     return resultNavigationKeyBuilder;
   }
 
-  public List<Tuple> getDirectMappingsResult(final String owningEntityKey) {
+  public List<Tuple> getDirectMappingsResult(final NavigationKey owningEntityKey) {
     return resultValues.get(owningEntityKey);
   }
 
@@ -1,6 +1,9 @@
 package org.apache.olingo.jpa.processor.core.query.result;
 
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import javax.persistence.Tuple;
 
@@ -15,22 +18,114 @@ import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPAEntityType;
  */
 public final class QueryEntityResult extends AbstractEntityQueryResult {
 
-  private final List<Tuple> resultValues;
+  private List<Tuple> resultValues;
+  private Stream<Tuple> streamedValues;
+  private boolean closed = false;
+  private String nextSkipToken = null;
+  private Long count = null;
 
   public QueryEntityResult(final List<Tuple> result, final JPAEntityType jpaEntityType) {
     super(jpaEntityType);
     assert result != null;
     this.resultValues = result;
+    this.streamedValues = null;
+  }
+
+  /**
+   *
+   * @param streamedResult The rows read from a database cursor while consumed, must be {@link #close() closed}.
+   */
+  public QueryEntityResult(final Stream<Tuple> streamedResult, final JPAEntityType jpaEntityType) {
+    super(jpaEntityType);
+    assert streamedResult != null;
+    this.resultValues = null;
+    this.streamedValues = streamedResult;
   }
 
   /**
    * The {@linkplain #getResultNavigationKeyPath()} is used to order all tuples by the key build with that builder.
+   * <p>
+   * For a {@link #isStreamed() streamed} result all (not yet consumed) rows are read into memory.
    *
    * @see NavigationKeyBuilder#buildKeyForNavigationTargetRow(Tuple)
    * @see getResultNavigationKeyPath()
+   * @throws IllegalStateException If a {@link #isStreamed() streamed} result is already {@link #close() closed}.
    */
   public List<Tuple> getQueryResult() {
+    if (resultValues == null) {
+      assertNotClosed();
+      try {
+        resultValues = streamedValues.collect(Collectors.toList());
+      } finally {
+        close();
+      }
+    }
     return resultValues;
   }
 
+  /**
+   *
+   * @return TRUE if the rows are read from a database cursor while {@link #iterateQueryResult() iterated}.
+   */
+  public boolean isStreamed() {
+    return streamedValues != null;
+  }
+
+  /**
+   * Iterate the result without reading the rows of a {@link #isStreamed() streamed} result into memory. A streamed
+   * result can be iterated only once.
+   *
+   * @throws IllegalStateException If a {@link #isStreamed() streamed} result is already {@link #close() closed}.
+   */
+  public Iterator<Tuple> iterateQueryResult() {
+    if (resultValues != null) {
+      return resultValues.iterator();
+    }
+    assertNotClosed();
+    return streamedValues.iterator();
+  }
+
+  private void assertNotClosed() {
+    if (closed) {
+      throw new IllegalStateException("Streamed result is already closed");
+    }
+  }
+
+  /**
+   * Release the database cursor of a {@link #isStreamed() streamed} result.
+   */
+  public void close() {
+    if (streamedValues != null) {
+      streamedValues.close();
+      streamedValues = null;
+      closed = resultValues == null;
+    }
+  }
+
+  public void setCount(final Long count) {
+    this.count = count;
+  }
+
+  /**
+   *
+   * @return The total number of entities matching the query conditions (ignoring $top, $skip and paging) or
+   * <code>null</code> if not requested via <code>$count=true</code>.
+   */
+  public Long getCount() {
+    return count;
+  }
+
+  public void setNextSkipToken(final String nextSkipToken) {
+    this.nextSkipToken = nextSkipToken;
+  }
+
+  /**
+   * Server driven paging: the token to select the next page of the result.
+   *
+   * @return The $skiptoken value or <code>null</code> if the result is complete (or the last page).
+   */
+  public String getNextSkipToken() {
+    return nextSkipToken;
+  }
+
 }
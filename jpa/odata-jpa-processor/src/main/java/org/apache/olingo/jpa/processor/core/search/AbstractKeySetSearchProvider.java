@@ -0,0 +1,221 @@
+package org.apache.olingo.jpa.processor.core.search;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.persistence.Table;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Path;
+
+import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPAEntityType;
+import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPAMemberAttribute;
+import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPASelector;
+import org.apache.olingo.jpa.metadata.core.edm.mapper.exception.ODataJPAModelException;
+import org.apache.olingo.jpa.processor.core.api.JPAODataSearchContext;
+import org.apache.olingo.jpa.processor.core.api.JPAODataSearchProvider;
+import org.apache.olingo.jpa.processor.core.exception.ODataJPADBAdaptorException;
+import org.apache.olingo.jpa.processor.core.query.Util;
+import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.uri.queryoption.search.SearchBinary;
+import org.apache.olingo.server.api.uri.queryoption.search.SearchBinaryOperatorKind;
+import org.apache.olingo.server.api.uri.queryoption.search.SearchExpression;
+import org.apache.olingo.server.api.uri.queryoption.search.SearchTerm;
+
+/**
+ * Base class for search providers resolving the search by a search engine (like the full-text index of a database)
+ * into the keys of the matching entities. The search condition is a key restriction for the searched entities, so
+ * the database can use the primary key index instead of scanning all rows.
+ * <p>
+ * The search engine cannot be part of the JPA query, so the keys are part of the query as values (bound as parameters
+ * if the JPA provider binds literals) in IN lists of at most
+ * {@link org.apache.olingo.jpa.processor.core.api.JPAODataDatabaseProcessor#getKeyBatchSize() key batch size} values.
+ * To keep the query of a reasonable size, for a search matching more than {@link #setMaxMatchingKeys(int) a maximal
+ * number} of entities the LIKE conditions of the default search are used instead, see
+ * {@link #createFallbackCondition(JPAODataSearchContext)}.
+ */
+public abstract class AbstractKeySetSearchProvider implements JPAODataSearchProvider {
+
+  private static final Logger LOG = Logger.getLogger(AbstractKeySetSearchProvider.class.getName());
+
+  public static final int DEFAULT_MAX_MATCHING_KEYS = 1000;
+
+  private int maxMatchingKeys = DEFAULT_MAX_MATCHING_KEYS;
+
+  /**
+   * Set the maximal number of entities a search may match to be restricted by the keys. For a search matching more
+   * entities the {@link #createFallbackCondition(JPAODataSearchContext) fallback condition} is used. Default is
+   * {@value #DEFAULT_MAX_MATCHING_KEYS}.
+   */
+  public void setMaxMatchingKeys(final int maxMatchingKeys) {
+    if (maxMatchingKeys < 1) {
+      throw new IllegalArgumentException("At least one matching key must be allowed");
+    }
+    this.maxMatchingKeys = maxMatchingKeys;
+  }
+
+  @Override
+  public final Expression<Boolean> createSearchCondition(final JPAODataSearchContext context)
+      throws ODataApplicationException {
+    try {
+      final List<JPASelector> keyPath = Util.buildKeyPath(context.getEntityType());
+      final List<Path<?>> keyColumns = new ArrayList<>(keyPath.size());
+      for (final JPASelector keyAttribute : keyPath) {
+        keyColumns.add(context.getPath(keyAttribute));
+      }
+      // one more key than allowed is enough to detect a too large result
+      final List<Object[]> keys = findMatchingKeys(context, keyPath, maxMatchingKeys + 1);
+      if (keys == null || keys.size() > maxMatchingKeys) {
+        LOG.log(Level.FINE, "Search for " + context.getEntityType().getExternalName()
+            + " not resolvable by keys, use the fallback condition");
+        return createFallbackCondition(context);
+      }
+      return createKeyCondition(context, keyColumns, keys);
+    } catch (final ODataJPAModelException e) {
+      throw new ODataJPADBAdaptorException(e, HttpStatusCode.INTERNAL_SERVER_ERROR);
+    }
+  }
+
+  /**
+   *
+   * @param keyPath The (exploded) key attributes of the searched entity type.
+   * @param maxResults The maximal number of keys to deliver; further matching keys are not used.
+   * @return The keys of all entities matching the {@link JPAODataSearchContext#getSearchExpression() search
+   * expression}; the values of a key in the order of the given key attributes. <code>null</code> if the search engine
+   * cannot resolve the search (like an index not yet built), so the
+   * {@link #createFallbackCondition(JPAODataSearchContext) fallback condition} is used.
+   */
+  protected abstract List<Object[]> findMatchingKeys(JPAODataSearchContext context, List<JPASelector> keyPath,
+      int maxResults) throws ODataApplicationException, ODataJPAModelException;
+
+  /**
+   * The condition used for a search matching too many entities: the LIKE conditions of the default search
+   * ({@link org.apache.olingo.jpa.processor.core.api.JPAODataDatabaseProcessor#createSearchExpression(SearchTerm, List)
+   * JPAODataDatabaseProcessor#createSearchExpression()}) per search term, combined by the $search operators. The
+   * search engine may match other entities (like by stemming) than the LIKE conditions.
+   */
+  protected Expression<Boolean> createFallbackCondition(final JPAODataSearchContext context)
+      throws ODataApplicationException {
+    return createFallbackCondition(context, context.getSearchExpression());
+  }
+
+  private Expression<Boolean> createFallbackCondition(final JPAODataSearchContext context,
+      final SearchExpression expression) throws ODataApplicationException {
+    final CriteriaBuilder cb = context.getCriteriaBuilder();
+    if (expression.isSearchBinary()) {
+      final SearchBinary binary = expression.asSearchBinary();
+      final Expression<Boolean> left = createFallbackCondition(context, binary.getLeftOperand());
+      final Expression<Boolean> right = createFallbackCondition(context, binary.getRightOperand());
+      return binary.getOperator() == SearchBinaryOperatorKind.OR ? cb.or(left, right) : cb.and(left, right);
+    } else if (expression.isSearchUnary()) {
+      return cb.not(createFallbackCondition(context, expression.asSearchUnary().getOperand()));
+    }
+    final Expression<Boolean> termCondition = context.getDatabaseProcessor().createSearchExpression(expression
+        .asSearchTerm(), context.getSearchColumns());
+    // no searchable column: nothing matches
+    return termCondition != null ? termCondition : cb.disjunction();
+  }
+
+  /**
+   *
+   * @return The name of the database column of the given attribute.
+   */
+  protected static String determineColumnName(final JPASelector attribute) {
+    return ((JPAMemberAttribute) attribute.getLeaf()).getDBFieldName();
+  }
+
+  private Expression<Boolean> createKeyCondition(final JPAODataSearchContext context, final List<Path<?>> keyColumns,
+      final List<Object[]> keys) {
+    final CriteriaBuilder cb = context.getCriteriaBuilder();
+    if (keys.isEmpty()) {
+      // no key is null; an empty disjunction is not accepted as subquery restriction by all JPA providers
+      return cb.isNull(keyColumns.get(0));
+    }
+    Expression<Boolean> condition = null;
+    if (keyColumns.size() == 1) {
+      // IN lists are split to respect the database limits
+      final Path<?> keyColumn = keyColumns.get(0);
+      final int batchSize = context.getDatabaseProcessor().getKeyBatchSize() > 0 ? context.getDatabaseProcessor()
+          .getKeyBatchSize() : keys.size();
+      for (int start = 0; start < keys.size(); start += batchSize) {
+        final List<Object> values = new ArrayList<>(batchSize);
+        for (final Object[] key : keys.subList(start, Math.min(start + batchSize, keys.size()))) {
+          values.add(adaptKeyValue(keyColumn.getJavaType(), key[0]));
+        }
+        final Expression<Boolean> batchCondition = keyColumn.in(values);
+        condition = condition == null ? batchCondition : cb.or(condition, batchCondition);
+      }
+      return condition;
+    }
+    for (final Object[] key : keys) {
+      Expression<Boolean> keyCondition = null;
+      for (int i = 0; i < keyColumns.size(); i++) {
+        final Path<?> keyColumn = keyColumns.get(i);
+        final Expression<Boolean> columnCondition = cb.equal(keyColumn, adaptKeyValue(keyColumn.getJavaType(),
+            key[i]));
+        keyCondition = keyCondition == null ? columnCondition : cb.and(keyCondition, columnCondition);
+      }
+      condition = condition == null ? keyCondition : cb.or(condition, keyCondition);
+    }
+    return condition;
+  }
+
+  /**
+   * The search engine may deliver key values in another representation than the key attribute (like a string for a
+   * numeric key column).
+   */
+  private static Object adaptKeyValue(final Class<?> attributeType, final Object value) {
+    if (value == null || attributeType.isInstance(value)) {
+      return value;
+    }
+    if (attributeType == String.class) {
+      return value.toString();
+    }
+    final BigDecimal number = value instanceof Number ? new BigDecimal(value.toString()) : new BigDecimal(value
+        .toString().trim());
+    if (attributeType == Integer.class || attributeType == int.class) {
+      return Integer.valueOf(number.intValueExact());
+    } else if (attributeType == Long.class || attributeType == long.class) {
+      return Long.valueOf(number.longValueExact());
+    } else if (attributeType == Short.class || attributeType == short.class) {
+      return Short.valueOf(number.shortValueExact());
+    } else if (attributeType == BigInteger.class) {
+      return number.toBigIntegerExact();
+    } else if (attributeType == BigDecimal.class) {
+      return number;
+    }
+    return value;
+  }
+
+  /**
+   *
+   * @return The schema (or <code>null</code>) and the name of the (primary) table of the entity type, as declared by
+   * {@link Table @Table} (maybe with quotes) or the default table name.
+   */
+  protected static String[] determineTable(final JPAEntityType entityType) {
+    for (Class<?> type = entityType.getTypeClass(); type != null; type = type.getSuperclass()) {
+      final Table table = type.getAnnotation(Table.class);
+      if (table != null && !table.name().isEmpty()) {
+        return new String[] { table.schema().isEmpty() ? null : table.schema(), table.name() };
+      }
+    }
+    return new String[] { null, entityType.getTypeClass().getSimpleName() };
+  }
+
+  /**
+   *
+   * @return The name as stored in the database catalog: a quoted identifier without quotes, otherwise in upper case.
+   */
+  protected static String toCatalogName(final String identifier) {
+    if (identifier.length() > 1 && identifier.startsWith("\"") && identifier.endsWith("\"")) {
+      return identifier.substring(1, identifier.length() - 1);
+    }
+    return identifier.toUpperCase();
+  }
+
+}
@@ -0,0 +1,149 @@
+package org.apache.olingo.jpa.processor.core.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.Query;
+
+import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPASelector;
+import org.apache.olingo.jpa.processor.core.api.JPAODataSearchContext;
+import org.apache.olingo.jpa.processor.core.exception.ODataJPADBAdaptorException;
+import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.uri.queryoption.search.SearchBinary;
+import org.apache.olingo.server.api.uri.queryoption.search.SearchBinaryOperatorKind;
+import org.apache.olingo.server.api.uri.queryoption.search.SearchExpression;
+
+/**
+ * Search provider using the full-text search of H2, the native implementation (<code>FT_SEARCH_DATA</code>) or the
+ * Lucene based one (<code>FTL_SEARCH_DATA</code>). The full-text search must be initialized and the index for the
+ * table of the entity type must be created by the application, like:
+ *
+ * <pre>
+ * CREATE ALIAS IF NOT EXISTS FT_INIT FOR "org.h2.fulltext.FullText.init";
+ * CALL FT_INIT();
+ * CALL FT_CREATE_INDEX('OLINGO', 'org.apache.olingo.jpa::BusinessPartner', 'NameLine1,NameLine2');
+ * </pre>
+ *
+ * The columns to search in are defined by the index, not by the @EdmSearchable attributes.
+ */
+public class H2FullTextSearchProvider extends AbstractKeySetSearchProvider {
+
+  public static enum Variant {
+    /**
+     * The H2 own full-text search, supporting only search terms combined with AND.
+     */
+    NATIVE("FT_SEARCH_DATA"),
+    /**
+     * The full-text search using Lucene (must be in class path), supporting also OR and NOT.
+     */
+    LUCENE("FTL_SEARCH_DATA");
+
+    private final String searchFunction;
+
+    private Variant(final String searchFunction) {
+      this.searchFunction = searchFunction;
+    }
+  }
+
+  private final Variant variant;
+
+  public H2FullTextSearchProvider() {
+    this(Variant.NATIVE);
+  }
+
+  public H2FullTextSearchProvider(final Variant variant) {
+    this.variant = variant;
+  }
+
+  @Override
+  protected List<Object[]> findMatchingKeys(final JPAODataSearchContext context, final List<JPASelector> keyPath,
+      final int maxResults) throws ODataApplicationException {
+    final String[] table = determineTable(context.getEntityType());
+    final String schema = table[0] != null ? toCatalogName(table[0]) : null;
+    // the arrays of the index entries are not readable by all JPA providers, so the elements are selected; the key
+    // columns of the index are the primary key columns of the table
+    final int numberOfKeyColumns = keyPath.size();
+    final StringBuilder selection = new StringBuilder();
+    for (int i = 1; i <= numberOfKeyColumns; i++) {
+      selection.append("ARRAY_GET(\"COLUMNS\", ").append(i).append("), ");
+    }
+    for (int i = 1; i <= numberOfKeyColumns; i++) {
+      selection.append("ARRAY_GET(\"KEYS\", ").append(i).append(i < numberOfKeyColumns ? "), " : ")");
+    }
+    final Query query = context.getEntityManager().createNativeQuery("SELECT " + selection + " FROM "
+        + variant.searchFunction + "(?1, 0, 0) WHERE \"TABLE\" = ?2" + (schema != null ? " AND \"SCHEMA\" = ?3"
+            : ""));
+    query.setParameter(1, buildQueryText(context.getSearchExpression()));
+    query.setMaxResults(maxResults);
+    query.setParameter(2, toCatalogName(table[1]));
+    if (schema != null) {
+      query.setParameter(3, schema);
+    }
+
+    final String[] keyColumnNames = new String[numberOfKeyColumns];
+    for (int i = 0; i < numberOfKeyColumns; i++) {
+      keyColumnNames[i] = toCatalogName(determineColumnName(keyPath.get(i)));
+    }
+    @SuppressWarnings("unchecked")
+    final List<Object[]> rows = query.getResultList();
+    final List<Object[]> keys = new ArrayList<>(rows.size());
+    for (final Object[] row : rows) {
+      keys.add(orderKeyValues(keyColumnNames, row));
+    }
+    return keys;
+  }
+
+  /**
+   * Bring the key values of an index entry (the column names followed by the values) into the order of the key
+   * attributes.
+   */
+  private Object[] orderKeyValues(final String[] keyColumnNames, final Object[] row)
+      throws ODataApplicationException {
+    final Object[] key = new Object[keyColumnNames.length];
+    for (int i = 0; i < keyColumnNames.length; i++) {
+      boolean found = false;
+      for (int c = 0; c < keyColumnNames.length; c++) {
+        if (keyColumnNames[i].equals(row[c])) {
+          key[i] = row[keyColumnNames.length + c];
+          found = true;
+          break;
+        }
+      }
+      if (!found) {
+        throw new ODataJPADBAdaptorException(ODataJPADBAdaptorException.MessageKeys.WRONG_NO_KEY_PROP,
+            HttpStatusCode.INTERNAL_SERVER_ERROR);
+      }
+    }
+    return key;
+  }
+
+  private String buildQueryText(final SearchExpression expression) throws ODataApplicationException {
+    if (expression.isSearchBinary()) {
+      final SearchBinary binary = expression.asSearchBinary();
+      if (variant == Variant.NATIVE) {
+        if (binary.getOperator() != SearchBinaryOperatorKind.AND) {
+          throw new ODataJPADBAdaptorException(ODataJPADBAdaptorException.MessageKeys.NOT_SUPPORTED_SEARCH,
+              HttpStatusCode.NOT_IMPLEMENTED);
+        }
+        // all words must match
+        return buildQueryText(binary.getLeftOperand()) + " " + buildQueryText(binary.getRightOperand());
+      }
+      return "(" + buildQueryText(binary.getLeftOperand()) + " " + binary.getOperator().name() + " "
+      + buildQueryText(binary.getRightOperand()) + ")";
+    } else if (expression.isSearchUnary()) {
+      if (variant == Variant.NATIVE) {
+        throw new ODataJPADBAdaptorException(ODataJPADBAdaptorException.MessageKeys.NOT_SUPPORTED_SEARCH,
+            HttpStatusCode.NOT_IMPLEMENTED);
+      }
+      return "NOT " + buildQueryText(expression.asSearchUnary().getOperand());
+    }
+    final String term = expression.asSearchTerm().getSearchTerm();
+    if (variant == Variant.LUCENE) {
+      // a phrase for Lucene
+      return "\"" + term.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+    return term;
+  }
+
+}
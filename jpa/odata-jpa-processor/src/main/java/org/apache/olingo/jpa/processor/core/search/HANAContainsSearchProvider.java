@@ -0,0 +1,98 @@
+package org.apache.olingo.jpa.processor.core.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.Query;
+
+import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPASelector;
+import org.apache.olingo.jpa.processor.core.api.JPAODataSearchContext;
+import org.apache.olingo.jpa.processor.core.exception.ODataJPADBAdaptorException;
+import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.uri.queryoption.search.SearchBinary;
+import org.apache.olingo.server.api.uri.queryoption.search.SearchBinaryOperatorKind;
+import org.apache.olingo.server.api.uri.queryoption.search.SearchExpression;
+
+/**
+ * Search provider using the <code>CONTAINS()</code> predicate of SAP HANA on the searchable (string) columns of the
+ * entity type. The predicate cannot be expressed in JPA criteria queries, so the keys of the matching entities are
+ * selected by a native query. A full-text index on the columns is recommended.
+ *
+ * @see org.apache.olingo.jpa.processor.core.database.JPA_HANADatabaseProcessor
+ */
+public class HANAContainsSearchProvider extends AbstractKeySetSearchProvider {
+
+  private final Double fuzziness;
+
+  /**
+   * Create a provider for exact search.
+   */
+  public HANAContainsSearchProvider() {
+    this(null);
+  }
+
+  /**
+   *
+   * @param fuzziness The fuzzy search threshold (0.0 - 1.0) or <code>null</code> for exact search.
+   */
+  public HANAContainsSearchProvider(final Double fuzziness) {
+    this.fuzziness = fuzziness;
+  }
+
+  @Override
+  protected List<Object[]> findMatchingKeys(final JPAODataSearchContext context, final List<JPASelector> keyPath,
+      final int maxResults) throws ODataApplicationException {
+    final StringBuilder searchColumns = new StringBuilder();
+    for (int i = 0; i < context.getSearchableAttributes().size(); i++) {
+      final JPASelector attribute = context.getSearchableAttributes().get(i);
+      if (context.getSearchColumns().get(i).getJavaType() != String.class) {
+        continue;
+      }
+      if (searchColumns.length() > 0) {
+        searchColumns.append(", ");
+      }
+      searchColumns.append(determineColumnName(attribute));
+    }
+    if (searchColumns.length() == 0) {
+      throw new ODataJPADBAdaptorException(ODataJPADBAdaptorException.MessageKeys.NOT_SUPPORTED_SEARCH,
+          HttpStatusCode.INTERNAL_SERVER_ERROR);
+    }
+    final StringBuilder keyColumns = new StringBuilder();
+    for (final JPASelector keyAttribute : keyPath) {
+      if (keyColumns.length() > 0) {
+        keyColumns.append(", ");
+      }
+      keyColumns.append(determineColumnName(keyAttribute));
+    }
+    final String[] table = determineTable(context.getEntityType());
+    final String tableName = table[0] != null ? table[0] + "." + table[1] : table[1];
+
+    final Query query = context.getEntityManager().createNativeQuery("SELECT " + keyColumns + " FROM " + tableName
+        + " WHERE CONTAINS((" + searchColumns + "), ?1" + (fuzziness != null ? ", FUZZY(" + fuzziness + ")" : "")
+        + ")");
+    query.setParameter(1, buildQueryText(context.getSearchExpression()));
+    query.setMaxResults(maxResults);
+    final List<?> rows = query.getResultList();
+    final List<Object[]> keys = new ArrayList<>(rows.size());
+    for (final Object row : rows) {
+      // a single selected column is not delivered as array
+      keys.add(row instanceof Object[] ? (Object[]) row : new Object[] { row });
+    }
+    return keys;
+  }
+
+  private String buildQueryText(final SearchExpression expression) {
+    if (expression.isSearchBinary()) {
+      final SearchBinary binary = expression.asSearchBinary();
+      // terms separated by blank must all match
+      return "(" + buildQueryText(binary.getLeftOperand()) + (binary.getOperator() == SearchBinaryOperatorKind.OR
+          ? " OR " : " ") + buildQueryText(binary.getRightOperand()) + ")";
+    } else if (expression.isSearchUnary()) {
+      return "-" + buildQueryText(expression.asSearchUnary().getOperand());
+    }
+    // a phrase, quotes inside are not allowed
+    return "\"" + expression.asSearchTerm().getSearchTerm().replace("\"", " ") + "\"";
+  }
+
+}
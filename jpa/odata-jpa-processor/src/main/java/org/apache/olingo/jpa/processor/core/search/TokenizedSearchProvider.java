@@ -0,0 +1,93 @@
+package org.apache.olingo.jpa.processor.core.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Expression;
+
+import org.apache.olingo.jpa.processor.core.api.JPAODataSearchContext;
+import org.apache.olingo.jpa.processor.core.api.JPAODataSearchProvider;
+import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.uri.queryoption.search.SearchBinary;
+import org.apache.olingo.server.api.uri.queryoption.search.SearchBinaryOperatorKind;
+import org.apache.olingo.server.api.uri.queryoption.search.SearchExpression;
+import org.apache.olingo.server.core.uri.parser.search.SearchTermImpl;
+
+/**
+ * Database independent search provider splitting every search term into tokens (words). An entity matches a term if
+ * every token is found in any of the searchable columns, so a phrase like <i>"John Doe"</i> will also match an
+ * entity with first and last name in different columns. In contrast to the default search, the $search operators
+ * AND, OR and NOT are supported.
+ * <p>
+ * The tokens are matched by the conditions of
+ * {@link org.apache.olingo.jpa.processor.core.api.JPAODataDatabaseProcessor#createSearchExpression(org.apache.olingo.server.api.uri.queryoption.search.SearchTerm, List)
+ * JPAODataDatabaseProcessor#createSearchExpression()}.
+ */
+public class TokenizedSearchProvider implements JPAODataSearchProvider {
+
+  private static final Pattern DEFAULT_TOKEN_SEPARATOR = Pattern.compile("\\s+");
+
+  private final Pattern tokenSeparator;
+
+  public TokenizedSearchProvider() {
+    this(DEFAULT_TOKEN_SEPARATOR);
+  }
+
+  /**
+   *
+   * @param tokenSeparator The pattern to split a search term into tokens.
+   */
+  public TokenizedSearchProvider(final Pattern tokenSeparator) {
+    this.tokenSeparator = tokenSeparator;
+  }
+
+  @Override
+  public Expression<Boolean> createSearchCondition(final JPAODataSearchContext context)
+      throws ODataApplicationException {
+    return createCondition(context, context.getSearchExpression());
+  }
+
+  private Expression<Boolean> createCondition(final JPAODataSearchContext context,
+      final SearchExpression expression) throws ODataApplicationException {
+    final CriteriaBuilder cb = context.getCriteriaBuilder();
+    if (expression.isSearchBinary()) {
+      final SearchBinary binary = expression.asSearchBinary();
+      final Expression<Boolean> left = createCondition(context, binary.getLeftOperand());
+      final Expression<Boolean> right = createCondition(context, binary.getRightOperand());
+      if (binary.getOperator() == SearchBinaryOperatorKind.OR) {
+        return cb.or(left, right);
+      }
+      return cb.and(left, right);
+    } else if (expression.isSearchUnary()) {
+      return cb.not(createCondition(context, expression.asSearchUnary().getOperand()));
+    }
+    Expression<Boolean> termCondition = null;
+    for (final String token : tokenize(expression.asSearchTerm().getSearchTerm())) {
+      Expression<Boolean> tokenCondition = context.getDatabaseProcessor().createSearchExpression(
+          new SearchTermImpl(token), context.getSearchColumns());
+      if (tokenCondition == null) {
+        // no searchable column for the token
+        tokenCondition = cb.disjunction();
+      }
+      termCondition = termCondition == null ? tokenCondition : cb.and(termCondition, tokenCondition);
+    }
+    return termCondition != null ? termCondition : cb.conjunction();
+  }
+
+  /**
+   *
+   * @return The non empty tokens of the search term.
+   */
+  protected List<String> tokenize(final String searchTerm) {
+    final List<String> tokens = new ArrayList<>();
+    for (final String token : tokenSeparator.split(searchTerm)) {
+      if (!token.isEmpty()) {
+        tokens.add(token);
+      }
+    }
+    return tokens;
+  }
+
+}
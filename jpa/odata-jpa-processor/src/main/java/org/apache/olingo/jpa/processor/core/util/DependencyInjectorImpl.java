@@ -1,12 +1,18 @@
 package org.apache.olingo.jpa.processor.core.util;
 
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -52,18 +58,59 @@ public final class DependencyInjectorImpl implements ModifiableDependencyInjecto
     }
   }
 
-  private static class InjectionOccurrence {
+  /**
+   * A field annotated for injection, with the setter created once for all injections into instances of the
+   * declaring class.
+   */
+  private static class InjectionPoint {
+
+    private static final MethodType TYPE_SETTER = MethodType.methodType(void.class, Object.class, Object.class);
 
+    private final Class<?> type;
     private final Field field;
-    private final Object matchingObject;
+    private final MethodHandle setter;
 
-    InjectionOccurrence(final Field field, final Object matchingObject) {
-      super();
+    InjectionPoint(final Field field) {
+      this.type = field.getType();
       this.field = field;
-      this.matchingObject = matchingObject;
+      field.setAccessible(true);
+      MethodHandle fieldSetter;
+      try {
+        fieldSetter = MethodHandles.lookup().unreflectSetter(field);
+        if (Modifier.isStatic(field.getModifiers())) {
+          // ignore the target object
+          fieldSetter = MethodHandles.dropArguments(fieldSetter, 0, Object.class);
+        }
+        fieldSetter = fieldSetter.asType(TYPE_SETTER);
+      } catch (final IllegalAccessException e) {
+        // final field: no method handle, but writable by reflection
+        fieldSetter = null;
+      }
+      this.setter = fieldSetter;
+    }
+
+    void inject(final Object target, final Object value) throws Throwable {
+      if (setter == null) {
+        field.set(target, value);
+      } else {
+        setter.invokeExact(target, value);
+      }
     }
   }
 
+  /**
+   * The fields to inject are determined only once per class, because the inspection of all fields and annotations
+   * of a class hierarchy is expensive if done for every injection.
+   */
+  private static final ClassValue<List<InjectionPoint>> INJECTION_PLANS = new ClassValue<List<InjectionPoint>>() {
+    @Override
+    protected List<InjectionPoint> computeValue(final Class<?> type) {
+      final List<InjectionPoint> points = new ArrayList<>();
+      collectInjectionPoints(type, points);
+      return Collections.unmodifiableList(points);
+    }
+  };
+
   private static class ValueReference<T> {
     private final T value;
 
@@ -193,32 +240,25 @@ public final class DependencyInjectorImpl implements ModifiableDependencyInjecto
     internalInjectDependencyValues(target, new HashSet<>());
   }
 
-  void internalInjectDependencyValues(final Object target, final Set<Field> alreadyHandledFields)
+  void internalInjectDependencyValues(final Object target, final Set<InjectionPoint> alreadyHandledFields)
       throws ODataApplicationException {
     // own values
-    final Collection<InjectionOccurrence> occurrences = findAnnotatedFields(target.getClass());
-    for (final InjectionOccurrence o : occurrences) {
-      if (alreadyHandledFields.contains(o.field)) {
+    for (final InjectionPoint point : INJECTION_PLANS.get(target.getClass())) {
+      if (alreadyHandledFields.contains(point)) {
         continue;
       }
-      if (o.matchingObject != null) {
+      final Object value = findMatchingValue(point.type);
+      if (value != null) {
         // if no DI has an value then the field is affected multiple times from 'null' setting
-        alreadyHandledFields.add(o.field);
-      }
-      final boolean accessible = o.field.isAccessible();
-      if (!accessible) {
-        o.field.setAccessible(true);
+        alreadyHandledFields.add(point);
       }
       try {
-        o.field.set(target, o.matchingObject);
-      } catch (IllegalArgumentException | IllegalAccessException e) {
+        point.inject(target, value);
+      } catch (final Error e) {
+        throw e;
+      } catch (final Throwable e) {
         throw new ODataJPAProcessorException(ODataJPAProcessorException.MessageKeys.QUERY_PREPARATION_ERROR,
             HttpStatusCode.INTERNAL_SERVER_ERROR, e);
-      } finally {
-        // reset
-        if (!accessible) {
-          o.field.setAccessible(false);
-        }
       }
     }
     // parent values
@@ -245,31 +285,30 @@ public final class DependencyInjectorImpl implements ModifiableDependencyInjecto
     return false;
   }
 
-  private Collection<InjectionOccurrence> findAnnotatedFields(final Class<?> clazz) {
+  private static void collectInjectionPoints(final Class<?> clazz, final List<InjectionPoint> points) {
     if (Object.class.equals(clazz)) {
       // don't inspect Object class
-      return Collections.emptyList();
+      return;
     }
-    final Field[] clazzFields = clazz.getDeclaredFields();
-    final Collection<InjectionOccurrence> occurrences = new LinkedList<>();
-    Object value;
-    for (final Field field : clazzFields) {
+    for (final Field field : clazz.getDeclaredFields()) {
       if (isAnnotatedForInjection(field)) {
-        value = findMatchingValue(field);
-        occurrences.add(new InjectionOccurrence(field, value));
+        points.add(new InjectionPoint(field));
       }
     }
     final Class<?> clazzSuper = clazz.getSuperclass();
     if (clazzSuper != null) {
-      final Collection<InjectionOccurrence> superOccurrences = findAnnotatedFields(clazzSuper);
-      occurrences.addAll(superOccurrences);
+      collectInjectionPoints(clazzSuper, points);
     }
-    return occurrences;
   }
 
-  private Object findMatchingValue(final Field field) {
+  private Object findMatchingValue(final Class<?> fieldType) {
+    // fast path for values registered with the field type itself
+    final ValueReference<?> exactMatch = valueMapping.get(fieldType);
+    if (exactMatch != null) {
+      return exactMatch.getValueObject();
+    }
     for (final Entry<Class<?>, ValueReference<?>> entry : valueMapping.entrySet()) {
-      if (isMatchingType(entry.getKey(), field.getType())) {
+      if (isMatchingType(entry.getKey(), fieldType)) {
         return entry.getValue().getValueObject();
       }
     }
@@ -6,11 +6,13 @@ import javax.persistence.EntityManager;
 
 import org.apache.olingo.commons.api.data.Entity;
 import org.apache.olingo.commons.api.data.Property;
+import org.apache.olingo.commons.api.http.HttpHeader;
 import org.apache.olingo.jpa.metadata.core.edm.mapper.impl.IntermediateServiceDocument;
 import org.apache.olingo.jpa.processor.JPAODataRequestContext;
 import org.apache.olingo.server.api.OData;
 import org.apache.olingo.server.api.ODataRequest;
 import org.apache.olingo.server.api.ServiceMetadata;
+import org.apache.olingo.server.api.prefer.Preferences.Preference;
 import org.apache.olingo.server.api.processor.Processor;
 
 /**
@@ -21,12 +23,10 @@ import org.apache.olingo.server.api.processor.Processor;
 abstract class AbstractProcessor implements Processor {
 
   protected final IntermediateServiceDocument sd;
-  private final EntityManager em;
   private final JPAODataRequestContext requestContext;
 
   public AbstractProcessor(final JPAODataRequestContext requestContext) {
     this.requestContext = requestContext;
-    this.em = requestContext.getEntityManager();
     this.sd = requestContext.getEdmProvider().getServiceDocument();
   }
 
@@ -44,7 +44,8 @@ abstract class AbstractProcessor implements Processor {
   }
 
   protected final EntityManager getEntityManager() {
-    return em;
+    // not cached, because the entity manager may change for change sets in $batch requests
+    return requestContext.getEntityManager();
   }
 
   protected final JPAODataRequestContext getRequestContext() {
@@ -102,14 +103,14 @@ abstract class AbstractProcessor implements Processor {
   }
 
   /**
-   * @return TRUE if the request contains a header with the requested preference value.
+   * @return TRUE if the Prefer header of the request contains the preference with the requested value (like
+   * <code>return=minimal</code>).
    */
-  protected static boolean hasPreference(final ODataRequest request, final String headerName, final String headerValue) {
-    final String value = request.getHeader(headerName);
-    if (value == null) {
-      return false;
-    }
-    return value.equalsIgnoreCase(headerValue);
+  protected boolean hasPreference(final ODataRequest request, final String preferenceName,
+      final String preferenceValue) {
+    final Preference preference = getOData().createPreferences(request.getHeaders(HttpHeader.PREFER))
+        .getPreference(preferenceName);
+    return preference != null && preferenceValue.equalsIgnoreCase(preference.getValue());
   }
 
 }
@@ -1,13 +1,24 @@
 package org.apache.olingo.jpa.processor.impl;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
+import org.apache.olingo.commons.api.ex.ODataException;
 import org.apache.olingo.commons.api.format.ContentType;
 import org.apache.olingo.commons.api.http.HttpHeader;
+import org.apache.olingo.commons.api.http.HttpMethod;
 import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.jpa.processor.JPAODataRequestContext;
+import org.apache.olingo.jpa.processor.core.api.JPAODataBatchSupport;
+import org.apache.olingo.jpa.processor.core.api.JPAODataBatchSupport.IsolatedRequest;
 import org.apache.olingo.jpa.processor.core.exception.ODataJPAProcessorException;
 import org.apache.olingo.server.api.OData;
 import org.apache.olingo.server.api.ODataApplicationException;
@@ -22,18 +33,26 @@ import org.apache.olingo.server.api.deserializer.batch.ODataResponsePart;
 import org.apache.olingo.server.api.processor.BatchProcessor;
 
 /**
- * 
+ * Processor for $batch requests. Change sets are executed as one unit of work in a separate transaction, a modifying
+ * request outside of a change set is handled like a change set of its own. Independent GET requests may be executed
+ * concurrently, if an {@link JPAODataBatchSupport#getBatchExecutor() executor} is configured.
+ *
  * <a href=
  * "https://docs.oasis-open.org/odata/odata/v4.0/os/part1-protocol/odata-v4.0-os-part1-protocol.html#_Toc372793748"> aa
  * </a>
- * 
+ *
  * @author Oliver Grande
  *
  */
 public class JPAODataBatchProcessor implements BatchProcessor {
 
+  private final JPAODataRequestContext requestContext;
   private OData odata;
 
+  public JPAODataBatchProcessor(final JPAODataRequestContext requestContext) {
+    this.requestContext = requestContext;
+  }
+
   @Override
   public void init(final OData odata, final ServiceMetadata serviceMetadata) {
     this.odata = odata;
@@ -50,10 +69,25 @@ public class JPAODataBatchProcessor implements BatchProcessor {
     final List<BatchRequestPart> requestParts = odata.createFixedFormatDeserializer()
         .parseBatchRequest(request.getBody(), boundary, options);
 
-    final List<ODataResponsePart> responseParts = new ArrayList<ODataResponsePart>();
+    final JPAODataBatchSupport batchSupport = getBatchSupport();
+    final Executor executor = batchSupport != null ? batchSupport.getBatchExecutor() : null;
+    final boolean isolatedReadAllowed = executor != null;
+    final List<ODataResponsePart> responseParts = new ArrayList<ODataResponsePart>(requestParts.size());
+    final List<ODataRequest> readGroup = new ArrayList<ODataRequest>();
     for (final BatchRequestPart part : requestParts) {
-      responseParts.add(facade.handleBatchRequest(part));
+      if (isolatedReadAllowed && isReadRequest(part)) {
+        readGroup.add(part.getRequests().get(0));
+        continue;
+      }
+      processReadGroup(facade, readGroup, batchSupport, executor, responseParts);
+      final ODataResponsePart responsePart = facade.handleBatchRequest(part);
+      for (final ODataResponse partResponse : responsePart.getResponses()) {
+        bufferStreamedContent(partResponse);
+      }
+      responseParts.add(responsePart);
     }
+    processReadGroup(facade, readGroup, batchSupport, executor, responseParts);
+
     final InputStream responseContent = odata.createFixedFormatSerializer().batchResponse(responseParts, boundary);
     final String responseBoundary = "batch_" + UUID.randomUUID().toString();
 
@@ -62,11 +96,132 @@ public class JPAODataBatchProcessor implements BatchProcessor {
     response.setStatusCode(HttpStatusCode.ACCEPTED.getStatusCode());
   }
 
+  private JPAODataBatchSupport getBatchSupport() {
+    if (requestContext == null) {
+      return null;
+    }
+    return requestContext.getDependencyInjector().getDependencyValue(JPAODataBatchSupport.class);
+  }
+
+  private static boolean isReadRequest(final BatchRequestPart part) {
+    return !part.isChangeSet() && part.getRequests().size() == 1 && part.getRequests().get(0)
+        .getMethod() == HttpMethod.GET;
+  }
+
+  /**
+   * Process the collected GET requests concurrently and add the responses in the order of the requests. A single
+   * request is processed as usual, because the concurrent processing is more expensive.
+   */
+  private void processReadGroup(final BatchFacade facade, final List<ODataRequest> readGroup,
+      final JPAODataBatchSupport batchSupport, final Executor executor, final List<ODataResponsePart> responseParts)
+          throws ODataApplicationException, ODataLibraryException {
+    if (readGroup.isEmpty()) {
+      return;
+    }
+    if (readGroup.size() == 1) {
+      final ODataResponse partResponse = facade.handleODataRequest(readGroup.get(0));
+      bufferStreamedContent(partResponse);
+      responseParts.add(new ODataResponsePart(partResponse, false));
+      readGroup.clear();
+      return;
+    }
+    final List<IsolatedRequest> preparedRequests = new ArrayList<IsolatedRequest>(readGroup.size());
+    final List<CompletableFuture<ODataResponse>> futures = new ArrayList<CompletableFuture<ODataResponse>>(readGroup
+        .size());
+    try {
+      for (final ODataRequest partRequest : readGroup) {
+        // the preparation (security checks) needs the servlet request, so it's done by this thread
+        final IsolatedRequest isolatedRequest = prepareIsolated(batchSupport, partRequest);
+        preparedRequests.add(isolatedRequest);
+        CompletableFuture<ODataResponse> future;
+        try {
+          future = CompletableFuture.supplyAsync(() -> finishIsolated(isolatedRequest, partRequest), executor);
+        } catch (final RejectedExecutionException e) {
+          // executor saturated or shut down: process the part by this thread
+          future = CompletableFuture.completedFuture(finishIsolated(isolatedRequest, partRequest));
+        }
+        futures.add(future);
+      }
+      for (int i = 0; i < futures.size(); i++) {
+        try {
+          responseParts.add(new ODataResponsePart(futures.get(i).join(), false));
+        } catch (final CompletionException e) {
+          throw new ODataJPAProcessorException(ODataJPAProcessorException.MessageKeys.BATCH_PART_EXECUTION_ERROR,
+              HttpStatusCode.INTERNAL_SERVER_ERROR, e.getCause(), readGroup.get(i).getRawODataPath());
+        }
+      }
+    } finally {
+      // requests not (yet) processed, because not executed or a previous part failed
+      for (final IsolatedRequest isolatedRequest : preparedRequests) {
+        isolatedRequest.release();
+      }
+    }
+    readGroup.clear();
+  }
+
+  private IsolatedRequest prepareIsolated(final JPAODataBatchSupport batchSupport,
+      final ODataRequest partRequest) throws ODataJPAProcessorException {
+    try {
+      return batchSupport.prepareIsolated(partRequest);
+    } catch (final ODataException e) {
+      throw new ODataJPAProcessorException(ODataJPAProcessorException.MessageKeys.BATCH_PART_EXECUTION_ERROR,
+          HttpStatusCode.INTERNAL_SERVER_ERROR, e, partRequest.getRawODataPath());
+    }
+  }
+
+  private ODataResponse finishIsolated(final IsolatedRequest isolatedRequest, final ODataRequest partRequest) {
+    final ODataResponse partResponse = isolatedRequest.process();
+    // same as done by Olingo for parts processed by the batch facade
+    final String contentId = partRequest.getHeader(HttpHeader.CONTENT_ID);
+    if (contentId != null) {
+      partResponse.setHeader(HttpHeader.CONTENT_ID, contentId);
+    }
+    bufferStreamedContent(partResponse);
+    return partResponse;
+  }
+
+  /**
+   * The batch response serializer does not support streamed content, so we have to serialize the content of the
+   * response part before.
+   */
+  private void bufferStreamedContent(final ODataResponse partResponse) {
+    if (partResponse.getContent() != null || partResponse.getODataContent() == null) {
+      return;
+    }
+    final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    partResponse.getODataContent().write(buffer);
+    partResponse.setContent(new ByteArrayInputStream(buffer.toByteArray()));
+  }
+
+  /**
+   * All requests of the change set are processed in a separate transaction, committed only if all requests are
+   * successful. Otherwise the response of the failed request is the only response of the change set.
+   */
   @Override
   public ODataResponsePart processChangeSet(final BatchFacade facade, final List<ODataRequest> requests)
       throws ODataApplicationException, ODataLibraryException {
-    throw new ODataJPAProcessorException(ODataJPAProcessorException.MessageKeys.BATCH_CHANGE_SET_NOT_IMPLEMENTED,
-        HttpStatusCode.NOT_IMPLEMENTED);
+    final JPAODataBatchSupport batchSupport = getBatchSupport();
+    if (batchSupport == null) {
+      throw new ODataJPAProcessorException(ODataJPAProcessorException.MessageKeys.BATCH_CHANGE_SET_NOT_IMPLEMENTED,
+          HttpStatusCode.NOT_IMPLEMENTED);
+    }
+    boolean commit = false;
+    batchSupport.beginChangeSet();
+    try {
+      final List<ODataResponse> responses = new ArrayList<ODataResponse>(requests.size());
+      for (final ODataRequest changeRequest : requests) {
+        final ODataResponse changeResponse = facade.handleODataRequest(changeRequest);
+        if (changeResponse.getStatusCode() >= HttpStatusCode.BAD_REQUEST.getStatusCode()) {
+          return new ODataResponsePart(changeResponse, false);
+        }
+        bufferStreamedContent(changeResponse);
+        responses.add(changeResponse);
+      }
+      commit = true;
+      return new ODataResponsePart(responses, true);
+    } finally {
+      batchSupport.endChangeSet(commit);
+    }
   }
 
 }
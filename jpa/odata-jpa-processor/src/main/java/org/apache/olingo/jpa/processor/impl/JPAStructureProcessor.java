@@ -1,7 +1,12 @@
 package org.apache.olingo.jpa.processor.impl;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.logging.Level;
@@ -26,6 +31,9 @@ import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPAOperationResultPara
 import org.apache.olingo.jpa.metadata.core.edm.mapper.exception.ODataJPAModelException;
 import org.apache.olingo.jpa.processor.JPAODataRequestContext;
 import org.apache.olingo.jpa.processor.core.api.JPAODataDatabaseProcessor;
+import org.apache.olingo.jpa.processor.core.api.JPAODataEntityChangeListener;
+import org.apache.olingo.jpa.processor.core.api.JPAODataPendingEntityChanges;
+import org.apache.olingo.jpa.processor.core.api.JPAODataSearchProvider;
 import org.apache.olingo.jpa.processor.core.exception.ODataJPAProcessorException;
 import org.apache.olingo.jpa.processor.core.exception.ODataJPAQueryException;
 import org.apache.olingo.jpa.processor.core.query.EntityAggregationQueryBuilder;
@@ -47,14 +55,17 @@ import org.apache.olingo.jpa.processor.core.util.TypedParameter;
 import org.apache.olingo.jpa.processor.transformation.Transformation;
 import org.apache.olingo.jpa.processor.transformation.impl.ODataResponseContent;
 import org.apache.olingo.jpa.processor.transformation.impl.ODataResponseContent.ContentState;
+import org.apache.olingo.jpa.processor.transformation.impl.QueryEntityResult2StreamedODataResponseContentTransformation;
 import org.apache.olingo.server.api.OData;
 import org.apache.olingo.server.api.ODataApplicationException;
 import org.apache.olingo.server.api.ODataLibraryException;
 import org.apache.olingo.server.api.ODataRequest;
 import org.apache.olingo.server.api.ODataResponse;
 import org.apache.olingo.server.api.ServiceMetadata;
+import org.apache.olingo.server.api.deserializer.DeserializerException;
 import org.apache.olingo.server.api.deserializer.DeserializerResult;
 import org.apache.olingo.server.api.deserializer.ODataDeserializer;
+import org.apache.olingo.server.api.etag.PreconditionException;
 import org.apache.olingo.server.api.processor.ComplexProcessor;
 import org.apache.olingo.server.api.processor.CountEntityCollectionProcessor;
 import org.apache.olingo.server.api.processor.EntityProcessor;
@@ -70,14 +81,26 @@ import org.apache.olingo.server.api.uri.UriInfoResource;
 import org.apache.olingo.server.api.uri.UriResource;
 import org.apache.olingo.server.api.uri.UriResourceFunction;
 import org.apache.olingo.server.api.uri.UriResourceKind;
+import org.apache.olingo.server.api.uri.UriResourcePartTyped;
 import org.apache.olingo.server.api.uri.queryoption.ExpandOption;
+import org.apache.olingo.server.core.serializer.utils.ContentTypeHelper;
 import org.apache.olingo.server.core.uri.queryoption.ExpandItemImpl;
 import org.apache.olingo.server.core.uri.queryoption.ExpandOptionImpl;
 import org.apache.olingo.server.core.uri.queryoption.LevelsOptionImpl;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+
 public class JPAStructureProcessor extends AbstractProcessor implements EntityProcessor, CountEntityCollectionProcessor,
 ComplexProcessor, PrimitiveValueProcessor {
 
+  private static final int MAX_LEADING_WHITESPACE = 1024;
+  private static final String PREFERENCE_RETURN = "return";
+  private static final String PREFERENCE_RETURN_MINIMAL = "minimal";
+  private static final String PREFERENCE_RETURN_REPRESENTATION = "representation";
   private final Logger log = Logger.getLogger(AbstractProcessor.class.getName());
 
   public JPAStructureProcessor(final JPAODataRequestContext context) {
@@ -106,19 +129,24 @@ ComplexProcessor, PrimitiveValueProcessor {
       final ServiceMetadata serviceMetadata = getServiceMetadata();
       final EdmEntityType edmType = serviceMetadata.getEdm().getEntityType(jpaEntityType.getExternalFQN());
 
-      final ODataDeserializer deserializer = odata.createDeserializer(requestFormat, serviceMetadata);
-      final DeserializerResult deserializerResult = deserializer.entity(request.getBody(), edmType);
-      Entity odataEntity = deserializerResult.getEntity();
-
-      final EntityConverter entityConverter = new EntityConverter(odata.createUriHelper(), sd, serviceMetadata);
-      final Object persistenceJPAEntity = entityConverter.convertOData2JPAEntity(odataEntity, jpaEntityType);
-
       final DTOEntityHelper dtoHelper = new DTOEntityHelper(getRequestContext(), uriInfo);
       if (dtoHelper.isTargetingDTOWithHandler(targetEdmEntitySet)) {
         throw new ODataJPAProcessorException(ODataJPAProcessorException.MessageKeys.NOT_SUPPORTED_CREATE,
             HttpStatusCode.BAD_REQUEST);
       }
 
+      final InputStream body = new BufferedInputStream(request.getBody());
+      if (requestFormat.isCompatible(ContentType.JSON) && isJsonArray(body)) {
+        createEntities(body, response, jpaEntityType, edmType, requestFormat);
+        return;
+      }
+      final ODataDeserializer deserializer = odata.createDeserializer(requestFormat, serviceMetadata);
+      final DeserializerResult deserializerResult = deserializer.entity(body, edmType);
+      Entity odataEntity = deserializerResult.getEntity();
+
+      final EntityConverter entityConverter = new EntityConverter(odata.createUriHelper(), sd, serviceMetadata);
+      final Object persistenceJPAEntity = entityConverter.convertOData2JPAEntity(odataEntity, jpaEntityType);
+
       final EntityManager em = getEntityManager();
       em.persist(persistenceJPAEntity);
       // force writing to DB...
@@ -128,13 +156,16 @@ ComplexProcessor, PrimitiveValueProcessor {
       log.log(Level.FINER, "Reload new created entity of type " + jpaEntityType.getInternalName()
       + " from DB to get also dervied values not given in creation request...");
       em.refresh(persistenceJPAEntity);
-      // convert reverse to get also generated fields
-      odataEntity = entityConverter.convertJPA2ODataEntity(jpaEntityType, persistenceJPAEntity);
+      notifyEntityChange(jpaEntityType, persistenceJPAEntity, false);
+      final boolean returnMinimal = hasPreference(request, PREFERENCE_RETURN, PREFERENCE_RETURN_MINIMAL);
+      // convert reverse to get also generated fields, the related entities are not needed without response content
+      odataEntity = entityConverter.convertJPA2ODataEntity(jpaEntityType, persistenceJPAEntity, !returnMinimal);
 
       response.setHeader("Location", request.getRawBaseUri() + "/" + odataEntity.getId().toASCIIString()); // set always
-      if (hasPreference(request, "return", "minimal")) {
+      if (returnMinimal) {
         response.setStatusCode(HttpStatusCode.NO_CONTENT.getStatusCode());
-        request.setHeader(HttpHeader.ODATA_ENTITY_ID, odataEntity.getId().toASCIIString());
+        response.setHeader(HttpHeader.ODATA_ENTITY_ID, odataEntity.getId().toASCIIString());
+        response.setHeader(HttpHeader.PREFERENCE_APPLIED, PREFERENCE_RETURN + "=" + PREFERENCE_RETURN_MINIMAL);
       } else {
         // full response containing complete entity content
         // assuming the complete action result should be expanded and serialized back to client
@@ -169,6 +200,106 @@ ComplexProcessor, PrimitiveValueProcessor {
 
   }
 
+  /**
+   *
+   * @return FALSE if the response format does not contain navigation links (JSON without full metadata), so the
+   * related entities need not to be loaded.
+   */
+  private static boolean isNavigationLinkSerialized(final ContentType responseFormat) {
+    return !responseFormat.isCompatible(ContentType.JSON) || ContentTypeHelper.isODataMetadataFull(responseFormat);
+  }
+
+  /**
+   *
+   * @return TRUE if the (JSON) content starts with an array; the stream is not consumed.
+   */
+  private static boolean isJsonArray(final InputStream body) throws DeserializerException {
+    try {
+      // UTF-8 BOM + whitespace + first character
+      body.mark(3 + MAX_LEADING_WHITESPACE + 1);
+      try {
+        int c = body.read();
+        if (c == 0xEF) {
+          // skip a leading UTF-8 BOM
+          if (body.read() != 0xBB || body.read() != 0xBF) {
+            return false;
+          }
+          c = body.read();
+        }
+        for (int i = 0; i < MAX_LEADING_WHITESPACE && Character.isWhitespace(c); i++) {
+          c = body.read();
+        }
+        return c == '[';
+      } finally {
+        body.reset();
+      }
+    } catch (final IOException e) {
+      throw new DeserializerException("An I/O exception occurred.", e, DeserializerException.MessageKeys.IO_EXCEPTION);
+    }
+  }
+
+  /**
+   * Bulk creation of the entities given as JSON array. The entities are deserialized one after the other from the
+   * stream and the entity manager is flushed and cleared every {@link JPAODataDatabaseProcessor#getBulkFlushSize() n}
+   * entities, so the memory consumption does not depend on the number of entities. Enable the JDBC batch writing of
+   * the JPA provider ({@link org.apache.olingo.jpa.processor.core.mapping.AbstractJPAAdapter#enableJDBCBatchWriting})
+   * to send the inserts of one flush in a few round trips. The response has no content.
+   */
+  private void createEntities(final InputStream body, final ODataResponse response, final JPAEntityType jpaEntityType,
+      final EdmEntityType edmType, final ContentType requestFormat) throws ODataLibraryException,
+      ODataApplicationException, ODataJPAModelException {
+    final ODataDeserializer deserializer = getOData().createDeserializer(requestFormat, getServiceMetadata());
+    final EntityConverter entityConverter = new EntityConverter(getOData().createUriHelper(), sd,
+        getServiceMetadata());
+    final EntityManager em = getEntityManager();
+    final int bulkFlushSize = getRequestContext().getDatabaseProcessor().getBulkFlushSize();
+    final List<Object> unflushedEntities = new ArrayList<>();
+    final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    final JsonFactory jsonFactory = new JsonFactory();
+    int count = 0;
+    try (JsonParser parser = jsonFactory.createParser(body)) {
+      parser.nextToken();
+      while (parser.nextToken() == JsonToken.START_OBJECT) {
+        buffer.reset();
+        try (JsonGenerator generator = jsonFactory.createGenerator(buffer)) {
+          generator.copyCurrentStructure(parser);
+        }
+        final Entity odataEntity = deserializer.entity(new ByteArrayInputStream(buffer.toByteArray()), edmType)
+            .getEntity();
+        final Object persistenceJPAEntity = entityConverter.convertOData2JPAEntity(odataEntity, jpaEntityType);
+        em.persist(persistenceJPAEntity);
+        unflushedEntities.add(persistenceJPAEntity);
+        if (unflushedEntities.size() == bulkFlushSize) {
+          flushCreatedEntities(em, jpaEntityType, unflushedEntities);
+        }
+        count++;
+      }
+      if (parser.getCurrentToken() != JsonToken.END_ARRAY) {
+        throw new DeserializerException("Only entities are allowed in the array",
+            DeserializerException.MessageKeys.JSON_SYNTAX_EXCEPTION);
+      }
+    } catch (final JsonProcessingException e) {
+      throw new DeserializerException("JSON syntax exception", e,
+          DeserializerException.MessageKeys.JSON_SYNTAX_EXCEPTION);
+    } catch (final IOException e) {
+      throw new DeserializerException("An I/O exception occurred.", e, DeserializerException.MessageKeys.IO_EXCEPTION);
+    }
+    flushCreatedEntities(em, jpaEntityType, unflushedEntities);
+    log.log(Level.FINER, "Created " + count + " entities of type " + jpaEntityType.getInternalName());
+    response.setStatusCode(HttpStatusCode.NO_CONTENT.getStatusCode());
+  }
+
+  private void flushCreatedEntities(final EntityManager em, final JPAEntityType jpaEntityType,
+      final List<Object> unflushedEntities) throws ODataJPAModelException {
+    em.flush();
+    for (final Object persistenceJPAEntity : unflushedEntities) {
+      notifyEntityChange(jpaEntityType, persistenceJPAEntity, false);
+    }
+    unflushedEntities.clear();
+    // the created entities are not needed anymore
+    em.clear();
+  }
+
   @Override
   public void updateEntity(final ODataRequest request, final ODataResponse response, final UriInfo uriInfo,
       final ContentType requestFormat,
@@ -222,6 +353,7 @@ ComplexProcessor, PrimitiveValueProcessor {
       throw new ODataJPAProcessorException(ODataJPAProcessorException.MessageKeys.QUERY_RESULT_CONV_ERROR,
           HttpStatusCode.INTERNAL_SERVER_ERROR);
     } else {
+      checkChangePreconditions(request, entityCollectionCompleteEntities.getEntities().get(0));
       try {
         final JPAEntityType jpaEntityType = getRequestContext().getEdmProvider().getServiceDocument()
             .getEntityType(targetEdmEntitySet.getName());
@@ -247,10 +379,26 @@ ComplexProcessor, PrimitiveValueProcessor {
         final Object persistenceModifiedEntity = entityConverter.convertOData2JPAEntity(odataEntityMerged,
             jpaEntityType);
         final Object persistenceMergedEntity = em.merge(persistenceModifiedEntity);
-
-        // convert reverse to get also generated fields
+        if (jpaEntityType.hasEtag()) {
+          // force the version increment to return the new ETag
+          em.flush();
+        }
+        notifyEntityChange(jpaEntityType, persistenceMergedEntity, false);
+
+        if (hasPreference(request, PREFERENCE_RETURN, PREFERENCE_RETURN_MINIMAL)) {
+          // no response content, so no conversion (loading the related entities) required
+          final String eTag = entityConverter.convertJPA2ODataETag(jpaEntityType, persistenceMergedEntity);
+          if (eTag != null) {
+            response.setHeader(HttpHeader.ETAG, eTag);
+          }
+          response.setHeader(HttpHeader.PREFERENCE_APPLIED, PREFERENCE_RETURN + "=" + PREFERENCE_RETURN_MINIMAL);
+          response.setStatusCode(HttpStatusCode.NO_CONTENT.getStatusCode());
+          return;
+        }
+        // convert the managed instance reverse to get also generated fields; $expand is not allowed for PATCH/PUT,
+        // so the related entities are needed only for serialized links
         final Entity odataEntityUpdated = entityConverter.convertJPA2ODataEntity(jpaEntityType,
-            persistenceMergedEntity);
+            persistenceMergedEntity, isNavigationLinkSerialized(responseFormat));
 
         // full response containing complete entity content
         final EntityCollection entityCollectionResult = new EntityCollection();
@@ -262,6 +410,13 @@ ComplexProcessor, PrimitiveValueProcessor {
         response.setContent(serializerResult.getContent());
         response.setStatusCode(HttpStatusCode.OK.getStatusCode());
         response.setHeader(HttpHeader.CONTENT_TYPE, responseFormat.toContentTypeString());
+        if (hasPreference(request, PREFERENCE_RETURN, PREFERENCE_RETURN_REPRESENTATION)) {
+          response.setHeader(HttpHeader.PREFERENCE_APPLIED, PREFERENCE_RETURN + "="
+              + PREFERENCE_RETURN_REPRESENTATION);
+        }
+        if (odataEntityUpdated.getETag() != null) {
+          response.setHeader(HttpHeader.ETAG, odataEntityUpdated.getETag());
+        }
       } catch (final ODataException e) {
         throw new ODataJPAProcessorException(ODataJPAProcessorException.MessageKeys.QUERY_PREPARATION_ERROR,
             HttpStatusCode.INTERNAL_SERVER_ERROR, e);
@@ -285,6 +440,9 @@ ComplexProcessor, PrimitiveValueProcessor {
       response.setContent(new ByteArrayInputStream("{}".getBytes()));
       response.setStatusCode(HttpStatusCode.NOT_FOUND.getStatusCode());
     } else {
+      for (final Entity entity : entityCollection.getEntities()) {
+        checkChangePreconditions(request, entity);
+      }
       final List<UriResource> resourceParts = uriInfo.getUriResourceParts();
       final EdmEntitySet targetEdmEntitySet = Util.determineTargetEntitySet(resourceParts);
       try {
@@ -295,6 +453,7 @@ ComplexProcessor, PrimitiveValueProcessor {
         final JPAEntityType jpaType = sd.getEntityType(targetEdmEntitySet.getName());
         for (final Entity entity : entityCollection.getEntities()) {
           final Object persistenceEntity = invoker.lookupJPAEntity(jpaType, entity);
+          notifyEntityChange(jpaType, persistenceEntity, true);
           em.remove(persistenceEntity);
         }
         // ok
@@ -307,6 +466,31 @@ ComplexProcessor, PrimitiveValueProcessor {
 
   }
 
+  /**
+   * Keep the index of a search provider {@link JPAODataEntityChangeListener listening} for changes in sync. The
+   * change is applied after the commit of the transaction.
+   */
+  private void notifyEntityChange(final JPAEntityType jpaEntityType, final Object jpaEntity, final boolean deleted)
+      throws ODataJPAModelException {
+    final JPAODataSearchProvider searchProvider = getRequestContext().getDatabaseProcessor().getSearchProvider(
+        jpaEntityType);
+    if (!(searchProvider instanceof JPAODataEntityChangeListener)) {
+      return;
+    }
+    final Runnable change;
+    if (deleted) {
+      change = ((JPAODataEntityChangeListener) searchProvider).entityDeleted(jpaEntityType, jpaEntity);
+    } else {
+      change = ((JPAODataEntityChangeListener) searchProvider).entityChanged(jpaEntityType, jpaEntity);
+    }
+    final JPAODataPendingEntityChanges pendingChanges = getRequestContext().getDependencyInjector()
+        .getDependencyValue(JPAODataPendingEntityChanges.class);
+    if (pendingChanges == null) {
+      throw new IllegalStateException("No collector for the entity changes of the request available");
+    }
+    pendingChanges.add(change);
+  }
+
   private EntityCollection retrieveFunctionData(final ODataRequest request, final UriInfo uriInfo)
       throws ODataApplicationException, ODataLibraryException {
 
@@ -336,8 +520,8 @@ ComplexProcessor, PrimitiveValueProcessor {
 
     final EdmEntitySet returnEntitySet = uriResourceFunction.getFunctionImport().getReturnedEntitySet();
     try {
-      final JPAInstanceResultConverter converter = new JPAInstanceResultConverter(getOData().createUriHelper(),
-          sd, functionQueryResult, returnEntitySet, returnType.getTypeClass());
+      final JPAInstanceResultConverter converter = new JPAInstanceResultConverter(sd, functionQueryResult,
+          returnEntitySet, returnType.getTypeClass());
       return converter.getResult();
     } catch (final ODataJPAModelException e) {
       throw new ODataJPAProcessorException(ODataJPAProcessorException.MessageKeys.QUERY_RESULT_CONV_ERROR,
@@ -416,6 +600,15 @@ ComplexProcessor, PrimitiveValueProcessor {
       final EntityQueryBuilder query = new EntityQueryBuilder(getRequestContext(), new NavigationRoot(uriInfo),
           getEntityManager(),
           serviceMetadata);
+      final List<UriResource> resourceParts = uriInfo.getUriResourceParts();
+      final UriResource lastPathSegment = resourceParts.get(resourceParts.size() - 1);
+      if (lastPathSegment instanceof UriResourcePartTyped && ((UriResourcePartTyped) lastPathSegment).isCollection()) {
+        // server driven paging only for entity collections
+        final EdmEntitySet targetEdmEntitySet = Util.determineTargetEntitySet(resourceParts);
+        query.setMaxPageSize(getRequestContext().getDatabaseProcessor().getMaxPageSize(targetEdmEntitySet
+            .getName()));
+      }
+      query.setStreamingResult(transformation instanceof QueryEntityResult2StreamedODataResponseContentTransformation);
       return query.execute(true, transformation);
 
     } catch (final ODataJPAModelException e) {
@@ -447,7 +640,11 @@ ComplexProcessor, PrimitiveValueProcessor {
       // Assumption 404 is handled by Olingo during URL parsing
       response.setStatusCode(HttpStatusCode.NO_CONTENT.getStatusCode());
     } else {
-      response.setContent(result.getContent());
+      if (result.isStreamed()) {
+        response.setODataContent(result.getStreamedContent());
+      } else {
+        response.setContent(result.getContent());
+      }
       response.setStatusCode(HttpStatusCode.OK.getStatusCode());
       response.setHeader(HttpHeader.CONTENT_TYPE, responseFormat.toContentTypeString());
     }
@@ -507,6 +704,16 @@ ComplexProcessor, PrimitiveValueProcessor {
       throw new ODataApplicationException("More than one entity found for request",
           HttpStatusCode.INTERNAL_SERVER_ERROR.getStatusCode(), Locale.ENGLISH);
     } else {
+      final String eTag = entityCollection.getEntities().get(0).getETag();
+      if (eTag != null) {
+        response.setHeader(HttpHeader.ETAG, eTag);
+        if (getOData().createETagHelper().checkReadPreconditions(eTag, request.getHeaders(HttpHeader.IF_MATCH),
+            request.getHeaders(HttpHeader.IF_NONE_MATCH))) {
+          // client has already the current state, no serialization required
+          response.setStatusCode(HttpStatusCode.NOT_MODIFIED.getStatusCode());
+          return;
+        }
+      }
       // serialize the first (and only) entry
       final SerializerResult serializerResult = serializer.serialize(request, entityCollection);
       response.setContent(serializerResult.getContent());
@@ -515,6 +722,17 @@ ComplexProcessor, PrimitiveValueProcessor {
     }
   }
 
+  /**
+   * Check the If-Match/If-None-Match headers of a modifying request against the current ETag of the entity.
+   *
+   * @throws PreconditionException If the entity was modified in the meantime
+   */
+  private void checkChangePreconditions(final ODataRequest request, final Entity currentEntity)
+      throws PreconditionException {
+    getOData().createETagHelper().checkChangePreconditions(currentEntity.getETag(), request.getHeaders(
+        HttpHeader.IF_MATCH), request.getHeaders(HttpHeader.IF_NONE_MATCH));
+  }
+
   @Override
   public void readComplex(final ODataRequest request, final ODataResponse response, final UriInfo uriInfo,
       final ContentType responseFormat)
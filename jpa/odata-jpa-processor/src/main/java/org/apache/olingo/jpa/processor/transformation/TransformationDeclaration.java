@@ -50,7 +50,7 @@ public final class TransformationDeclaration<Input, Output> {
     return outputType;
   }
 
-  private final boolean hasMatchingTypes(final Class<?> inputTypeOther, final Class<?> outputTypeOther) {
+  final boolean hasMatchingTypes(final Class<?> inputTypeOther, final Class<?> outputTypeOther) {
     if (!inputTypeOther.isAssignableFrom(this.getInputType())) {
       return false;
     }
@@ -0,0 +1,204 @@
+package org.apache.olingo.jpa.processor.transformation;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.olingo.jpa.processor.JPAODataRequestContext;
+import org.apache.olingo.jpa.processor.core.util.TypedParameter;
+import org.apache.olingo.jpa.processor.transformation.impl.QueryEntityResult2EntityCollectionTransformation;
+import org.apache.olingo.jpa.processor.transformation.impl.QueryEntityResult2ODataResponseContentTransformation;
+
+/**
+ * The registered {@link Transformation transformations}, shared by all requests of a servlet handler. The
+ * registrations are replaced on modification (copy on write) and the candidates for a combination of input and
+ * output type are cached, so the lookup while processing a request is done without lock.
+ */
+public final class TransformationRegistry {
+
+  /**
+   * A registered transformation with the constructor determined once.
+   */
+  static final class Registration<I, O> {
+    private final TransformationDeclaration<I, O> declaration;
+    private final Constructor<? extends Transformation<I, O>> constructor;
+
+    private Registration(final TransformationDeclaration<I, O> declaration,
+        final Class<? extends Transformation<I, O>> transformationClass) {
+      this.declaration = declaration;
+      if (Modifier.isAbstract(transformationClass.getModifiers())) {
+        throw new IllegalArgumentException("Transformation " + transformationClass.getName() + " is abstract");
+      }
+      try {
+        this.constructor = transformationClass.getDeclaredConstructor();
+      } catch (final NoSuchMethodException e) {
+        throw new IllegalArgumentException("Transformation " + transformationClass.getName()
+        + " requires a constructor without parameters", e);
+      }
+      constructor.setAccessible(true);
+    }
+
+    TransformationDeclaration<I, O> getDeclaration() {
+      return declaration;
+    }
+
+    Transformation<I, O> newInstance() throws InstantiationException, IllegalAccessException,
+    InvocationTargetException {
+      return constructor.newInstance();
+    }
+  }
+
+  /**
+   * The built-in transformations, available for every registry.
+   */
+  static final TransformationRegistry BUILTIN = new TransformationRegistry(null);
+
+  static {
+    // DB-Tuples -> OData-EntityCollection
+    BUILTIN.registerTransformation(QueryEntityResult2EntityCollectionTransformation.DEFAULT_DECLARATION,
+        QueryEntityResult2EntityCollectionTransformation.class);
+
+    // DB-Tuples -> OData-EntityCollection -> JSON/XML
+    BUILTIN.registerTransformation(QueryEntityResult2ODataResponseContentTransformation.DEFAULT_DECLARATION,
+        QueryEntityResult2ODataResponseContentTransformation.class);
+  }
+
+  /**
+   * The registrations together with the candidates determined from them, replaced as a whole on modification.
+   */
+  private static final class State {
+    private final Map<TransformationDeclaration<?, ?>, Registration<?, ?>> registrations;
+    private final Map<List<Class<?>>, List<Registration<?, ?>>> candidatesCache = new ConcurrentHashMap<>();
+
+    private State(final Map<TransformationDeclaration<?, ?>, Registration<?, ?>> registrations) {
+      this.registrations = registrations;
+    }
+  }
+
+  private final TransformationRegistry parent;
+  private volatile State state = new State(Collections.emptyMap());
+
+  /**
+   * Create a registry containing the built-in transformations.
+   */
+  public TransformationRegistry() {
+    this(BUILTIN);
+  }
+
+  /**
+   *
+   * @param parent The registry with the transformations also available via this registry, but overridden by a
+   * registration of the same {@link TransformationDeclaration declaration} in this registry.
+   */
+  TransformationRegistry(final TransformationRegistry parent) {
+    this.parent = parent;
+  }
+
+  public <I, O> void registerTransformation(final TransformationDeclaration<I, O> declaration,
+      final Class<? extends Transformation<I, O>> transformationClass) {
+    if (transformationClass == null) {
+      throw new IllegalArgumentException("serializer required");
+    }
+    if (declaration == null) {
+      throw new IllegalArgumentException("descriptor required");
+    }
+    final Registration<I, O> registration = new Registration<>(declaration, transformationClass);
+    synchronized (this) {
+      final Map<TransformationDeclaration<?, ?>, Registration<?, ?>> modified = new LinkedHashMap<>(
+          state.registrations);
+      modified.put(declaration, registration);
+      state = new State(modified);
+    }
+  }
+
+  /**
+   * Remove a transformation {@link #registerTransformation(TransformationDeclaration, Class) registered} in this
+   * registry.
+   */
+  public void unregisterTransformation(final TransformationDeclaration<?, ?> declaration) {
+    synchronized (this) {
+      if (!state.registrations.containsKey(declaration)) {
+        return;
+      }
+      final Map<TransformationDeclaration<?, ?>, Registration<?, ?>> modified = new LinkedHashMap<>(
+          state.registrations);
+      modified.remove(declaration);
+      state = new State(modified);
+    }
+  }
+
+  /**
+   *
+   * @return The best matching transformation or <code>null</code>.
+   * @see TransformingFactory#createTransformation(Class, Class, TypedParameter...)
+   */
+  @SuppressWarnings("unchecked")
+  <I, O> Registration<I, O> findBestMatch(final Class<I> inputType, final Class<O> outputType,
+      final TypedParameter[] transformationContext, final JPAODataRequestContext requestContext) {
+    final Collection<TypedParameter> transformationContextValues = transformationContext != null ? Arrays.asList(
+        transformationContext) : Collections.emptyList();
+    Registration<I, O> bestMatch = null;
+    for (TransformationRegistry registry = this; registry != null; registry = registry.parent) {
+      for (final Registration<?, ?> candidate : registry.determineCandidates(inputType, outputType)) {
+        if (registry != this && isOverridden(candidate, registry)) {
+          continue;
+        }
+        final TransformationDeclaration<I, O> declaration = (TransformationDeclaration<I, O>) candidate
+            .getDeclaration();
+        if (!declaration.isMatching(inputType, outputType, transformationContextValues, requestContext)) {
+          continue;
+        }
+        // try to find a better matching (more specific) one...
+        if (bestMatch == null || !bestMatch.getDeclaration().hasPrecedenceOver(declaration)) {
+          bestMatch = (Registration<I, O>) candidate;
+        }
+      }
+    }
+    return bestMatch;
+  }
+
+  /**
+   *
+   * @return TRUE if the declaration of the candidate from the given ancestor registry is registered again in a
+   * registry between this one and the ancestor.
+   */
+  private boolean isOverridden(final Registration<?, ?> candidate, final TransformationRegistry ancestor) {
+    for (TransformationRegistry registry = this; registry != ancestor; registry = registry.parent) {
+      if (registry.state.registrations.containsKey(candidate.getDeclaration())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   *
+   * @return The registrations of this registry (without parent) with matching input and output type.
+   */
+  private List<Registration<?, ?>> determineCandidates(final Class<?> inputType, final Class<?> outputType) {
+    final State current = state;
+    final List<Class<?>> key = Arrays.asList(inputType, outputType);
+    final List<Registration<?, ?>> cached = current.candidatesCache.get(key);
+    if (cached != null) {
+      return cached;
+    }
+    final List<Registration<?, ?>> candidates = new ArrayList<>();
+    for (final Registration<?, ?> registration : current.registrations.values()) {
+      if (registration.getDeclaration().hasMatchingTypes(inputType, outputType)) {
+        candidates.add(registration);
+      }
+    }
+    final List<Registration<?, ?>> result = Collections.unmodifiableList(candidates);
+    current.candidatesCache.put(key, result);
+    return result;
+  }
+
+}
@@ -2,6 +2,8 @@ package org.apache.olingo.jpa.processor.transformation.impl;
 
 import java.io.InputStream;
 
+import org.apache.olingo.server.api.ODataContent;
+
 public class ODataResponseContent {
   public enum ContentState {
     /**
@@ -22,17 +24,50 @@ public class ODataResponseContent {
 
   private final ContentState contentState;
   private final InputStream content;
+  private final ODataContent streamedContent;
 
   public ODataResponseContent(final ContentState contentState, final InputStream content) {
     this.contentState = contentState;
     this.content = content;
+    this.streamedContent = null;
+  }
+
+  /**
+   *
+   * @param streamedContent The content written directly into the response output stream.
+   */
+  public ODataResponseContent(final ContentState contentState, final ODataContent streamedContent) {
+    this.contentState = contentState;
+    this.content = null;
+    this.streamedContent = streamedContent;
   }
 
   public ContentState getContentState() {
     return contentState;
   }
 
+  /**
+   *
+   * @return The already serialized content or <code>null</code> if the content is {@link #isStreamed() streamed}.
+   */
   public InputStream getContent() {
     return content;
   }
+
+  /**
+   *
+   * @return TRUE if the content is serialized not before writing the response.
+   */
+  public boolean isStreamed() {
+    return streamedContent != null;
+  }
+
+  /**
+   *
+   * @return The content to write into the response or <code>null</code> if the content is not {@link #isStreamed()
+   * streamed}.
+   */
+  public ODataContent getStreamedContent() {
+    return streamedContent;
+  }
 }
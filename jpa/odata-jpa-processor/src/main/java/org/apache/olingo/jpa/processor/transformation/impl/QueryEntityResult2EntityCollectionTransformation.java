@@ -1,6 +1,13 @@
 package org.apache.olingo.jpa.processor.transformation.impl;
 
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+
 import org.apache.olingo.commons.api.data.EntityCollection;
+import org.apache.olingo.commons.api.data.EntityIterator;
 import org.apache.olingo.commons.api.http.HttpStatusCode;
 import org.apache.olingo.jpa.cdi.Inject;
 import org.apache.olingo.jpa.metadata.core.edm.mapper.exception.ODataJPAModelException;
@@ -12,9 +19,11 @@ import org.apache.olingo.jpa.processor.transformation.Transformation;
 import org.apache.olingo.jpa.processor.transformation.TransformationContextRequirement;
 import org.apache.olingo.jpa.processor.transformation.TransformationDeclaration;
 import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.ODataRequest;
 import org.apache.olingo.server.api.serializer.SerializerException;
 import org.apache.olingo.server.api.uri.UriInfoResource;
 import org.apache.olingo.server.api.uri.queryoption.CountOption;
+import org.apache.olingo.server.api.uri.queryoption.SystemQueryOptionKind;
 
 public class QueryEntityResult2EntityCollectionTransformation implements
 Transformation<QueryEntityResult, EntityCollection> {
@@ -25,10 +34,17 @@ Transformation<QueryEntityResult, EntityCollection> {
               JPAODataGlobalContext.class), new TransformationContextRequirement(
                   UriInfoResource.class));
 
+  private static final String LEGAL_URI_QUERY_CHARACTERS = "-._~!$&'()*+,;=:@/?%";
+
   @Inject
   private final JPAODataGlobalContext globalContext = null;
   @Inject
   private final UriInfoResource uriResource = null;
+  /**
+   * Optional, required only to build the next link for server driven paging
+   */
+  @Inject
+  private final ODataRequest odataRequest = null;
 
   @Override
   public Class<QueryEntityResult> getInputType() {
@@ -52,6 +68,35 @@ Transformation<QueryEntityResult, EntityCollection> {
 
   @Override
   public EntityCollection transform(final QueryEntityResult input) throws SerializerException {
+    assertInjectedDependencies();
+    try {
+      return convertToEntityCollection(input);
+    } catch (final ODataApplicationException e) {
+      throw new SerializerException("", e, SerializerException.MessageKeys.IO_EXCEPTION);
+    }
+  }
+
+  /**
+   * Alternative to {@link #transform(QueryEntityResult)} delaying the conversion of every single entity until the
+   * entity is requested while serialization.
+   *
+   * @return The iterator usable only once.
+   */
+  public EntityIterator transformStreamed(final QueryEntityResult input) throws SerializerException {
+    assertInjectedDependencies();
+    try {
+      final EntityIterator entityIterator = createConverter().convertDBTuple2ODataStreamed(input);
+      entityIterator.setCount(determineCount(input));
+      entityIterator.setNext(determineNextLink(input));
+      return entityIterator;
+    } catch (final ODataJPAModelException e) {
+      throw new SerializerException("", e, SerializerException.MessageKeys.IO_EXCEPTION);
+    } catch (final ODataApplicationException e) {
+      throw new SerializerException("", e, SerializerException.MessageKeys.IO_EXCEPTION);
+    }
+  }
+
+  private void assertInjectedDependencies() {
     if (globalContext == null) {
       throw new IllegalStateException("Dependency injection not working: " + JPAODataGlobalContext.class.getSimpleName()
           + " expected");
@@ -60,10 +105,15 @@ Transformation<QueryEntityResult, EntityCollection> {
       throw new IllegalStateException("Dependency injection not working: " + UriInfoResource.class.getSimpleName()
           + " expected");
     }
+  }
+
+  private DatabaseQueryResult2ODataEntityConverter createConverter() throws ODataApplicationException {
     try {
-      return convertToEntityCollection(input);
-    } catch (final ODataApplicationException e) {
-      throw new SerializerException("", e, SerializerException.MessageKeys.IO_EXCEPTION);
+      return new DatabaseQueryResult2ODataEntityConverter(globalContext.getEdmProvider().getServiceDocument(),
+          globalContext.getOdata().createUriHelper(), globalContext.getServiceMetaData());
+    } catch (final ODataJPAModelException e) {
+      throw new ODataJPAProcessorException(ODataJPAProcessorException.MessageKeys.QUERY_RESULT_CONV_ERROR,
+          HttpStatusCode.INTERNAL_SERVER_ERROR, e);
     }
   }
 
@@ -71,20 +121,94 @@ Transformation<QueryEntityResult, EntityCollection> {
     // Convert tuple result into an OData Result
     EntityCollection entityCollection;
     try {
-      entityCollection = new DatabaseQueryResult2ODataEntityConverter(globalContext.getEdmProvider()
-          .getServiceDocument(), globalContext.getOdata().createUriHelper(), globalContext.getServiceMetaData())
-          .convertDBTuple2OData(result);
+      entityCollection = createConverter().convertDBTuple2OData(result);
     } catch (final ODataJPAModelException e) {
       throw new ODataJPAProcessorException(ODataJPAProcessorException.MessageKeys.QUERY_RESULT_CONV_ERROR,
           HttpStatusCode.INTERNAL_SERVER_ERROR, e);
     }
 
-    // Count results if requested
+    entityCollection.setCount(determineCount(result));
+    entityCollection.setNext(determineNextLink(result));
+
+    return entityCollection;
+  }
+
+  /**
+   *
+   * @return The count if requested or <code>null</code>.
+   */
+  private Integer determineCount(final QueryEntityResult result) {
     final CountOption countOption = uriResource/* getNavigation().getLastStep() */.getCountOption();
-    if (countOption != null && countOption.getValue()) {
-      entityCollection.setCount(Integer.valueOf(entityCollection.getEntities().size()));
+    if (countOption == null || !countOption.getValue()) {
+      return null;
     }
+    if (result.getCount() != null) {
+      return Integer.valueOf(result.getCount().intValue());
+    }
+    return Integer.valueOf(result.getQueryResult().size());
+  }
 
-    return entityCollection;
+  private URI determineNextLink(final QueryEntityResult result) throws ODataJPAProcessorException {
+    if (result.getNextSkipToken() == null || odataRequest == null) {
+      return null;
+    }
+    return buildNextLink(result.getNextSkipToken());
+  }
+
+  /**
+   * The next link is the request URI with the new $skiptoken. The options $skip and $top are removed, because they are
+   * covered by the $skiptoken.
+   */
+  private URI buildNextLink(final String skipToken) throws ODataJPAProcessorException {
+    final StringBuilder buffer = new StringBuilder();
+    buffer.append(odataRequest.getRawBaseUri());
+    buffer.append(odataRequest.getRawODataPath());
+    buffer.append('?');
+    if (odataRequest.getRawQueryPath() != null) {
+      for (final String option : odataRequest.getRawQueryPath().split("&")) {
+        if (option.isEmpty() || isPagingOption(option)) {
+          continue;
+        }
+        appendURIEncoded(buffer, option);
+        buffer.append('&');
+      }
+    }
+    buffer.append(SystemQueryOptionKind.SKIPTOKEN.toString());
+    buffer.append('=');
+    buffer.append(skipToken);
+    try {
+      return new URI(buffer.toString());
+    } catch (final URISyntaxException e) {
+      throw new ODataJPAProcessorException(ODataJPAProcessorException.MessageKeys.QUERY_RESULT_CONV_ERROR,
+          HttpStatusCode.INTERNAL_SERVER_ERROR, e);
+    }
+  }
+
+  /**
+   * The raw query is normally already encoded, but not all servlet containers will enforce that.
+   */
+  private static void appendURIEncoded(final StringBuilder buffer, final String rawOption) {
+    for (final byte b : rawOption.getBytes(StandardCharsets.UTF_8)) {
+      final char c = (char) (b & 0xFF);
+      if (c < 0x80 && (Character.isLetterOrDigit(c) || LEGAL_URI_QUERY_CHARACTERS.indexOf(c) > -1)) {
+        buffer.append(c);
+      } else {
+        buffer.append('%');
+        buffer.append(Character.toUpperCase(Character.forDigit((b >> 4) & 0xF, 16)));
+        buffer.append(Character.toUpperCase(Character.forDigit(b & 0xF, 16)));
+      }
+    }
+  }
+
+  private static boolean isPagingOption(final String rawOption) {
+    final int index = rawOption.indexOf('=');
+    final String name;
+    try {
+      name = URLDecoder.decode(index > -1 ? rawOption.substring(0, index) : rawOption, "UTF-8");
+    } catch (final UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+    return SystemQueryOptionKind.SKIP.toString().equals(name) || SystemQueryOptionKind.TOP.toString().equals(name)
+        || SystemQueryOptionKind.SKIPTOKEN.toString().equals(name);
   }
 }
@@ -68,7 +68,7 @@ Transformation<QueryEntityResult, ODataResponseContent> {
         SerializerException.MessageKeys.UNSUPPORTED_FORMAT);
   }
 
-  private QueryEntityResult2EntityCollectionTransformation createStep1() throws SerializerException {
+  protected final QueryEntityResult2EntityCollectionTransformation createStep1() throws SerializerException {
     final QueryEntityResult2EntityCollectionTransformation step1 =
         new QueryEntityResult2EntityCollectionTransformation();
     try {
@@ -81,7 +81,7 @@ Transformation<QueryEntityResult, ODataResponseContent> {
     return step1;
   }
 
-  private EntityCollection2ODataResponseContentTransformation createStep2() throws SerializerException {
+  protected final EntityCollection2ODataResponseContentTransformation createStep2() throws SerializerException {
     final EntityCollection2ODataResponseContentTransformation step2 =
         new EntityCollection2ODataResponseContentTransformation();
     try {
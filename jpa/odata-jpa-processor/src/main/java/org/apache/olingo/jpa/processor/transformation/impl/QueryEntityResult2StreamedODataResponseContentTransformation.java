@@ -0,0 +1,130 @@
+package org.apache.olingo.jpa.processor.transformation.impl;
+
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.olingo.commons.api.data.EntityIterator;
+import org.apache.olingo.commons.api.format.ContentType;
+import org.apache.olingo.jpa.cdi.Inject;
+import org.apache.olingo.jpa.processor.JPAODataGlobalContext;
+import org.apache.olingo.jpa.processor.core.query.result.QueryEntityResult;
+import org.apache.olingo.jpa.processor.core.serializer.JPASerializeCollection;
+import org.apache.olingo.jpa.processor.transformation.TransformationDeclaration;
+import org.apache.olingo.jpa.processor.transformation.impl.ODataResponseContent.ContentState;
+import org.apache.olingo.server.api.ODataContent;
+import org.apache.olingo.server.api.ODataRequest;
+import org.apache.olingo.server.api.serializer.SerializerException;
+import org.apache.olingo.server.api.serializer.SerializerStreamResult;
+import org.apache.olingo.server.api.uri.UriInfoResource;
+
+/**
+ * Streaming alternative to {@link QueryEntityResult2ODataResponseContentTransformation}: the database tuples are
+ * converted into entities one by one while the response is written, so neither the complete
+ * {@link org.apache.olingo.commons.api.data.EntityCollection EntityCollection} nor the complete serialized content is
+ * hold in memory. The response format is the same as for the default transformation. If the query result is
+ * {@link QueryEntityResult#isStreamed() streamed}, the rows are read from the database cursor while writing.
+ * <p>
+ * The first entity is converted before the response is written, so the typical conversion problems are still
+ * reported as error response. But a problem with a following entity (or the database cursor) happens after the
+ * status code and the begin of the content are sent: the response is truncated, the client will get an invalid
+ * content and the problem is logged only.
+ * <p>
+ * Activate the transformation via
+ * {@link org.apache.olingo.jpa.processor.core.api.JPAODataServletHandler#setStreamingResponses(boolean)}.
+ *
+ */
+public class QueryEntityResult2StreamedODataResponseContentTransformation extends
+QueryEntityResult2ODataResponseContentTransformation {
+
+  private static final Logger LOG = Logger.getLogger(
+      QueryEntityResult2StreamedODataResponseContentTransformation.class.getName());
+
+  /**
+   * Same declaration as for the default transformation, so registering this transformation with that declaration
+   * will replace the default.
+   */
+  public final static TransformationDeclaration<QueryEntityResult, ODataResponseContent> DEFAULT_DECLARATION =
+      QueryEntityResult2ODataResponseContentTransformation.DEFAULT_DECLARATION;
+
+  @Inject
+  private JPAODataGlobalContext globalContext;
+  @Inject
+  private ContentType responseFormat;
+  @Inject
+  private UriInfoResource uriResource;
+  @Inject
+  private ODataRequest odataRequest;
+
+  @Override
+  public ODataResponseContent transform(final QueryEntityResult input) throws SerializerException {
+    if (globalContext == null) {
+      throw new IllegalStateException("Dependency injection not working: " + JPAODataGlobalContext.class.getSimpleName()
+          + " expected");
+    }
+    if (responseFormat == null) {
+      throw new IllegalStateException("Dependency injection not working: " + ContentType.class.getSimpleName()
+          + " expected");
+    }
+    if (uriResource == null) {
+      throw new IllegalStateException("Dependency injection not working: " + UriInfoResource.class.getSimpleName()
+          + " expected");
+    }
+    if (odataRequest == null) {
+      throw new IllegalStateException("Dependency injection not working: " + ODataRequest.class.getSimpleName()
+          + " expected");
+    }
+    final EntityIterator entityIterator;
+    try {
+      entityIterator = createStep1().transformStreamed(input);
+    } catch (final SerializerException | RuntimeException e) {
+      input.close();
+      throw e;
+    }
+    final JPASerializeCollection serializer = new JPASerializeCollection(globalContext.getServiceMetaData(),
+        globalContext.getOdata(), responseFormat, uriResource);
+    final SerializerStreamResult sResult = serializer.serializeStreamed(odataRequest, entityIterator);
+    final ContentState state = entityIterator.hasNext() ? ContentState.PRESENT : ContentState.EMPTY_COLLECTION;
+    return new ODataResponseContent(state, new ClosingContent(sResult.getODataContent(), input));
+  }
+
+  /**
+   * Release the database cursor after writing and log a problem, because the problem cannot be reported to the
+   * client after the begin of the response is sent.
+   */
+  private static class ClosingContent implements ODataContent {
+    private final ODataContent content;
+    private final QueryEntityResult result;
+
+    ClosingContent(final ODataContent content, final QueryEntityResult result) {
+      this.content = content;
+      this.result = result;
+    }
+
+    @Override
+    public void write(final WritableByteChannel channel) {
+      try {
+        content.write(channel);
+      } catch (final RuntimeException e) {
+        LOG.log(Level.SEVERE, "Streamed response truncated", e);
+        throw e;
+      } finally {
+        result.close();
+      }
+    }
+
+    @Override
+    public void write(final OutputStream stream) {
+      try {
+        content.write(stream);
+      } catch (final RuntimeException e) {
+        LOG.log(Level.SEVERE, "Streamed response truncated", e);
+        throw e;
+      } finally {
+        result.close();
+      }
+    }
+  }
+
+}
@@ -1,18 +1,38 @@
 package org.apache.olingo.jpa.processor.core.api;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.http.HttpServletRequest;
 
 import org.apache.olingo.client.api.uri.URIBuilder;
 import org.apache.olingo.commons.api.ex.ODataException;
 import org.apache.olingo.commons.api.http.HttpMethod;
 import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.jpa.cdi.Inject;
+import org.apache.olingo.jpa.processor.core.security.SecurityInceptor;
+import org.apache.olingo.jpa.processor.core.util.HttpServletRequestDouble;
+import org.apache.olingo.jpa.processor.core.util.PrincipalMock;
 import org.apache.olingo.jpa.processor.core.util.ServerCallSimulator;
 import org.apache.olingo.jpa.processor.core.util.TestBase;
+import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.ODataRequest;
+import org.apache.olingo.server.api.uri.UriInfo;
 import org.junit.Test;
 
 import com.fasterxml.jackson.databind.JsonNode;
@@ -79,6 +99,339 @@ public class TestBatchRequests extends TestBase {
     assertEquals("5", value.get("ID").asText());
   }
 
+  @Test
+  public void testParallelGetRequests() throws IOException, ODataException {
+    final StringBuffer requestBody = new StringBuffer();
+    appendGetPart(requestBody, "Organizations('3')");
+    appendGetPart(requestBody, "Organizations('5')");
+    appendGetPart(requestBody, "AdministrativeDivision");
+    appendGetPart(requestBody, "Organizations('4')");
+    requestBody.append("--abc123--");
+
+    final ExecutorService pool = Executors.newFixedThreadPool(3);
+    final AtomicInteger concurrentParts = new AtomicInteger(0);
+    final Executor executor = command -> {
+      concurrentParts.incrementAndGet();
+      pool.execute(command);
+    };
+    try {
+      final ServerCallSimulator helper = new ServerCallSimulator(persistenceAdapter, newUriBuilder()
+          .appendBatchSegment(), requestBody.toString(), HttpMethod.POST) {
+        @Override
+        protected JPAODataServletHandler createServletHandler() throws ODataException {
+          final JPAODataServletHandler handler = super.createServletHandler();
+          handler.setBatchExecutor(executor);
+          return handler;
+        }
+      };
+      helper.execute(HttpStatusCode.ACCEPTED.getStatusCode());
+      // order of responses is preserved
+      assertEquals("3", helper.getBatchResult(1).get("ID").asText());
+      assertEquals("5", helper.getBatchResult(2).get("ID").asText());
+      assertEquals(404, helper.getBatchResultStatus(3));
+      assertEquals("4", helper.getBatchResult(4).get("ID").asText());
+      assertEquals(4, concurrentParts.get());
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testChangeSetCommitted() throws IOException, ODataException {
+    final StringBuffer requestBody = new StringBuffer();
+    appendChangeSet(requestBody, "Organizations('3')", "Organizations('5')");
+    appendGetPart(requestBody, "Organizations('5')");
+    requestBody.append("--abc123--");
+
+    final ServerCallSimulator helper = new ServerCallSimulator(persistenceAdapter, newUriBuilder()
+        .appendBatchSegment(), requestBody.toString(), HttpMethod.POST);
+    helper.execute(HttpStatusCode.ACCEPTED.getStatusCode());
+    assertEquals(200, helper.getBatchResultStatus(1));
+    assertEquals(200, helper.getBatchResultStatus(2));
+    assertEquals("Changed in change set", helper.getBatchResult(3).get("Name2").asText());
+  }
+
+  @Test
+  public void testCachedResponseInvalidatedByChangeSet() throws IOException, ODataException {
+    final StringBuffer requestBody = new StringBuffer();
+    appendGetPart(requestBody, "Organizations('7')");
+    appendGetPart(requestBody, "Organizations('9')");
+    appendChangeSet(requestBody, "Organizations('7')");
+    appendGetPart(requestBody, "Organizations('7')");
+    appendGetPart(requestBody, "Organizations('9')");
+    requestBody.append("--abc123--");
+
+    final ExecutorService pool = Executors.newFixedThreadPool(2);
+    final JPAODataResponseCache responseCache = new JPAODataResponseCache();
+    try {
+      final ServerCallSimulator helper = new ServerCallSimulator(persistenceAdapter, newUriBuilder()
+          .appendBatchSegment(), requestBody.toString(), HttpMethod.POST) {
+        @Override
+        protected JPAODataServletHandler createServletHandler() throws ODataException {
+          final JPAODataServletHandler handler = super.createServletHandler();
+          // the reading parts are processed concurrently and cached
+          handler.setBatchExecutor(pool);
+          handler.setResponseCache(responseCache);
+          return handler;
+        }
+      };
+      helper.execute(HttpStatusCode.ACCEPTED.getStatusCode());
+      assertNotEquals("Changed in change set", helper.getBatchResult(1).get("Name2").asText());
+      assertEquals(200, helper.getBatchResultStatus(3));
+      assertEquals("Changed in change set", helper.getBatchResult(4).get("Name2").asText());
+      assertEquals(helper.getBatchResult(2).get("Name2").asText(), helper.getBatchResult(5).get("Name2").asText());
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testChangeSetRolledBack() throws IOException, ODataException {
+    final StringBuffer requestBody = new StringBuffer();
+    appendChangeSet(requestBody, "Organizations('4')", "Organizations('999')");
+    appendGetPart(requestBody, "Organizations('4')");
+    requestBody.append("--abc123--");
+
+    final ServerCallSimulator helper = new ServerCallSimulator(persistenceAdapter, newUriBuilder()
+        .appendBatchSegment(), requestBody.toString(), HttpMethod.POST);
+    helper.execute(HttpStatusCode.ACCEPTED.getStatusCode());
+    // only the failed request is part of the response
+    assertEquals(404, helper.getBatchResultStatus(1));
+    assertEquals(200, helper.getBatchResultStatus(2));
+    assertNotEquals("Changed in change set", helper.getBatchResult(2).get("Name2").asText());
+  }
+
+  @Test
+  public void testModifyingRequestWithoutChangeSetInBatchWithoutTransaction() throws IOException, ODataException {
+    final StringBuffer requestBody = new StringBuffer();
+    appendGetPart(requestBody, "Organizations('6')");
+    requestBody.append("--abc123\r\n");
+    requestBody.append("Content-Type: application/http\r\n");
+    requestBody.append("Content-Transfer-Encoding: binary\r\n");
+    requestBody.append("\r\n");
+    requestBody.append("PATCH Organizations('6') HTTP/1.1\r\n");
+    requestBody.append("Content-Type: application/json\r\n");
+    requestBody.append("\r\n");
+    requestBody.append("{\"Name2\": \"Changed without change set\"}\r\n");
+    appendGetPart(requestBody, "Organizations('6')");
+    requestBody.append("--abc123--");
+
+    final ServerCallSimulator helper = new ServerCallSimulator(persistenceAdapter, newUriBuilder()
+        .appendBatchSegment(), requestBody.toString(), HttpMethod.POST) {
+      @Override
+      protected JPAODataServletHandler createServletHandler() throws ODataException {
+        final JPAODataServletHandler handler = super.createServletHandler();
+        handler.setReadRequestsWithoutTransaction(true);
+        return handler;
+      }
+    };
+    helper.execute(HttpStatusCode.ACCEPTED.getStatusCode());
+    assertNotEquals("Changed without change set", helper.getBatchResult(1).get("Name2").asText());
+    assertEquals(200, helper.getBatchResultStatus(2));
+    assertEquals("Changed without change set", helper.getBatchResult(3).get("Name2").asText());
+
+    // the transaction started for the modifying request must be committed
+    final ServerCallSimulator helperRead = new ServerCallSimulator(persistenceAdapter, newUriBuilder()
+        .appendEntitySetSegment("Organizations").appendKeySegment("6")) {
+      @Override
+      protected JPAODataServletHandler createServletHandler() throws ODataException {
+        final JPAODataServletHandler handler = super.createServletHandler();
+        handler.setReadRequestsWithoutTransaction(true);
+        return handler;
+      }
+    };
+    helperRead.execute(HttpStatusCode.OK.getStatusCode());
+    assertEquals("Changed without change set", helperRead.getJsonObjectValue().get("Name2").asText());
+  }
+
+  @Test(timeout = 30000)
+  public void testModifyingRequestAndChangeSetOnSameEntity() throws IOException, ODataException {
+    final StringBuffer requestBody = new StringBuffer();
+    requestBody.append("--abc123\r\n");
+    requestBody.append("Content-Type: application/http\r\n");
+    requestBody.append("Content-Transfer-Encoding: binary\r\n");
+    requestBody.append("\r\n");
+    requestBody.append("PATCH Organizations('8') HTTP/1.1\r\n");
+    requestBody.append("Content-Type: application/json\r\n");
+    requestBody.append("\r\n");
+    requestBody.append("{\"Name2\": \"Changed without change set\"}\r\n");
+    appendChangeSet(requestBody, "Organizations('8')");
+    appendGetPart(requestBody, "Organizations('8')");
+    requestBody.append("--abc123--");
+
+    // the change set must not wait for the locks of a still running batch transaction
+    final ServerCallSimulator helper = new ServerCallSimulator(persistenceAdapter, newUriBuilder()
+        .appendBatchSegment(), requestBody.toString(), HttpMethod.POST);
+    helper.execute(HttpStatusCode.ACCEPTED.getStatusCode());
+    assertEquals(200, helper.getBatchResultStatus(1));
+    assertEquals(200, helper.getBatchResultStatus(2));
+    assertEquals("Changed in change set", helper.getBatchResult(3).get("Name2").asText());
+  }
+
+  @Test
+  public void testSecurityCheckForSequentialParts() throws IOException, ODataException {
+    final StringBuffer requestBody = new StringBuffer();
+    appendGetPart(requestBody, "Organizations('3')");
+    appendGetPart(requestBody, "Organizations('5')");
+    appendChangeSet(requestBody, "Organizations('5')");
+    requestBody.append("--abc123--");
+
+    final PartSecurityInceptor inceptor = new PartSecurityInceptor();
+    final ServerCallSimulator helper = new ServerCallSimulator(persistenceAdapter, newUriBuilder()
+        .appendBatchSegment(), requestBody.toString(), HttpMethod.POST);
+    helper.setSecurityInceptor(inceptor);
+    helper.execute(HttpStatusCode.ACCEPTED.getStatusCode());
+    assertEquals("3", helper.getBatchResult(1).get("ID").asText());
+    assertEquals(403, helper.getBatchResultStatus(2));
+    assertEquals(403, helper.getBatchResultStatus(3));
+    // the batch request itself and every part
+    assertEquals(4, inceptor.checkingThreads.size());
+  }
+
+  @Test
+  public void testSecurityCheckForParallelPartsOnBatchThread() throws IOException, ODataException {
+    final StringBuffer requestBody = new StringBuffer();
+    appendGetPart(requestBody, "Organizations('3')");
+    appendGetPart(requestBody, "Organizations('5')");
+    appendGetPart(requestBody, "Organizations('4')");
+    requestBody.append("--abc123--");
+
+    final ExecutorService pool = Executors.newFixedThreadPool(3);
+    final PartSecurityInceptor inceptor = new PartSecurityInceptor();
+    try {
+      final ServerCallSimulator helper = new ServerCallSimulator(persistenceAdapter, newUriBuilder()
+          .appendBatchSegment(), requestBody.toString(), HttpMethod.POST) {
+        @Override
+        protected JPAODataServletHandler createServletHandler() throws ODataException {
+          final JPAODataServletHandler handler = super.createServletHandler();
+          handler.setBatchExecutor(pool);
+          return handler;
+        }
+      };
+      helper.setSecurityInceptor(inceptor);
+      helper.setUser(new PrincipalMock("Reader", new String[] { "Reader" }));
+      helper.execute(HttpStatusCode.ACCEPTED.getStatusCode());
+      assertEquals("3", helper.getBatchResult(1).get("ID").asText());
+      assertEquals(403, helper.getBatchResultStatus(2));
+      assertEquals("4", helper.getBatchResult(3).get("ID").asText());
+      // the servlet request is only used by the thread of the batch request
+      assertEquals(4, inceptor.checkingThreads.size());
+      for (final Thread checkingThread : inceptor.checkingThreads) {
+        assertEquals(Thread.currentThread(), checkingThread);
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testDetachedRequestKeepsCheckedRoles() throws IOException {
+    final HttpServletRequestDouble request = new HttpServletRequestDouble(URI.create(
+        "http://localhost:8080/Test/Olingo.svc/Organizations"), null);
+    request.setUserPrincipal(new PrincipalMock("Reader", new String[] { "Reader", "Admin" }));
+    request.setHeader("X-Test", "header value");
+    final RoleRecordingHttpServletRequest recordingRequest = new RoleRecordingHttpServletRequest(request);
+    assertTrue(recordingRequest.isUserInRole("Reader"));
+    assertFalse(recordingRequest.isUserInRole("Writer"));
+
+    final DetachedHttpServletRequest detachedRequest = new DetachedHttpServletRequest(recordingRequest,
+        recordingRequest.getCheckedRoles());
+    assertEquals("Reader", detachedRequest.getUserPrincipal().getName());
+    assertEquals("header value", detachedRequest.getHeader("x-test"));
+    assertTrue(detachedRequest.isUserInRole("Reader"));
+    assertFalse(detachedRequest.isUserInRole("Writer"));
+    // not checked before, delegated to the servlet request
+    assertTrue(detachedRequest.isUserInRole("Admin"));
+    assertTrue(recordingRequest.getCheckedRoles().get("Admin").booleanValue());
+    // copied state of the servlet request
+    assertEquals(request.getRequestURL().toString(), detachedRequest.getRequestURL().toString());
+    assertEquals(request.getServletPath(), detachedRequest.getServletPath());
+    assertEquals(request.getQueryString(), detachedRequest.getQueryString());
+    assertEquals(request.getProtocol(), detachedRequest.getProtocol());
+    assertTrue(detachedRequest.getParameterMap().isEmpty());
+    assertFalse(detachedRequest.getAttributeNames().hasMoreElements());
+    detachedRequest.setAttribute("detached", Boolean.TRUE);
+    assertEquals(Boolean.TRUE, detachedRequest.getAttribute("detached"));
+    assertEquals(-1, detachedRequest.getDateHeader("If-Modified-Since"));
+    assertEquals(-1, detachedRequest.getInputStream().read());
+  }
+
+  @Test
+  public void testParallelPartsProcessedByBatchThreadIfExecutorRejects() throws IOException, ODataException {
+    final StringBuffer requestBody = new StringBuffer();
+    appendGetPart(requestBody, "Organizations('3')");
+    appendGetPart(requestBody, "Organizations('4')");
+    requestBody.append("--abc123--");
+
+    final AtomicInteger rejected = new AtomicInteger(0);
+    final Executor rejectingExecutor = command -> {
+      rejected.incrementAndGet();
+      throw new RejectedExecutionException();
+    };
+    final ServerCallSimulator helper = new ServerCallSimulator(persistenceAdapter, newUriBuilder()
+        .appendBatchSegment(), requestBody.toString(), HttpMethod.POST) {
+      @Override
+      protected JPAODataServletHandler createServletHandler() throws ODataException {
+        final JPAODataServletHandler handler = super.createServletHandler();
+        handler.setBatchExecutor(rejectingExecutor);
+        return handler;
+      }
+    };
+    helper.execute(HttpStatusCode.ACCEPTED.getStatusCode());
+    assertEquals(2, rejected.get());
+    assertEquals("3", helper.getBatchResult(1).get("ID").asText());
+    assertEquals("4", helper.getBatchResult(2).get("ID").asText());
+  }
+
+  /**
+   * Forbids the access to organization 5 and remembers the threads doing the security checks.
+   */
+  private static class PartSecurityInceptor implements SecurityInceptor {
+    private final List<Thread> checkingThreads = Collections.synchronizedList(new ArrayList<Thread>());
+    @Inject
+    private HttpServletRequest httpRequest;
+
+    @Override
+    public void authorize(final ODataRequest odRequest, final UriInfo uriInfo) throws ODataApplicationException {
+      checkingThreads.add(Thread.currentThread());
+      httpRequest.isUserInRole("Reader");
+      if (odRequest.getRawODataPath().contains("Organizations('5')")) {
+        throw new ODataApplicationException("Forbidden", HttpStatusCode.FORBIDDEN.getStatusCode(), Locale.ENGLISH);
+      }
+    }
+  }
+
+  private void appendGetPart(final StringBuffer requestBody, final String resourcePath) {
+    requestBody.append("--abc123\r\n");
+    requestBody.append("Content-Type: application/http\r\n");
+    requestBody.append("Content-Transfer-Encoding: binary\r\n");
+    requestBody.append("\r\n");
+    requestBody.append("GET " + resourcePath + " HTTP/1.1\r\n");
+    requestBody.append("Content-Type: application/json\r\n");
+    requestBody.append("\r\n");
+    requestBody.append("\r\n");
+  }
+
+  private void appendChangeSet(final StringBuffer requestBody, final String... resourcePaths) {
+    requestBody.append("--abc123\r\n");
+    requestBody.append("Content-Type: multipart/mixed; boundary=changeset_1\r\n");
+    requestBody.append("\r\n");
+    int contentId = 1;
+    for (final String resourcePath : resourcePaths) {
+      requestBody.append("--changeset_1\r\n");
+      requestBody.append("Content-Type: application/http\r\n");
+      requestBody.append("Content-Transfer-Encoding: binary\r\n");
+      requestBody.append("Content-ID: " + Integer.toString(contentId++) + "\r\n");
+      requestBody.append("\r\n");
+      requestBody.append("PATCH " + resourcePath + " HTTP/1.1\r\n");
+      requestBody.append("Content-Type: application/json\r\n");
+      requestBody.append("\r\n");
+      requestBody.append("{\"Name2\": \"Changed in change set\"}\r\n");
+    }
+    requestBody.append("--changeset_1--\r\n");
+    requestBody.append("\r\n");
+  }
+
   private String createBodyTwoGetOneFail() {
     final StringBuffer requestBody = new StringBuffer("--abc123\r\n");
     requestBody.append("Content-Type: application/http\r\n");
@@ -0,0 +1,182 @@
+package org.apache.olingo.jpa.processor.core.api;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.olingo.client.api.uri.URIBuilder;
+import org.apache.olingo.commons.api.ex.ODataException;
+import org.apache.olingo.commons.api.http.HttpMethod;
+import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.jpa.cdi.Inject;
+import org.apache.olingo.jpa.processor.core.security.SecurityInceptor;
+import org.apache.olingo.jpa.processor.core.util.PrincipalMock;
+import org.apache.olingo.jpa.processor.core.util.ServerCallSimulator;
+import org.apache.olingo.jpa.processor.core.util.TestBase;
+import org.apache.olingo.jpa.test.util.Constant;
+import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.ODataRequest;
+import org.apache.olingo.server.api.uri.UriInfo;
+import org.junit.Test;
+
+public class TestResponseCache extends TestBase {
+
+  private final JPAODataResponseCache responseCache = new JPAODataResponseCache();
+
+  private ServerCallSimulator createCachingCall(final URIBuilder uriBuilder, final String requestBody,
+      final HttpMethod method) throws IOException, ODataException {
+    return new ServerCallSimulator(persistenceAdapter, uriBuilder, requestBody, method) {
+      @Override
+      protected JPAODataServletHandler createServletHandler() throws ODataException {
+        final JPAODataServletHandler handler = super.createServletHandler();
+        handler.setResponseCache(responseCache);
+        return handler;
+      }
+    };
+  }
+
+  private String readName2(final String id) throws IOException, ODataException {
+    final ServerCallSimulator helper = createCachingCall(newUriBuilder().appendEntitySetSegment("Organizations")
+        .appendKeySegment(id), null, HttpMethod.GET);
+    helper.execute(HttpStatusCode.OK.getStatusCode());
+    return helper.getJsonObjectValue().get("Name2").asText();
+  }
+
+  private void updateBehindTheCache(final String id, final String name2) {
+    executeBehindTheCache("UPDATE \"OLINGO\".\"org.apache.olingo.jpa::BusinessPartner\" SET \"NameLine2\" = '" + name2
+        + "' WHERE \"ID\" = '" + id + "'");
+  }
+
+  private void executeBehindTheCache(final String sql) {
+    final EntityManager em = persistenceAdapter.createEntityManager();
+    try {
+      em.getTransaction().begin();
+      em.createNativeQuery(sql).executeUpdate();
+      em.getTransaction().commit();
+    } finally {
+      em.close();
+    }
+  }
+
+  private int readParentArea() throws IOException, ODataException {
+    final ServerCallSimulator helper = createCachingCall(newUriBuilder().appendEntitySetSegment(
+        "AdministrativeDivisions").appendKeySegment(createDivisionKey("BE25", "NUTS2")).appendNavigationSegment(
+            "Parent"), null, HttpMethod.GET);
+    helper.execute(HttpStatusCode.OK.getStatusCode());
+    return helper.getJsonObjectValue().get("Area").asInt();
+  }
+
+  private static Map<String, Object> createDivisionKey(final String divisionCode, final String codeID) {
+    final Map<String, Object> key = new HashMap<>();
+    key.put("DivisionCode", divisionCode);
+    key.put("CodeID", codeID);
+    key.put("CodePublisher", "Eurostat");
+    return key;
+  }
+
+  @Test
+  public void testCachedResponseInvalidatedByUpdate() throws IOException, ODataException {
+    final String cachedName2 = readName2("10");
+    updateBehindTheCache("10", "Not visible");
+    assertEquals(cachedName2, readName2("10"));
+
+    final ServerCallSimulator helperUpdate = createCachingCall(newUriBuilder().appendEntitySetSegment(
+        "Organizations").appendKeySegment("10"), "{\"Name2\": \"Cache Update\"}", HttpMethod.PATCH);
+    helperUpdate.execute(HttpStatusCode.OK.getStatusCode());
+
+    assertEquals("Cache Update", readName2("10"));
+  }
+
+  @Test
+  public void testCachedPerUser() throws IOException, ODataException {
+    readName2("10");
+    updateBehindTheCache("10", "Other User");
+
+    final ServerCallSimulator helper = createCachingCall(newUriBuilder().appendEntitySetSegment("Organizations")
+        .appendKeySegment("10"), null, HttpMethod.GET);
+    helper.setUser(() -> "Other");
+    helper.execute(HttpStatusCode.OK.getStatusCode());
+    assertEquals("Other User", helper.getJsonObjectValue().get("Name2").asText());
+  }
+
+  @Test
+  public void testNotCachedWithExpandOfUncachedEntity() throws IOException, ODataException {
+    final URIBuilder uriBuilder = newUriBuilder().appendEntitySetSegment("Organizations").appendKeySegment("10")
+        .expand("Roles");
+    createCachingCall(uriBuilder, null, HttpMethod.GET).execute(HttpStatusCode.OK.getStatusCode());
+    updateBehindTheCache("10", "Expanded");
+
+    final ServerCallSimulator helper = createCachingCall(uriBuilder, null, HttpMethod.GET);
+    helper.execute(HttpStatusCode.OK.getStatusCode());
+    assertEquals("Expanded", helper.getJsonObjectValue().get("Name2").asText());
+  }
+
+  @Test
+  public void testCachedPerCheckedRoles() throws IOException, ODataException {
+    final SecurityInceptor roleCheckingInceptor = new SecurityInceptor() {
+      @Inject
+      private HttpServletRequest httpRequest;
+
+      @Override
+      public void authorize(final ODataRequest odRequest, final UriInfo uriInfo) throws ODataApplicationException {
+        httpRequest.isUserInRole("Privileged");
+      }
+    };
+    final URIBuilder uriBuilder = newUriBuilder().appendEntitySetSegment("Organizations").appendKeySegment("10");
+    final ServerCallSimulator helperPrivileged = createCachingCall(uriBuilder, null, HttpMethod.GET);
+    helperPrivileged.setSecurityInceptor(roleCheckingInceptor);
+    helperPrivileged.setUser(new PrincipalMock("User", new String[] { "Privileged" }));
+    helperPrivileged.execute(HttpStatusCode.OK.getStatusCode());
+    updateBehindTheCache("10", "Not Privileged");
+
+    // same user name, but another result of the role check
+    final ServerCallSimulator helper = createCachingCall(uriBuilder, null, HttpMethod.GET);
+    helper.setSecurityInceptor(roleCheckingInceptor);
+    helper.setUser(new PrincipalMock("User", new String[0]));
+    helper.execute(HttpStatusCode.OK.getStatusCode());
+    assertEquals("Not Privileged", helper.getJsonObjectValue().get("Name2").asText());
+  }
+
+  @Test
+  public void testCachedNavigationResponseInvalidatedByUpdateOfTarget() throws IOException, ODataException {
+    final int cachedArea = readParentArea();
+    executeBehindTheCache("UPDATE \"OLINGO\".\"org.apache.olingo.jpa::AdministrativeDivision\" SET \"Area\" = "
+        + (cachedArea + 1) + " WHERE \"DivisionCode\" = 'BE2' AND \"CodeID\" = 'NUTS1'");
+    assertEquals(cachedArea, readParentArea());
+
+    final ServerCallSimulator helperUpdate = createCachingCall(newUriBuilder().appendEntitySetSegment(
+        "AdministrativeDivisions").appendKeySegment(createDivisionKey("BE2", "NUTS1")), "{\"Area\": " + (cachedArea
+            + 2) + "}", HttpMethod.PATCH);
+    helperUpdate.execute(HttpStatusCode.OK.getStatusCode());
+
+    assertEquals(cachedArea + 2, readParentArea());
+  }
+
+  @Test
+  public void testCachedResponseInvalidatedByBoundAction() throws IOException, ODataException {
+    // the filter depends on all entity types reachable from organizations, like the descriptions of the locations
+    final URIBuilder uriBuilder = newUriBuilder().appendEntitySetSegment("Organizations").filter("ID eq '10'");
+    createCachingCall(uriBuilder, null, HttpMethod.GET).execute(HttpStatusCode.OK.getStatusCode());
+    updateBehindTheCache("10", "Bound Action");
+
+    final Map<String, Object> descriptionKey = new HashMap<>();
+    descriptionKey.put("CodeID", "NUTS3");
+    descriptionKey.put("DivisionCode", "BE212");
+    descriptionKey.put("CodePublisher", "Eurostat");
+    descriptionKey.put("Language", "de");
+    final ServerCallSimulator helperAction = createCachingCall(newUriBuilder().appendEntitySetSegment(
+        "AdministrativeDivisionDescriptions").appendKeySegment(descriptionKey).appendActionCallSegment(
+            Constant.PUNIT_NAME + ".boundActionCheckLoadingOfEmbeddedId"), null, HttpMethod.POST);
+    helperAction.execute(HttpStatusCode.NO_CONTENT.getStatusCode());
+
+    final ServerCallSimulator helper = createCachingCall(uriBuilder, null, HttpMethod.GET);
+    helper.execute(HttpStatusCode.OK.getStatusCode());
+    assertEquals("Bound Action", helper.getJsonObjectValues().get(0).get("Name2").asText());
+  }
+
+}
@@ -14,6 +14,7 @@ import org.apache.olingo.commons.api.ex.ODataException;
 import org.apache.olingo.commons.api.http.HttpMethod;
 import org.apache.olingo.commons.api.http.HttpStatusCode;
 import org.apache.olingo.jpa.metadata.core.edm.mapper.exception.ODataJPAModelException;
+import org.apache.olingo.jpa.processor.core.database.AbstractJPADatabaseProcessor;
 import org.apache.olingo.jpa.processor.core.testmodel.dto.EnvironmentInfo;
 import org.apache.olingo.jpa.processor.core.testmodel.dto.SystemRequirement;
 import org.apache.olingo.jpa.processor.core.util.ServerCallSimulator;
@@ -81,6 +82,96 @@ public class TestObjectCreation extends TestBase {
     assertEquals(name, object.get("Name").asText());
   }
 
+  @Test
+  public void testBulkCreation() throws IOException, ODataException {
+    final String namePrefix = "Bulk-" + Integer.toString((int) System.currentTimeMillis());
+    final StringBuffer requestBody = new StringBuffer("[");
+    for (int i = 0; i < 3; i++) {
+      if (i > 0) {
+        requestBody.append(", ");
+      }
+      requestBody.append("{\"Name\": \"" + namePrefix + "-" + Integer.toString(i) + "\"}");
+    }
+    requestBody.append("]");
+
+    final URIBuilder uriBuilder = TestBase.newUriBuilder().appendEntitySetSegment("RelationshipSourceEntities");
+    final ServerCallSimulator helper = new ServerCallSimulator(persistenceAdapter, uriBuilder,
+        requestBody.toString(), HttpMethod.POST);
+    helper.execute(HttpStatusCode.NO_CONTENT.getStatusCode());
+
+    final URIBuilder uriBuilderRead = TestBase.newUriBuilder().appendEntitySetSegment("RelationshipSourceEntities")
+        .filter("startswith(Name,'" + namePrefix + "')");
+    final ServerCallSimulator helperRead = new ServerCallSimulator(persistenceAdapter, uriBuilderRead);
+    helperRead.execute(HttpStatusCode.OK.getStatusCode());
+    assertEquals(3, helperRead.getJsonObjectValues().size());
+  }
+
+  @Test
+  public void testBulkCreationRolledBackOnError() throws IOException, ODataException {
+    final String name = "Bulk-Invalid-" + Integer.toString((int) System.currentTimeMillis());
+    final String requestBody = "[{\"Name\": \"" + name + "\"}, \"not an entity\"]";
+
+    final URIBuilder uriBuilder = TestBase.newUriBuilder().appendEntitySetSegment("RelationshipSourceEntities");
+    final ServerCallSimulator helper = new ServerCallSimulator(persistenceAdapter, uriBuilder, requestBody,
+        HttpMethod.POST);
+    helper.execute(HttpStatusCode.BAD_REQUEST.getStatusCode());
+
+    final URIBuilder uriBuilderRead = TestBase.newUriBuilder().appendEntitySetSegment("RelationshipSourceEntities")
+        .filter("Name eq '" + name + "'");
+    final ServerCallSimulator helperRead = new ServerCallSimulator(persistenceAdapter, uriBuilderRead);
+    helperRead.execute(HttpStatusCode.OK.getStatusCode());
+    assertEquals(0, helperRead.getJsonObjectValues().size());
+  }
+
+  @Test
+  public void testBulkCreationAcrossFlushes() throws IOException, ODataException {
+    final String namePrefix = "Bulk-Flushed-" + Integer.toString((int) System.currentTimeMillis());
+    // with leading UTF-8 BOM and whitespace
+    final StringBuffer requestBody = new StringBuffer("\uFEFF \r\n[");
+    for (int i = 0; i < 5; i++) {
+      if (i > 0) {
+        requestBody.append(", ");
+      }
+      requestBody.append("{\"Name\": \"" + namePrefix + "-" + Integer.toString(i) + "\"}");
+    }
+    requestBody.append("]");
+
+    ((AbstractJPADatabaseProcessor) persistenceAdapter.getDatabaseAccessor()).setBulkFlushSize(2);
+    final URIBuilder uriBuilder = TestBase.newUriBuilder().appendEntitySetSegment("RelationshipSourceEntities");
+    final ServerCallSimulator helper = new ServerCallSimulator(persistenceAdapter, uriBuilder,
+        requestBody.toString(), HttpMethod.POST);
+    helper.execute(HttpStatusCode.NO_CONTENT.getStatusCode());
+
+    final URIBuilder uriBuilderRead = TestBase.newUriBuilder().appendEntitySetSegment("RelationshipSourceEntities")
+        .filter("startswith(Name,'" + namePrefix + "')");
+    final ServerCallSimulator helperRead = new ServerCallSimulator(persistenceAdapter, uriBuilderRead);
+    helperRead.execute(HttpStatusCode.OK.getStatusCode());
+    assertEquals(5, helperRead.getJsonObjectValues().size());
+  }
+
+  @Test
+  public void testBulkCreationRolledBackOnErrorAfterFlush() throws IOException, ODataException {
+    final String namePrefix = "Bulk-Flushed-Invalid-" + Integer.toString((int) System.currentTimeMillis());
+    final StringBuffer requestBody = new StringBuffer("[");
+    for (int i = 0; i < 3; i++) {
+      requestBody.append("{\"Name\": \"" + namePrefix + "-" + Integer.toString(i) + "\"}, ");
+    }
+    requestBody.append("\"not an entity\"]");
+
+    // the first two entities are already flushed to the database when the error occurs
+    ((AbstractJPADatabaseProcessor) persistenceAdapter.getDatabaseAccessor()).setBulkFlushSize(2);
+    final URIBuilder uriBuilder = TestBase.newUriBuilder().appendEntitySetSegment("RelationshipSourceEntities");
+    final ServerCallSimulator helper = new ServerCallSimulator(persistenceAdapter, uriBuilder,
+        requestBody.toString(), HttpMethod.POST);
+    helper.execute(HttpStatusCode.BAD_REQUEST.getStatusCode());
+
+    final URIBuilder uriBuilderRead = TestBase.newUriBuilder().appendEntitySetSegment("RelationshipSourceEntities")
+        .filter("startswith(Name,'" + namePrefix + "')");
+    final ServerCallSimulator helperRead = new ServerCallSimulator(persistenceAdapter, uriBuilderRead);
+    helperRead.execute(HttpStatusCode.OK.getStatusCode());
+    assertEquals(0, helperRead.getJsonObjectValues().size());
+  }
+
   @Test
   public void testCreationEntityWithNestedComplexType() throws IOException, ODataException {
     assumeTrue(
@@ -1,7 +1,9 @@
 package org.apache.olingo.jpa.processor.core.cud;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 import java.io.IOException;
 import java.time.DayOfWeek;
@@ -10,6 +12,7 @@ import java.time.temporal.ChronoUnit;
 
 import org.apache.olingo.client.api.uri.URIBuilder;
 import org.apache.olingo.commons.api.ex.ODataException;
+import org.apache.olingo.commons.api.http.HttpHeader;
 import org.apache.olingo.commons.api.http.HttpMethod;
 import org.apache.olingo.commons.api.http.HttpStatusCode;
 import org.apache.olingo.jpa.processor.core.util.ServerCallSimulator;
@@ -52,5 +55,97 @@ public class TestObjectModification extends TestBase {
     assertEquals(DayOfWeek.WEDNESDAY.name(), dceSecondRead.withArray("EnumCollection").get(0).asText());
   }
 
+  @Test
+  public void testConditionalRead() throws IOException, ODataException {
+    final URIBuilder uriBuilder = newUriBuilder().appendEntitySetSegment("Organizations").appendKeySegment("3");
+    final ServerCallSimulator helper = new ServerCallSimulator(persistenceAdapter, uriBuilder);
+    helper.execute(HttpStatusCode.OK.getStatusCode());
+    final String eTag = helper.getResponseHeader(HttpHeader.ETAG);
+    assertNotNull(eTag);
+    assertEquals(eTag, helper.getJsonObjectValue().get("@odata.etag").asText());
+
+    final ServerCallSimulator helperNotModified = new ServerCallSimulator(persistenceAdapter, uriBuilder);
+    helperNotModified.setRequestHeader(HttpHeader.IF_NONE_MATCH, eTag);
+    helperNotModified.execute(HttpStatusCode.NOT_MODIFIED.getStatusCode());
+    assertEquals(eTag, helperNotModified.getResponseHeader(HttpHeader.ETAG));
+
+    final ServerCallSimulator helperModified = new ServerCallSimulator(persistenceAdapter, uriBuilder);
+    helperModified.setRequestHeader(HttpHeader.IF_NONE_MATCH, "W/\"-1\"");
+    helperModified.execute(HttpStatusCode.OK.getStatusCode());
+    assertEquals("3", helperModified.getJsonObjectValue().get("ID").asText());
+  }
+
+  @Test
+  public void testETagWithoutSelectedVersion() throws IOException, ODataException {
+    final URIBuilder uriBuilder = newUriBuilder().appendEntitySetSegment("Organizations").appendKeySegment("3")
+        .select("Name1");
+    final ServerCallSimulator helper = new ServerCallSimulator(persistenceAdapter, uriBuilder);
+    helper.execute(HttpStatusCode.OK.getStatusCode());
+    final ObjectNode organization = helper.getJsonObjectValue();
+    assertNotNull(helper.getResponseHeader(HttpHeader.ETAG));
+    assertEquals(helper.getResponseHeader(HttpHeader.ETAG), organization.get("@odata.etag").asText());
+    assertNull(organization.get("ETag"));
+  }
+
+  @Test
+  public void testConditionalUpdate() throws IOException, ODataException {
+    final URIBuilder uriBuilder = newUriBuilder().appendEntitySetSegment("Organizations").appendKeySegment("4");
+    final ServerCallSimulator helperRead = new ServerCallSimulator(persistenceAdapter, uriBuilder);
+    helperRead.execute(HttpStatusCode.OK.getStatusCode());
+    final String eTag = helperRead.getResponseHeader(HttpHeader.ETAG);
+    assertNotNull(eTag);
+
+    final String requestBody = "{\"Name2\": \"Conditional Update\"}";
+    final ServerCallSimulator helperOutdated = new ServerCallSimulator(persistenceAdapter, uriBuilder, requestBody,
+        HttpMethod.PATCH);
+    helperOutdated.setRequestHeader(HttpHeader.IF_MATCH, "W/\"-1\"");
+    helperOutdated.execute(HttpStatusCode.PRECONDITION_FAILED.getStatusCode());
+
+    final ServerCallSimulator helperUpdate = new ServerCallSimulator(persistenceAdapter, uriBuilder, requestBody,
+        HttpMethod.PATCH);
+    helperUpdate.setRequestHeader(HttpHeader.IF_MATCH, eTag);
+    helperUpdate.execute(HttpStatusCode.OK.getStatusCode());
+    assertEquals("Conditional Update", helperUpdate.getJsonObjectValue().get("Name2").asText());
+    final String eTagUpdated = helperUpdate.getResponseHeader(HttpHeader.ETAG);
+    assertNotNull(eTagUpdated);
+    assertNotEquals(eTag, eTagUpdated);
+
+    // the old ETag is outdated now
+    final ServerCallSimulator helperDelete = new ServerCallSimulator(persistenceAdapter, uriBuilder, null,
+        HttpMethod.DELETE);
+    helperDelete.setRequestHeader(HttpHeader.IF_MATCH, eTag);
+    helperDelete.execute(HttpStatusCode.PRECONDITION_FAILED.getStatusCode());
+  }
+
+  @Test
+  public void testUpdateReturnMinimal() throws IOException, ODataException {
+    final URIBuilder uriBuilder = newUriBuilder().appendEntitySetSegment("Organizations").appendKeySegment("9");
+    final ServerCallSimulator helperUpdate = new ServerCallSimulator(persistenceAdapter, uriBuilder,
+        "{\"Name2\": \"Minimal Update\"}", HttpMethod.PATCH);
+    helperUpdate.setRequestHeader(HttpHeader.PREFER, "return=minimal");
+    helperUpdate.execute(HttpStatusCode.NO_CONTENT.getStatusCode());
+    assertEquals("return=minimal", helperUpdate.getResponseHeader(HttpHeader.PREFERENCE_APPLIED));
+    final String eTagUpdated = helperUpdate.getResponseHeader(HttpHeader.ETAG);
+    assertNotNull(eTagUpdated);
+
+    final ServerCallSimulator helperRead = new ServerCallSimulator(persistenceAdapter, uriBuilder);
+    helperRead.execute(HttpStatusCode.OK.getStatusCode());
+    assertEquals("Minimal Update", helperRead.getJsonObjectValue().get("Name2").asText());
+    assertEquals(eTagUpdated, helperRead.getResponseHeader(HttpHeader.ETAG));
+  }
+
+  @Test
+  public void testUpdateReturnRepresentation() throws IOException, ODataException {
+    final URIBuilder uriBuilder = newUriBuilder().appendEntitySetSegment("Organizations").appendKeySegment("2");
+    final ServerCallSimulator helperUpdate = new ServerCallSimulator(persistenceAdapter, uriBuilder,
+        "{\"Name2\": \"Represented Update\"}", HttpMethod.PATCH);
+    helperUpdate.setRequestHeader(HttpHeader.PREFER, "return=representation");
+    helperUpdate.execute(HttpStatusCode.OK.getStatusCode());
+    assertEquals("return=representation", helperUpdate.getResponseHeader(HttpHeader.PREFERENCE_APPLIED));
+    final ObjectNode organization = helperUpdate.getJsonObjectValue();
+    assertEquals("Represented Update", organization.get("Name2").asText());
+    assertEquals("2", organization.get("ID").asText());
+    assertEquals(helperUpdate.getResponseHeader(HttpHeader.ETAG), organization.get("@odata.etag").asText());
+  }
 
 }
@@ -1,8 +1,11 @@
 package org.apache.olingo.jpa.processor.core.dto;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.sql.SQLException;
 import java.util.Collection;
 import java.util.LinkedList;
@@ -123,6 +126,55 @@ public class TestDependencyInjection extends TestBase {
     helper.execute(HttpStatusCode.OK.getStatusCode());
   }
 
+  public static class InjectionTarget {
+    @Inject
+    private CharSequence text;
+  }
+
+  public static class InjectionSubTarget extends InjectionTarget {
+    @Inject
+    private Number number;
+  }
+
+  @Test
+  public void testInjectionIntoInheritedFieldsFromParentInjector() throws ODataException {
+    final DependencyInjectorImpl parent = new DependencyInjectorImpl();
+    parent.registerDependencyMapping(String.class, "parent");
+    parent.registerDependencyMapping(Number.class, new BigDecimal("1"));
+    final DependencyInjectorImpl child = new DependencyInjectorImpl(parent);
+    child.registerDependencyMapping(BigInteger.class, BigInteger.valueOf(2));
+
+    final InjectionSubTarget target = new InjectionSubTarget();
+    child.injectDependencyValues(target);
+    assertEquals("parent", ((InjectionTarget) target).text);
+    assertEquals(BigInteger.valueOf(2), target.number);
+
+    // the same class again with other values
+    final InjectionSubTarget target2 = new InjectionSubTarget();
+    parent.injectDependencyValues(target2);
+    assertEquals("parent", ((InjectionTarget) target2).text);
+    assertEquals(new BigDecimal("1"), target2.number);
+  }
+
+  public static class FinalInjectionTarget {
+    @Inject
+    private final CharSequence text;
+
+    public FinalInjectionTarget() {
+      this.text = null;
+    }
+  }
+
+  @Test
+  public void testInjectionIntoFinalField() throws ODataException {
+    final DependencyInjectorImpl injector = new DependencyInjectorImpl();
+    injector.registerDependencyMapping(String.class, "final");
+
+    final FinalInjectionTarget target = new FinalInjectionTarget();
+    injector.injectDependencyValues(target);
+    assertEquals("final", target.text);
+  }
+
   @Test(expected = IllegalArgumentException.class)
   public void testInvalidType() {
     final DependencyInjectorImpl injector = new DependencyInjectorImpl();
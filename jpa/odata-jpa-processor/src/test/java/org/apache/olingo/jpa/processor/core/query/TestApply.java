@@ -1,13 +1,23 @@
 package org.apache.olingo.jpa.processor.core.query;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.apache.olingo.client.api.uri.URIBuilder;
+import org.apache.olingo.commons.api.edm.EdmEntityType;
+import org.apache.olingo.commons.api.edm.FullQualifiedName;
+import org.apache.olingo.commons.api.edm.provider.CsdlEntityType;
 import org.apache.olingo.commons.api.ex.ODataException;
 import org.apache.olingo.commons.api.format.ContentType;
 import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.commons.core.edm.EdmEntityTypeImpl;
+import org.apache.olingo.jpa.processor.core.api.JPAODataServletHandler;
 import org.apache.olingo.jpa.processor.core.util.ServerCallSimulator;
 import org.apache.olingo.jpa.processor.core.util.TestBase;
 import org.junit.Test;
@@ -17,6 +27,8 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 
 public class TestApply extends TestBase {
 
+  private JPAODataServletHandler sharedHandler = null;
+
   @Test
   public void testAggregationSumMinMaxAvgCombination() throws IOException, ODataException {
 
@@ -97,4 +109,153 @@ public class TestApply extends TestBase {
     assertEquals(11.0, aggNode.get("Sum").asDouble(), 0.0);
   }
 
+  @Test
+  public void testGroupByWithMultipleAggregates() throws IOException, ODataException {
+    final URIBuilder uriBuilder = newUriBuilder().appendEntitySetSegment("Persons").addQueryOption("apply",
+        "groupby((Country),aggregate(ETag with sum as Sum,ID with countdistinct as Count))", false);
+    final ServerCallSimulator helper = new ServerCallSimulator(persistenceAdapter, uriBuilder);
+    helper.setRequestedResponseContentType(ContentType.JSON_FULL_METADATA.toContentTypeString());
+    helper.execute(HttpStatusCode.OK.getStatusCode());
+
+    final ObjectNode response = helper.getJsonObjectValue();
+    final ArrayNode valueArray = response.withArray("value");
+    assertEquals(3, valueArray.size());
+    final Map<String, ObjectNode> groups = new HashMap<>();
+    for (int i = 0; i < valueArray.size(); i++) {
+      groups.put(valueArray.get(i).get("Country").asText(), (ObjectNode) valueArray.get(i));
+    }
+    assertEquals(9, groups.get("DEU").get("Sum").asInt());
+    assertEquals(2, groups.get("DEU").get("Count").asInt());
+    assertEquals(5, groups.get("USA").get("Sum").asInt());
+    assertEquals(1, groups.get("CHE").get("Count").asInt());
+    assertEquals("#Int64", groups.get("CHE").get("Count@odata.type").asText());
+  }
+
+  @Test
+  public void testGroupByWithoutAggregate() throws IOException, ODataException {
+    final URIBuilder uriBuilder = newUriBuilder().appendEntitySetSegment("Organizations").addQueryOption("apply",
+        "groupby((Country))", false);
+    final ServerCallSimulator helper = new ServerCallSimulator(persistenceAdapter, uriBuilder);
+    helper.execute(HttpStatusCode.OK.getStatusCode());
+
+    final ObjectNode response = helper.getJsonObjectValue();
+    final ArrayNode valueArray = response.withArray("value");
+    assertEquals(2, valueArray.size());
+    assertEquals(1, valueArray.get(0).size());
+  }
+
+  @Test
+  public void testGroupByWithFilter() throws IOException, ODataException {
+    final URIBuilder uriBuilder = newUriBuilder().appendEntitySetSegment("Persons").addQueryOption("apply",
+        "groupby((Country),aggregate(ETag with max as Max))", false).filter("ETag lt 6");
+    final ServerCallSimulator helper = new ServerCallSimulator(persistenceAdapter, uriBuilder);
+    helper.execute(HttpStatusCode.OK.getStatusCode());
+
+    final ObjectNode response = helper.getJsonObjectValue();
+    final ArrayNode valueArray = response.withArray("value");
+    assertEquals(3, valueArray.size());
+    for (int i = 0; i < valueArray.size(); i++) {
+      if ("DEU".equals(valueArray.get(i).get("Country").asText())) {
+        assertEquals(3, valueArray.get(i).get("Max").asInt());
+      }
+    }
+  }
+
+  @Test
+  public void testGroupByComplexPropertyNotSupported() throws IOException, ODataException {
+    final URIBuilder uriBuilder = newUriBuilder().appendEntitySetSegment("Persons").addQueryOption("apply",
+        "groupby((Address/Region))", false);
+    final ServerCallSimulator helper = new ServerCallSimulator(persistenceAdapter, uriBuilder);
+    helper.execute(HttpStatusCode.NOT_IMPLEMENTED.getStatusCode());
+  }
+
+  @Test
+  public void testDynamicTypeReusedForSameShape() throws IOException, ODataException {
+    final URIBuilder uriBuilder = newUriBuilder().appendEntitySetSegment("Persons").addQueryOption("apply",
+        "groupby((Country),aggregate(ETag with sum as Sum))", false);
+    createCallWithSharedHandler(uriBuilder).execute(HttpStatusCode.OK.getStatusCode());
+    final AggregationTypeCache cache = getSharedTypeCache();
+    assertEquals(1, cache.size());
+    final EdmEntityType firstType = cache.getTypes().get(0);
+
+    createCallWithSharedHandler(uriBuilder).execute(HttpStatusCode.OK.getStatusCode());
+    assertEquals(1, cache.size());
+    assertSame(firstType, cache.getTypes().get(0));
+  }
+
+  @Test
+  public void testDynamicTypeWidenedForDataOfSameShape() throws IOException, ODataException {
+    // the first result has a scale of 0, the second one needs a scale of 5
+    final URIBuilder uriBuilderZero = newUriBuilder().appendEntitySetSegment("DatatypeConversionEntities")
+        .addQueryOption("apply", "aggregate(ADecimal with sum as Sum)", false).filter("AIntegerYear gt 9999999");
+    final URIBuilder uriBuilderScaled = newUriBuilder().appendEntitySetSegment("DatatypeConversionEntities")
+        .addQueryOption("apply", "aggregate(ADecimal with sum as Sum)", false);
+    createCallWithSharedHandler(uriBuilderZero).execute(HttpStatusCode.OK.getStatusCode());
+    final ServerCallSimulator helperScaled = createCallWithSharedHandler(uriBuilderScaled);
+    helperScaled.execute(HttpStatusCode.OK.getStatusCode());
+    assertEquals(98989886.00698, helperScaled.getJsonObjectValue().withArray("value").get(0).get("Sum").asDouble(),
+        0.0);
+
+    final AggregationTypeCache cache = getSharedTypeCache();
+    assertEquals(1, cache.size());
+    final EdmEntityType widenedType = cache.getTypes().get(0);
+    assertEquals(Integer.valueOf(5), widenedType.getStructuralProperty("Sum").getScale());
+
+    // the widened type fits also for the first result
+    createCallWithSharedHandler(uriBuilderZero).execute(HttpStatusCode.OK.getStatusCode());
+    assertSame(widenedType, cache.getTypes().get(0));
+  }
+
+  @Test
+  public void testDynamicTypeNamesUnique() throws IOException, ODataException {
+    final ServerCallSimulator helperSum = createCallWithSharedHandler(newUriBuilder().appendEntitySetSegment(
+        "Persons").addQueryOption("apply", "groupby((Country),aggregate(ETag with sum as Sum))", false));
+    helperSum.execute(HttpStatusCode.OK.getStatusCode());
+    final ServerCallSimulator helperMax = createCallWithSharedHandler(newUriBuilder().appendEntitySetSegment(
+        "Persons").addQueryOption("apply", "groupby((Country),aggregate(ETag with max as Max))", false));
+    helperMax.execute(HttpStatusCode.OK.getStatusCode());
+
+    assertNotEquals(helperSum.getJsonObjectValue().get("@odata.context").asText(), helperMax.getJsonObjectValue()
+        .get("@odata.context").asText());
+    assertEquals(2, getSharedTypeCache().size());
+  }
+
+  @Test
+  public void testTypeCacheEvictsLeastRecentlyUsed() {
+    final AggregationTypeCache cache = new AggregationTypeCache(2);
+    final EdmEntityType type1 = new EdmEntityTypeImpl(null, new FullQualifiedName("Test", "Type1"),
+        new CsdlEntityType());
+    final EdmEntityType type2 = new EdmEntityTypeImpl(null, new FullQualifiedName("Test", "Type2"),
+        new CsdlEntityType());
+    final EdmEntityType type3 = new EdmEntityTypeImpl(null, new FullQualifiedName("Test", "Type3"),
+        new CsdlEntityType());
+    cache.put("1", type1);
+    cache.put("2", type2);
+    assertSame(type1, cache.get("1"));
+    cache.put("3", type3);
+
+    assertEquals(2, cache.size());
+    assertNull(cache.get("2"));
+    assertSame(type1, cache.get("1"));
+    assertSame(type3, cache.get("3"));
+  }
+
+  private ServerCallSimulator createCallWithSharedHandler(final URIBuilder uriBuilder) throws IOException,
+  ODataException {
+    return new ServerCallSimulator(persistenceAdapter, uriBuilder) {
+      @Override
+      protected JPAODataServletHandler createServletHandler() throws ODataException {
+        // the type cache lives as long as the handler
+        if (sharedHandler == null) {
+          sharedHandler = super.createServletHandler();
+        }
+        return sharedHandler;
+      }
+    };
+  }
+
+  private AggregationTypeCache getSharedTypeCache() {
+    return sharedHandler.getJPAODataContext().getDependencyInjector().getDependencyValue(AggregationTypeCache.class);
+  }
+
 }
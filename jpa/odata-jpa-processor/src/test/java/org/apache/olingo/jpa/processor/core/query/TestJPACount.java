@@ -6,10 +6,17 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.util.Collections;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.olingo.client.api.uri.URIBuilder;
 import org.apache.olingo.commons.api.ex.ODataException;
 import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.jpa.processor.core.database.AbstractJPADatabaseProcessor;
 import org.apache.olingo.jpa.processor.core.util.ServerCallSimulator;
 import org.apache.olingo.jpa.processor.core.util.TestBase;
 import org.junit.Test;
@@ -53,6 +60,99 @@ public class TestJPACount extends TestBase {
     assertEquals(9, result.get("@odata.count").asInt());
   }
 
+  @Test
+  public void testCountTrueWithTopAndSkip() throws IOException, ODataException {
+
+    final URIBuilder uriBuilder = newUriBuilder().appendEntitySetSegment("Organizations").filter("Country eq 'USA'")
+        .orderBy("ID").skip(2).top(3).count(true);
+    final ServerCallSimulator helper = new ServerCallSimulator(persistenceAdapter, uriBuilder);
+
+    helper.execute(HttpStatusCode.OK.getStatusCode());
+    assertEquals(3, helper.getJsonObjectValues().size());
+    // the count must ignore $top and $skip
+    assertEquals(9, helper.getJsonObjectValue().get("@odata.count").asInt());
+  }
+
+  @Test
+  public void testCountTrueWithServerDrivenPaging() throws IOException, ODataException {
+    ((AbstractJPADatabaseProcessor) persistenceAdapter.getDatabaseAccessor()).setMaxPageSize("Organizations", 2);
+    final URIBuilder uriBuilder = newUriBuilder().appendEntitySetSegment("Organizations").filter("Country eq 'USA'")
+        .count(true);
+    final ServerCallSimulator helper = new ServerCallSimulator(persistenceAdapter, uriBuilder);
+
+    helper.execute(HttpStatusCode.OK.getStatusCode());
+    assertEquals(2, helper.getJsonObjectValues().size());
+    assertEquals(9, helper.getJsonObjectValue().get("@odata.count").asInt());
+  }
+
+  @Test
+  public void testCountTrueWithOrderByNavigation() throws IOException, ODataException {
+
+    final URIBuilder uriBuilder = newUriBuilder().appendEntitySetSegment("Organizations").orderBy("Roles/$count desc")
+        .top(1).count(true);
+    final ServerCallSimulator helper = new ServerCallSimulator(persistenceAdapter, uriBuilder);
+
+    helper.execute(HttpStatusCode.OK.getStatusCode());
+    // the join for ordering must not multiply the count
+    assertEquals(10, helper.getJsonObjectValue().get("@odata.count").asInt());
+  }
+
+  @Test
+  public void testCountTrueConcurrent() throws IOException, ODataException {
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      ((AbstractJPADatabaseProcessor) persistenceAdapter.getDatabaseAccessor()).setInlineCountExecutor(executor);
+      final URIBuilder uriBuilder = newUriBuilder().appendEntitySetSegment("Organizations").filter(
+          "Country eq 'USA'").top(1).count(true);
+      final ServerCallSimulator helper = new ServerCallSimulator(persistenceAdapter, uriBuilder);
+
+      helper.execute(HttpStatusCode.OK.getStatusCode());
+      assertEquals(1, helper.getJsonObjectValues().size());
+      assertEquals(9, helper.getJsonObjectValue().get("@odata.count").asInt());
+    } finally {
+      ((AbstractJPADatabaseProcessor) persistenceAdapter.getDatabaseAccessor()).setInlineCountExecutor(null);
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testCountTrueConcurrentRejected() throws IOException, ODataException {
+    ((AbstractJPADatabaseProcessor) persistenceAdapter.getDatabaseAccessor()).setInlineCountExecutor(command -> {
+      throw new RejectedExecutionException();
+    });
+    try {
+      final URIBuilder uriBuilder = newUriBuilder().appendEntitySetSegment("Organizations").filter(
+          "Country eq 'USA'").top(1).count(true);
+      final ServerCallSimulator helper = new ServerCallSimulator(persistenceAdapter, uriBuilder);
+
+      helper.execute(HttpStatusCode.OK.getStatusCode());
+      assertEquals(1, helper.getJsonObjectValues().size());
+      // counted sequentially
+      assertEquals(9, helper.getJsonObjectValue().get("@odata.count").asInt());
+    } finally {
+      ((AbstractJPADatabaseProcessor) persistenceAdapter.getDatabaseAccessor()).setInlineCountExecutor(null);
+    }
+  }
+
+  @Test
+  public void testCountTrueConcurrentWithFailingQuery() throws IOException, ODataException {
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      ((AbstractJPADatabaseProcessor) persistenceAdapter.getDatabaseAccessor()).setInlineCountExecutor(executor);
+      final URIBuilder uriBuilder = newUriBuilder().appendEntitySetSegment("Organizations").count(true).skipToken(
+          "xyz");
+      final ServerCallSimulator helper = new ServerCallSimulator(persistenceAdapter, uriBuilder);
+      helper.execute(HttpStatusCode.BAD_REQUEST.getStatusCode());
+      // the count of the failed request must be finished, before the executor is free for the next task
+      executor.submit(() -> null).get(10, TimeUnit.SECONDS);
+    } catch (InterruptedException | ExecutionException | TimeoutException e) {
+      throw new AssertionError(e);
+    } finally {
+      ((AbstractJPADatabaseProcessor) persistenceAdapter.getDatabaseAccessor()).setInlineCountExecutor(null);
+      executor.shutdown();
+    }
+  }
+
   @Test
   public void testFilterCountFalseQueryOption() throws IOException, ODataException {
 
@@ -14,7 +14,6 @@ import org.apache.olingo.jpa.processor.core.testmodel.AdministrativeDivision;
 import org.apache.olingo.jpa.processor.core.util.TestBase;
 import org.apache.olingo.server.api.ODataApplicationException;
 import org.apache.olingo.server.api.serializer.SerializerException;
-import org.apache.olingo.server.api.uri.UriHelper;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -24,13 +23,12 @@ public class TestJPAInstanceResultConverter extends TestBase {
 
   @Before
   public void setup() throws ODataException {
-    final UriHelper uriHelper = odata.createUriHelper();
     final EdmEntitySet edmEntitySet = serviceMetaData.getEdm().getEntityContainer().getEntitySet(
         "AdministrativeDivisions");
 
     jpaQueryResult = new ArrayList<Object>();
 
-    cut = new JPAInstanceResultConverter(uriHelper, helper.getEdmProvider().getServiceDocument(), jpaQueryResult,
+    cut = new JPAInstanceResultConverter(helper.getEdmProvider().getServiceDocument(), jpaQueryResult,
         edmEntitySet,
         AdministrativeDivision.class);
   }
@@ -19,6 +19,7 @@ import org.apache.olingo.client.api.uri.QueryOption;
 import org.apache.olingo.client.api.uri.URIBuilder;
 import org.apache.olingo.commons.api.ex.ODataException;
 import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.jpa.processor.core.database.AbstractJPADatabaseProcessor;
 import org.apache.olingo.jpa.processor.core.util.ServerCallSimulator;
 import org.apache.olingo.jpa.processor.core.util.TestBase;
 import org.apache.olingo.jpa.test.util.AbstractTest.JPAProvider;
@@ -684,4 +685,106 @@ public class TestJPAProcessorExpand extends TestBase {
     // all other must not have an OrganizationImage
     assertNull(set.getEntities().get(3).getNavigationLink("ImageUnidirectional"));
   }
+
+  @Test
+  public void testExpandMultiLevelInKeyBatches() throws IOException, ODataException {
+    final Map<QueryOption, Object> expandOptionsChildren = new HashMap<>();
+    expandOptionsChildren.put(QueryOption.ORDERBY, "DivisionCode");
+    expandOptionsChildren.put(QueryOption.EXPAND, "Children($orderby=DivisionCode)");
+    final URIBuilder uriBuilder = newUriBuilder().appendEntitySetSegment("AdministrativeDivisions").filter(
+        "CodeID eq 'NUTS1'").orderBy("DivisionCode").expandWithOptions("Children", expandOptionsChildren);
+
+    final AbstractJPADatabaseProcessor dbProcessor = (AbstractJPADatabaseProcessor) persistenceAdapter
+        .getDatabaseAccessor();
+    final ServerCallSimulator helperUnbatched = new ServerCallSimulator(persistenceAdapter, uriBuilder);
+    final ServerCallSimulator helperBatched = new ServerCallSimulator(persistenceAdapter, uriBuilder);
+    try {
+      dbProcessor.setKeyBatchSize(0);
+      helperUnbatched.execute(HttpStatusCode.OK.getStatusCode());
+      dbProcessor.setKeyBatchSize(2);
+      helperBatched.execute(HttpStatusCode.OK.getStatusCode());
+    } finally {
+      dbProcessor.setKeyBatchSize(AbstractJPADatabaseProcessor.DEFAULT_KEY_BATCH_SIZE);
+    }
+
+    final ArrayNode divisions = helperBatched.getJsonObjectValues();
+    assertTrue(divisions.size() > 2);
+    assertTrue(((ArrayNode) divisions.get(0).get("Children")).size() > 0);
+    assertEquals(helperUnbatched.getJsonObjectValues(), divisions);
+  }
+
+  @Test
+  public void testExpandCompoundKeyOwnerInKeyBatches() throws IOException, ODataException {
+    // BusinessPartnerRole has a key of two (varying) columns
+    final URIBuilder uriBuilder = newUriBuilder().appendEntitySetSegment("BusinessPartnerRoles").orderBy(
+        "BusinessPartnerID,RoleCategory").expand("BusinessPartner");
+
+    final AbstractJPADatabaseProcessor dbProcessor = (AbstractJPADatabaseProcessor) persistenceAdapter
+        .getDatabaseAccessor();
+    final ServerCallSimulator helperUnbatched = new ServerCallSimulator(persistenceAdapter, uriBuilder);
+    final ServerCallSimulator helperBatched = new ServerCallSimulator(persistenceAdapter, uriBuilder);
+    try {
+      dbProcessor.setKeyBatchSize(0);
+      helperUnbatched.execute(HttpStatusCode.OK.getStatusCode());
+      dbProcessor.setKeyBatchSize(3);
+      helperBatched.execute(HttpStatusCode.OK.getStatusCode());
+    } finally {
+      dbProcessor.setKeyBatchSize(AbstractJPADatabaseProcessor.DEFAULT_KEY_BATCH_SIZE);
+    }
+
+    final ArrayNode roles = helperBatched.getJsonObjectValues();
+    for (final JsonNode role : roles) {
+      assertEquals(role.get("BusinessPartnerID").asText(), role.get("BusinessPartner").get("ID").asText());
+    }
+    assertEquals(helperUnbatched.getJsonObjectValues(), roles);
+  }
+
+  @Test
+  public void testExpandToOneViaJoin() throws IOException, ODataException {
+    // 'Parent' (to-one) is joined, 'Children' (to-many) is loaded in a separate query
+    final Map<QueryOption, Object> expandOptionsChildren = new HashMap<>();
+    expandOptionsChildren.put(QueryOption.ORDERBY, "DivisionCode");
+    final URIBuilder uriBuilder = newUriBuilder().appendEntitySetSegment("AdministrativeDivisions").filter(
+        "CodeID eq 'NUTS2'").orderBy("DivisionCode").expand("Parent").expandWithOptions("Children",
+            expandOptionsChildren);
+
+    final AbstractJPADatabaseProcessor dbProcessor = (AbstractJPADatabaseProcessor) persistenceAdapter
+        .getDatabaseAccessor();
+    final ServerCallSimulator helperSeparate = new ServerCallSimulator(persistenceAdapter, uriBuilder);
+    dbProcessor.setExpandJoinEnabled(false);
+    try {
+      helperSeparate.execute(HttpStatusCode.OK.getStatusCode());
+    } finally {
+      dbProcessor.setExpandJoinEnabled(true);
+    }
+
+    final ServerCallSimulator helperJoined = new ServerCallSimulator(persistenceAdapter, uriBuilder);
+    helperJoined.execute(HttpStatusCode.OK.getStatusCode());
+
+    final ArrayNode divisions = helperJoined.getJsonObjectValues();
+    assertTrue(divisions.size() > 2);
+    for (final JsonNode division : divisions) {
+      assertEquals(division.get("ParentDivisionCode").asText(), division.get("Parent").get("DivisionCode").asText());
+    }
+    assertEquals(helperSeparate.getJsonObjectValues(), divisions);
+  }
+
+  @Test
+  public void testExpandToOneViaJoinWithoutTarget() throws IOException, ODataException {
+    final URIBuilder uriBuilder = newUriBuilder().appendEntitySetSegment("Organizations").expand("ImageUnidirectional")
+        .orderBy("ID asc");
+    final ServerCallSimulator helper = new ServerCallSimulator(persistenceAdapter, uriBuilder);
+    helper.execute(HttpStatusCode.OK.getStatusCode());
+
+    // the LEFT JOIN must not drop organizations without image
+    final ArrayNode orgs = helper.getJsonObjectValues();
+    assertEquals(10, orgs.size());
+    for (final JsonNode org : orgs) {
+      if ("9".equals(org.get("ID").asText())) {
+        assertEquals("9", org.get("ImageUnidirectional").get("ID").asText());
+      } else {
+        assertTrue(org.get("ImageUnidirectional") == null || org.get("ImageUnidirectional").isNull());
+      }
+    }
+  }
 }
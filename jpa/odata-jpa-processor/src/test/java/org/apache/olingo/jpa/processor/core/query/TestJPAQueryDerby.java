@@ -0,0 +1,47 @@
+package org.apache.olingo.jpa.processor.core.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+
+import org.apache.olingo.client.api.uri.URIBuilder;
+import org.apache.olingo.commons.api.ex.ODataException;
+import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.jpa.processor.core.util.ServerCallSimulator;
+import org.apache.olingo.jpa.processor.core.util.TestBase;
+import org.apache.olingo.jpa.processor.core.util.TestGenericJPAPersistenceAdapter;
+import org.apache.olingo.jpa.test.util.Constant;
+import org.apache.olingo.jpa.test.util.DataSourceHelper;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Derby is strict about GROUP BY: every selected column must be part of it.
+ */
+public class TestJPAQueryDerby extends TestBase {
+
+  @Override
+  protected TestGenericJPAPersistenceAdapter createPersistenceAdapter() {
+    return new TestGenericJPAPersistenceAdapter(Constant.PUNIT_NAME, DataSourceHelper.DatabaseType.DERBY);
+  }
+
+  @Test
+  public void testOrderByNavigationCountWithETagNotSelected() throws IOException, ODataException {
+    final URIBuilder uriBuilder = newUriBuilder().appendEntitySetSegment("Organizations").select("ID", "Name1")
+        .orderBy("Roles/$count desc");
+    final ServerCallSimulator helper = new ServerCallSimulator(persistenceAdapter, uriBuilder);
+
+    helper.execute(HttpStatusCode.OK.getStatusCode());
+    final ArrayNode orgs = helper.getJsonObjectValues();
+    assertEquals(10, orgs.size());
+    // "Third Org." has the most roles
+    final ObjectNode org = (ObjectNode) orgs.get(0);
+    assertEquals("3", org.get("ID").asText());
+    assertNotNull(org.get("@odata.etag"));
+    assertNull(org.get("ETag"));
+  }
+}
@@ -11,6 +11,7 @@ import java.time.DayOfWeek;
 import org.apache.olingo.client.api.uri.URIBuilder;
 import org.apache.olingo.commons.api.ex.ODataException;
 import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.jpa.processor.core.database.AbstractJPADatabaseProcessor;
 import org.apache.olingo.jpa.processor.core.util.ServerCallSimulator;
 import org.apache.olingo.jpa.processor.core.util.TestBase;
 import org.apache.olingo.jpa.test.util.AbstractTest.JPAProvider;
@@ -181,4 +182,28 @@ public class TestJPASelect extends TestBase {
     assertEquals(2, targets.size());
   }
 
+  @Test
+  public void testElementCollectionsOfPageInKeyBatches() throws IOException, ODataException {
+    final URIBuilder uriBuilder = newUriBuilder().appendEntitySetSegment("Persons").orderBy("ID desc").top(3);
+
+    final AbstractJPADatabaseProcessor dbProcessor = (AbstractJPADatabaseProcessor) persistenceAdapter
+        .getDatabaseAccessor();
+    final ServerCallSimulator helperUnbatched = new ServerCallSimulator(persistenceAdapter, uriBuilder);
+    final ServerCallSimulator helperBatched = new ServerCallSimulator(persistenceAdapter, uriBuilder);
+    try {
+      dbProcessor.setKeyBatchSize(0);
+      helperUnbatched.execute(HttpStatusCode.OK.getStatusCode());
+      dbProcessor.setKeyBatchSize(1);
+      helperBatched.execute(HttpStatusCode.OK.getStatusCode());
+    } finally {
+      dbProcessor.setKeyBatchSize(AbstractJPADatabaseProcessor.DEFAULT_KEY_BATCH_SIZE);
+    }
+
+    final ArrayNode persons = helperBatched.getJsonObjectValues();
+    assertEquals(3, persons.size());
+    assertEquals(99, persons.get(0).get("ID").asLong());
+    assertEquals(2, ((ArrayNode) persons.get(0).get("PhoneNumbers")).size());
+    assertEquals(helperUnbatched.getJsonObjectValues(), persons);
+  }
+
 }
@@ -0,0 +1,197 @@
+package org.apache.olingo.jpa.processor.core.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+import org.apache.olingo.client.api.uri.URIBuilder;
+import org.apache.olingo.client.core.ConfigurationImpl;
+import org.apache.olingo.client.core.uri.URIBuilderImpl;
+import org.apache.olingo.commons.api.ex.ODataException;
+import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.jpa.processor.core.database.AbstractJPADatabaseProcessor;
+import org.apache.olingo.jpa.processor.core.exception.ODataJPAQueryException;
+import org.apache.olingo.jpa.processor.core.util.ServerCallSimulator;
+import org.apache.olingo.jpa.processor.core.util.TestBase;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+public class TestJPAServerDrivenPaging extends TestBase {
+
+  private AbstractJPADatabaseProcessor getDatabaseProcessor() {
+    return (AbstractJPADatabaseProcessor) persistenceAdapter.getDatabaseAccessor();
+  }
+
+  /**
+   * Load all pages by following the next links.
+   *
+   * @return The number of pages.
+   */
+  private int loadAllPages(final URIBuilder uriBuilder, final int maxPageSize, final List<JsonNode> entities)
+      throws IOException, ODataException {
+    URIBuilder nextUri = uriBuilder;
+    int pages = 0;
+    while (nextUri != null) {
+      final ServerCallSimulator helper = new ServerCallSimulator(persistenceAdapter, nextUri);
+      helper.execute(HttpStatusCode.OK.getStatusCode());
+      final ObjectNode page = helper.getJsonObjectValue();
+      final ArrayNode values = (ArrayNode) page.get("value");
+      assertTrue(values.size() <= maxPageSize);
+      values.forEach(entities::add);
+      pages++;
+      final JsonNode nextLink = page.get("@odata.nextLink");
+      nextUri = nextLink == null ? null : new URIBuilderImpl(new ConfigurationImpl(), nextLink.asText());
+    }
+    return pages;
+  }
+
+  private List<JsonNode> loadUnpaged(final URIBuilder uriBuilder) throws IOException, ODataException {
+    final ServerCallSimulator helper = new ServerCallSimulator(persistenceAdapter, uriBuilder);
+    helper.execute(HttpStatusCode.OK.getStatusCode());
+    final List<JsonNode> entities = new ArrayList<>();
+    helper.getJsonObjectValues().forEach(entities::add);
+    return entities;
+  }
+
+  @Test
+  public void testPagingWithoutOrderBy() throws IOException, ODataException {
+    final List<JsonNode> expected = loadUnpaged(newUriBuilder().appendEntitySetSegment("Organizations").orderBy(
+        "ID"));
+
+    getDatabaseProcessor().setMaxPageSize("Organizations", 3);
+    final List<JsonNode> paged = new ArrayList<>();
+    final int pages = loadAllPages(newUriBuilder().appendEntitySetSegment("Organizations"), 3, paged);
+    assertEquals((expected.size() + 2) / 3, pages);
+    assertEquals(expected, paged);
+  }
+
+  @Test
+  public void testPagingWithCompoundOrderBy() throws IOException, ODataException {
+    final List<JsonNode> expected = loadUnpaged(newUriBuilder().appendEntitySetSegment("Organizations").orderBy(
+        "Address/Country desc,Name1,ID"));
+
+    getDatabaseProcessor().setDefaultMaxPageSize(2);
+    final List<JsonNode> paged = new ArrayList<>();
+    loadAllPages(newUriBuilder().appendEntitySetSegment("Organizations").orderBy("Address/Country desc,Name1"), 2,
+        paged);
+    assertEquals(expected, paged);
+  }
+
+  @Test
+  public void testPagingWithTopAndSkip() throws IOException, ODataException {
+    final List<JsonNode> expected = loadUnpaged(newUriBuilder().appendEntitySetSegment("Organizations").orderBy(
+        "ID").skip(1).top(5));
+    assertEquals(5, expected.size());
+
+    getDatabaseProcessor().setMaxPageSize("Organizations", 2);
+    final List<JsonNode> paged = new ArrayList<>();
+    final int pages = loadAllPages(newUriBuilder().appendEntitySetSegment("Organizations").orderBy("ID").skip(1).top(
+        5), 2, paged);
+    assertEquals(3, pages);
+    assertEquals(expected, paged);
+  }
+
+  @Test
+  public void testPagingOrderByNullableAttributeAscending() throws IOException, ODataException {
+    // Organization 10 has no region
+    final List<JsonNode> expected = loadUnpaged(newUriBuilder().appendEntitySetSegment("Organizations").orderBy(
+        "Address/Region asc,ID"));
+
+    getDatabaseProcessor().setMaxPageSize("Organizations", 2);
+    final List<JsonNode> paged = new ArrayList<>();
+    loadAllPages(newUriBuilder().appendEntitySetSegment("Organizations").orderBy("Address/Region asc"), 2, paged);
+    assertEquals(expected, paged);
+  }
+
+  @Test
+  public void testPagingOrderByNullableAttributeDescending() throws IOException, ODataException {
+    final List<JsonNode> expected = loadUnpaged(newUriBuilder().appendEntitySetSegment("Organizations").orderBy(
+        "Address/Region desc,ID"));
+
+    getDatabaseProcessor().setMaxPageSize("Organizations", 2);
+    final List<JsonNode> paged = new ArrayList<>();
+    loadAllPages(newUriBuilder().appendEntitySetSegment("Organizations").orderBy("Address/Region desc"), 2, paged);
+    assertEquals(expected, paged);
+  }
+
+  @Test
+  public void testPagingOrderByNavigationCount() throws IOException, ODataException {
+    // not usable for keyset paging -> offset based $skiptoken
+    final List<JsonNode> expected = loadUnpaged(newUriBuilder().appendEntitySetSegment("Organizations").orderBy(
+        "Roles/$count desc,ID"));
+
+    getDatabaseProcessor().setMaxPageSize("Organizations", 4);
+    final List<JsonNode> paged = new ArrayList<>();
+    loadAllPages(newUriBuilder().appendEntitySetSegment("Organizations").orderBy("Roles/$count desc"), 4, paged);
+    assertEquals(expected, paged);
+  }
+
+  @Test
+  public void testNoNextLinkForCompleteResult() throws IOException, ODataException {
+    getDatabaseProcessor().setMaxPageSize("Organizations", 100);
+    final ServerCallSimulator helper = new ServerCallSimulator(persistenceAdapter, newUriBuilder()
+        .appendEntitySetSegment("Organizations"));
+    helper.execute(HttpStatusCode.OK.getStatusCode());
+    final ObjectNode page = helper.getJsonObjectValue();
+    assertTrue(page.get("value").size() > 0);
+    assertNull(page.get("@odata.nextLink"));
+  }
+
+  @Test
+  public void testNextLinkKeepsQueryOptions() throws IOException, ODataException {
+    getDatabaseProcessor().setMaxPageSize("Organizations", 1);
+    final ServerCallSimulator helper = new ServerCallSimulator(persistenceAdapter, newUriBuilder()
+        .appendEntitySetSegment("Organizations").filter("Country eq 'USA'").select("ID,Name1"));
+    helper.execute(HttpStatusCode.OK.getStatusCode());
+    final JsonNode nextLink = helper.getJsonObjectValue().get("@odata.nextLink");
+    assertNotNull(nextLink);
+    assertTrue(nextLink.asText().contains("$filter="));
+    assertTrue(nextLink.asText().contains("$select="));
+    assertTrue(nextLink.asText().contains("$skiptoken="));
+  }
+
+  @Test
+  public void testInvalidSkipToken() throws IOException, ODataException {
+    final ServerCallSimulator helper = new ServerCallSimulator(persistenceAdapter, newUriBuilder()
+        .appendEntitySetSegment("Organizations").skipToken("xyz"));
+    helper.execute(HttpStatusCode.BAD_REQUEST.getStatusCode());
+  }
+
+  @Test
+  public void testSkipTokenWithLongKeyValue() throws ODataJPAQueryException {
+    final char[] chars = new char[70000];
+    Arrays.fill(chars, '\u00e4');
+    final String longValue = new String(chars);
+    final SkipToken token = SkipToken.forKeyset(Arrays.asList(longValue, Integer.valueOf(3)), Integer.valueOf(5));
+    final SkipToken parsed = SkipToken.parse(token.encode());
+    assertTrue(parsed.isKeyset());
+    assertEquals(longValue, parsed.getKeysetValue(0, String.class));
+    assertEquals(Integer.valueOf(3), parsed.getKeysetValue(1, Integer.class));
+    assertEquals(Integer.valueOf(5), parsed.getRemainingTop());
+  }
+
+  @Test
+  public void testSkipTokenWithInvalidValueLength() {
+    final String encoded = SkipToken.forKeyset(Arrays.asList("abc"), null).encode();
+    final byte[] bytes = Base64.getUrlDecoder().decode(encoded);
+    // the length of the first value follows version (1), top (4), offset (4) and count (2)
+    bytes[11] = 0x7F;
+    try {
+      SkipToken.parse(Base64.getUrlEncoder().withoutPadding().encodeToString(bytes));
+      fail();
+    } catch (final ODataJPAQueryException e) {
+      assertEquals(HttpStatusCode.BAD_REQUEST.getStatusCode(), e.getStatusCode());
+    }
+  }
+}
@@ -0,0 +1,162 @@
+package org.apache.olingo.jpa.processor.core.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+
+import org.apache.olingo.client.api.uri.URIBuilder;
+import org.apache.olingo.commons.api.ex.ODataException;
+import org.apache.olingo.commons.api.http.HttpMethod;
+import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.jpa.processor.core.api.JPAODataServletHandler;
+import org.apache.olingo.jpa.processor.core.database.AbstractJPADatabaseProcessor;
+import org.apache.olingo.jpa.processor.core.query.result.QueryEntityResult;
+import org.apache.olingo.jpa.processor.core.util.ServerCallSimulator;
+import org.apache.olingo.jpa.processor.core.testmodel.Organization;
+import org.apache.olingo.jpa.processor.core.util.TestBase;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+public class TestJPAStreamedSerialization extends TestBase {
+
+  private ServerCallSimulator createStreamingSimulator(final URIBuilder uriBuilder) throws IOException,
+  ODataException {
+    return new ServerCallSimulator(persistenceAdapter, uriBuilder) {
+      @Override
+      protected JPAODataServletHandler createServletHandler() throws ODataException {
+        final JPAODataServletHandler handler = super.createServletHandler();
+        handler.setStreamingResponses(true);
+        return handler;
+      }
+    };
+  }
+
+  private void assertSameResult(final URIBuilder uriBuilder) throws IOException, ODataException {
+    final ServerCallSimulator expected = new ServerCallSimulator(persistenceAdapter, uriBuilder);
+    expected.execute(HttpStatusCode.OK.getStatusCode());
+
+    final ServerCallSimulator streamed = createStreamingSimulator(uriBuilder);
+    streamed.execute(HttpStatusCode.OK.getStatusCode());
+
+    assertEquals(expected.getJsonObjectValue(), streamed.getJsonObjectValue());
+  }
+
+  @Test
+  public void testSimpleCollection() throws IOException, ODataException {
+    assertSameResult(newUriBuilder().appendEntitySetSegment("Organizations").orderBy("ID"));
+  }
+
+  @Test
+  public void testCollectionWithExpandAndCount() throws IOException, ODataException {
+    assertSameResult(newUriBuilder().appendEntitySetSegment("Organizations").filter("Country eq 'USA'").orderBy(
+        "ID").top(4).count(true).expand("Roles"));
+  }
+
+  @Test
+  public void testCollectionWithElementCollectionAndSelect() throws IOException, ODataException {
+    assertSameResult(newUriBuilder().appendEntitySetSegment("Persons").select("ID,PhoneNumbers,Address").orderBy(
+        "ID"));
+  }
+
+  @Test
+  public void testEmptyCollection() throws IOException, ODataException {
+    final ServerCallSimulator helper = createStreamingSimulator(newUriBuilder().appendEntitySetSegment(
+        "Organizations").filter("ID eq 'xyz'"));
+    helper.execute(HttpStatusCode.OK.getStatusCode());
+    assertEquals(0, helper.getJsonObjectValues().size());
+  }
+
+  @Test
+  public void testNextLinkStreamed() throws IOException, ODataException {
+    ((AbstractJPADatabaseProcessor) persistenceAdapter.getDatabaseAccessor()).setMaxPageSize("Organizations", 2);
+    final ServerCallSimulator helper = createStreamingSimulator(newUriBuilder().appendEntitySetSegment(
+        "Organizations").count(true));
+    helper.execute(HttpStatusCode.OK.getStatusCode());
+    final ObjectNode page = helper.getJsonObjectValue();
+    assertEquals(2, page.get("value").size());
+    assertEquals(10, page.get("@odata.count").asInt());
+    assertNotNull(page.get("@odata.nextLink"));
+  }
+
+  @Test
+  public void testStreamedCollectionInBatch() throws IOException, ODataException {
+    final StringBuilder requestBody = new StringBuilder("--abc123\r\n");
+    requestBody.append("Content-Type: application/http\r\n");
+    requestBody.append("Content-Transfer-Encoding: binary\r\n");
+    requestBody.append("\r\n");
+    requestBody.append("GET Organizations?$filter=ID%20eq%20'3' HTTP/1.1\r\n");
+    requestBody.append("Content-Type: application/json\r\n");
+    requestBody.append("\r\n");
+    requestBody.append("\r\n");
+    requestBody.append("--abc123--");
+
+    final ServerCallSimulator helper = new ServerCallSimulator(persistenceAdapter, newUriBuilder()
+        .appendBatchSegment(), requestBody.toString(), HttpMethod.POST) {
+      @Override
+      protected JPAODataServletHandler createServletHandler() throws ODataException {
+        final JPAODataServletHandler handler = super.createServletHandler();
+        handler.setStreamingResponses(true);
+        return handler;
+      }
+    };
+    helper.execute(HttpStatusCode.ACCEPTED.getStatusCode());
+    assertEquals(200, helper.getBatchResultStatus(1));
+    final JsonNode value = helper.getBatchResult(1);
+    final ArrayNode entities = (ArrayNode) value.get("value");
+    assertEquals(1, entities.size());
+    assertEquals("3", entities.get(0).get("ID").asText());
+  }
+
+  @Test
+  public void testIterateClosedStreamedResult() throws ODataException {
+    final QueryEntityResult result = new QueryEntityResult(Stream.<Tuple> empty(), helper.getJPAEntityType(
+        "Organizations"));
+    result.close();
+    try {
+      result.iterateQueryResult();
+      fail();
+    } catch (final IllegalStateException e) {
+      // expected
+    }
+    try {
+      result.getQueryResult();
+      fail();
+    } catch (final IllegalStateException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testResultStreamPartiallyReadAndClosed() {
+    final EntityManager em = persistenceAdapter.getEMF().createEntityManager();
+    try {
+      final CriteriaBuilder cb = em.getCriteriaBuilder();
+      final CriteriaQuery<Tuple> cq = cb.createTupleQuery();
+      final Root<Organization> root = cq.from(Organization.class);
+      cq.multiselect(root.get("ID").alias("ID"));
+      cq.orderBy(cb.asc(root.get("ID")));
+      try (Stream<Tuple> stream = persistenceAdapter.getDatabaseAccessor().getResultStream(em.createQuery(cq))) {
+        final Iterator<Tuple> iterator = stream.iterator();
+        assertTrue(iterator.hasNext());
+        assertEquals("1", iterator.next().get("ID"));
+        assertEquals("10", iterator.next().get("ID"));
+      }
+    } finally {
+      em.close();
+    }
+  }
+}
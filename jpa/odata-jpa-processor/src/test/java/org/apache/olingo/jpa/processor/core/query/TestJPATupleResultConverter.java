@@ -1,17 +1,23 @@
 package org.apache.olingo.jpa.processor.core.query;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
 
 import javax.persistence.Tuple;
 
 import org.apache.olingo.commons.api.data.ComplexValue;
 import org.apache.olingo.commons.api.data.EntityCollection;
+import org.apache.olingo.commons.api.data.EntityIterator;
 import org.apache.olingo.commons.api.data.ValueType;
 import org.apache.olingo.commons.api.ex.ODataException;
 import org.apache.olingo.jpa.metadata.core.edm.mapper.exception.ODataJPAModelException;
@@ -92,6 +98,40 @@ public class TestJPATupleResultConverter extends TestBase {
     assertEquals("5", act.getEntities().get(1).getProperty("ID").getValue().toString());
   }
 
+  @Test
+  public void checkConvertsResultSetsWithDifferentShapes() throws Exception {
+    final List<Tuple> tupleResult1 = new ArrayList<Tuple>();
+    HashMap<String, Object> result;
+
+    result = new HashMap<String, Object>();
+    result.put("ID", new String("1"));
+    result.put("Address/CityName", "Test City");
+    tupleResult1.add(new TupleDouble(result));
+
+    result = new HashMap<String, Object>();
+    result.put("ID", new String("7"));
+    result.put("Address/CityName", "Other City");
+    tupleResult1.add(new TupleDouble(result));
+
+    final List<Tuple> tupleResult2 = new ArrayList<Tuple>();
+    result = new HashMap<String, Object>();
+    result.put("ID", new String("5"));
+    result.put("Name1", new String("Willi"));
+    tupleResult2.add(new TupleDouble(result));
+
+    final EntityCollection act1 = cut.convertDBTuple2OData(new QueryEntityResult(tupleResult1, helper
+        .getJPAEntityType("Organizations")));
+    final EntityCollection act2 = cut.convertDBTuple2OData(new QueryEntityResult(tupleResult2, helper
+        .getJPAEntityType("Organizations")));
+    assertEquals(2, act1.getEntities().size());
+    assertEquals("Test City", ((ComplexValue) act1.getEntities().get(0).getProperty("Address").getValue()).getValue()
+        .get(0).getValue());
+    assertEquals("7", act1.getEntities().get(1).getProperty("ID").getValue().toString());
+    assertEquals("Other City", ((ComplexValue) act1.getEntities().get(1).getProperty("Address").getValue()).getValue()
+        .get(0).getValue());
+    assertEquals("Willi", act2.getEntities().get(0).getProperty("Name1").getValue().toString());
+  }
+
   @Test
   public void checkConvertsOneResultsTwoElements() throws Exception {
     final List<Tuple> tupleResult = new ArrayList<Tuple>();
@@ -218,4 +258,53 @@ public class TestJPATupleResultConverter extends TestBase {
     assertEquals("image/svg+xml", act.getEntities().get(0).getMediaContentType());
     assertEquals(2, act.getEntities().get(0).getProperties().size());
   }
+
+  private static Tuple createOrganizationRow(final String id) {
+    final HashMap<String, Object> result = new HashMap<String, Object>();
+    result.put("ID", id);
+    return new TupleDouble(result);
+  }
+
+  @Test
+  public void checkConvertsStreamedResult() throws Exception {
+    final AtomicBoolean closed = new AtomicBoolean(false);
+    final QueryEntityResult jpaQueryResult = new QueryEntityResult(Stream.of(createOrganizationRow("1"),
+        createOrganizationRow("2")).onClose(() -> closed.set(true)), helper.getJPAEntityType("Organizations"));
+    assertTrue(jpaQueryResult.isStreamed());
+    final EntityIterator act = cut.convertDBTuple2ODataStreamed(jpaQueryResult);
+    assertEquals("1", act.next().getProperty("ID").getValue());
+    assertEquals("2", act.next().getProperty("ID").getValue());
+    assertFalse(act.hasNext());
+    jpaQueryResult.close();
+    assertTrue(closed.get());
+  }
+
+  @Test
+  public void checkMaterializesStreamedResult() throws Exception {
+    final QueryEntityResult jpaQueryResult = new QueryEntityResult(Stream.of(createOrganizationRow("1"),
+        createOrganizationRow("2")), helper.getJPAEntityType("Organizations"));
+    assertEquals(2, cut.convertDBTuple2OData(jpaQueryResult).getEntities().size());
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void checkStreamedConversionErrorOfFirstRowBeforeWriting() throws Exception {
+    final QueryEntityResult jpaQueryResult = new QueryEntityResult(Stream.of(createOrganizationRow(null)), helper
+        .getJPAEntityType("Organizations"));
+    cut.convertDBTuple2ODataStreamed(jpaQueryResult);
+  }
+
+  @Test
+  public void checkStreamedConversionErrorOfLaterRowWhileWriting() throws Exception {
+    final QueryEntityResult jpaQueryResult = new QueryEntityResult(Stream.of(createOrganizationRow("1"),
+        createOrganizationRow(null)), helper.getJPAEntityType("Organizations"));
+    final EntityIterator act = cut.convertDBTuple2ODataStreamed(jpaQueryResult);
+    assertEquals("1", act.next().getProperty("ID").getValue());
+    assertTrue(act.hasNext());
+    try {
+      act.next();
+      fail();
+    } catch (final RuntimeException e) {
+      // the response would be truncated
+    }
+  }
 }
@@ -1,19 +1,25 @@
 package org.apache.olingo.jpa.processor.core.query;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 
+import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
 import javax.persistence.Tuple;
 
+import org.apache.olingo.commons.api.data.Entity;
 import org.apache.olingo.commons.api.data.EntityCollection;
+import org.apache.olingo.commons.api.edm.EdmEntitySet;
 import org.apache.olingo.jpa.metadata.core.edm.mapper.exception.ODataJPAModelException;
 import org.apache.olingo.jpa.processor.core.query.result.QueryEntityResult;
 import org.apache.olingo.jpa.processor.core.util.TestBase;
 import org.apache.olingo.jpa.processor.core.util.TupleDouble;
 import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.serializer.SerializerException;
 import org.junit.Test;
 
 public class TestJPATupleResultConverterCompoundKey extends TestBase {
@@ -72,4 +78,50 @@ public class TestJPATupleResultConverterCompoundKey extends TestBase {
         act.getEntities().get(0).getId().toASCIIString());
   }
 
+  @Test
+  public void checkIdsEqualCanonicalURL() throws ODataApplicationException, ODataJPAModelException,
+  SerializerException {
+    final List<Tuple> tupleResult = new ArrayList<Tuple>();
+    for (final String id : new String[] { "3", "a b'c/ä", "3" }) {
+      final HashMap<String, Object> result = new HashMap<String, Object>();
+      result.put("BusinessPartnerID", id);
+      result.put("RoleCategory", "C");
+      tupleResult.add(new TupleDouble(result));
+    }
+
+    final QueryEntityResult queryResult = new QueryEntityResult(tupleResult,
+        helper.getJPAEntityType("BusinessPartnerRoles"));
+    final DatabaseQueryResult2ODataEntityConverter cut = new DatabaseQueryResult2ODataEntityConverter(
+        helper.getServiceDocument(), odata.createUriHelper(), serviceMetaData);
+
+    final EntityCollection act = cut.convertDBTuple2OData(queryResult);
+    assertEquals(3, act.getEntities().size());
+    final EdmEntitySet entitySet = serviceMetaData.getEdm().getEntityContainer().getEntitySet(
+        "BusinessPartnerRoles");
+    for (final Entity entity : act.getEntities()) {
+      assertEquals(odata.createUriHelper().buildCanonicalURL(entitySet, entity), entity.getId().toString());
+    }
+    assertEquals(act.getEntities().get(0).getId(), act.getEntities().get(2).getId());
+  }
+
+  @Test
+  public void checkIdsCachedOnlyOnRequest() throws ODataApplicationException, ODataJPAModelException,
+  SerializerException, URISyntaxException {
+    final List<Tuple> tupleResult = new ArrayList<Tuple>();
+    final HashMap<String, Object> result = new HashMap<String, Object>();
+    result.put("BusinessPartnerID", "3");
+    result.put("RoleCategory", "C");
+    tupleResult.add(new TupleDouble(result));
+    final QueryEntityResult queryResult = new QueryEntityResult(tupleResult,
+        helper.getJPAEntityType("BusinessPartnerRoles"));
+    final Entity entity = new DatabaseQueryResult2ODataEntityConverter(helper.getServiceDocument(), odata
+        .createUriHelper(), serviceMetaData).convertDBTuple2OData(queryResult).getEntities().get(0);
+
+    final EntityIdBuilder cut = new EntityIdBuilder(serviceMetaData.getEdm().getEntityContainer().getEntitySet(
+        "BusinessPartnerRoles"));
+    assertNotSame(cut.buildId(entity), cut.buildId(entity));
+    assertSame(cut.buildCachedId(entity), cut.buildCachedId(entity));
+    assertEquals(cut.buildId(entity), cut.buildCachedId(entity));
+  }
+
 }
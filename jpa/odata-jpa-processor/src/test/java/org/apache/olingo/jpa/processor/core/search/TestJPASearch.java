@@ -5,15 +5,22 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assume.assumeTrue;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import javax.persistence.EntityManager;
 import javax.sql.DataSource;
 
 import org.apache.olingo.client.api.uri.URIBuilder;
 import org.apache.olingo.commons.api.ex.ODataException;
 import org.apache.olingo.commons.api.http.HttpStatusCode;
 import org.apache.olingo.commons.core.Encoder;
+import org.apache.olingo.jpa.metadata.core.edm.mapper.api.JPASelector;
+import org.apache.olingo.jpa.processor.core.api.JPAODataSearchContext;
+import org.apache.olingo.jpa.processor.core.database.AbstractJPADatabaseProcessor;
 import org.apache.olingo.jpa.processor.core.database.JPA_HANADatabaseProcessor;
 import org.apache.olingo.jpa.processor.core.util.ServerCallSimulator;
 import org.apache.olingo.jpa.processor.core.util.TestBase;
@@ -122,4 +129,105 @@ public class TestJPASearch extends TestBase {
     assertEquals("Bezirk Löwen", ents.get(0).get("Name").asText());
   }
 
+  @Test
+  public void testTokenizedSearchMatchesTokensInAnyOrder() throws IOException, ODataException {
+    final URIBuilder uriBuilder = newUriBuilder().appendEntitySetSegment("Organizations").search("\"Org. Second\"");
+    final ServerCallSimulator helper1 = new ServerCallSimulator(persistenceAdapter, uriBuilder);
+    helper1.execute(HttpStatusCode.OK.getStatusCode());
+    assertEquals(0, helper1.getJsonObjectValues().size());
+
+    ((AbstractJPADatabaseProcessor) persistenceAdapter.getDatabaseAccessor()).setSearchProvider("Organization",
+        new TokenizedSearchProvider());
+    final ServerCallSimulator helper2 = new ServerCallSimulator(persistenceAdapter, uriBuilder);
+    helper2.execute(HttpStatusCode.OK.getStatusCode());
+    final ArrayNode ents = helper2.getJsonObjectValues();
+    assertEquals(1, ents.size());
+    assertEquals("Second Org.", ents.get(0).get("Name1").asText());
+  }
+
+  @Test
+  public void testTokenizedSearchWithComplexExpression() throws IOException, ODataException {
+    ((AbstractJPADatabaseProcessor) persistenceAdapter.getDatabaseAccessor()).setDefaultSearchProvider(
+        new TokenizedSearchProvider());
+    final URIBuilder uriBuilder = newUriBuilder().appendEntitySetSegment("Organizations").search(
+        "Second OR Third");
+    final ServerCallSimulator helper = new ServerCallSimulator(persistenceAdapter, uriBuilder);
+    helper.execute(HttpStatusCode.OK.getStatusCode());
+    assertEquals(2, helper.getJsonObjectValues().size());
+  }
+
+  @Test
+  public void testH2FullTextSearch() throws IOException, ODataException {
+    final EntityManager em = persistenceAdapter.createEntityManager();
+    try {
+      em.getTransaction().begin();
+      em.createNativeQuery("CREATE ALIAS IF NOT EXISTS FT_INIT FOR \"org.h2.fulltext.FullText.init\"")
+      .executeUpdate();
+      em.createNativeQuery("CALL FT_INIT()").executeUpdate();
+      em.createNativeQuery("CALL FT_CREATE_INDEX('OLINGO', 'org.apache.olingo.jpa::BusinessPartner', 'NameLine1')")
+      .executeUpdate();
+      em.getTransaction().commit();
+
+      ((AbstractJPADatabaseProcessor) persistenceAdapter.getDatabaseAccessor()).setSearchProvider("Organization",
+          new H2FullTextSearchProvider());
+      final URIBuilder uriBuilder = newUriBuilder().appendEntitySetSegment("Organizations").search("second");
+      final ServerCallSimulator helper = new ServerCallSimulator(persistenceAdapter, uriBuilder);
+      helper.execute(HttpStatusCode.OK.getStatusCode());
+      final ArrayNode ents = helper.getJsonObjectValues();
+      assertEquals(1, ents.size());
+      assertEquals("2", ents.get(0).get("ID").asText());
+
+      // matching only a person
+      final URIBuilder uriBuilderPerson = newUriBuilder().appendEntitySetSegment("Organizations").search("Max");
+      final ServerCallSimulator helperPerson = new ServerCallSimulator(persistenceAdapter, uriBuilderPerson);
+      helperPerson.execute(HttpStatusCode.OK.getStatusCode());
+      assertEquals(0, helperPerson.getJsonObjectValues().size());
+    } finally {
+      em.getTransaction().begin();
+      em.createNativeQuery("CALL FT_DROP_ALL()").executeUpdate();
+      em.getTransaction().commit();
+      em.close();
+    }
+  }
+
+  @Test
+  public void testSearchMatchingTooManyKeysUsesFallbackCondition() throws IOException, ODataException {
+    // a search engine delivering always the same keys
+    final AbstractKeySetSearchProvider provider = new AbstractKeySetSearchProvider() {
+      @Override
+      protected List<Object[]> findMatchingKeys(final JPAODataSearchContext context,
+          final List<JPASelector> keyPath, final int maxResults) {
+        final List<Object[]> keys = new ArrayList<>();
+        for (final String id : Arrays.asList("2", "3", "5")) {
+          if (keys.size() < maxResults) {
+            keys.add(new Object[] { id });
+          }
+        }
+        return keys;
+      }
+    };
+    ((AbstractJPADatabaseProcessor) persistenceAdapter.getDatabaseAccessor()).setSearchProvider("Organization",
+        provider);
+
+    provider.setMaxMatchingKeys(3);
+    final ServerCallSimulator helperAllowed = new ServerCallSimulator(persistenceAdapter, newUriBuilder()
+        .appendEntitySetSegment("Organizations").search("Third"));
+    helperAllowed.execute(HttpStatusCode.OK.getStatusCode());
+    assertEquals(3, helperAllowed.getJsonObjectValues().size());
+
+    // the LIKE conditions of the default search
+    provider.setMaxMatchingKeys(2);
+    final ServerCallSimulator helperTooMany = new ServerCallSimulator(persistenceAdapter, newUriBuilder()
+        .appendEntitySetSegment("Organizations").search("Third"));
+    helperTooMany.execute(HttpStatusCode.OK.getStatusCode());
+    final ArrayNode ents = helperTooMany.getJsonObjectValues();
+    assertEquals(1, ents.size());
+    assertEquals("3", ents.get(0).get("ID").asText());
+
+    final ServerCallSimulator helperOr = new ServerCallSimulator(persistenceAdapter, newUriBuilder()
+        .appendEntitySetSegment("Organizations").search("Second OR Third"));
+    helperOr.execute(HttpStatusCode.OK.getStatusCode());
+    assertEquals(2, helperOr.getJsonObjectValues().size());
+  }
+
 }
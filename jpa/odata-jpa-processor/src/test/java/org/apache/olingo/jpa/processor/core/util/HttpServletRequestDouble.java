@@ -6,6 +6,7 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.security.Principal;
 import java.util.Collection;
 import java.util.Collections;
@@ -74,13 +75,11 @@ public class HttpServletRequestDouble implements HttpServletRequest {
 
   @Override
   public Enumeration<String> getAttributeNames() {
-    fail();
-    return null;
+    return Collections.emptyEnumeration();
   }
 
   @Override
   public String getCharacterEncoding() {
-    fail();
     return null;
   }
 
@@ -131,8 +130,7 @@ public class HttpServletRequestDouble implements HttpServletRequest {
 
   @Override
   public Map<String, String[]> getParameterMap() {
-    fail();
-    return null;
+    return Collections.emptyMap();
   }
 
   @Override
@@ -142,20 +140,17 @@ public class HttpServletRequestDouble implements HttpServletRequest {
 
   @Override
   public String getScheme() {
-    fail();
-    return null;
+    return uri.getScheme();
   }
 
   @Override
   public String getServerName() {
-    fail();
-    return null;
+    return uri.getHost();
   }
 
   @Override
   public int getServerPort() {
-    fail();
-    return 0;
+    return uri.getPort();
   }
 
   @Override
@@ -166,13 +161,11 @@ public class HttpServletRequestDouble implements HttpServletRequest {
 
   @Override
   public String getRemoteAddr() {
-    fail();
     return null;
   }
 
   @Override
   public String getRemoteHost() {
-    fail();
     return null;
   }
 
@@ -201,7 +194,6 @@ public class HttpServletRequestDouble implements HttpServletRequest {
 
   @Override
   public boolean isSecure() {
-    fail();
     return false;
   }
 
@@ -219,37 +211,31 @@ public class HttpServletRequestDouble implements HttpServletRequest {
 
   @Override
   public int getRemotePort() {
-    fail();
     return 0;
   }
 
   @Override
   public String getLocalName() {
-    fail();
     return null;
   }
 
   @Override
   public String getLocalAddr() {
-    fail();
     return null;
   }
 
   @Override
   public int getLocalPort() {
-    fail();
     return 0;
   }
 
   @Override
   public String getAuthType() {
-    fail();
     return null;
   }
 
   @Override
   public Cookie[] getCookies() {
-    fail();
     return null;
   }
 
@@ -336,19 +322,16 @@ public class HttpServletRequestDouble implements HttpServletRequest {
 
   @Override
   public String getPathInfo() {
-    fail();
     return null;
   }
 
   @Override
   public String getPathTranslated() {
-    fail();
     return null;
   }
 
   @Override
   public String getContextPath() {
-    fail();
     return null;
   }
 
@@ -360,8 +343,7 @@ public class HttpServletRequestDouble implements HttpServletRequest {
 
   @Override
   public String getRemoteUser() {
-    fail();
-    return null;
+    return principal != null ? principal.getName() : null;
   }
 
   @Override
@@ -392,14 +374,12 @@ public class HttpServletRequestDouble implements HttpServletRequest {
 
   @Override
   public String getRequestedSessionId() {
-    fail();
     return null;
   }
 
   @Override
   public String getRequestURI() {
-    fail();
-    return null;
+    return uri.getRawPath();
   }
 
   URI getRequestTestExecutionURI() {
@@ -431,25 +411,21 @@ public class HttpServletRequestDouble implements HttpServletRequest {
 
   @Override
   public boolean isRequestedSessionIdValid() {
-    fail();
     return false;
   }
 
   @Override
   public boolean isRequestedSessionIdFromCookie() {
-    fail();
     return false;
   }
 
   @Override
   public boolean isRequestedSessionIdFromURL() {
-    fail();
     return false;
   }
 
   @Override
   public boolean isRequestedSessionIdFromUrl() {
-    fail();
     return false;
   }
 
@@ -458,13 +434,12 @@ public class HttpServletRequestDouble implements HttpServletRequest {
     if (input == null) {
       return 0;
     }
-    // TODO content length must be number of 8-bit bytes, not of utf-8 characters -> convert before length detection
-    return input.length();
+    // the number of bytes in the stream, not the number of characters
+    return input.getBytes(StandardCharsets.UTF_8).length;
   }
 
   @Override
   public ServletContext getServletContext() {
-    fail();
     return null;
   }
 
@@ -501,8 +476,7 @@ public class HttpServletRequestDouble implements HttpServletRequest {
 
   @Override
   public DispatcherType getDispatcherType() {
-    fail();
-    return null;
+    return DispatcherType.REQUEST;
   }
 
   @Override
@@ -141,6 +141,10 @@ public class ServerCallSimulator {
     req.setHeader(HttpHeader.ACCEPT, type);
   }
 
+  public void setRequestHeader(final String name, final String value) {
+    req.setHeader(name, value);
+  }
+
   public void setSecurityInceptor(final SecurityInceptor securityInceptor) {
     this.securityInceptor = securityInceptor;
   }
@@ -186,6 +190,13 @@ public class ServerCallSimulator {
     // do nothing as default
   }
 
+  public String getResponseHeader(final String name) {
+    if (!executed) {
+      throw new IllegalStateException("call execute() before");
+    }
+    return resp.getHeader(name);
+  }
+
   public int getStatus() {
     if (!executed) {
       throw new IllegalStateException("call execute() before");
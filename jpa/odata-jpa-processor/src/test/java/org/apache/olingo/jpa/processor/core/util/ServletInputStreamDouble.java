@@ -3,6 +3,7 @@ package org.apache.olingo.jpa.processor.core.util;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 
 import javax.servlet.ReadListener;
 import javax.servlet.ServletInputStream;
@@ -20,7 +21,7 @@ public class ServletInputStreamDouble extends ServletInputStream {
   public ServletInputStreamDouble(final String stream) {
     super();
     if (stream != null) {
-      this.stream = new ByteArrayInputStream(stream.getBytes());
+      this.stream = new ByteArrayInputStream(stream.getBytes(StandardCharsets.UTF_8));
     } else {
       this.stream = null;
     }
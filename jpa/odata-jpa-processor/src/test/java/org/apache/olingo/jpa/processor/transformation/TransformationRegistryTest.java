@@ -0,0 +1,59 @@
+package org.apache.olingo.jpa.processor.transformation;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+
+import org.apache.olingo.commons.api.data.EntityCollection;
+import org.apache.olingo.jpa.processor.JPAODataRequestContext;
+import org.apache.olingo.jpa.processor.core.query.result.QueryEntityResult;
+import org.apache.olingo.jpa.processor.core.util.TypedParameter;
+import org.apache.olingo.jpa.processor.transformation.impl.QueryEntityResult2EntityCollectionTransformation;
+import org.apache.olingo.server.api.serializer.RepresentationType;
+import org.junit.Test;
+
+public class TransformationRegistryTest {
+
+  private final JPAODataRequestContext requestContext = mock(JPAODataRequestContext.class);
+
+  private final TransformationDeclaration<QueryEntityResult, EntityCollection> specializedDeclaration =
+      new TransformationDeclaration<>(QueryEntityResult.class, EntityCollection.class,
+          new TransformationContextRequirement(RepresentationType.class, RepresentationType.COLLECTION_ENTITY),
+          new TransformationContextRequirement(Integer.class, Integer.valueOf(1)));
+
+  private final TypedParameter[] specializedContext = { new TypedParameter(RepresentationType.class,
+      RepresentationType.COLLECTION_ENTITY), new TypedParameter(Integer.class, Integer.valueOf(1)) };
+
+  @Test
+  public void testBuiltinTransformationAvailable() {
+    final TransformationRegistry registry = new TransformationRegistry();
+    assertSame(QueryEntityResult2EntityCollectionTransformation.DEFAULT_DECLARATION, registry.findBestMatch(
+        QueryEntityResult.class, EntityCollection.class, specializedContext, requestContext).getDeclaration());
+  }
+
+  @Test
+  public void testRegistrationVisibleAfterResolution() {
+    final TransformationRegistry registry = new TransformationRegistry();
+    // fill the cache of candidates
+    registry.findBestMatch(QueryEntityResult.class, EntityCollection.class, specializedContext, requestContext);
+
+    registry.registerTransformation(specializedDeclaration, QueryEntityResult2EntityCollectionTransformation.class);
+    assertSame(specializedDeclaration, registry.findBestMatch(QueryEntityResult.class, EntityCollection.class,
+        specializedContext, requestContext).getDeclaration());
+
+    registry.unregisterTransformation(specializedDeclaration);
+    assertSame(QueryEntityResult2EntityCollectionTransformation.DEFAULT_DECLARATION, registry.findBestMatch(
+        QueryEntityResult.class, EntityCollection.class, specializedContext, requestContext).getDeclaration());
+  }
+
+  @Test
+  public void testChildRegistryInheritsFromParent() {
+    final TransformationRegistry parent = new TransformationRegistry();
+    parent.registerTransformation(specializedDeclaration, QueryEntityResult2EntityCollectionTransformation.class);
+    final TransformationRegistry child = new TransformationRegistry(parent);
+    assertSame(specializedDeclaration, child.findBestMatch(QueryEntityResult.class, EntityCollection.class,
+        specializedContext, requestContext).getDeclaration());
+    assertNull(child.findBestMatch(Integer.class, EntityCollection.class, specializedContext, requestContext));
+  }
+
+}
@@ -17,6 +17,7 @@ import javax.persistence.Table;
 import org.apache.olingo.jpa.metadata.core.edm.annotation.EdmFunction;
 import org.apache.olingo.jpa.metadata.core.edm.annotation.EdmFunctionParameter;
 import org.apache.olingo.jpa.metadata.core.edm.annotation.EdmFunctions;
+import org.apache.olingo.jpa.metadata.core.edm.entity.ODataResponseCaching;
 
 @EdmFunctions({
   @EdmFunction(
@@ -30,6 +31,7 @@ import org.apache.olingo.jpa.metadata.core.edm.annotation.EdmFunctions;
           @EdmFunctionParameter(name = "Population", parameterName = "Population", type = Long.class) }),
 })
 
+@ODataResponseCaching(timeToLive = 3600)
 @IdClass(AdministrativeDivisionKey.class)
 @Entity(name = "AdministrativeDivision")
 @Table(schema = "\"OLINGO\"", name = "\"org.apache.olingo.jpa::AdministrativeDivision\"")
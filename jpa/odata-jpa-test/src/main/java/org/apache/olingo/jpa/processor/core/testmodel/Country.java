@@ -7,10 +7,12 @@ import javax.persistence.IdClass;
 import javax.persistence.Table;
 
 import org.apache.olingo.jpa.metadata.core.edm.entity.ODataEntity;
+import org.apache.olingo.jpa.metadata.core.edm.entity.ODataResponseCaching;
 
 @Entity
 @IdClass(CountryKey.class)
 @Table(schema = "\"OLINGO\"", name = "\"org.apache.olingo.jpa::CountryDescription\"")
+@ODataResponseCaching(timeToLive = 3600)
 @ODataEntity(edmEntitySetName = "CountryEntitySet")
 public class Country {
   @Id
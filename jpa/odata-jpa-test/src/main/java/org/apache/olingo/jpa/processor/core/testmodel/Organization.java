@@ -11,6 +11,7 @@ import org.apache.olingo.jpa.metadata.core.edm.annotation.EdmAction;
 import org.apache.olingo.jpa.metadata.core.edm.annotation.EdmFunction;
 import org.apache.olingo.jpa.metadata.core.edm.annotation.EdmFunction.ReturnType;
 import org.apache.olingo.jpa.metadata.core.edm.annotation.EdmFunctionParameter;
+import org.apache.olingo.jpa.metadata.core.edm.entity.ODataResponseCaching;
 
 @EdmFunction(
     name = "AllCustomersByABC",
@@ -18,6 +19,7 @@ import org.apache.olingo.jpa.metadata.core.edm.annotation.EdmFunctionParameter;
     returnType = @ReturnType(type = Organization.class, isCollection = true) ,
     parameter = { @EdmFunctionParameter(name = "Class", type = Character.class) })
 
+@ODataResponseCaching(timeToLive = 60)
 @Entity(name = "Organization")
 @DiscriminatorValue(value = "2")
 public class Organization extends BusinessPartner {